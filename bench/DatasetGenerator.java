@@ -0,0 +1,363 @@
+package bench;
+
+import src.TransportType;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes seeded synthetic cities and transport csvs in the format
+ * TravelController.load reads, for benchmarking at scale. Cities are named
+ * c0 to c(n - 1) and placed on a plane; a transport's duration follows from
+ * the distance it covers and the speed of its type, and its price from the
+ * distance and the type's fare, mixed with noise by a correlation setting.
+ * Transports are written as they are generated, so only a few arrays per
+ * city are held in memory however many transports there are. A transport
+ * file whose name ends in .gz is gzip-compressed, as TravelController.load
+ * also reads those. The same settings and seed
+ * always give the same files.
+ * Topologies:
+ * grid - a square grid of two-way links between neighbours, like roads
+ * random - a number of one-way links from every city to any other
+ * hub - hubs linked in a ring and to random other hubs, with every other
+ * city linked both ways to one hub, like an airline network
+ * scale-free - preferential attachment: each city links both ways to a
+ * number of earlier cities chosen by their degree, giving a few very
+ * connected cities and many barely connected ones
+ * Run as a program with options, each followed by a value:
+ * --topology (default grid), --cities (default 1000), --degree (default 4),
+ * --hubs (default one per hundred cities), --modes (default
+ * bus=0.5,train=0.3,plane=0.2), --correlation (default 0.8), --seed
+ * (default 42), --cities-out (default cities.csv) and --transport-out
+ * (default transport.csv).
+ */
+public class DatasetGenerator {
+    private static final TransportType[] TYPES = TransportType.values();
+    // km per unit of the plane cities are placed on
+    private static final double SCALE = 2000.0;
+    // km between neighbours of a grid
+    private static final double GRID_SPACING = 20.0;
+    // average speed in km/h, minutes spent boarding and leaving, fixed fare and fare per km of each type
+    private static final double[] SPEEDS = {70, 120, 750};
+    private static final double[] OVERHEADS = {10, 20, 90};
+    private static final double[] BASE_FARES = {2, 5, 40};
+    private static final double[] FARES_PER_KM = {0.08, 0.15, 0.12};
+
+    private final String topology;
+    private final int cities;
+    private final long seed;
+    private int degree;
+    private int hubs;
+    private final double[] modeMix;
+    private double correlation;
+
+    private Random random;
+    private double[] xs;
+    private double[] ys;
+    private final StringBuilder row;
+    private long rows;
+
+    /**
+     * a constructor for the DatasetGenerator class
+     * @param topology - "grid", "random", "hub" or "scale-free"
+     * @param cities - the number of cities
+     * @param seed - the seed of everything random in the dataset
+     */
+    public DatasetGenerator(String topology, int cities, long seed) {
+        if (!topology.equals("grid") && !topology.equals("random") && !topology.equals("hub")
+                && !topology.equals("scale-free")) {
+            throw new IllegalArgumentException("Unknown topology: " + topology);
+        }
+        if (cities < 2) {
+            throw new IllegalArgumentException("A dataset needs at least two cities");
+        }
+        this.topology = topology;
+        this.cities = cities;
+        this.seed = seed;
+        this.degree = 4;
+        this.hubs = Math.max(1, cities / 100);
+        this.modeMix = new double[] {0.5, 0.3, 0.2};
+        this.correlation = 0.8;
+        this.row = new StringBuilder();
+    }
+
+    /**
+     * sets how many links each city makes in the random and scale-free
+     * topologies, and how many other hubs each hub links to
+     * @param degree - the number of links, at least one
+     */
+    public void setDegree(int degree) {
+        if (degree < 1) {
+            throw new IllegalArgumentException("Degree must be positive");
+        }
+        this.degree = degree;
+    }
+
+    /**
+     * sets the number of hubs of the hub topology
+     * @param hubs - the number of hubs, from one to the number of cities
+     */
+    public void setHubs(int hubs) {
+        if (hubs < 1 || hubs > this.cities) {
+            throw new IllegalArgumentException("Number of hubs must be between one and the number of cities");
+        }
+        this.hubs = hubs;
+    }
+
+    /**
+     * sets how often each type of transport is picked for a link
+     * @param mix - the relative weight of each type; missing types are never picked
+     */
+    public void setModeMix(Map<TransportType, Double> mix) {
+        double total = 0;
+        for (TransportType type : TYPES) {
+            double weight = mix.getOrDefault(type, 0.0);
+            if (weight < 0) {
+                throw new IllegalArgumentException("Mode weights must not be negative");
+            }
+            this.modeMix[type.ordinal()] = weight;
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one mode must have a positive weight");
+        }
+    }
+
+    /**
+     * sets how closely prices follow the distance a transport covers, and
+     * so its duration
+     * @param correlation - 1 for prices set by distance alone, down to 0 for
+     *                    prices that are random around the distance fare
+     */
+    public void setCorrelation(double correlation) {
+        if (correlation < 0 || correlation > 1) {
+            throw new IllegalArgumentException("Correlation must be between 0 and 1");
+        }
+        this.correlation = correlation;
+    }
+
+    /**
+     * writes the cities and transports of the dataset
+     * @param citiesFile - where to write the cities csv
+     * @param transportFile - where to write the transport csv
+     * @return - the number of transports written
+     * @throws IOException if a file could not be written
+     */
+    public long write(Path citiesFile, Path transportFile) throws IOException {
+        this.random = new Random(this.seed);
+        this.rows = 0;
+        try (Writer out = Files.newBufferedWriter(citiesFile)) {
+            out.write("name\n");
+            for (int i = 0; i < this.cities; i++) {
+                out.write("c" + i + "\n");
+            }
+        }
+        this.place();
+        try (Writer out = open(transportFile)) {
+            out.write("origin,destination,type,price,duration\n");
+            switch (this.topology) {
+                case "grid" -> this.writeGrid(out);
+                case "random" -> this.writeRandom(out);
+                case "hub" -> this.writeHub(out);
+                default -> this.writeScaleFree(out);
+            }
+        }
+        this.xs = null;
+        this.ys = null;
+        return this.rows;
+    }
+
+    private static Writer open(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (file.toString().endsWith(".gz")) {
+            out = new GZIPOutputStream(out, 1 << 16);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * places the cities: on a grid for the grid topology, around their hub
+     * for spokes of the hub topology, and anywhere otherwise
+     */
+    private void place() {
+        this.xs = new double[this.cities];
+        this.ys = new double[this.cities];
+        int side = (int) Math.ceil(Math.sqrt(this.cities));
+        for (int i = 0; i < this.cities; i++) {
+            if (this.topology.equals("grid")) {
+                this.xs[i] = (i % side) * GRID_SPACING;
+                this.ys[i] = (i / side) * GRID_SPACING;
+            } else if (this.topology.equals("hub") && i >= this.hubs) {
+                int hub = i % this.hubs;
+                this.xs[i] = this.xs[hub] + (this.random.nextDouble() - 0.5) * SCALE / 10;
+                this.ys[i] = this.ys[hub] + (this.random.nextDouble() - 0.5) * SCALE / 10;
+            } else {
+                this.xs[i] = this.random.nextDouble() * SCALE;
+                this.ys[i] = this.random.nextDouble() * SCALE;
+            }
+        }
+    }
+
+    private void writeGrid(Writer out) throws IOException {
+        int side = (int) Math.ceil(Math.sqrt(this.cities));
+        for (int i = 0; i < this.cities; i++) {
+            if ((i + 1) % side != 0 && i + 1 < this.cities) {
+                this.writeBothWays(out, i, i + 1);
+            }
+            if (i + side < this.cities) {
+                this.writeBothWays(out, i, i + side);
+            }
+        }
+    }
+
+    private void writeRandom(Writer out) throws IOException {
+        for (int i = 0; i < this.cities; i++) {
+            for (int j = 0; j < this.degree; j++) {
+                int target = this.random.nextInt(this.cities - 1);
+                this.writeRow(out, i, target >= i ? target + 1 : target, this.pickMode());
+            }
+        }
+    }
+
+    private void writeHub(Writer out) throws IOException {
+        for (int hub = 0; hub < this.hubs; hub++) {
+            if (this.hubs > 1 && (this.hubs > 2 || hub == 0)) {
+                this.writeBothWays(out, hub, (hub + 1) % this.hubs);
+            }
+            for (int j = 0; j < this.degree && this.hubs > 2; j++) {
+                int other = this.random.nextInt(this.hubs - 1);
+                this.writeBothWays(out, hub, other >= hub ? other + 1 : other);
+            }
+        }
+        for (int spoke = this.hubs; spoke < this.cities; spoke++) {
+            this.writeBothWays(out, spoke, spoke % this.hubs);
+        }
+    }
+
+    private void writeScaleFree(Writer out) throws IOException {
+        if (2L * this.degree * this.cities > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many links for a scale-free dataset");
+        }
+        // both ends of every link so far, so a uniform pick is a pick by degree
+        int[] ends = new int[2 * this.degree * this.cities];
+        int size = 0;
+        for (int i = 1; i < this.cities; i++) {
+            int links = Math.min(this.degree, i);
+            for (int j = 0; j < links; j++) {
+                // the first cities link to every city before them
+                int target = i <= this.degree ? j : ends[this.random.nextInt(size)];
+                this.writeBothWays(out, i, target);
+                ends[size++] = target;
+            }
+            // added afterwards, so a city never links to itself
+            for (int j = 0; j < links; j++) {
+                ends[size++] = i;
+            }
+        }
+    }
+
+    private TransportType pickMode() {
+        double total = this.modeMix[0] + this.modeMix[1] + this.modeMix[2];
+        double pick = this.random.nextDouble() * total;
+        for (TransportType type : TYPES) {
+            pick -= this.modeMix[type.ordinal()];
+            if (pick < 0) {
+                return type;
+            }
+        }
+        // rounding left pick at zero, so the last type that can be picked is
+        return TYPES[this.modeMix[2] > 0 ? 2 : this.modeMix[1] > 0 ? 1 : 0];
+    }
+
+    /**
+     * writes a link both ways, with the same type, price and duration
+     */
+    private void writeBothWays(Writer out, int a, int b) throws IOException {
+        TransportType type = this.pickMode();
+        double price = this.price(a, b, type);
+        long minutes = this.minutes(a, b, type);
+        this.writeRow(out, a, b, type, price, minutes);
+        this.writeRow(out, b, a, type, price, minutes);
+    }
+
+    private void writeRow(Writer out, int origin, int destination, TransportType type) throws IOException {
+        this.writeRow(out, origin, destination, type, this.price(origin, destination, type),
+                this.minutes(origin, destination, type));
+    }
+
+    private void writeRow(Writer out, int origin, int destination, TransportType type, double price,
+                          long minutes) throws IOException {
+        StringBuilder line = this.row;
+        line.setLength(0);
+        line.append('c').append(origin).append(",c").append(destination).append(',').append(type.getLabel())
+                .append(',').append(Math.round(price * 100) / 100.0).append(',').append(minutes).append('\n');
+        out.append(line);
+        this.rows++;
+    }
+
+    private double distance(int a, int b) {
+        return Math.hypot(this.xs[a] - this.xs[b], this.ys[a] - this.ys[b]);
+    }
+
+    private long minutes(int a, int b, TransportType type) {
+        int t = type.ordinal();
+        // up to ten percent either way for traffic and timetables
+        double noise = 0.9 + 0.2 * this.random.nextDouble();
+        return Math.max(1, Math.round((this.distance(a, b) / SPEEDS[t] * 60 + OVERHEADS[t]) * noise));
+    }
+
+    private double price(int a, int b, TransportType type) {
+        int t = type.ordinal();
+        double fare = BASE_FARES[t] + FARES_PER_KM[t] * this.distance(a, b);
+        // the random part averages out to the fare, so the correlation does not change mean prices
+        return fare * (this.correlation + (1 - this.correlation) * 2 * this.random.nextDouble());
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        options.put("topology", "grid");
+        options.put("cities", "1000");
+        options.put("degree", "4");
+        options.put("hubs", "");
+        options.put("modes", "bus=0.5,train=0.3,plane=0.2");
+        options.put("correlation", "0.8");
+        options.put("seed", "42");
+        options.put("cities-out", "cities.csv");
+        options.put("transport-out", "transport.csv");
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i].startsWith("--") ? args[i].substring(2) : args[i];
+            if (!options.containsKey(name) || i + 1 == args.length) {
+                throw new IllegalArgumentException("Unknown or incomplete option: " + args[i]);
+            }
+            options.put(name, args[i + 1]);
+        }
+        DatasetGenerator generator = new DatasetGenerator(options.get("topology"),
+                Integer.parseInt(options.get("cities")), Long.parseLong(options.get("seed")));
+        generator.setDegree(Integer.parseInt(options.get("degree")));
+        if (!options.get("hubs").isEmpty()) {
+            generator.setHubs(Integer.parseInt(options.get("hubs")));
+        }
+        Map<TransportType, Double> mix = new EnumMap<>(TransportType.class);
+        for (String mode : options.get("modes").split(",")) {
+            String[] parts = mode.split("=");
+            mix.put(TransportType.fromString(parts[0].trim()), parts.length > 1 ? Double.parseDouble(parts[1]) : 1.0);
+        }
+        generator.setModeMix(mix);
+        generator.setCorrelation(Double.parseDouble(options.get("correlation")));
+        long start = System.nanoTime();
+        long transports = generator.write(Path.of(options.get("cities-out")), Path.of(options.get("transport-out")));
+        System.out.printf("Wrote %s cities and %d transports in %.3fs%n", options.get("cities"), transports,
+                (System.nanoTime() - start) / 1e9);
+    }
+}
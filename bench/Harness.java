@@ -0,0 +1,202 @@
+package bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * A small throughput benchmark runner. Each benchmark is run for a number of
+ * timed warmup iterations, whose results are thrown away, and then for a
+ * number of timed measurement iterations, each scored in operations per
+ * second. Results are written as JSON in the layout JMH uses, so the same
+ * tools can compare runs.
+ */
+public class Harness {
+    // 99.9% two-sided quantile of the normal distribution, as JMH reports errors at 99.9%
+    private static final double Z_999 = 3.291;
+    // where benchmarks leave their results, so the JIT cannot drop the work that made them
+    private static volatile long sink;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final List<Result> results;
+
+    /**
+     * a constructor for the Harness class
+     * @param warmupIterations - the number of iterations run before measuring
+     * @param measurementIterations - the number of measured iterations
+     * @param iterationMillis - how long each iteration runs for
+     */
+    public Harness(int warmupIterations, int measurementIterations, long iterationMillis) {
+        if (warmupIterations < 0 || measurementIterations < 1 || iterationMillis < 1) {
+            throw new IllegalArgumentException("Benchmarks need at least one measured iteration");
+        }
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.results = new ArrayList<>();
+    }
+
+    /**
+     * keeps a result alive so the work that produced it is not optimized away
+     * @param result - any result of a benchmarked operation
+     */
+    public static void consume(Object result) {
+        sink += System.identityHashCode(result);
+    }
+
+    /**
+     * runs and records a benchmark
+     * @param benchmark - the name of the benchmark
+     * @param params - the parameters it was run with, such as the graph size
+     * @param operation - the operation to measure, given how many times it
+     *                  has run so far so it can cycle through its inputs
+     * @return - the result of the benchmark
+     */
+    public Result run(String benchmark, Map<String, String> params, IntConsumer operation) {
+        int[] invocations = new int[1];
+        for (int i = 0; i < this.warmupIterations; i++) {
+            this.iterate(operation, invocations);
+        }
+        double[] scores = new double[this.measurementIterations];
+        for (int i = 0; i < this.measurementIterations; i++) {
+            scores[i] = this.iterate(operation, invocations);
+        }
+        Result result = new Result(benchmark, new LinkedHashMap<>(params), scores);
+        this.results.add(result);
+        return result;
+    }
+
+    /**
+     * runs an operation until an iteration's time is up, and at least once
+     * @param invocations - holds the number of invocations made so far
+     * @return - the operations per second of the iteration
+     */
+    private double iterate(IntConsumer operation, int[] invocations) {
+        long start = System.nanoTime();
+        long elapsed;
+        int count = 0;
+        do {
+            operation.accept(invocations[0]++);
+            count++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < this.iterationNanos);
+        return count / (elapsed / 1e9);
+    }
+
+    /**
+     * @return - the results of every benchmark run so far
+     */
+    public List<Result> getResults() {
+        return this.results;
+    }
+
+    /**
+     * writes the results of every benchmark run so far as a JSON array
+     * @param out - where to write the JSON
+     * @throws IOException if it could not be written
+     */
+    public void writeJson(Writer out) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < this.results.size(); i++) {
+            Result result = this.results.get(i);
+            json.append("  {\n    \"benchmark\": ").append(quote(result.benchmark))
+                    .append(",\n    \"mode\": \"thrpt\"")
+                    .append(",\n    \"warmupIterations\": ").append(this.warmupIterations)
+                    .append(",\n    \"measurementIterations\": ").append(this.measurementIterations)
+                    .append(",\n    \"measurementTime\": \"").append(this.iterationNanos / 1_000_000L)
+                    .append(" ms\"")
+                    .append(",\n    \"params\": {");
+            String separator = "";
+            for (Map.Entry<String, String> param : result.params.entrySet()) {
+                json.append(separator).append("\n      ").append(quote(param.getKey())).append(": ")
+                        .append(quote(param.getValue()));
+                separator = ",";
+            }
+            json.append(result.params.isEmpty() ? "}" : "\n    }")
+                    .append(",\n    \"primaryMetric\": {\n      \"score\": ").append(number(result.getScore()))
+                    .append(",\n      \"scoreError\": ").append(number(result.getError()))
+                    .append(",\n      \"scoreUnit\": \"ops/s\",\n      \"rawData\": [[");
+            for (int j = 0; j < result.scores.length; j++) {
+                json.append(j == 0 ? "" : ", ").append(result.scores[j]);
+            }
+            json.append("]]\n    }\n  }").append(i + 1 < this.results.size() ? ",\n" : "\n");
+        }
+        out.write(json.append("]\n").toString());
+    }
+
+    /**
+     * @return - a number as JSON, with NaN quoted as JMH writes it
+     */
+    private static String number(double value) {
+        return Double.isNaN(value) ? "\"NaN\"" : Double.toString(value);
+    }
+
+    private static String quote(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * the scores of one benchmark, in operations per second
+     */
+    public static class Result {
+        private final String benchmark;
+        private final Map<String, String> params;
+        private final double[] scores;
+
+        Result(String benchmark, Map<String, String> params, double[] scores) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.scores = scores;
+        }
+
+        /**
+         * @return - the mean score of the measured iterations
+         */
+        public double getScore() {
+            double sum = 0;
+            for (double score : this.scores) {
+                sum += score;
+            }
+            return sum / this.scores.length;
+        }
+
+        /**
+         * @return - the half-width of the 99.9% confidence interval of the
+         * score, or NaN with a single iteration
+         */
+        public double getError() {
+            int n = this.scores.length;
+            if (n < 2) {
+                return Double.NaN;
+            }
+            double mean = this.getScore();
+            double squares = 0;
+            for (double score : this.scores) {
+                squares += (score - mean) * (score - mean);
+            }
+            return Z_999 * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-16s %s %.2f +- %.2f ops/s", this.benchmark, this.params,
+                    this.getScore(), this.getError());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package bench;
+
+import sol.BFS;
+import sol.Dijkstra;
+import sol.TravelController;
+import sol.TravelGraph;
+import src.City;
+import src.RouteMetric;
+import src.Transport;
+import src.TravelCSVParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the throughput of loading and route queries over the synthetic
+ * graphs of DatasetGenerator, at several sizes and topologies, and writes
+ * the results as JSON. For every graph it runs:
+ * parse - TravelCSVParser.streamTransportation over the transport csv
+ * load - TravelController.load of the cities and transport csvs
+ * bfs, dijkstra - sol.BFS.getPath and sol.Dijkstra.getShortestPath by duration
+ * fastestRoute, cheapestRoute - the controller queries, once per engine
+ * mostDirectRoute - the controller query
+ * Queries cycle through a fixed set of seeded random city pairs, and the
+ * controller's route and tree caches are turned off so every query searches.
+ * Options, each followed by a value:
+ * --sizes - comma-separated city counts (default 1000,10000)
+ * --topologies - comma-separated topologies of DatasetGenerator (default
+ * grid,random,hub,scale-free)
+ * --engines - comma-separated engines of TravelController.useEngine (default indexed)
+ * --warmup, --iterations - iteration counts (default 2 and 5)
+ * --time - the length of each iteration in milliseconds (default 1000)
+ * --seed - the seed of the graphs and queries (default 42)
+ * --out - the JSON file to write (default bench-results.json)
+ */
+public class TravelBenchmarks {
+    // the number of query pairs cycled through, a power of two
+    private static final int PAIRS = 1024;
+
+    private TravelBenchmarks() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        Harness harness = new Harness(Integer.parseInt(options.get("warmup")),
+                Integer.parseInt(options.get("iterations")), Long.parseLong(options.get("time")));
+        long seed = Long.parseLong(options.get("seed"));
+        List<String> engines = List.of(options.get("engines").split(","));
+        for (String topology : options.get("topologies").split(",")) {
+            for (String size : options.get("sizes").split(",")) {
+                Path directory = Files.createTempDirectory("travel-bench");
+                Path citiesFile = directory.resolve("cities.csv");
+                Path transportFile = directory.resolve("transport.csv");
+                try {
+                    new DatasetGenerator(topology, Integer.parseInt(size), seed).write(citiesFile, transportFile);
+                    Map<String, String> params = new LinkedHashMap<>();
+                    params.put("topology", topology);
+                    params.put("cities", size);
+                    run(harness, params, citiesFile.toString(), transportFile.toString(), engines, seed);
+                } finally {
+                    Files.deleteIfExists(citiesFile);
+                    Files.deleteIfExists(transportFile);
+                    Files.delete(directory);
+                }
+            }
+        }
+        try (Writer out = Files.newBufferedWriter(Path.of(options.get("out")))) {
+            harness.writeJson(out);
+        }
+        System.out.println("Wrote " + harness.getResults().size() + " results to " + options.get("out"));
+    }
+
+    /**
+     * runs every benchmark over one graph
+     */
+    private static void run(Harness harness, Map<String, String> graphParams, String citiesFile,
+                            String transportFile, List<String> engines, long seed) throws IOException {
+        TravelCSVParser parser = new TravelCSVParser();
+        Map<String, String> params = new LinkedHashMap<>(graphParams);
+        params.put("transports", Long.toString(parser.streamTransportation(transportFile,
+                (o, d, type, price, minutes) -> { }).getRows()));
+        report(harness.run("parse", params, i -> {
+            try {
+                Harness.consume(parser.streamTransportation(transportFile, (o, d, type, price, minutes) -> { }));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        report(harness.run("load", params, i -> Harness.consume(load(citiesFile, transportFile))));
+
+        TravelController controller = load(citiesFile, transportFile);
+        controller.setRouteCache(null);
+        controller.setTreeCacheSize(0);
+        TravelGraph graph = controller.getGraph();
+
+        Random random = new Random(seed);
+        int cities = graph.getVertices().size();
+        City[] sources = new City[PAIRS];
+        City[] destinations = new City[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            sources[i] = graph.getCityFromName("c" + random.nextInt(cities));
+            destinations[i] = graph.getCityFromName("c" + random.nextInt(cities));
+        }
+        int mask = PAIRS - 1;
+
+        BFS<City, Transport> bfs = new BFS<>();
+        report(harness.run("bfs", params,
+                i -> Harness.consume(bfs.getPath(graph, sources[i & mask], destinations[i & mask]))));
+        Dijkstra<City, Transport> dijkstra = new Dijkstra<>();
+        report(harness.run("dijkstra", params, i -> Harness.consume(dijkstra.getShortestPath(graph,
+                sources[i & mask], destinations[i & mask], RouteMetric.FASTEST.getWeight()))));
+        report(harness.run("mostDirectRoute", params, i -> Harness.consume(controller.mostDirectRoute(
+                sources[i & mask].toString(), destinations[i & mask].toString()))));
+        for (String engine : engines) {
+            controller.useEngine(engine);
+            Map<String, String> engineParams = new LinkedHashMap<>(params);
+            engineParams.put("engine", engine);
+            report(harness.run("fastestRoute", engineParams, i -> Harness.consume(controller.fastestRoute(
+                    sources[i & mask].toString(), destinations[i & mask].toString()))));
+            report(harness.run("cheapestRoute", engineParams, i -> Harness.consume(controller.cheapestRoute(
+                    sources[i & mask].toString(), destinations[i & mask].toString()))));
+        }
+    }
+
+    private static TravelController load(String citiesFile, String transportFile) {
+        TravelController controller = new TravelController();
+        String message = controller.load(citiesFile, transportFile);
+        if (!message.startsWith("Successfully")) {
+            throw new IllegalStateException(message);
+        }
+        return controller;
+    }
+
+    private static void report(Harness.Result result) {
+        System.out.println(result);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        options.put("sizes", "1000,10000");
+        options.put("topologies", "grid,random,hub,scale-free");
+        options.put("engines", "indexed");
+        options.put("warmup", "2");
+        options.put("iterations", "5");
+        options.put("time", "1000");
+        options.put("seed", "42");
+        options.put("out", "bench-results.json");
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i].startsWith("--") ? args[i].substring(2) : args[i];
+            if (!options.containsKey(name) || i + 1 == args.length) {
+                throw new IllegalArgumentException("Unknown or incomplete option: " + args[i]);
+            }
+            options.put(name, args[i + 1]);
+        }
+        return options;
+    }
+}
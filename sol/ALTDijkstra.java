@@ -0,0 +1,226 @@
+package sol;
+
+import src.IGraph;
+import src.IIndexedQueue;
+import src.IPreprocessedDijkstra;
+
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A goal-directed shortest-path engine using A*, landmarks and the triangle
+ * inequality (ALT). Preprocessing builds Landmarks tables for a graph and a
+ * weight function; queries then order vertices by their distance from the
+ * source plus a landmark lower bound on their distance to the destination,
+ * which steers the search towards the destination instead of growing it in
+ * every direction. Queries for a weight function that was never preprocessed
+ * build its tables on first use. The weights of an edge never change in a
+ * compiled graph, so tables stay valid for the graph they were built on.
+ * Queries still running on a graph after a newer graph was preprocessed use
+ * an indexed Dijkstra as a fallback, instead of building tables for the old
+ * graph again.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public class ALTDijkstra<V, E> implements IPreprocessedDijkstra<V, E> {
+    private static final int ACTIVE_LANDMARKS = 4;
+    private static final long SEED = 1L;
+
+    private final int landmarkCount;
+    private final LandmarkSelection selection;
+    // tables for the graph in tablesGraph, keyed by the weight array they were built from
+    private final Map<double[], Landmarks> tables;
+    private CompiledGraph<?, ?> tablesGraph;
+    // the graph tablesGraph replaced, whose queries use the fallback rather than rebuilding
+    private WeakReference<CompiledGraph<?, ?>> retiredGraph;
+    // answers queries on a graph whose tables were replaced
+    private final IndexedDijkstra<V, E> fallback;
+    private final ThreadLocal<SearchSpace> spaces;
+
+    /**
+     * a constructor for an ALTDijkstra with 16 landmarks chosen by the avoid heuristic
+     */
+    public ALTDijkstra() {
+        this(16, LandmarkSelection.AVOID);
+    }
+
+    /**
+     * a constructor for the ALTDijkstra class
+     * @param landmarkCount - the number of landmarks per weight function
+     * @param selection - how landmarks are chosen
+     */
+    public ALTDijkstra(int landmarkCount, LandmarkSelection selection) {
+        this.landmarkCount = landmarkCount;
+        this.selection = selection;
+        this.tables = new IdentityHashMap<>();
+        this.fallback = new IndexedDijkstra<>();
+        this.spaces = new ThreadLocal<>();
+    }
+
+    /**
+     * builds fresh landmark tables for a graph and weight function, replacing
+     * any tables built for an older version of the graph
+     * @param graph - the graph including the vertices
+     * @param edgeWeight - the weight function later queries will use
+     */
+    @Override
+    public void preprocess(IGraph<V, E> graph, Function<E, Double> edgeWeight) {
+        CompiledGraph<V, E> compiled = CompiledGraph.of(graph);
+        this.build(compiled, compiled.weights(edgeWeight));
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between
+     * two vertices
+     * @param graph       the IGraph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight) {
+        return this.shortestPath(CompiledGraph.of(graph), source, destination, edgeWeight, null, 0);
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between two vertices
+     * that only uses the edges allowed by a mask
+     * @param graph       the IGraph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @param edgeMask - a function that gives the mask bits of an edge
+     * @param allowed - the mask of the edges the path may use
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight, ToIntFunction<E> edgeMask, int allowed) {
+        return this.shortestPath(CompiledGraph.of(graph), source, destination, edgeWeight, edgeMask, allowed);
+    }
+
+    private List<E> shortestPath(CompiledGraph<V, E> compiled, V source, V destination,
+                                 Function<E, Double> edgeWeight, ToIntFunction<E> edgeMask, int allowed) {
+        int s = compiled.getId(source);
+        int t = compiled.getId(destination);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        double[] weights = compiled.weights(edgeWeight);
+        byte[] masks = edgeMask == null ? null : compiled.masks(edgeMask);
+        Landmarks landmarks = this.getLandmarks(compiled, weights);
+        if (landmarks == null) {
+            return edgeMask == null ? this.fallback.getShortestPath(compiled, source, destination, edgeWeight)
+                    : this.fallback.getShortestPath(compiled, source, destination, edgeWeight, edgeMask, allowed);
+        }
+        SearchSpace space = this.spaces.get();
+        if (space == null || !space.fits(compiled, -1)) {
+            space = new SearchSpace(compiled, new IndexedHeap(compiled.getVertexCount(), 4), -1);
+            this.spaces.set(space);
+        }
+        if (this.search(compiled, space, landmarks, s, t, weights, masks, allowed)) {
+            return compiled.buildPath(space.getParentEdges(), t);
+        }
+        return new LinkedList<>();
+    }
+
+    /**
+     * @return - the number of vertices settled by the last search on this thread
+     */
+    public int getLastSettledCount() {
+        SearchSpace space = this.spaces.get();
+        return space == null ? 0 : space.getSettledCount();
+    }
+
+    /**
+     * gets the landmark tables of a compiled graph and weight array, building
+     * them if they have not been built yet
+     * @param graph - the compiled graph
+     * @param weights - the weight of each edge
+     * @return - the landmark tables, or null if the graph has since been
+     * replaced by another
+     */
+    public Landmarks getLandmarks(CompiledGraph<V, E> graph, double[] weights) {
+        synchronized (this.tables) {
+            Landmarks landmarks = this.tablesGraph == graph ? this.tables.get(weights) : null;
+            if (landmarks != null) {
+                return landmarks;
+            }
+            if (this.retiredGraph != null && this.retiredGraph.get() == graph) {
+                return null;
+            }
+        }
+        return this.build(graph, weights);
+    }
+
+    private Landmarks build(CompiledGraph<V, E> graph, double[] weights) {
+        Landmarks landmarks = Landmarks.build(graph, weights, this.landmarkCount, this.selection, SEED);
+        synchronized (this.tables) {
+            if (this.tablesGraph != graph) {
+                this.tables.clear();
+                if (this.tablesGraph != null) {
+                    this.retiredGraph = new WeakReference<>(this.tablesGraph);
+                }
+                this.tablesGraph = graph;
+            }
+            this.tables.put(weights, landmarks);
+        }
+        return landmarks;
+    }
+
+    /**
+     * runs A* from s with landmark lower bounds until t is settled, using
+     * only the edges allowed by the masks if there are any
+     * @return - true if t was reached
+     */
+    private boolean search(CompiledGraph<V, E> graph, SearchSpace space, Landmarks landmarks,
+                           int s, int t, double[] weights, byte[] masks, int allowed) {
+        space.reset();
+        int[] active = new int[ACTIVE_LANDMARKS];
+        int activeCount = landmarks.selectActive(s, t, active);
+        IIndexedQueue toCheck = space.getQueue();
+        double startBound = landmarks.lowerBound(s, t, active, activeCount);
+        if (startBound == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+        space.update(s, 0.0, -1);
+        toCheck.insertOrDecrease(s, startBound);
+        while (!toCheck.isEmpty()) {
+            int checking = toCheck.poll();
+            space.settle();
+            if (checking == t) {
+                return true;
+            }
+            double base = space.getDist(checking);
+            for (int e = graph.firstEdge(checking); e >= 0; e = graph.nextEdge(checking, e)) {
+                if (masks != null && (masks[e] & allowed) == 0) {
+                    continue;
+                }
+                int neighbor = graph.getTarget(e);
+                double temp = base + weights[e];
+                if (temp < space.getDist(neighbor)) {
+                    double bound = landmarks.lowerBound(neighbor, t, active, activeCount);
+                    // the landmarks prove t cannot be reached from this neighbor
+                    if (bound == Double.POSITIVE_INFINITY) {
+                        continue;
+                    }
+                    space.update(neighbor, temp, e);
+                    toCheck.insertOrDecrease(neighbor, temp + bound);
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -1,15 +1,45 @@
 package sol;
 
-import src.City;
 import src.IBFS;
 import src.IGraph;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.ToIntFunction;
 
+/**
+ * Breadth first search over the CompiledGraph of a graph. Instead of keeping
+ * a copy of the path to every visited vertex, the search records the edge
+ * used to reach each vertex and builds the one path it returns at the end.
+ * The queue and per-vertex arrays live in a per-thread workspace and are
+ * reset with stamps, so repeated searches allocate almost nothing.
+ * In bidirectional mode the search grows level by level from both ends,
+ * following incoming edges from the end vertex, and always expands the
+ * smaller frontier. Searches can be restricted to the edges allowed by a mask.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
 public class BFS<V, E> implements IBFS<V, E> {
+    private final boolean bidirectional;
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * a constructor for a one-directional BFS
+     */
+    public BFS() {
+        this(false);
+    }
+
+    /**
+     * a constructor for the BFS class
+     * @param bidirectional - true to search from both ends at once
+     */
+    public BFS(boolean bidirectional) {
+        this.bidirectional = bidirectional;
+        this.workspaces = new ThreadLocal<>();
+    }
 
     /**
      * returns the path with the fewest number of connecting edges
@@ -19,105 +49,239 @@ public class BFS<V, E> implements IBFS<V, E> {
      * @param end   the end vertex
      * @return - A list of edges corresponding to the path with the
      * fewest number of connecting edges between the two input
-     * vertices
+     * vertices, or empty if there is none
      */
     @Override
     public List<E> getPath(IGraph<V, E> graph, V start, V end) {
-        LinkedList<V> toCheck = new LinkedList<>();
-        /*
-        visited will store the path from the start vertex to the
-        vertex serving as the key for every vertex that has been
-        visited by bfs
-         */
-        HashMap<V, LinkedList<E>> visited = new HashMap<>();
-        /*
-        the value of each KVPair in record corresponds to the previous vertex
-        with respect to the key
-         */
-        HashMap<V, V> record = new HashMap<>();
-        /*
-        put the start vertex in the toCheck list and
-         */
-        toCheck.addLast(start);
-        LinkedList<E> emptyList = new LinkedList<>();
-        /*
-        the previous vertex of the start vertex should be
-        the start vertex, and the path from the start vertex
-        to the start vertex should be empty
-         */
-        record.put(start, start);
-        visited.put(start, emptyList);
-
-        while (!toCheck.isEmpty()) {
-            V checkingVertex = toCheck.removeFirst();
-            LinkedList<E> newPath = new LinkedList<>();
-            /*
-            The path associated with checkingVertex in visited will be the
-            path from the start vertex to the previous vertex of checkingVertex
-            plus the edge from the previous vertex to checkingVertex
-             */
-            for (E edge : visited.get(record.get(checkingVertex))) {
-                newPath.addLast(edge);
+        return this.getPath(CompiledGraph.of(graph), start, end);
+    }
+
+    /**
+     * returns the path with the fewest number of connecting edges between two
+     * vertices of a CompiledGraph
+     * @param graph - a CompiledGraph including the vertices
+     * @param start - the start vertex
+     * @param end - the end vertex
+     * @return - A list of edges corresponding to the path with the
+     * fewest number of connecting edges between the two input
+     * vertices, or empty if there is none
+     */
+    public List<E> getPath(CompiledGraph<V, E> graph, V start, V end) {
+        return this.path(graph, start, end, null, 0);
+    }
+
+    /**
+     * returns the path with the fewest number of connecting edges between two
+     * vertices that only uses the edges allowed by a mask
+     * @param graph the IGraph including the vertices
+     * @param start the start vertex
+     * @param end   the end vertex
+     * @param edgeMask - a function that gives the mask bits of an edge
+     * @param allowed - the mask of the edges the path may use
+     * @return - A list of edges corresponding to the path with the
+     * fewest number of connecting edges between the two input
+     * vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getPath(IGraph<V, E> graph, V start, V end, ToIntFunction<E> edgeMask, int allowed) {
+        CompiledGraph<V, E> compiled = CompiledGraph.of(graph);
+        return this.path(compiled, start, end, compiled.masks(edgeMask), allowed);
+    }
+
+    private List<E> path(CompiledGraph<V, E> graph, V start, V end, byte[] masks, int allowed) {
+        int s = graph.getId(start);
+        int t = graph.getId(end);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        Workspace space = this.workspaces.get();
+        if (space == null || space.forwardQueue.length != graph.getVertexCount()) {
+            space = new Workspace(graph);
+            this.workspaces.set(space);
+        }
+        space.reset();
+        if (!this.bidirectional) {
+            if (this.search(graph, space, s, t, masks, allowed)) {
+                return graph.buildPath(space.forwardParents, t);
             }
-            visited.put(checkingVertex, newPath);
-            /*
-            the if condition is necessary to ensure that null is not added to
-            the path from the source vertex to itself. this adds the edge from
-            the previous vertex to checkingVertex to the path associated with
-            checkingVertex in the visited HashMap
-             */
-            if (visited.size() > 1) {
-                visited.get(checkingVertex).addLast(this.getConnectingEdge(graph,
-                        record.get(checkingVertex),
-                        checkingVertex));
+            return new LinkedList<>();
+        }
+        int meet = this.bidirectionalSearch(graph, space, s, t, masks, allowed);
+        if (meet < 0) {
+            return new LinkedList<>();
+        }
+        List<E> path = graph.buildPath(space.forwardParents, meet);
+        graph.appendPath(space.backwardParents, meet, path);
+        return path;
+    }
+
+    /**
+     * a one-directional breadth first search from s that stops when t is
+     * dequeued, using only the edges allowed by the masks if there are any
+     * @return - true if t was reached
+     */
+    private boolean search(CompiledGraph<V, E> graph, Workspace space, int s, int t, byte[] masks, int allowed) {
+        int[] queue = space.forwardQueue;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = s;
+        space.visitForward(s, -1, 0);
+        while (head < tail) {
+            int checking = queue[head++];
+            if (checking == t) {
+                return true;
             }
-            /*
-            checks whether checkingVertex is equal to the end. If so, the path
-            associated with checkingVertex in visited is returned.
-             */
-            try {
-                if (end.equals(checkingVertex)) {
-                    return visited.get(checkingVertex);
+            for (int e = graph.firstEdge(checking); e >= 0; e = graph.nextEdge(checking, e)) {
+                if (masks != null && (masks[e] & allowed) == 0) {
+                    continue;
                 }
-            } catch(NullPointerException e) {
-                throw new IllegalArgumentException(
-                        "Entered city does not exist");
-            }
-            /*
-            adds the neighbors of checkingVertex to the toCheck list and assigns
-            checkingVertex as the previous node of each neighbor in record. both operations
-            are only performed if the neighbor has not been visited yet.
-             */
-            for (E edge : graph.getOutgoingEdges(checkingVertex)) {
-                V edgeTarget = graph.getEdgeTarget(edge);
-                if (!visited.containsKey(edgeTarget) && !record.containsKey(edgeTarget)) {
-                    toCheck.addLast(edgeTarget);
-                    record.put(edgeTarget, checkingVertex);
+                int neighbor = graph.getTarget(e);
+                if (!space.isForward(neighbor)) {
+                    space.visitForward(neighbor, e, 0);
+                    queue[tail++] = neighbor;
                 }
             }
         }
+        return false;
+    }
 
-        List<E> empt = new LinkedList<>();
-        return empt;
+    /**
+     * grows frontiers from s and t one level at a time. When a level reaches
+     * vertices seen by the other side, the whole level is finished so the
+     * meeting point with the fewest total edges is kept. Only the edges
+     * allowed by the masks are used if there are any.
+     * @return - the vertex where the two halves of the path meet, or -1 if
+     * there is no path
+     */
+    private int bidirectionalSearch(CompiledGraph<V, E> graph, Workspace space, int s, int t,
+                                    byte[] masks, int allowed) {
+        int[] forward = space.forwardQueue;
+        int[] backward = space.backwardQueue;
+        int forwardHead = 0;
+        int forwardTail = 0;
+        int backwardHead = 0;
+        int backwardTail = 0;
+        forward[forwardTail++] = s;
+        space.visitForward(s, -1, 0);
+        backward[backwardTail++] = t;
+        space.visitBackward(t, -1, 0);
+        if (s == t) {
+            return s;
+        }
+
+        while (forwardHead < forwardTail && backwardHead < backwardTail) {
+            int meet = -1;
+            int bestLength = Integer.MAX_VALUE;
+            if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+                int levelEnd = forwardTail;
+                while (forwardHead < levelEnd) {
+                    int checking = forward[forwardHead++];
+                    for (int e = graph.firstEdge(checking); e >= 0; e = graph.nextEdge(checking, e)) {
+                        if (masks != null && (masks[e] & allowed) == 0) {
+                            continue;
+                        }
+                        int neighbor = graph.getTarget(e);
+                        if (!space.isForward(neighbor)) {
+                            space.visitForward(neighbor, e, space.forwardDepth[checking] + 1);
+                            forward[forwardTail++] = neighbor;
+                            if (space.isBackward(neighbor)) {
+                                int length = space.forwardDepth[neighbor] + space.backwardDepth[neighbor];
+                                if (length < bestLength) {
+                                    bestLength = length;
+                                    meet = neighbor;
+                                }
+                            }
+                        }
+                    }
+                }
+            } else {
+                int levelEnd = backwardTail;
+                while (backwardHead < levelEnd) {
+                    int checking = backward[backwardHead++];
+                    for (int i = graph.firstInEdge(checking); i >= 0; i = graph.nextInEdge(checking, i)) {
+                        int e = graph.getInEdge(i);
+                        if (masks != null && (masks[e] & allowed) == 0) {
+                            continue;
+                        }
+                        int neighbor = graph.getSource(e);
+                        if (!space.isBackward(neighbor)) {
+                            space.visitBackward(neighbor, e, space.backwardDepth[checking] + 1);
+                            backward[backwardTail++] = neighbor;
+                            if (space.isForward(neighbor)) {
+                                int length = space.forwardDepth[neighbor] + space.backwardDepth[neighbor];
+                                if (length < bestLength) {
+                                    bestLength = length;
+                                    meet = neighbor;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            if (meet >= 0) {
+                return meet;
+            }
+        }
+        return -1;
     }
 
     /**
-     * a method for returning the edge connecting two vertices in a graph
-     * @param graph - an IGraph within which the two vertices reside
-     * @param source - the first vertex
-     * @param destination - the second vertex
-     * @return - the edge connecting the two vertices
+     * reusable queues and per-vertex arrays for searches over graphs with a
+     * given number of vertices. Like a SearchSpace it keeps no reference to
+     * the graph, so it does not keep a replaced graph alive.
      */
-    private E getConnectingEdge(IGraph<V, E> graph, V source, V destination) {
-        if (source.equals(destination)) {
-            return null;
+    private static class Workspace {
+        private final int[] forwardQueue;
+        private final int[] backwardQueue;
+        private final int[] forwardParents;
+        private final int[] backwardParents;
+        private final int[] forwardDepth;
+        private final int[] backwardDepth;
+        // a vertex was seen by the current search if its stamp equals the current stamp
+        private final int[] forwardStamps;
+        private final int[] backwardStamps;
+        private int stamp;
+
+        Workspace(CompiledGraph<?, ?> graph) {
+            int n = graph.getVertexCount();
+            this.forwardQueue = new int[n];
+            this.backwardQueue = new int[n];
+            this.forwardParents = new int[n];
+            this.backwardParents = new int[n];
+            this.forwardDepth = new int[n];
+            this.backwardDepth = new int[n];
+            this.forwardStamps = new int[n];
+            this.backwardStamps = new int[n];
+            this.stamp = 0;
         }
-        for (E e : graph.getOutgoingEdges(source)) {
-            if (graph.getEdgeTarget(e).equals(destination)) {
-                return e;
+
+        void reset() {
+            this.stamp++;
+            if (this.stamp == Integer.MAX_VALUE) {
+                Arrays.fill(this.forwardStamps, 0);
+                Arrays.fill(this.backwardStamps, 0);
+                this.stamp = 1;
             }
         }
-        throw new RuntimeException(
-                "No route exists between the two entered cities");
+
+        boolean isForward(int v) {
+            return this.forwardStamps[v] == this.stamp;
+        }
+
+        boolean isBackward(int v) {
+            return this.backwardStamps[v] == this.stamp;
+        }
+
+        void visitForward(int v, int parentEdge, int depth) {
+            this.forwardStamps[v] = this.stamp;
+            this.forwardParents[v] = parentEdge;
+            this.forwardDepth[v] = depth;
+        }
+
+        void visitBackward(int v, int childEdge, int depth) {
+            this.backwardStamps[v] = this.stamp;
+            this.backwardParents[v] = childEdge;
+            this.backwardDepth[v] = depth;
+        }
     }
 }
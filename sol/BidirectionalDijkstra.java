@@ -0,0 +1,204 @@
+package sol;
+
+import src.IDijkstra;
+import src.IGraph;
+import src.IIndexedQueue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bidirectional version of IndexedDijkstra. One search grows forward from
+ * the source over outgoing edges while another grows backward from the
+ * destination over the incoming-edge index of the CompiledGraph, always
+ * expanding the side with the smaller queue key. The searches stop once the
+ * two smallest queue keys add up to at least the best source-to-destination
+ * distance seen where the searches meet, so each side only has to cover about
+ * half the distance.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public class BidirectionalDijkstra<V, E> implements IDijkstra<V, E> {
+    private final QueueStrategy strategy;
+    // each thread keeps a forward and a backward search space
+    private final ThreadLocal<SearchSpace[]> spaces;
+
+    /**
+     * a constructor for a BidirectionalDijkstra that uses 4-ary heaps
+     */
+    public BidirectionalDijkstra() {
+        this(QueueStrategy.QUATERNARY_HEAP);
+    }
+
+    /**
+     * a constructor for the BidirectionalDijkstra class
+     * @param strategy - the priority queue used by each direction
+     */
+    public BidirectionalDijkstra(QueueStrategy strategy) {
+        this.strategy = strategy;
+        this.spaces = new ThreadLocal<>();
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between
+     * two vertices
+     * @param graph       the IGraph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight) {
+        return this.shortestPath(CompiledGraph.of(graph), source, destination, edgeWeight, null, 0);
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between two vertices
+     * that only uses the edges allowed by a mask
+     * @param graph       the IGraph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @param edgeMask - a function that gives the mask bits of an edge
+     * @param allowed - the mask of the edges the path may use
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight, ToIntFunction<E> edgeMask, int allowed) {
+        return this.shortestPath(CompiledGraph.of(graph), source, destination, edgeWeight, edgeMask, allowed);
+    }
+
+    private List<E> shortestPath(CompiledGraph<V, E> compiled, V source, V destination,
+                                 Function<E, Double> edgeWeight, ToIntFunction<E> edgeMask, int allowed) {
+        int s = compiled.getId(source);
+        int t = compiled.getId(destination);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        if (s == t) {
+            return new LinkedList<>();
+        }
+        double[] weights = compiled.weights(edgeWeight);
+        byte[] masks = edgeMask == null ? null : compiled.masks(edgeMask);
+        SearchSpace[] pair = this.getSearchSpaces(compiled, edgeWeight);
+        SearchSpace forward = pair[0];
+        SearchSpace backward = pair[1];
+        int meet = this.search(compiled, forward, backward, s, t, weights, masks, allowed);
+        if (meet < 0) {
+            return new LinkedList<>();
+        }
+        List<E> path = compiled.buildPath(forward.getParentEdges(), meet);
+        compiled.appendPath(backward.getParentEdges(), meet, path);
+        return path;
+    }
+
+    /**
+     * @return - the number of vertices settled by both directions of the last
+     * search on this thread
+     */
+    public int getLastSettledCount() {
+        SearchSpace[] pair = this.spaces.get();
+        return pair == null ? 0 : pair[0].getSettledCount() + pair[1].getSettledCount();
+    }
+
+    private SearchSpace[] getSearchSpaces(CompiledGraph<V, E> graph, Function<E, Double> edgeWeight) {
+        long bound = this.strategy == QueueStrategy.DIAL ? graph.getIntegralBound(edgeWeight) : -1;
+        SearchSpace[] pair = this.spaces.get();
+        if (pair == null || !pair[0].fits(graph, bound)) {
+            int n = graph.getVertexCount();
+            pair = new SearchSpace[] {
+                new SearchSpace(graph, this.strategy.create(n, bound), bound),
+                new SearchSpace(graph, this.strategy.create(n, bound), bound)
+            };
+            this.spaces.set(pair);
+        }
+        return pair;
+    }
+
+    /**
+     * runs the forward and backward searches until they can no longer improve
+     * on the best meeting point, using only the edges allowed by the masks
+     * if there are any
+     * @return - the vertex where the shortest path passes from the forward to
+     * the backward search, or -1 if t cannot be reached from s
+     */
+    private int search(CompiledGraph<V, E> graph, SearchSpace forward, SearchSpace backward,
+                       int s, int t, double[] weights, byte[] masks, int allowed) {
+        forward.reset();
+        backward.reset();
+        IIndexedQueue forwardQueue = forward.getQueue();
+        IIndexedQueue backwardQueue = backward.getQueue();
+        forward.update(s, 0.0, -1);
+        forwardQueue.insertOrDecrease(s, 0.0);
+        backward.update(t, 0.0, -1);
+        backwardQueue.insertOrDecrease(t, 0.0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        while (true) {
+            double forwardKey = forwardQueue.peekKey();
+            double backwardKey = backwardQueue.peekKey();
+            // no path through an unsettled vertex can beat the best meeting point
+            if (forwardKey + backwardKey >= best) {
+                break;
+            }
+            if (forwardKey <= backwardKey) {
+                int checking = forwardQueue.poll();
+                forward.settle();
+                double base = forward.getDist(checking);
+                for (int e = graph.firstEdge(checking); e >= 0; e = graph.nextEdge(checking, e)) {
+                    if (masks != null && (masks[e] & allowed) == 0) {
+                        continue;
+                    }
+                    int neighbor = graph.getTarget(e);
+                    double temp = base + weights[e];
+                    if (temp < forward.getDist(neighbor)) {
+                        forward.update(neighbor, temp, e);
+                        forwardQueue.insertOrDecrease(neighbor, temp);
+                    }
+                    if (backward.isReached(neighbor)) {
+                        double through = forward.getDist(neighbor) + backward.getDist(neighbor);
+                        if (through < best) {
+                            best = through;
+                            meet = neighbor;
+                        }
+                    }
+                }
+            } else {
+                int checking = backwardQueue.poll();
+                backward.settle();
+                double base = backward.getDist(checking);
+                for (int i = graph.firstInEdge(checking); i >= 0; i = graph.nextInEdge(checking, i)) {
+                    int e = graph.getInEdge(i);
+                    if (masks != null && (masks[e] & allowed) == 0) {
+                        continue;
+                    }
+                    int neighbor = graph.getSource(e);
+                    double temp = base + weights[e];
+                    if (temp < backward.getDist(neighbor)) {
+                        backward.update(neighbor, temp, e);
+                        backwardQueue.insertOrDecrease(neighbor, temp);
+                    }
+                    if (forward.isReached(neighbor)) {
+                        double through = forward.getDist(neighbor) + backward.getDist(neighbor);
+                        if (through < best) {
+                            best = through;
+                            meet = neighbor;
+                        }
+                    }
+                }
+            }
+        }
+        return meet;
+    }
+}
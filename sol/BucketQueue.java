@@ -0,0 +1,139 @@
+package sol;
+
+import src.IIndexedQueue;
+
+import java.util.Arrays;
+
+/**
+ * Dial's bucket queue for searches whose edge weights are whole numbers no
+ * larger than a known bound C. Keys are kept in C + 1 circular buckets, so
+ * inserts and decrease-keys are O(1) and each poll advances a cursor over at
+ * most C empty buckets. Like Dijkstra itself it assumes keys never drop below
+ * the last key that was polled.
+ */
+public class BucketQueue implements IIndexedQueue {
+    private final int[] heads;
+    private final int[] next;
+    private final int[] prev;
+    private final long[] keys;
+    // bucket holding each id, or -1 if the id is not queued
+    private final int[] bucketOf;
+    private int size;
+    // no queued key is smaller than the cursor
+    private long cursor;
+
+    /**
+     * a constructor for the BucketQueue class
+     * @param capacity - the number of ids (0 to capacity - 1) the queue can hold
+     * @param maxWeight - the largest edge weight of the graph being searched
+     */
+    public BucketQueue(int capacity, long maxWeight) {
+        if (maxWeight < 0 || maxWeight >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bucket queue needs a maximum edge weight between 0 and "
+                    + (Integer.MAX_VALUE - 1));
+        }
+        this.heads = new int[(int) maxWeight + 1];
+        Arrays.fill(this.heads, -1);
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.keys = new long[capacity];
+        this.bucketOf = new int[capacity];
+        Arrays.fill(this.bucketOf, -1);
+        this.size = 0;
+        this.cursor = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * inserts an id, or lowers its key if the new key is smaller
+     * @param id - a vertex id
+     * @param key - the priority of the id, which must be a whole number
+     */
+    @Override
+    public void insertOrDecrease(int id, double key) {
+        long k = (long) key;
+        if (k != key) {
+            throw new IllegalArgumentException("Bucket queue keys must be whole numbers");
+        }
+        if (this.bucketOf[id] >= 0) {
+            if (k >= this.keys[id]) {
+                return;
+            }
+            this.unlink(id);
+        }
+        if (this.size == 0 || k < this.cursor) {
+            this.cursor = k;
+        }
+        this.keys[id] = k;
+        this.link(id, (int) (k % this.heads.length));
+    }
+
+    @Override
+    public int poll() {
+        int bucket = this.advance();
+        int id = this.heads[bucket];
+        this.unlink(id);
+        return id;
+    }
+
+    @Override
+    public double peekKey() {
+        if (this.size == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        this.advance();
+        return this.cursor;
+    }
+
+    @Override
+    public void clear() {
+        for (int b = 0; this.size > 0 && b < this.heads.length; b++) {
+            while (this.heads[b] >= 0) {
+                this.unlink(this.heads[b]);
+            }
+        }
+    }
+
+    /**
+     * moves the cursor forward to the first non-empty bucket
+     * @return - the index of that bucket
+     */
+    private int advance() {
+        int bucket = (int) (this.cursor % this.heads.length);
+        while (this.heads[bucket] < 0) {
+            this.cursor++;
+            bucket = bucket + 1 == this.heads.length ? 0 : bucket + 1;
+        }
+        return bucket;
+    }
+
+    private void link(int id, int bucket) {
+        int head = this.heads[bucket];
+        this.next[id] = head;
+        this.prev[id] = -1;
+        if (head >= 0) {
+            this.prev[head] = id;
+        }
+        this.heads[bucket] = id;
+        this.bucketOf[id] = bucket;
+        this.size++;
+    }
+
+    private void unlink(int id) {
+        int bucket = this.bucketOf[id];
+        if (this.prev[id] >= 0) {
+            this.next[this.prev[id]] = this.next[id];
+        } else {
+            this.heads[bucket] = this.next[id];
+        }
+        if (this.next[id] >= 0) {
+            this.prev[this.next[id]] = this.prev[id];
+        }
+        this.bucketOf[id] = -1;
+        this.size--;
+    }
+}
@@ -0,0 +1,174 @@
+package sol;
+
+import src.IGraph;
+import src.IPreprocessedDijkstra;
+
+import java.util.ArrayList;
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A shortest-path engine backed by ContractionHierarchy. Preprocessing
+ * contracts the graph once per weight function; each query is then a small
+ * bidirectional search over the hierarchy whose shortcuts are unpacked into
+ * the original edges, so the returned paths have the same total weight as
+ * the ones found by Dijkstra. Queries for a weight function that was never
+ * preprocessed build its hierarchy on first use. The weights of an edge never
+ * change in a compiled graph, so a hierarchy stays valid for the graph it was
+ * built on. Queries still running on a graph after a newer graph was
+ * preprocessed use an indexed Dijkstra as a fallback, instead of contracting
+ * the old graph again.
+ * Shortcuts may stand for paths through edges an edge mask leaves out, so
+ * searches restricted by a mask always use the fallback.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public class CHDijkstra<V, E> implements IPreprocessedDijkstra<V, E> {
+    // hierarchies for the graph in hierarchiesGraph, keyed by the weight array they were built from
+    private final Map<double[], ContractionHierarchy> hierarchies;
+    private CompiledGraph<?, ?> hierarchiesGraph;
+    // the graph hierarchiesGraph replaced, whose queries use the fallback rather than rebuilding
+    private WeakReference<CompiledGraph<?, ?>> retiredGraph;
+    // answers queries on a graph whose hierarchies were replaced, and restricted ones
+    private final IndexedDijkstra<V, E> fallback;
+    // each thread keeps an upward and a downward search space
+    private final ThreadLocal<SearchSpace[]> spaces;
+
+    /**
+     * a constructor for the CHDijkstra class
+     */
+    public CHDijkstra() {
+        this.hierarchies = new IdentityHashMap<>();
+        this.fallback = new IndexedDijkstra<>();
+        this.spaces = new ThreadLocal<>();
+    }
+
+    /**
+     * contracts a graph under a weight function, replacing any hierarchies
+     * built for an older version of the graph
+     * @param graph - the graph including the vertices
+     * @param edgeWeight - the weight function later queries will use
+     */
+    @Override
+    public void preprocess(IGraph<V, E> graph, Function<E, Double> edgeWeight) {
+        CompiledGraph<V, E> compiled = CompiledGraph.of(graph);
+        this.build(compiled, compiled.weights(edgeWeight));
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between
+     * two vertices
+     * @param graph       the IGraph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight) {
+        CompiledGraph<V, E> compiled = CompiledGraph.of(graph);
+        int s = compiled.getId(source);
+        int t = compiled.getId(destination);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        if (s == t) {
+            return new LinkedList<>();
+        }
+        ContractionHierarchy hierarchy = this.getHierarchy(compiled, compiled.weights(edgeWeight));
+        if (hierarchy == null) {
+            return this.fallback.getShortestPath(compiled, source, destination, edgeWeight);
+        }
+        SearchSpace[] pair = this.spaces.get();
+        if (pair == null || !pair[0].fits(compiled, -1)) {
+            int n = compiled.getVertexCount();
+            pair = new SearchSpace[] {
+                new SearchSpace(compiled, new IndexedHeap(n, 4), -1),
+                new SearchSpace(compiled, new IndexedHeap(n, 4), -1)
+            };
+            this.spaces.set(pair);
+        }
+        int[] edgeIds = hierarchy.query(pair[0], pair[1], s, t);
+        if (edgeIds == null) {
+            return new LinkedList<>();
+        }
+        List<E> path = new ArrayList<>(edgeIds.length);
+        for (int e : edgeIds) {
+            path.add(compiled.getEdge(e));
+        }
+        return path;
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between two vertices
+     * that only uses the edges allowed by a mask, found by the fallback search
+     * @param graph       the IGraph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @param edgeMask - a function that gives the mask bits of an edge
+     * @param allowed - the mask of the edges the path may use
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight, ToIntFunction<E> edgeMask, int allowed) {
+        return this.fallback.getShortestPath(graph, source, destination, edgeWeight, edgeMask, allowed);
+    }
+
+    /**
+     * @return - the number of vertices settled by both directions of the last
+     * query on this thread
+     */
+    public int getLastSettledCount() {
+        SearchSpace[] pair = this.spaces.get();
+        return pair == null ? 0 : pair[0].getSettledCount() + pair[1].getSettledCount();
+    }
+
+    /**
+     * gets the hierarchy of a compiled graph and weight array, building it if
+     * it has not been built yet
+     * @param graph - the compiled graph
+     * @param weights - the weight of each edge
+     * @return - the contraction hierarchy, or null if the graph has since
+     * been replaced by another
+     */
+    public ContractionHierarchy getHierarchy(CompiledGraph<V, E> graph, double[] weights) {
+        synchronized (this.hierarchies) {
+            ContractionHierarchy hierarchy = this.hierarchiesGraph == graph ? this.hierarchies.get(weights) : null;
+            if (hierarchy != null) {
+                return hierarchy;
+            }
+            if (this.retiredGraph != null && this.retiredGraph.get() == graph) {
+                return null;
+            }
+        }
+        return this.build(graph, weights);
+    }
+
+    private ContractionHierarchy build(CompiledGraph<V, E> graph, double[] weights) {
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph, weights);
+        synchronized (this.hierarchies) {
+            if (this.hierarchiesGraph != graph) {
+                this.hierarchies.clear();
+                if (this.hierarchiesGraph != null) {
+                    this.retiredGraph = new WeakReference<>(this.hierarchiesGraph);
+                }
+                this.hierarchiesGraph = graph;
+            }
+            this.hierarchies.put(weights, hierarchy);
+        }
+        return hierarchy;
+    }
+}
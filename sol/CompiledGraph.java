@@ -0,0 +1,1028 @@
+package sol;
+
+import src.IGraph;
+import src.RouteMetric;
+import src.Transport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ * A compressed-sparse-row (CSR) copy of an IGraph. Every vertex gets a dense
+ * int id and every edge a dense int edge id. The outgoing edges of vertex v
+ * are visited with
+ *     for (int e = graph.firstEdge(v); e >= 0; e = graph.nextEdge(v, e))
+ * and a second, reverse index lists the incoming edges of every vertex, read
+ * the same way with firstInEdge, nextInEdge and getInEdge, so searches can
+ * also run backwards from a destination. Edge weights are stored in primitive
+ * arrays indexed by edge id, one per weight function, so searches over a
+ * CompiledGraph never touch the vertex and edge objects until a path is built.
+ * A CompiledGraph can also be opened from a GraphSnapshot, in which case the
+ * edge objects are only created, once each, when they are first asked for.
+ * The CSR arrays of a CompiledGraph never change. Adding or removing a single
+ * edge makes a new version of the graph in constant time instead, sharing the
+ * CSR arrays and an overlay of changes with every other version: an added
+ * edge takes the next unused edge id and is chained onto lists of the added
+ * edges leaving and arriving at each vertex, and a removed edge is stamped
+ * with the version that removed it. A version only sees the changes made up
+ * to it, so a search keeps the version it started on while later ones are
+ * made, and an edge keeps its id from one version to the next. The weights
+ * and masks computed so far are shared too, with the entries of added edges
+ * filled in as they are added. The overlay has room for a fixed number of
+ * changes, an eighth of the CSR edges or more; once it is full, compact folds
+ * a version into fresh CSR arrays, which numbers the edges again.
+ * The weight of an edge id never changes once it is written. Changing the
+ * weights of an edge replaces it with a new edge, under a new id, in a single
+ * version, so a search running during the change keeps reading the weights
+ * of the version it started on, and data derived from the weights of a
+ * version stays valid for it.
+ * Weight and mask arrays are kept for as long as the graph for the functions
+ * every query uses, the RouteMetric weights and Transport.TYPE_MASK, and only
+ * for the few most recently used of any other functions, so a caller passing
+ * a new lambda with every query does not pin an array per lambda to the graph.
+ * Edges can also carry a small bitmask, such as the kind of transport they
+ * are, kept in a byte array like the weights. Searches given an allowed mask
+ * skip every edge whose mask has no bit in common with it, which restricts
+ * them to part of the graph without building a copy of it.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public class CompiledGraph<V, E> {
+    // how many weight, and mask, functions other than the registered ones keep their arrays
+    private static final int RECENT_FUNCTIONS = 4;
+    // the fewest changes the overlay of a graph has room for
+    private static final int MIN_OVERLAY = 1024;
+
+    private final Object[] vertices;
+    // the CSR edges, or null if they are created on demand in lazyEdges
+    private final Object[] edges;
+    private final AtomicReferenceArray<E> lazyEdges;
+    private final IntFunction<E> edgeFactory;
+    private final HashMap<V, Integer> ids;
+    // the CSR arrays, which hold the edge ids below targets.length
+    private final int[] offsets;
+    private final int[] sources;
+    private final int[] targets;
+    // incoming edge ids of vertex v are inEdges[inOffsets[v]] to inEdges[inOffsets[v + 1] - 1]
+    private final int[] inOffsets;
+    private final int[] inEdges;
+    // what every version of this graph shares
+    private final Shared<E> shared;
+    // the overlay as this version found it, or null if nothing was changed up to this version
+    private final Overlay overlay;
+    // changes stamped with a later version are not seen by this one
+    private final int version;
+    // one past the largest edge id this version sees
+    private final int edgeIdLimit;
+    private final int edgeCount;
+
+    private CompiledGraph(Object[] vertices, Object[] edges, IntFunction<E> edgeFactory,
+                          HashMap<V, Integer> ids, int[] offsets, int[] sources, int[] targets) {
+        this.vertices = vertices;
+        this.edges = edges;
+        this.edgeFactory = edgeFactory;
+        this.lazyEdges = edges == null ? new AtomicReferenceArray<>(targets.length) : null;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.targets = targets;
+        this.inOffsets = new int[offsets.length];
+        this.inEdges = new int[targets.length];
+        // counting sort of the edge ids by target
+        for (int target : targets) {
+            this.inOffsets[target + 1]++;
+        }
+        for (int v = 1; v < this.inOffsets.length; v++) {
+            this.inOffsets[v] += this.inOffsets[v - 1];
+        }
+        int[] fill = Arrays.copyOf(this.inOffsets, this.inOffsets.length - 1);
+        for (int e = 0; e < targets.length; e++) {
+            this.inEdges[fill[targets[e]]++] = e;
+        }
+        this.shared = new Shared<>();
+        this.overlay = null;
+        this.version = 0;
+        this.edgeIdLimit = targets.length;
+        this.edgeCount = targets.length;
+    }
+
+    /**
+     * makes the newest version of a graph, right after a change to its overlay
+     */
+    private CompiledGraph(CompiledGraph<V, E> previous, int edgeIdLimit, int edgeCount) {
+        this.vertices = previous.vertices;
+        this.edges = previous.edges;
+        this.edgeFactory = previous.edgeFactory;
+        this.lazyEdges = previous.lazyEdges;
+        this.ids = previous.ids;
+        this.offsets = previous.offsets;
+        this.sources = previous.sources;
+        this.targets = previous.targets;
+        this.inOffsets = previous.inOffsets;
+        this.inEdges = previous.inEdges;
+        this.shared = previous.shared;
+        this.overlay = previous.shared.overlay;
+        this.version = previous.shared.version;
+        this.edgeIdLimit = edgeIdLimit;
+        this.edgeCount = edgeCount;
+    }
+
+    /**
+     * builds a CompiledGraph from the current contents of an IGraph
+     * @param graph - the graph to compile
+     * @param <V> - the type of the vertices
+     * @param <E> - the type of the edges
+     * @return - a CompiledGraph with the same vertices and edges as the input
+     */
+    public static <V, E> CompiledGraph<V, E> compile(IGraph<V, E> graph) {
+        Object[] vertices = graph.getVertices().toArray();
+        int n = vertices.length;
+        HashMap<V, Integer> ids = new HashMap<>(2 * n);
+        for (int i = 0; i < n; i++) {
+            ids.put(CompiledGraph.<V>cast(vertices[i]), i);
+        }
+
+        int[] offsets = new int[n + 1];
+        List<E> edgeList = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            offsets[v] = edgeList.size();
+            for (E edge : graph.getOutgoingEdges(CompiledGraph.<V>cast(vertices[v]))) {
+                // edges to vertices outside the graph can never be part of a path
+                if (ids.containsKey(graph.getEdgeTarget(edge))) {
+                    edgeList.add(edge);
+                }
+            }
+        }
+        offsets[n] = edgeList.size();
+
+        Object[] edges = edgeList.toArray();
+        int[] sources = new int[edges.length];
+        int[] targets = new int[edges.length];
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                sources[e] = v;
+                targets[e] = ids.get(graph.getEdgeTarget(CompiledGraph.<E>cast(edges[e])));
+            }
+        }
+        return new CompiledGraph<>(vertices, edges, null, ids, offsets, sources, targets);
+    }
+
+    /**
+     * builds a CompiledGraph straight from its arrays, creating each edge
+     * object only when it is first needed
+     * @param vertices - the vertices, indexed by id
+     * @param offsets - the CSR offsets, with one more entry than there are vertices
+     * @param targets - the target vertex id of each edge
+     * @param edgeFactory - creates the edge object with a given edge id
+     * @param <V> - the type of the vertices
+     * @param <E> - the type of the edges
+     * @return - a CompiledGraph over the arrays
+     */
+    static <V, E> CompiledGraph<V, E> fromArrays(Object[] vertices, int[] offsets, int[] targets,
+                                                 IntFunction<E> edgeFactory) {
+        HashMap<V, Integer> ids = new HashMap<>(2 * vertices.length);
+        for (int i = 0; i < vertices.length; i++) {
+            ids.put(CompiledGraph.<V>cast(vertices[i]), i);
+        }
+        int[] sources = new int[targets.length];
+        for (int v = 0; v < vertices.length; v++) {
+            Arrays.fill(sources, offsets[v], offsets[v + 1], v);
+        }
+        return new CompiledGraph<>(vertices, null, edgeFactory, ids, offsets, sources, targets);
+    }
+
+    /**
+     * returns a compiled view of any IGraph, reusing the snapshot a
+     * TravelGraph or OffHeapGraph keeps for itself when possible
+     * @param graph - the graph to compile
+     * @param <V> - the type of the vertices
+     * @param <E> - the type of the edges
+     * @return - a CompiledGraph for the input graph
+     */
+    @SuppressWarnings("unchecked")
+    public static <V, E> CompiledGraph<V, E> of(IGraph<V, E> graph) {
+        if (graph instanceof TravelGraph) {
+            return (CompiledGraph<V, E>) ((TravelGraph) graph).compile();
+        }
+        if (graph instanceof OffHeapGraph) {
+            return (CompiledGraph<V, E>) ((OffHeapGraph) graph).compile();
+        }
+        return compile(graph);
+    }
+
+    /**
+     * makes the next version of this graph, with one more edge. The new edge
+     * takes the next unused edge id, and every other edge keeps its id. Only
+     * the newest version of a graph with room left in its overlay can be
+     * changed in place; any other version is compacted first.
+     * @param source - the id of the vertex the edge leaves from
+     * @param target - the id of the vertex the edge arrives at
+     * @param edge - the new edge
+     * @return - the graph with the edge added
+     */
+    CompiledGraph<V, E> withEdge(int source, int target, E edge) {
+        synchronized (this.shared) {
+            if (this.isNewest() && this.overlayRoom() >= 1) {
+                this.addToOverlay(source, target, edge);
+                this.shared.changes++;
+                this.shared.version++;
+                return new CompiledGraph<>(this, this.edgeIdLimit + 1, this.edgeCount + 1);
+            }
+        }
+        return this.compact().withEdge(source, target, edge);
+    }
+
+    /**
+     * makes the next version of this graph, with one of its edges replaced
+     * by another between the same two vertices, such as one with different
+     * weights. Both happen in the one version, so no version is without
+     * either edge. The new edge takes the next unused edge id.
+     * @param edgeId - the id of the edge to replace
+     * @param edge - the edge to replace it with
+     * @return - the graph with the edge replaced
+     */
+    CompiledGraph<V, E> withReplacedEdge(int edgeId, E edge) {
+        int source = this.getSource(edgeId);
+        int target = this.getTarget(edgeId);
+        synchronized (this.shared) {
+            // a replacement takes two changes, so it needs room for both
+            if (this.isNewest() && this.overlayRoom() >= 2) {
+                this.addToOverlay(source, target, edge);
+                this.shared.changes += 2;
+                this.shared.version++;
+                this.shared.overlay.removedAt[edgeId] = this.shared.version;
+                return new CompiledGraph<>(this, this.edgeIdLimit + 1, this.edgeCount);
+            }
+        }
+        CompiledGraph<V, E> compacted = this.compact();
+        return compacted.withReplacedEdge(compacted.getEdgeId(this.getVertex(source), this.getEdge(edgeId)), edge);
+    }
+
+    /**
+     * appends an edge to the overlay and to every weight and mask array,
+     * without making a version for it. Only called while holding the shared lock
+     */
+    private void addToOverlay(int source, int target, E edge) {
+        Overlay overlay = this.openOverlay();
+        int index = this.shared.added;
+        int id = this.targets.length + index;
+        overlay.sources[index] = source;
+        overlay.targets[index] = target;
+        overlay.edges[index] = edge;
+        overlay.nextOut[index] = -1;
+        overlay.nextIn[index] = -1;
+        for (Map.Entry<Function<E, Double>, Cached<double[]>> entry : this.shared.weights.entrySet()) {
+            Cached<double[]> cached = entry.getValue();
+            double weight = entry.getKey().apply(edge);
+            cached.values[id] = weight;
+            long bound = cached.integralBound;
+            if (bound >= 0 && !isWhole(weight)) {
+                cached.integralBound = -1;
+            } else if (bound >= 0) {
+                cached.integralBound = Math.max(bound, (long) weight);
+            }
+        }
+        for (Map.Entry<ToIntFunction<E>, Cached<byte[]>> entry : this.shared.masks.entrySet()) {
+            entry.getValue().values[id] = maskOf(entry.getKey(), edge);
+        }
+        // the edge is only linked once its entries are written, and versions before it stop at its id
+        if (overlay.lastOut[source] < 0) {
+            overlay.firstOut[source] = id;
+        } else {
+            overlay.nextOut[overlay.lastOut[source] - this.targets.length] = id;
+        }
+        overlay.lastOut[source] = id;
+        if (overlay.lastIn[target] < 0) {
+            overlay.firstIn[target] = id;
+        } else {
+            overlay.nextIn[overlay.lastIn[target] - this.targets.length] = id;
+        }
+        overlay.lastIn[target] = id;
+        this.shared.added++;
+    }
+
+    /**
+     * makes the next version of this graph, without one of its edges. Every
+     * other edge keeps its id. Like withEdge, only the newest version of a
+     * graph with room left in its overlay is changed in place.
+     * @param edgeId - the id of the edge to remove
+     * @return - the graph with the edge removed
+     */
+    CompiledGraph<V, E> withoutEdge(int edgeId) {
+        synchronized (this.shared) {
+            if (this.isNewest() && this.overlayRoom() >= 1) {
+                Overlay overlay = this.openOverlay();
+                this.shared.changes++;
+                this.shared.version++;
+                overlay.removedAt[edgeId] = this.shared.version;
+                return new CompiledGraph<>(this, this.edgeIdLimit, this.edgeCount - 1);
+            }
+        }
+        CompiledGraph<V, E> compacted = this.compact();
+        return compacted.withoutEdge(compacted.getEdgeId(this.getVertex(this.getSource(edgeId)),
+                this.getEdge(edgeId)));
+    }
+
+    /**
+     * @return - true if no version of this graph was made after this one
+     */
+    private boolean isNewest() {
+        return this.version == this.shared.version;
+    }
+
+    /**
+     * @return - true if the overlay has no room for another replacement,
+     * which takes two changes, so the next change should go to a compacted graph
+     */
+    boolean isOverlayFull() {
+        synchronized (this.shared) {
+            return this.overlayRoom() < 2;
+        }
+    }
+
+    /**
+     * @return - how many more changes the overlay has room for. Only called
+     * while holding the shared lock
+     */
+    private int overlayRoom() {
+        Overlay overlay = this.shared.overlay;
+        return overlay == null ? Math.max(MIN_OVERLAY, this.targets.length / 8)
+                : overlay.edges.length - this.shared.changes;
+    }
+
+    /**
+     * makes the overlay on the first change to this graph, and makes room
+     * for the added edges in every weight and mask array computed so far.
+     * Only called while holding the shared lock
+     */
+    private Overlay openOverlay() {
+        if (this.shared.overlay == null) {
+            int capacity = this.overlayRoom();
+            int length = this.targets.length + capacity;
+            this.shared.overlay = new Overlay(this.vertices.length, length, capacity);
+            Map<Function<E, Double>, Cached<double[]>> nextWeights = new IdentityHashMap<>();
+            for (Map.Entry<Function<E, Double>, Cached<double[]>> entry : this.shared.weights.entrySet()) {
+                Cached<double[]> cached = entry.getValue();
+                nextWeights.put(entry.getKey(), new Cached<>(Arrays.copyOf(cached.values, length), cached));
+            }
+            this.shared.weights = nextWeights;
+            Map<ToIntFunction<E>, Cached<byte[]>> nextMasks = new IdentityHashMap<>();
+            for (Map.Entry<ToIntFunction<E>, Cached<byte[]>> entry : this.shared.masks.entrySet()) {
+                Cached<byte[]> cached = entry.getValue();
+                nextMasks.put(entry.getKey(), new Cached<>(Arrays.copyOf(cached.values, length), cached));
+            }
+            this.shared.masks = nextMasks;
+        }
+        return this.shared.overlay;
+    }
+
+    /**
+     * folds the changes this version sees into fresh CSR arrays, carrying
+     * over the weights and masks computed so far rather than evaluating them
+     * again. The edges are numbered again, in order of their source.
+     * @return - a graph with the same vertices and edges as this version and
+     * no overlay, or this graph if it has no changes
+     */
+    CompiledGraph<V, E> compact() {
+        if (this.overlay == null) {
+            return this;
+        }
+        int n = this.vertices.length;
+        int[] nextOffsets = new int[n + 1];
+        int[] nextSources = new int[this.edgeCount];
+        int[] nextTargets = new int[this.edgeCount];
+        Object[] nextEdges = new Object[this.edgeCount];
+        int[] oldIds = new int[this.edgeCount];
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            nextOffsets[v] = count;
+            for (int e = this.firstEdge(v); e >= 0; e = this.nextEdge(v, e)) {
+                oldIds[count] = e;
+                nextSources[count] = v;
+                nextTargets[count] = this.getTarget(e);
+                nextEdges[count] = this.getEdge(e);
+                count++;
+            }
+        }
+        nextOffsets[n] = count;
+        CompiledGraph<V, E> next = new CompiledGraph<>(this.vertices, nextEdges, null, this.ids, nextOffsets,
+                nextSources, nextTargets);
+        synchronized (this.shared) {
+            for (Map.Entry<Function<E, Double>, Cached<double[]>> entry : this.shared.weights.entrySet()) {
+                double[] w = entry.getValue().values;
+                double[] nextW = new double[count];
+                for (int e = 0; e < count; e++) {
+                    nextW[e] = w[oldIds[e]];
+                }
+                next.shared.weights.put(entry.getKey(), new Cached<>(nextW, entry.getValue()));
+            }
+            for (Map.Entry<ToIntFunction<E>, Cached<byte[]>> entry : this.shared.masks.entrySet()) {
+                byte[] m = entry.getValue().values;
+                byte[] nextM = new byte[count];
+                for (int e = 0; e < count; e++) {
+                    nextM[e] = m[oldIds[e]];
+                }
+                next.shared.masks.put(entry.getKey(), new Cached<>(nextM, entry.getValue()));
+            }
+        }
+        return next;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object o) {
+        return (T) o;
+    }
+
+    /**
+     * @return - the number of vertices in this graph
+     */
+    public int getVertexCount() {
+        return this.vertices.length;
+    }
+
+    /**
+     * @return - the number of edges in this graph
+     */
+    public int getEdgeCount() {
+        return this.edgeCount;
+    }
+
+    /**
+     * @return - one past the largest edge id in this graph, which is the
+     * length an array indexed by edge id needs. Removed edges keep their ids
+     * until the graph is compacted, so this can be more than getEdgeCount
+     */
+    public int getEdgeIdLimit() {
+        return this.edgeIdLimit;
+    }
+
+    /**
+     * gets the dense id of a vertex
+     * @param vertex - a vertex
+     * @return - the id of the vertex, or -1 if it is not in this graph
+     */
+    public int getId(V vertex) {
+        if (vertex == null) {
+            return -1;
+        }
+        Integer id = this.ids.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id - a vertex id
+     * @return - the vertex with the given id
+     */
+    public V getVertex(int id) {
+        return cast(this.vertices[id]);
+    }
+
+    /**
+     * @param edgeId - an edge id
+     * @return - the edge with the given id
+     */
+    public E getEdge(int edgeId) {
+        if (edgeId >= this.targets.length) {
+            return cast(this.overlay.edges[edgeId - this.targets.length]);
+        }
+        if (this.edges != null) {
+            return cast(this.edges[edgeId]);
+        }
+        E edge = this.lazyEdges.get(edgeId);
+        if (edge == null) {
+            // if two threads race, both return the edge that was stored first
+            this.lazyEdges.compareAndSet(edgeId, null, this.edgeFactory.apply(edgeId));
+            edge = this.lazyEdges.get(edgeId);
+        }
+        return edge;
+    }
+
+    /**
+     * @param v - a vertex id
+     * @return - the id of the first outgoing edge of v, or -1 if it has none
+     */
+    public int firstEdge(int v) {
+        int e = this.offsets[v];
+        if (this.overlay == null) {
+            return e < this.offsets[v + 1] ? e : -1;
+        }
+        return this.nextCsrEdge(v, e);
+    }
+
+    /**
+     * @param v - a vertex id
+     * @param edgeId - the id of an outgoing edge of v
+     * @return - the id of the outgoing edge of v after it, or -1 if it was the last
+     */
+    public int nextEdge(int v, int edgeId) {
+        if (this.overlay == null) {
+            return edgeId + 1 < this.offsets[v + 1] ? edgeId + 1 : -1;
+        }
+        if (edgeId < this.targets.length) {
+            return this.nextCsrEdge(v, edgeId + 1);
+        }
+        return this.nextAddedEdge(this.overlay.nextOut[edgeId - this.targets.length], this.overlay.nextOut);
+    }
+
+    /**
+     * @return - the first edge of v at or after the CSR edge id e that this
+     * version sees, moving on to the added edges of v after the last CSR one
+     */
+    private int nextCsrEdge(int v, int e) {
+        for (int end = this.offsets[v + 1]; e < end; e++) {
+            if (!this.isRemoved(e)) {
+                return e;
+            }
+        }
+        return this.nextAddedEdge(this.overlay.firstOut[v], this.overlay.nextOut);
+    }
+
+    /**
+     * @return - the first edge this version sees on a list of added edges,
+     * starting at edge id e
+     */
+    private int nextAddedEdge(int e, int[] next) {
+        // the edges on a list were added in order, so the first one after this version ends it
+        while (e >= 0 && e < this.edgeIdLimit) {
+            if (!this.isRemoved(e)) {
+                return e;
+            }
+            e = next[e - this.targets.length];
+        }
+        return -1;
+    }
+
+    private boolean isRemoved(int edgeId) {
+        int removedAt = this.overlay.removedAt[edgeId];
+        return removedAt != 0 && removedAt <= this.version;
+    }
+
+    /**
+     * @param v - a vertex id
+     * @return - the number of outgoing edges of v
+     */
+    public int getOutDegree(int v) {
+        if (this.overlay == null) {
+            return this.offsets[v + 1] - this.offsets[v];
+        }
+        int degree = 0;
+        for (int e = this.firstEdge(v); e >= 0; e = this.nextEdge(v, e)) {
+            degree++;
+        }
+        return degree;
+    }
+
+    /**
+     * @param edgeId - an edge id
+     * @return - the id of the vertex the edge leaves from
+     */
+    public int getSource(int edgeId) {
+        return edgeId < this.targets.length ? this.sources[edgeId]
+                : this.overlay.sources[edgeId - this.targets.length];
+    }
+
+    /**
+     * @param edgeId - an edge id
+     * @return - the id of the vertex the edge arrives at
+     */
+    public int getTarget(int edgeId) {
+        return edgeId < this.targets.length ? this.targets[edgeId]
+                : this.overlay.targets[edgeId - this.targets.length];
+    }
+
+    /**
+     * @param v - a vertex id
+     * @return - where the incoming edges of v start, for use with getInEdge
+     * and nextInEdge, or -1 if it has none
+     */
+    public int firstInEdge(int v) {
+        int i = this.inOffsets[v];
+        if (this.overlay == null) {
+            return i < this.inOffsets[v + 1] ? i : -1;
+        }
+        return this.nextCsrInEdge(v, i);
+    }
+
+    /**
+     * @param v - a vertex id
+     * @param index - where an incoming edge of v is, as returned by
+     *              firstInEdge or nextInEdge
+     * @return - where the incoming edge of v after it is, or -1 if it was the last
+     */
+    public int nextInEdge(int v, int index) {
+        if (this.overlay == null) {
+            return index + 1 < this.inOffsets[v + 1] ? index + 1 : -1;
+        }
+        // the CSR part of the index holds positions in inEdges, the rest the added edge ids themselves
+        if (index < this.targets.length) {
+            return this.nextCsrInEdge(v, index + 1);
+        }
+        return this.nextAddedEdge(this.overlay.nextIn[index - this.targets.length], this.overlay.nextIn);
+    }
+
+    private int nextCsrInEdge(int v, int i) {
+        for (int end = this.inOffsets[v + 1]; i < end; i++) {
+            if (!this.isRemoved(this.inEdges[i])) {
+                return i;
+            }
+        }
+        return this.nextAddedEdge(this.overlay.firstIn[v], this.overlay.nextIn);
+    }
+
+    /**
+     * @param index - where an incoming edge is, as returned by firstInEdge or nextInEdge
+     * @return - the id of the incoming edge
+     */
+    public int getInEdge(int index) {
+        return index < this.targets.length ? this.inEdges[index] : index;
+    }
+
+    /**
+     * returns the weight of every edge under the given weight function, indexed
+     * by edge id. The array is computed the first time a function is seen and
+     * reused afterwards, for good if the function is a RouteMetric weight and
+     * otherwise until the array falls out of the few most recently used ones,
+     * so callers should hold on to their Function objects. The array is shared
+     * by every version of the graph, and may be longer than getEdgeIdLimit.
+     * @param edgeWeight - a Function that extracts the weight from an edge
+     * @return - an array of edge weights; callers must not modify it
+     */
+    public double[] weights(Function<E, Double> edgeWeight) {
+        return this.cachedWeights(edgeWeight).values;
+    }
+
+    private Cached<double[]> cachedWeights(Function<E, Double> edgeWeight) {
+        Cached<double[]> cached = this.shared.weights.get(edgeWeight);
+        if (cached == null) {
+            return this.computeWeights(edgeWeight);
+        }
+        cached.used = System.nanoTime();
+        return cached;
+    }
+
+    private Cached<double[]> computeWeights(Function<E, Double> edgeWeight) {
+        synchronized (this.shared) {
+            Cached<double[]> cached = this.shared.weights.get(edgeWeight);
+            if (cached == null) {
+                double[] w = new double[this.arrayLength()];
+                IntToDoubleFunction source = this.shared.weightSources.get(edgeWeight);
+                for (int e = 0; e < this.targets.length; e++) {
+                    w[e] = source != null ? source.applyAsDouble(e) : edgeWeight.apply(this.getEdge(e));
+                }
+                for (int i = 0; i < this.shared.added; i++) {
+                    w[this.targets.length + i] = edgeWeight.apply(cast(this.shared.overlay.edges[i]));
+                }
+                cached = this.putWeights(edgeWeight, w);
+            }
+            return cached;
+        }
+    }
+
+    /**
+     * @return - the length of the weight and mask arrays, which leave room
+     * for the added edges once the overlay is made. Only called while
+     * holding the shared lock
+     */
+    private int arrayLength() {
+        Overlay overlay = this.shared.overlay;
+        return this.targets.length + (overlay == null ? 0 : overlay.edges.length);
+    }
+
+    /**
+     * returns the mask of every edge under the given mask function, indexed by
+     * edge id. Like weights, the array is computed the first time a function
+     * is seen and reused afterwards.
+     * @param edgeMask - a function that gives the mask bits of an edge, which
+     *                 must fit in the low eight bits
+     * @return - an array of edge masks; callers must not modify it
+     */
+    public byte[] masks(ToIntFunction<E> edgeMask) {
+        Cached<byte[]> cached = this.shared.masks.get(edgeMask);
+        if (cached == null) {
+            return this.computeMasks(edgeMask);
+        }
+        cached.used = System.nanoTime();
+        return cached.values;
+    }
+
+    private byte[] computeMasks(ToIntFunction<E> edgeMask) {
+        synchronized (this.shared) {
+            Cached<byte[]> cached = this.shared.masks.get(edgeMask);
+            if (cached != null) {
+                return cached.values;
+            }
+            byte[] m = new byte[this.arrayLength()];
+            IntUnaryOperator source = this.shared.maskSources.get(edgeMask);
+            for (int e = 0; e < this.targets.length; e++) {
+                m[e] = source != null ? (byte) source.applyAsInt(e) : maskOf(edgeMask, this.getEdge(e));
+            }
+            for (int i = 0; i < this.shared.added; i++) {
+                m[this.targets.length + i] = maskOf(edgeMask, cast(this.shared.overlay.edges[i]));
+            }
+            this.putMasks(edgeMask, m);
+            return m;
+        }
+    }
+
+    private static <E> byte maskOf(ToIntFunction<E> edgeMask, E edge) {
+        int mask = edgeMask.applyAsInt(edge);
+        if ((mask & ~0xFF) != 0) {
+            throw new IllegalArgumentException("Edge masks must fit in eight bits");
+        }
+        return (byte) mask;
+    }
+
+    /**
+     * stores masks that were computed elsewhere, such as those read from a snapshot
+     * @param edgeMask - the mask function the masks belong to
+     * @param m - the mask of every edge, indexed by edge id
+     */
+    private void putMasks(ToIntFunction<E> edgeMask, byte[] m) {
+        synchronized (this.shared) {
+            Map<ToIntFunction<E>, Cached<byte[]>> next = new IdentityHashMap<>(this.shared.masks);
+            next.put(edgeMask, new Cached<>(m));
+            evictUnregistered(next);
+            this.shared.masks = next;
+        }
+    }
+
+    /**
+     * gives the masks of a mask function by edge id, so masks fills its array
+     * from them rather than creating every edge
+     * @param edgeMask - the mask function the masks belong to
+     * @param source - the mask of the edge with a given id
+     */
+    void putMaskSource(ToIntFunction<E> edgeMask, IntUnaryOperator source) {
+        synchronized (this.shared) {
+            this.shared.maskSources.put(edgeMask, source);
+        }
+    }
+
+    /**
+     * finds the id of an edge
+     * @param source - the vertex the edge leaves from
+     * @param edge - the edge
+     * @return - the id of the edge, or -1 if it is not in this graph
+     */
+    public int getEdgeId(V source, E edge) {
+        int v = this.getId(source);
+        if (v < 0) {
+            return -1;
+        }
+        for (int e = this.firstEdge(v); e >= 0; e = this.nextEdge(v, e)) {
+            if (this.getEdge(e) == edge) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * stores weights that were computed elsewhere, such as those read from a
+     * snapshot, so they are used instead of applying the function to every edge
+     * @param edgeWeight - the weight function the weights belong to
+     * @param w - the weight of every edge, indexed by edge id
+     */
+    private Cached<double[]> putWeights(Function<E, Double> edgeWeight, double[] w) {
+        synchronized (this.shared) {
+            Map<Function<E, Double>, Cached<double[]>> next = new IdentityHashMap<>(this.shared.weights);
+            Cached<double[]> cached = new Cached<>(w);
+            next.put(edgeWeight, cached);
+            evictUnregistered(next);
+            this.shared.weights = next;
+            return cached;
+        }
+    }
+
+    /**
+     * drops the least recently used arrays of functions other than the
+     * registered ones until only RECENT_FUNCTIONS of them are left
+     */
+    private static <K, A> void evictUnregistered(Map<K, Cached<A>> cache) {
+        while (true) {
+            K oldest = null;
+            long oldestUse = Long.MAX_VALUE;
+            int unregistered = 0;
+            for (Map.Entry<K, Cached<A>> entry : cache.entrySet()) {
+                if (!isRegistered(entry.getKey())) {
+                    unregistered++;
+                    if (entry.getValue().used <= oldestUse) {
+                        oldest = entry.getKey();
+                        oldestUse = entry.getValue().used;
+                    }
+                }
+            }
+            if (unregistered <= RECENT_FUNCTIONS) {
+                return;
+            }
+            cache.remove(oldest);
+        }
+    }
+
+    /**
+     * @return - true if the function is one whose arrays are kept for as
+     * long as the graph: a RouteMetric weight or Transport.TYPE_MASK
+     */
+    private static boolean isRegistered(Object function) {
+        if (function == Transport.TYPE_MASK) {
+            return true;
+        }
+        for (RouteMetric metric : RouteMetric.values()) {
+            if (function == metric.getWeight()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * gives the weights of a weight function by edge id, so weights fills its
+     * array from them rather than creating every edge
+     * @param edgeWeight - the weight function the weights belong to
+     * @param source - the weight of the edge with a given id
+     */
+    void putWeightSource(Function<E, Double> edgeWeight, IntToDoubleFunction source) {
+        synchronized (this.shared) {
+            this.shared.weightSources.put(edgeWeight, source);
+        }
+    }
+
+    /**
+     * checks whether every weight under the given function is a non-negative
+     * whole number, which lets searches use integer bucket queues
+     * @param edgeWeight - a Function that extracts the weight from an edge
+     * @return - the largest weight if all weights are whole numbers, or -1 if
+     * not. Edges of later versions count too, so the bound may be larger than
+     * this version needs
+     */
+    public long getIntegralBound(Function<E, Double> edgeWeight) {
+        Cached<double[]> cached = this.cachedWeights(edgeWeight);
+        long bound = cached.integralBound;
+        if (bound != Cached.UNKNOWN) {
+            return bound;
+        }
+        synchronized (this.shared) {
+            // under the lock, so an edge added during the scan cannot be missed
+            long max = 0;
+            for (double weight : cached.values) {
+                if (!isWhole(weight)) {
+                    max = -1;
+                    break;
+                }
+                max = Math.max(max, (long) weight);
+            }
+            cached.integralBound = max;
+            return max;
+        }
+    }
+
+    private static boolean isWhole(double weight) {
+        return weight >= 0 && weight == Math.rint(weight) && weight <= Long.MAX_VALUE;
+    }
+
+    /**
+     * walks parent edges forward from a vertex, as recorded by a search that
+     * ran backwards from a destination, and appends them to a path
+     * @param childEdges - for each vertex id, the id of the edge leaving it
+     *                   towards the destination, or -1 at the destination
+     * @param from - the id of the first vertex to walk from
+     * @param path - the path to append the edges to
+     */
+    public void appendPath(int[] childEdges, int from, List<E> path) {
+        for (int v = from; childEdges[v] >= 0; v = this.getTarget(childEdges[v])) {
+            path.add(this.getEdge(childEdges[v]));
+        }
+    }
+
+    /**
+     * walks parent edges back from a vertex to build the path that reaches it
+     * @param parentEdges - for each vertex id, the id of the edge used to reach it,
+     *                    or -1 for the start of the search
+     * @param destination - the id of the last vertex on the path
+     * @return - the edges from the start of the search to the destination
+     */
+    public List<E> buildPath(int[] parentEdges, int destination) {
+        int length = 0;
+        for (int v = destination; parentEdges[v] >= 0; v = this.getSource(parentEdges[v])) {
+            length++;
+        }
+        Object[] path = new Object[length];
+        for (int v = destination; parentEdges[v] >= 0; v = this.getSource(parentEdges[v])) {
+            path[--length] = this.getEdge(parentEdges[v]);
+        }
+        List<E> result = new ArrayList<>(path.length);
+        for (Object edge : path) {
+            result.add(cast(edge));
+        }
+        return result;
+    }
+
+    /**
+     * what every version of one compiled graph shares: the overlay, and the
+     * weights and masks computed so far. Its fields other than the maps are
+     * only read and changed while holding its lock
+     */
+    private static class Shared<E> {
+        /*
+        weight arrays indexed by edge id, keyed by the identity of the function
+        that produced them so the same Function object is only evaluated once per
+        edge. The maps below are never changed once published: adding an entry
+        replaces the map under the shared lock, so queries read them without locking
+         */
+        private volatile Map<Function<E, Double>, Cached<double[]>> weights = new IdentityHashMap<>();
+        // mask arrays indexed by edge id, keyed by the identity of the function that produced them
+        private volatile Map<ToIntFunction<E>, Cached<byte[]>> masks = new IdentityHashMap<>();
+        /*
+        where the weights and masks of some functions can be read by edge id
+        without creating the edge, used when their arrays are first asked for
+         */
+        private final Map<Function<E, Double>, IntToDoubleFunction> weightSources = new IdentityHashMap<>();
+        private final Map<ToIntFunction<E>, IntUnaryOperator> maskSources = new IdentityHashMap<>();
+        // made on the first change
+        private Overlay overlay;
+        // the newest version, and the edges added and changes made up to it
+        private int version;
+        private int added;
+        private int changes;
+    }
+
+    /**
+     * the changes made to a graph since its CSR arrays were built. Entries are
+     * only ever appended, or set once from their initial value, so a version
+     * reading them while a later one is being made finds either the entry it
+     * saw before or one it skips. Added edges are indexed by their edge id
+     * minus the number of CSR edges
+     */
+    private static class Overlay {
+        private final int[] sources;
+        private final int[] targets;
+        private final Object[] edges;
+        // the next added edge leaving, and arriving at, the same vertex, or -1
+        private final int[] nextOut;
+        private final int[] nextIn;
+        // the first and last added edge leaving, and arriving at, each vertex, or -1
+        private final int[] firstOut;
+        private final int[] lastOut;
+        private final int[] firstIn;
+        private final int[] lastIn;
+        // the version that removed each edge, by edge id, or 0 if it was not removed
+        private final int[] removedAt;
+
+        Overlay(int vertexCount, int edgeIdLimit, int capacity) {
+            this.sources = new int[capacity];
+            this.targets = new int[capacity];
+            this.edges = new Object[capacity];
+            this.nextOut = new int[capacity];
+            this.nextIn = new int[capacity];
+            this.firstOut = new int[vertexCount];
+            this.lastOut = new int[vertexCount];
+            this.firstIn = new int[vertexCount];
+            this.lastIn = new int[vertexCount];
+            Arrays.fill(this.firstOut, -1);
+            Arrays.fill(this.lastOut, -1);
+            Arrays.fill(this.firstIn, -1);
+            Arrays.fill(this.lastIn, -1);
+            this.removedAt = new int[edgeIdLimit];
+        }
+    }
+
+    /**
+     * a cached weight or mask array, with when it was last asked for so the
+     * cache can drop the least recently used arrays without locking on every lookup
+     */
+    private static class Cached<A> {
+        // the integral bound of an array it was not asked for yet
+        private static final long UNKNOWN = -2;
+
+        private final A values;
+        private volatile long used;
+        // the largest weight if every weight is a whole number, -1 if not, or UNKNOWN
+        private volatile long integralBound;
+
+        Cached(A values) {
+            this.values = values;
+            this.used = System.nanoTime();
+            this.integralBound = UNKNOWN;
+        }
+
+        /**
+         * moves a cached array's use and bound over to a copy of the array
+         */
+        Cached(A values, Cached<?> from) {
+            this.values = values;
+            this.used = from.used;
+            this.integralBound = from.integralBound;
+        }
+    }
+}
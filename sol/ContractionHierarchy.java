@@ -0,0 +1,458 @@
+package sol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A contraction hierarchy of a CompiledGraph under one weight array.
+ * Vertices are contracted one at a time in order of importance (edge
+ * difference plus the number of already contracted neighbors). Contracting a
+ * vertex v adds a shortcut u -> w for every pair of neighbors whose shortest
+ * path runs through v, unless a bounded witness search finds another path that
+ * is at least as short. Queries then only follow arcs towards more important
+ * vertices from both ends, which settles a tiny fraction of the graph, and
+ * shortcuts on the result are unpacked back into the original edges.
+ */
+public class ContractionHierarchy {
+    // stop a witness search after settling this many vertices and assume there is no witness
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final CompiledGraph<?, ?> graph;
+    private int arcCount;
+    private int[] arcFrom;
+    private int[] arcTo;
+    private double[] arcWeight;
+    /*
+    an original arc has arcFirst = the id of its CompiledGraph edge and
+    arcSecond = -1; a shortcut has the ids of the two arcs it replaces
+     */
+    private int[] arcFirst;
+    private int[] arcSecond;
+    private final int[] rank;
+    // arcs leaving v towards higher-ranked vertices
+    private int[] upOffsets;
+    private int[] upArcs;
+    // arcs entering v from higher-ranked vertices
+    private int[] downOffsets;
+    private int[] downArcs;
+
+    private ContractionHierarchy(CompiledGraph<?, ?> graph) {
+        int n = graph.getVertexCount();
+        this.graph = graph;
+        this.arcCount = 0;
+        int capacity = Math.max(16, graph.getEdgeCount());
+        this.arcFrom = new int[capacity];
+        this.arcTo = new int[capacity];
+        this.arcWeight = new double[capacity];
+        this.arcFirst = new int[capacity];
+        this.arcSecond = new int[capacity];
+        this.rank = new int[n];
+    }
+
+    /**
+     * contracts every vertex of a graph and builds the query index
+     * @param graph - the graph to build the hierarchy for
+     * @param weights - the weight of each edge
+     * @return - the contraction hierarchy
+     */
+    public static ContractionHierarchy build(CompiledGraph<?, ?> graph, double[] weights) {
+        ContractionHierarchy hierarchy = new ContractionHierarchy(graph);
+        new Builder(hierarchy, weights).run();
+        hierarchy.index();
+        return hierarchy;
+    }
+
+    /**
+     * @return - the number of shortcuts added during contraction
+     */
+    public int getShortcutCount() {
+        int shortcuts = 0;
+        for (int a = 0; a < this.arcCount; a++) {
+            if (this.arcSecond[a] >= 0) {
+                shortcuts++;
+            }
+        }
+        return shortcuts;
+    }
+
+    /**
+     * @param v - a vertex id
+     * @return - the position of v in the contraction order
+     */
+    public int getRank(int v) {
+        return this.rank[v];
+    }
+
+    /**
+     * finds a shortest path with a bidirectional search that only climbs the hierarchy
+     * @param forward - the search space for the upward search from s
+     * @param backward - the search space for the upward search from t over reversed arcs
+     * @param s - the id of the source vertex
+     * @param t - the id of the destination vertex
+     * @return - the CompiledGraph edge ids of the path, or null if there is none
+     */
+    public int[] query(SearchSpace forward, SearchSpace backward, int s, int t) {
+        forward.reset();
+        backward.reset();
+        forward.update(s, 0.0, -1);
+        forward.getQueue().insertOrDecrease(s, 0.0);
+        backward.update(t, 0.0, -1);
+        backward.getQueue().insertOrDecrease(t, 0.0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        while (true) {
+            double forwardKey = forward.getQueue().peekKey();
+            double backwardKey = backward.getQueue().peekKey();
+            if (Math.min(forwardKey, backwardKey) >= best) {
+                break;
+            }
+            boolean isForward = forwardKey <= backwardKey;
+            SearchSpace space = isForward ? forward : backward;
+            SearchSpace other = isForward ? backward : forward;
+            int checking = space.getQueue().poll();
+            space.settle();
+            double base = space.getDist(checking);
+            if (other.isReached(checking) && base + other.getDist(checking) < best) {
+                best = base + other.getDist(checking);
+                meet = checking;
+            }
+            int[] offsets = isForward ? this.upOffsets : this.downOffsets;
+            int[] arcs = isForward ? this.upArcs : this.downArcs;
+            for (int i = offsets[checking]; i < offsets[checking + 1]; i++) {
+                int a = arcs[i];
+                int neighbor = isForward ? this.arcTo[a] : this.arcFrom[a];
+                double temp = base + this.arcWeight[a];
+                if (temp < space.getDist(neighbor)) {
+                    space.update(neighbor, temp, a);
+                    space.getQueue().insertOrDecrease(neighbor, temp);
+                }
+            }
+        }
+        if (meet < 0) {
+            return null;
+        }
+
+        // collects the arcs from s up to the meeting vertex and from there down to t
+        List<Integer> up = new ArrayList<>();
+        for (int v = meet; forward.getParentEdges()[v] >= 0; v = this.arcFrom[forward.getParentEdges()[v]]) {
+            up.add(forward.getParentEdges()[v]);
+        }
+        List<Integer> edges = new ArrayList<>();
+        for (int i = up.size() - 1; i >= 0; i--) {
+            this.unpack(up.get(i), edges);
+        }
+        for (int v = meet; backward.getParentEdges()[v] >= 0; v = this.arcTo[backward.getParentEdges()[v]]) {
+            this.unpack(backward.getParentEdges()[v], edges);
+        }
+        int[] path = new int[edges.size()];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = edges.get(i);
+        }
+        return path;
+    }
+
+    /**
+     * replaces an arc by the original edges it stands for
+     * @param arc - the arc to unpack
+     * @param edges - the list the original edge ids are appended to
+     */
+    private void unpack(int arc, List<Integer> edges) {
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = arc;
+        while (top > 0) {
+            int a = stack[--top];
+            if (this.arcSecond[a] < 0) {
+                edges.add(this.arcFirst[a]);
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                // the first half is pushed last so it is unpacked first
+                stack[top++] = this.arcSecond[a];
+                stack[top++] = this.arcFirst[a];
+            }
+        }
+    }
+
+    private int addArc(int from, int to, double weight, int first, int second) {
+        if (this.arcCount == this.arcFrom.length) {
+            int capacity = 2 * this.arcCount;
+            this.arcFrom = Arrays.copyOf(this.arcFrom, capacity);
+            this.arcTo = Arrays.copyOf(this.arcTo, capacity);
+            this.arcWeight = Arrays.copyOf(this.arcWeight, capacity);
+            this.arcFirst = Arrays.copyOf(this.arcFirst, capacity);
+            this.arcSecond = Arrays.copyOf(this.arcSecond, capacity);
+        }
+        int a = this.arcCount++;
+        this.arcFrom[a] = from;
+        this.arcTo[a] = to;
+        this.arcWeight[a] = weight;
+        this.arcFirst[a] = first;
+        this.arcSecond[a] = second;
+        return a;
+    }
+
+    /**
+     * builds the upward and downward CSR indices used by queries
+     */
+    private void index() {
+        int n = this.rank.length;
+        this.upOffsets = new int[n + 1];
+        this.downOffsets = new int[n + 1];
+        for (int a = 0; a < this.arcCount; a++) {
+            if (this.rank[this.arcFrom[a]] < this.rank[this.arcTo[a]]) {
+                this.upOffsets[this.arcFrom[a] + 1]++;
+            } else {
+                this.downOffsets[this.arcTo[a] + 1]++;
+            }
+        }
+        for (int v = 1; v <= n; v++) {
+            this.upOffsets[v] += this.upOffsets[v - 1];
+            this.downOffsets[v] += this.downOffsets[v - 1];
+        }
+        this.upArcs = new int[this.upOffsets[n]];
+        this.downArcs = new int[this.downOffsets[n]];
+        int[] upFill = Arrays.copyOf(this.upOffsets, n);
+        int[] downFill = Arrays.copyOf(this.downOffsets, n);
+        for (int a = 0; a < this.arcCount; a++) {
+            if (this.rank[this.arcFrom[a]] < this.rank[this.arcTo[a]]) {
+                this.upArcs[upFill[this.arcFrom[a]]++] = a;
+            } else {
+                this.downArcs[downFill[this.arcTo[a]]++] = a;
+            }
+        }
+    }
+
+    /**
+     * the mutable state used while contracting vertices
+     */
+    private static class Builder {
+        private final ContractionHierarchy hierarchy;
+        private final int n;
+        private final int[][] outArcs;
+        private final int[] outSizes;
+        private final int[][] inArcs;
+        private final int[] inSizes;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbors;
+        // witness search state, reset with stamps
+        private final double[] witnessDist;
+        private final int[] witnessStamps;
+        private final IndexedHeap witnessQueue;
+        private int witnessStamp;
+        // lowest-weight arc to each neighbor, collected with stamps
+        private final int[] neighborArc;
+        private final int[] neighborStamps;
+        private int neighborStamp;
+
+        Builder(ContractionHierarchy hierarchy, double[] weights) {
+            CompiledGraph<?, ?> graph = hierarchy.graph;
+            this.hierarchy = hierarchy;
+            this.n = graph.getVertexCount();
+            this.outArcs = new int[this.n][];
+            this.outSizes = new int[this.n];
+            this.inArcs = new int[this.n][];
+            this.inSizes = new int[this.n];
+            for (int v = 0; v < this.n; v++) {
+                this.outArcs[v] = new int[4];
+                this.inArcs[v] = new int[4];
+            }
+            this.contracted = new boolean[this.n];
+            this.contractedNeighbors = new int[this.n];
+            this.witnessDist = new double[this.n];
+            this.witnessStamps = new int[this.n];
+            this.witnessQueue = new IndexedHeap(this.n, 4);
+            this.neighborArc = new int[this.n];
+            this.neighborStamps = new int[this.n];
+
+            // only the lightest of several parallel edges can be on a shortest path
+            for (int u = 0; u < this.n; u++) {
+                this.neighborStamp++;
+                for (int e = graph.firstEdge(u); e >= 0; e = graph.nextEdge(u, e)) {
+                    int v = graph.getTarget(e);
+                    if (v == u || weights[e] == Double.POSITIVE_INFINITY) {
+                        continue;
+                    }
+                    if (this.neighborStamps[v] != this.neighborStamp) {
+                        this.neighborStamps[v] = this.neighborStamp;
+                        this.neighborArc[v] = e;
+                    } else if (weights[e] < weights[this.neighborArc[v]]) {
+                        this.neighborArc[v] = e;
+                    }
+                }
+                for (int e = graph.firstEdge(u); e >= 0; e = graph.nextEdge(u, e)) {
+                    int v = graph.getTarget(e);
+                    if (v != u && this.neighborStamps[v] == this.neighborStamp && this.neighborArc[v] == e) {
+                        this.addArc(u, v, weights[e], e, -1);
+                    }
+                }
+            }
+        }
+
+        void run() {
+            IndexedHeap order = new IndexedHeap(this.n, 4);
+            for (int v = 0; v < this.n; v++) {
+                order.insertOrDecrease(v, this.priority(v));
+            }
+            int nextRank = 0;
+            while (!order.isEmpty()) {
+                int v = order.poll();
+                // lazy update: the stored priority may be out of date
+                double priority = this.priority(v);
+                if (!order.isEmpty() && priority > order.peekKey()) {
+                    order.insertOrDecrease(v, priority);
+                    continue;
+                }
+                this.contract(v, false);
+                this.contracted[v] = true;
+                this.hierarchy.rank[v] = nextRank++;
+                for (int i = 0; i < this.outSizes[v]; i++) {
+                    this.contractedNeighbors[this.hierarchy.arcTo[this.outArcs[v][i]]]++;
+                }
+                for (int i = 0; i < this.inSizes[v]; i++) {
+                    this.contractedNeighbors[this.hierarchy.arcFrom[this.inArcs[v][i]]]++;
+                }
+            }
+        }
+
+        private double priority(int v) {
+            int shortcuts = this.contract(v, true);
+            int removed = 0;
+            for (int i = 0; i < this.inSizes[v]; i++) {
+                if (!this.contracted[this.hierarchy.arcFrom[this.inArcs[v][i]]]) {
+                    removed++;
+                }
+            }
+            for (int i = 0; i < this.outSizes[v]; i++) {
+                if (!this.contracted[this.hierarchy.arcTo[this.outArcs[v][i]]]) {
+                    removed++;
+                }
+            }
+            return shortcuts - removed + this.contractedNeighbors[v];
+        }
+
+        /**
+         * finds the shortcuts needed to contract v
+         * @param v - the vertex to contract
+         * @param simulate - true to only count the shortcuts
+         * @return - the number of shortcuts
+         */
+        private int contract(int v, boolean simulate) {
+            ContractionHierarchy h = this.hierarchy;
+            int[] ins = this.lightestArcs(v, this.inArcs[v], this.inSizes[v], true);
+            int[] outs = this.lightestArcs(v, this.outArcs[v], this.outSizes[v], false);
+            int shortcuts = 0;
+            for (int inArc : ins) {
+                int u = h.arcFrom[inArc];
+                double maxCandidate = 0.0;
+                for (int outArc : outs) {
+                    if (h.arcTo[outArc] != u) {
+                        maxCandidate = Math.max(maxCandidate, h.arcWeight[inArc] + h.arcWeight[outArc]);
+                    }
+                }
+                this.witnessSearch(u, v, maxCandidate);
+                for (int outArc : outs) {
+                    int w = h.arcTo[outArc];
+                    if (w == u) {
+                        continue;
+                    }
+                    double candidate = h.arcWeight[inArc] + h.arcWeight[outArc];
+                    double witness = this.witnessStamps[w] == this.witnessStamp
+                            ? this.witnessDist[w] : Double.POSITIVE_INFINITY;
+                    if (witness > candidate) {
+                        shortcuts++;
+                        if (!simulate) {
+                            this.addArc(u, w, candidate, inArc, outArc);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * keeps the lightest arc to or from each uncontracted neighbor of v
+         */
+        private int[] lightestArcs(int v, int[] arcs, int size, boolean incoming) {
+            ContractionHierarchy h = this.hierarchy;
+            this.neighborStamp++;
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int a = arcs[i];
+                int neighbor = incoming ? h.arcFrom[a] : h.arcTo[a];
+                if (this.contracted[neighbor]) {
+                    continue;
+                }
+                if (this.neighborStamps[neighbor] != this.neighborStamp) {
+                    this.neighborStamps[neighbor] = this.neighborStamp;
+                    this.neighborArc[neighbor] = a;
+                    count++;
+                } else if (h.arcWeight[a] < h.arcWeight[this.neighborArc[neighbor]]) {
+                    this.neighborArc[neighbor] = a;
+                }
+            }
+            int[] result = new int[count];
+            int j = 0;
+            for (int i = 0; i < size && j < count; i++) {
+                int a = arcs[i];
+                int neighbor = incoming ? h.arcFrom[a] : h.arcTo[a];
+                if (!this.contracted[neighbor] && this.neighborArc[neighbor] == a
+                        && this.neighborStamps[neighbor] == this.neighborStamp) {
+                    result[j++] = a;
+                    // marks the neighbor as taken so equal arcs are not added twice
+                    this.neighborArc[neighbor] = -1;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * runs a bounded Dijkstra from u through uncontracted vertices other than v
+         */
+        private void witnessSearch(int u, int v, double limit) {
+            ContractionHierarchy h = this.hierarchy;
+            this.witnessStamp++;
+            this.witnessQueue.clear();
+            this.witnessStamps[u] = this.witnessStamp;
+            this.witnessDist[u] = 0.0;
+            this.witnessQueue.insertOrDecrease(u, 0.0);
+            int settled = 0;
+            while (!this.witnessQueue.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                if (this.witnessQueue.peekKey() > limit) {
+                    break;
+                }
+                int checking = this.witnessQueue.poll();
+                settled++;
+                double base = this.witnessDist[checking];
+                for (int i = 0; i < this.outSizes[checking]; i++) {
+                    int a = this.outArcs[checking][i];
+                    int neighbor = h.arcTo[a];
+                    if (neighbor == v || this.contracted[neighbor]) {
+                        continue;
+                    }
+                    double temp = base + h.arcWeight[a];
+                    if (this.witnessStamps[neighbor] != this.witnessStamp || temp < this.witnessDist[neighbor]) {
+                        this.witnessStamps[neighbor] = this.witnessStamp;
+                        this.witnessDist[neighbor] = temp;
+                        this.witnessQueue.insertOrDecrease(neighbor, temp);
+                    }
+                }
+            }
+        }
+
+        private void addArc(int from, int to, double weight, int first, int second) {
+            int a = this.hierarchy.addArc(from, to, weight, first, second);
+            if (this.outSizes[from] == this.outArcs[from].length) {
+                this.outArcs[from] = Arrays.copyOf(this.outArcs[from], 2 * this.outSizes[from]);
+            }
+            this.outArcs[from][this.outSizes[from]++] = a;
+            if (this.inSizes[to] == this.inArcs[to].length) {
+                this.inArcs[to] = Arrays.copyOf(this.inArcs[to], 2 * this.inSizes[to]);
+            }
+            this.inArcs[to][this.inSizes[to]++] = a;
+        }
+    }
+}
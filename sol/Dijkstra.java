@@ -6,6 +6,7 @@ import src.IGraph;
 import java.lang.reflect.Array;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 public class Dijkstra<V, E> implements IDijkstra<V, E> {
 
@@ -26,33 +27,109 @@ public class Dijkstra<V, E> implements IDijkstra<V, E> {
         /*
         makes a HashMap with vertices as both keys and values in which the
         edge from the value to the key is the final edge in the smallest total
-        edge-weight path from the source to the key
+        edge-weight path from the source to the key, along with a HashMap
+        holding that edge itself
          */
-        HashMap<V, V> cameFromMap = this.dijkstra(graph, source, edgeWeight);
-        V currentSpot = destination;
+        HashMap<V, E> cameByMap = new HashMap<>();
+        HashMap<V, V> cameFromMap = this.dijkstra(graph, source, edgeWeight, cameByMap);
+        if (!cameFromMap.containsKey(source) || !cameFromMap.containsKey(destination)) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
         LinkedList<E> path = new LinkedList<>();
         /*
-        traces the smallest weight path from the destination back to the source,
-        adding each edge to the path list along the way
+        traces the smallest weight path from the destination back to the source
+        one recorded edge at a time, so this takes time proportional to the
+        length of the path. a vertex other than the source with no recorded
+        edge was never reached
          */
-        try {
-            while (!source.equals(currentSpot)) {
-                PriorityQueue<E> edges = this.getConnectingEdges(graph,
-                        cameFromMap.get(currentSpot),
-                        currentSpot,
-                        edgeWeight);
-                path.add(edges.peek());
-                currentSpot = cameFromMap.get(currentSpot);
+        V currentSpot = destination;
+        while (!source.equals(currentSpot)) {
+            E edge = cameByMap.get(currentSpot);
+            if (edge == null) {
+                return new LinkedList<>();
             }
-        } catch (NullPointerException e) {
-            throw new IllegalArgumentException("Entered city does not exist");
-        } catch (RuntimeException e) {
-            List<E> empt = new LinkedList<>();
-            return empt;
+            path.addFirst(edge);
+            currentSpot = graph.getEdgeSource(edge);
         }
         return path;
     }
 
+    /**
+     * returns the path with the lowest total edge weight between two vertices
+     * of a CompiledGraph. The search runs over the primitive CSR arrays and only
+     * touches edge objects when the final path is built.
+     * @param graph - a CompiledGraph including the vertices
+     * @param source - the source vertex
+     * @param destination - the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    public List<E> getShortestPath(CompiledGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight) {
+        return this.compiledPath(graph, source, destination, edgeWeight, null, 0);
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between two vertices
+     * that only uses the edges allowed by a mask. The search runs over the
+     * CompiledGraph of the graph.
+     * @param graph       the IGraph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @param edgeMask - a function that gives the mask bits of an edge
+     * @param allowed - the mask of the edges the path may use
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight, ToIntFunction<E> edgeMask, int allowed) {
+        CompiledGraph<V, E> compiled = CompiledGraph.of(graph);
+        return this.compiledPath(compiled, source, destination, edgeWeight, compiled.masks(edgeMask), allowed);
+    }
+
+    private List<E> compiledPath(CompiledGraph<V, E> graph, V source, V destination,
+                                 Function<E, Double> edgeWeight, byte[] masks, int allowed) {
+        int s = graph.getId(source);
+        int t = graph.getId(destination);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        double[] weights = graph.weights(edgeWeight);
+        int n = graph.getVertexCount();
+        double[] dist = new double[n];
+        int[] parentEdges = new int[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(parentEdges, -1);
+        IndexedHeap toCheck = new IndexedHeap(n);
+
+        dist[s] = 0.0;
+        toCheck.insertOrDecrease(s, 0.0);
+        while (!toCheck.isEmpty()) {
+            int checking = toCheck.poll();
+            if (checking == t) {
+                return graph.buildPath(parentEdges, t);
+            }
+            for (int e = graph.firstEdge(checking); e >= 0; e = graph.nextEdge(checking, e)) {
+                if (masks != null && (masks[e] & allowed) == 0) {
+                    continue;
+                }
+                int neighbor = graph.getTarget(e);
+                double temp = dist[checking] + weights[e];
+                if (temp < dist[neighbor]) {
+                    dist[neighbor] = temp;
+                    parentEdges[neighbor] = e;
+                    toCheck.insertOrDecrease(neighbor, temp);
+                }
+            }
+        }
+        return new LinkedList<>();
+    }
+
     /**
      * a method for implementing the dijkstra algorithm
      * @param graph - an IGraph containing the source vertex
@@ -66,6 +143,16 @@ public class Dijkstra<V, E> implements IDijkstra<V, E> {
      */
     public HashMap<V, V> dijkstra(IGraph<V, E> graph, V source,
                                   Function<E, Double> edgeWeight) {
+        return this.dijkstra(graph, source, edgeWeight, new HashMap<>());
+    }
+
+    /**
+     * runs the dijkstra algorithm, also recording the edge each vertex was last improved by
+     * @param cameByMap - filled with the final edge of the smallest total
+     *                  edge-weight path from the source to each reached vertex
+     */
+    private HashMap<V, V> dijkstra(IGraph<V, E> graph, V source, Function<E, Double> edgeWeight,
+                                   HashMap<V, E> cameByMap) {
         /*
         initiates a HashMap with vertices as both keys and values in which
         the edge from the value to the key is the final edge in the smallest
@@ -126,6 +213,7 @@ public class Dijkstra<V, E> implements IDijkstra<V, E> {
                 if (temp < routeDist.get(neighbor)) {
                     routeDist.replace(neighbor, temp);
                     cameFromMap.replace(neighbor, checkingV);
+                    cameByMap.put(neighbor, edge);
                     toCheckQueue.remove(neighbor);
                     toCheckQueue.add(neighbor);
                 }
@@ -133,34 +221,4 @@ public class Dijkstra<V, E> implements IDijkstra<V, E> {
         }
         return cameFromMap;
     }
-
-    /**
-     * a method for returning a priority queue of edges connecting two vertices in a graph
-     * @param graph - an IGraph within which the two vertices reside
-     * @param source - the first vertex
-     * @param destination - the second vertex
-     * @param edgeWeight - a Function that extracts the weight from an edge. used to sort
-     *                   edges in the priority queue
-     * @return - a priority queue of edges
-     */
-    private PriorityQueue<E> getConnectingEdges(IGraph<V, E> graph, V source, V destination,
-                                                Function<E, Double> edgeWeight) {
-        Comparator<E> lowerWeight = (edge1, edge2) -> {
-            return Double.compare(edgeWeight.apply(edge1), edgeWeight.apply(edge2));
-        };
-        PriorityQueue<E> edges = new PriorityQueue<E>(lowerWeight);
-        if (source.equals(destination)) {
-            return null;
-        }
-        for (E e : graph.getOutgoingEdges(source)) {
-            if (graph.getEdgeTarget(e).equals(destination)) {
-                edges.add(e);
-            }
-        }
-        if (!edges.isEmpty()) {
-            return edges;
-        }
-        throw new RuntimeException (
-                "No route exists between the two entered cities");
-    }
 }
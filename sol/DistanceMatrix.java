@@ -0,0 +1,230 @@
+package sol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * All-pairs shortest distances stored in a file and read through memory
+ * mapping. The file holds a header, the vertex names, and one n-by-n float
+ * matrix per weight function in row-major order (row = source, column =
+ * destination, infinity where there is no path). Looking up a distance reads
+ * one float from the mapped file, so the matrices are never copied onto the
+ * heap; the operating system pages them in as they are used. Files larger
+ * than 2GB are mapped in several chunks.
+ */
+public class DistanceMatrix {
+    private static final int MAGIC = 0x54504d58; // "TPMX"
+    private static final int VERSION = 1;
+    // each mapping covers 2^30 bytes, a multiple of 4 so no float straddles two chunks
+    private static final int CHUNK_BITS = 30;
+    // the number of sources handled by one task while writing
+    private static final int SOURCES_PER_TASK = 16;
+
+    private final String[] names;
+    private final HashMap<String, Integer> ids;
+    private final int matrixCount;
+    private final MappedByteBuffer[] chunks;
+    private final long dataStart;
+
+    private DistanceMatrix(String[] names, int matrixCount, MappedByteBuffer[] chunks, long dataStart) {
+        this.names = names;
+        this.ids = new HashMap<>(2 * names.length);
+        for (int i = 0; i < names.length; i++) {
+            this.ids.put(names[i], i);
+        }
+        this.matrixCount = matrixCount;
+        this.chunks = chunks;
+        this.dataStart = dataStart;
+    }
+
+    /**
+     * computes the distance between every pair of vertices under each weight
+     * function and writes them to a file. Sources are searched in parallel on
+     * the executor, and each finished row is written straight to its place in
+     * the file, so only one row per task is ever held in memory.
+     * @param graph - the graph to measure
+     * @param weights - the weight functions, one matrix each
+     * @param file - the file to write
+     * @param executor - the executor the searches run on
+     * @param <V> - the type of the vertices; their toString is used as their name
+     * @param <E> - the type of the edges
+     * @throws IOException if the file could not be written
+     */
+    public static <V, E> void write(CompiledGraph<V, E> graph, List<Function<E, Double>> weights,
+                                    Path file, Executor executor) throws IOException {
+        int n = graph.getVertexCount();
+        ByteBuffer header = encodeHeader(graph, weights.size());
+        long dataStart = header.remaining();
+        long matrixBytes = 4L * n * n;
+        IndexedDijkstra<V, E> engine = new IndexedDijkstra<>();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header, 0);
+            List<CompletableFuture<Void>> tasks = new ArrayList<>();
+            for (int from = 0; from < n; from += SOURCES_PER_TASK) {
+                int first = from;
+                int last = Math.min(n, from + SOURCES_PER_TASK);
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    ByteBuffer row = ByteBuffer.allocate(4 * n);
+                    for (int s = first; s < last; s++) {
+                        for (int m = 0; m < weights.size(); m++) {
+                            ShortestPathTree<V, E> tree = engine.getShortestPathTree(
+                                    graph, graph.getVertex(s), weights.get(m));
+                            row.clear();
+                            for (int t = 0; t < n; t++) {
+                                row.putFloat((float) tree.distanceTo(t));
+                            }
+                            row.flip();
+                            try {
+                                writeFully(channel, row, dataStart + m * matrixBytes + 4L * s * n);
+                            } catch (IOException e) {
+                                throw new CompletionException(e);
+                            }
+                        }
+                    }
+                }, executor));
+            }
+            try {
+                CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * maps a file written by write
+     * @param file - the file to open
+     * @return - a DistanceMatrix reading from the file
+     * @throws IOException if the file could not be read or is not a distance matrix
+     */
+    public static DistanceMatrix open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 1L << CHUNK_BITS));
+            if (size < 16 || head.getInt() != MAGIC) {
+                throw new IOException("Not a distance matrix file");
+            }
+            if (head.getInt() != VERSION) {
+                throw new IOException("Unsupported distance matrix version");
+            }
+            int n = head.getInt();
+            int matrixCount = head.getInt();
+            String[] names = new String[n];
+            for (int i = 0; i < n; i++) {
+                byte[] bytes = new byte[head.getInt()];
+                head.get(bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            long dataStart = align(head.position());
+            long dataBytes = 4L * n * n * matrixCount;
+            if (dataStart + dataBytes > size) {
+                throw new IOException("Distance matrix file is truncated");
+            }
+            int chunkCount = (int) ((dataBytes + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                long offset = (long) c << CHUNK_BITS;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + offset,
+                        Math.min(1L << CHUNK_BITS, dataBytes - offset));
+            }
+            // a mapping stays valid after its channel is closed
+            return new DistanceMatrix(names, matrixCount, chunks, dataStart);
+        }
+    }
+
+    /**
+     * @return - the number of vertices in the matrix
+     */
+    public int getVertexCount() {
+        return this.names.length;
+    }
+
+    /**
+     * checks whether this matrix was saved for exactly the given vertices
+     * @param vertexNames - the names of the vertices
+     * @return - true if the matrix has a row for each of them and no others
+     */
+    public boolean hasVertices(Set<String> vertexNames) {
+        return vertexNames.size() == this.names.length && this.ids.keySet().equals(vertexNames);
+    }
+
+    /**
+     * @return - the number of matrices in the file, one per weight function
+     */
+    public int getMatrixCount() {
+        return this.matrixCount;
+    }
+
+    /**
+     * looks up the shortest distance between two vertices
+     * @param matrix - the index of the weight function the distance was measured with
+     * @param source - the name of the source vertex
+     * @param destination - the name of the destination vertex
+     * @return - the distance, or infinity if there is no path
+     */
+    public float getDistance(int matrix, String source, String destination) {
+        if (matrix < 0 || matrix >= this.matrixCount) {
+            throw new IllegalArgumentException("No such matrix: " + matrix);
+        }
+        Integer s = this.ids.get(source);
+        Integer t = this.ids.get(destination);
+        if (s == null || t == null) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        long n = this.names.length;
+        long offset = 4L * ((matrix * n + s) * n + t);
+        return this.chunks[(int) (offset >>> CHUNK_BITS)].getFloat((int) (offset & ((1L << CHUNK_BITS) - 1)));
+    }
+
+    /**
+     * @return - the header: magic number, version, vertex count, matrix count
+     * and the length-prefixed UTF-8 name of each vertex, padded to a multiple of 4 bytes
+     */
+    private static <V, E> ByteBuffer encodeHeader(CompiledGraph<V, E> graph, int matrixCount) {
+        int n = graph.getVertexCount();
+        byte[][] names = new byte[n][];
+        long length = 16;
+        for (int v = 0; v < n; v++) {
+            names[v] = graph.getVertex(v).toString().getBytes(StandardCharsets.UTF_8);
+            length += 4 + names[v].length;
+        }
+        if (align(length) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many vertices for a distance matrix");
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) align(length));
+        header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(matrixCount);
+        for (byte[] name : names) {
+            header.putInt(name.length).put(name);
+        }
+        header.position(0);
+        return header;
+    }
+
+    private static long align(long position) {
+        return (position + 3) & ~3L;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
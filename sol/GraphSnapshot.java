@@ -0,0 +1,298 @@
+package sol;
+
+import src.City;
+import src.RouteMetric;
+import src.Transport;
+import src.TransportType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * A binary file holding a compiled travel graph, so a new process can answer
+ * route queries without parsing CSV files. The file has a versioned header,
+ * a string table of city names, and then the CSR arrays of the graph:
+ * vertex offsets, edge targets, transport types, prices and durations, each
+ * section starting at a multiple of 8 bytes. Opening a snapshot maps the file.
+ * City objects are created for every vertex. The offsets and targets are
+ * copied out of the mapping, because a CompiledGraph keeps them in int
+ * arrays and builds its reverse index from them, so opening still takes
+ * time and heap in proportion to the number of transports, 8 bytes each.
+ * The types, prices and durations stay in the mapping. Transports are
+ * created from it only when a path needs them. The weight and mask arrays
+ * the engines search are filled from it the first time a search asks for
+ * them, so no Transport has to exist for a search to run. Most direct
+ * routes are found by BFS, which needs no weights.
+ */
+public class GraphSnapshot {
+    private static final int MAGIC = 0x54504753; // "TPGS"
+    private static final int VERSION = 1;
+    // sections are mapped in windows of 2^WINDOW_BITS bytes, a multiple of every element size
+    private static final int WINDOW_BITS = 30;
+    private static final int WINDOW_BYTES = 1 << WINDOW_BITS;
+
+    /**
+     * writes a compiled travel graph to a snapshot file. A graph changed
+     * since it was compiled is compacted first, so its edges are written in
+     * CSR order
+     * @param compiled - the graph to save
+     * @param file - the file to write
+     * @throws IOException if the file could not be written
+     */
+    public static void save(CompiledGraph<City, Transport> compiled, Path file) throws IOException {
+        CompiledGraph<City, Transport> graph = compiled.compact();
+        int n = graph.getVertexCount();
+        int m = graph.getEdgeCount();
+        double[] minutes = graph.weights(RouteMetric.FASTEST.getWeight());
+        double[] prices = graph.weights(RouteMetric.CHEAPEST.getWeight());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+            out.buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m);
+            for (int v = 0; v < n; v++) {
+                byte[] name = graph.getVertex(v).toString().getBytes(StandardCharsets.UTF_8);
+                out.ensure(4 + name.length);
+                out.buffer.putInt(name.length);
+                out.buffer.put(name);
+            }
+            out.align();
+            for (int v = 0, offset = 0; v <= n; v++) {
+                out.ensure(4);
+                out.buffer.putInt(offset);
+                if (v < n) {
+                    offset += graph.getOutDegree(v);
+                }
+            }
+            out.align();
+            for (int e = 0; e < m; e++) {
+                out.ensure(4);
+                out.buffer.putInt(graph.getTarget(e));
+            }
+            out.align();
+            for (int e = 0; e < m; e++) {
+                out.ensure(1);
+                out.buffer.put((byte) graph.getEdge(e).getType().ordinal());
+            }
+            out.align();
+            // the weight arrays can be longer than the edges, with room for ones added later
+            for (int e = 0; e < m; e++) {
+                out.ensure(8);
+                out.buffer.putDouble(prices[e]);
+            }
+            for (int e = 0; e < m; e++) {
+                out.ensure(8);
+                out.buffer.putDouble(minutes[e]);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * opens a snapshot file written by save
+     * @param file - the file to open
+     * @return - a compiled graph backed by the contents of the file
+     * @throws IOException if the file could not be read or is not a snapshot
+     */
+    public static CompiledGraph<City, Transport> open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 16) {
+                throw new IOException("Not a graph snapshot file");
+            }
+            MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, WINDOW_BYTES));
+            head.order(ByteOrder.LITTLE_ENDIAN);
+            if (head.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot file");
+            }
+            if (head.getInt() != VERSION) {
+                throw new IOException("Unsupported graph snapshot version");
+            }
+            int n = head.getInt();
+            int m = head.getInt();
+            if (n < 0 || m < 0) {
+                throw new IOException("Graph snapshot file is corrupt");
+            }
+            City[] cities = new City[n];
+            for (int v = 0; v < n; v++) {
+                int length = head.remaining() < 4 ? -1 : head.getInt();
+                if (length < 0 || length > head.remaining()) {
+                    throw new IOException("Graph snapshot file is corrupt");
+                }
+                byte[] name = new byte[length];
+                head.get(name);
+                cities[v] = new City(new String(name, StandardCharsets.UTF_8));
+            }
+            long position = align(head.position());
+            long expected = position + align(4L * (n + 1)) + align(4L * m) + align(m) + 16L * m;
+            if (expected > size) {
+                throw new IOException("Graph snapshot file is truncated");
+            }
+
+            int[] offsets = new int[n + 1];
+            position = readInts(channel, position, offsets);
+            int[] targets = new int[m];
+            position = readInts(channel, position, targets);
+            if (offsets[0] != 0 || offsets[n] != m) {
+                throw new IOException("Graph snapshot file is corrupt");
+            }
+            for (int v = 0; v < n; v++) {
+                if (offsets[v] > offsets[v + 1]) {
+                    throw new IOException("Graph snapshot file is corrupt");
+                }
+            }
+            for (int target : targets) {
+                if (target < 0 || target >= n) {
+                    throw new IOException("Graph snapshot file is corrupt");
+                }
+            }
+            Section types = new Section(channel, position, m);
+            position = align(position + m);
+            Section prices = new Section(channel, position, 8L * m);
+            Section minutes = new Section(channel, position + 8L * m, 8L * m);
+            TransportType[] typeValues = TransportType.values();
+            for (long e = 0; e < m; e++) {
+                if (types.getByte(e) < 0 || types.getByte(e) >= typeValues.length) {
+                    throw new IOException("Graph snapshot file is corrupt");
+                }
+            }
+
+            CompiledGraph<City, Transport> graph = CompiledGraph.fromArrays(cities, offsets, targets,
+                    new EdgeFactory(cities, offsets, targets, types, prices, minutes, typeValues));
+            graph.putWeightSource(RouteMetric.FASTEST.getWeight(), e -> minutes.getDouble(8L * e));
+            graph.putWeightSource(RouteMetric.CHEAPEST.getWeight(), e -> prices.getDouble(8L * e));
+            graph.putMaskSource(Transport.TYPE_MASK, e -> typeValues[types.getByte(e)].getMask());
+            return graph;
+        }
+    }
+
+    /**
+     * a section of a snapshot file, mapped in windows so it may be larger
+     * than one mapping can be. Mappings stay valid after the file is closed.
+     */
+    private static class Section {
+        private final MappedByteBuffer[] windows;
+
+        Section(FileChannel channel, long position, long bytes) throws IOException {
+            this.windows = new MappedByteBuffer[(int) ((bytes + WINDOW_BYTES - 1) >>> WINDOW_BITS)];
+            for (int i = 0; i < this.windows.length; i++) {
+                long from = (long) i << WINDOW_BITS;
+                this.windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + from,
+                        Math.min(WINDOW_BYTES, bytes - from));
+                this.windows[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        byte getByte(long offset) {
+            return this.windows[(int) (offset >>> WINDOW_BITS)].get((int) (offset & (WINDOW_BYTES - 1)));
+        }
+
+        double getDouble(long offset) {
+            return this.windows[(int) (offset >>> WINDOW_BITS)].getDouble((int) (offset & (WINDOW_BYTES - 1)));
+        }
+    }
+
+    /**
+     * creates the Transport with a given edge id from the snapshot arrays and mapping
+     */
+    private static class EdgeFactory implements IntFunction<Transport> {
+        private final City[] cities;
+        private final int[] offsets;
+        private final int[] targets;
+        private final Section types;
+        private final Section prices;
+        private final Section minutes;
+        private final TransportType[] typeValues;
+
+        EdgeFactory(City[] cities, int[] offsets, int[] targets, Section types, Section prices,
+                    Section minutes, TransportType[] typeValues) {
+            this.cities = cities;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.types = types;
+            this.prices = prices;
+            this.minutes = minutes;
+            this.typeValues = typeValues;
+        }
+
+        @Override
+        public Transport apply(int e) {
+            // the source is the vertex whose range of edge ids contains e
+            int source = Arrays.binarySearch(this.offsets, e);
+            if (source < 0) {
+                source = -source - 2;
+            } else {
+                // skip vertices without edges, which share their offset with the next vertex
+                while (this.offsets[source + 1] == e) {
+                    source++;
+                }
+            }
+            return new Transport(this.cities[source], this.cities[this.targets[e]],
+                    this.typeValues[this.types.getByte(e)], this.prices.getDouble(8L * e),
+                    this.minutes.getDouble(8L * e));
+        }
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static long readInts(FileChannel channel, long position, int[] values) throws IOException {
+        int done = 0;
+        while (done < values.length) {
+            int count = Math.min(values.length - done, WINDOW_BYTES / 4);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values, done, count);
+            position += 4L * count;
+            done += count;
+        }
+        return align(position);
+    }
+
+    /**
+     * a little-endian output buffer that is flushed to the channel as it fills up
+     */
+    private static class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long written;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (this.buffer.remaining() < bytes) {
+                this.flush();
+                if (this.buffer.remaining() < bytes) {
+                    throw new IOException("City name too long for a graph snapshot");
+                }
+            }
+        }
+
+        void align() throws IOException {
+            long position = this.written + this.buffer.position();
+            int padding = (int) (GraphSnapshot.align(position) - position);
+            this.ensure(padding);
+            for (int i = 0; i < padding; i++) {
+                this.buffer.put((byte) 0);
+            }
+        }
+
+        void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.written += this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+    }
+}
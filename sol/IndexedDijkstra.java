@@ -0,0 +1,232 @@
+package sol;
+
+import src.IDijkstra;
+import src.IGraph;
+import src.IIndexedQueue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A point-to-point Dijkstra engine over the CompiledGraph of a graph. It keeps
+ * an indexed priority queue with true decrease-key, only initializes the
+ * vertices it reaches, and stops as soon as the destination is settled, so the
+ * cost of a query depends on how far the search has to go rather than on the
+ * size of the graph. The queue implementation is chosen with a QueueStrategy.
+ * Searches can be restricted to the edges allowed by a mask, which costs one
+ * byte load per edge rather than a copy of the graph.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public class IndexedDijkstra<V, E> implements IDijkstra<V, E> {
+    private final QueueStrategy strategy;
+    // each thread reuses its own arrays across queries on the same graph
+    private final ThreadLocal<SearchSpace> spaces;
+
+    /**
+     * a constructor for an IndexedDijkstra that uses a 4-ary heap
+     */
+    public IndexedDijkstra() {
+        this(QueueStrategy.QUATERNARY_HEAP);
+    }
+
+    /**
+     * a constructor for the IndexedDijkstra class
+     * @param strategy - the priority queue used by the search
+     */
+    public IndexedDijkstra(QueueStrategy strategy) {
+        this.strategy = strategy;
+        this.spaces = new ThreadLocal<>();
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between
+     * two vertices
+     * @param graph       the IGraph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight) {
+        return this.getShortestPath(CompiledGraph.of(graph), source, destination, edgeWeight);
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between two vertices
+     * of a CompiledGraph
+     * @param graph - a CompiledGraph including the vertices
+     * @param source - the source vertex
+     * @param destination - the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    public List<E> getShortestPath(CompiledGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight) {
+        int s = graph.getId(source);
+        int t = graph.getId(destination);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        double[] weights = graph.weights(edgeWeight);
+        SearchSpace space = this.getSearchSpace(graph, edgeWeight);
+        if (this.search(graph, space, s, t, weights, null, 0)) {
+            return graph.buildPath(space.getParentEdges(), t);
+        }
+        return new LinkedList<>();
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between two vertices
+     * that only uses the edges allowed by a mask
+     * @param graph       the IGraph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @param edgeMask - a function that gives the mask bits of an edge
+     * @param allowed - the mask of the edges the path may use
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight, ToIntFunction<E> edgeMask, int allowed) {
+        return this.getShortestPath(CompiledGraph.of(graph), source, destination, edgeWeight, edgeMask, allowed);
+    }
+
+    /**
+     * returns the path with the lowest total edge weight between two vertices
+     * of a CompiledGraph that only uses the edges allowed by a mask
+     * @param graph - a CompiledGraph including the vertices
+     * @param source - the source vertex
+     * @param destination - the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @param edgeMask - a function that gives the mask bits of an edge
+     * @param allowed - the mask of the edges the path may use
+     * @return - a list of edges corresponding to the path with the lowest
+     * total edge weight between two vertices, or empty if there is none
+     */
+    public List<E> getShortestPath(CompiledGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight, ToIntFunction<E> edgeMask, int allowed) {
+        int s = graph.getId(source);
+        int t = graph.getId(destination);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        double[] weights = graph.weights(edgeWeight);
+        SearchSpace space = this.getSearchSpace(graph, edgeWeight);
+        if (this.search(graph, space, s, t, weights, graph.masks(edgeMask), allowed)) {
+            return graph.buildPath(space.getParentEdges(), t);
+        }
+        return new LinkedList<>();
+    }
+
+    /**
+     * runs a search from a source to every vertex it can reach and keeps the
+     * result, so paths to any number of destinations can be read from it
+     * @param graph - the IGraph including the vertices
+     * @param source - the source vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @return - the shortest-path tree rooted at the source
+     */
+    public ShortestPathTree<V, E> getShortestPathTree(IGraph<V, E> graph, V source,
+                                                      Function<E, Double> edgeWeight) {
+        return this.getShortestPathTree(CompiledGraph.of(graph), source, edgeWeight);
+    }
+
+    /**
+     * runs a search from a source to every vertex of a CompiledGraph it can reach
+     * @param graph - a CompiledGraph including the vertices
+     * @param source - the source vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @return - the shortest-path tree rooted at the source
+     */
+    public ShortestPathTree<V, E> getShortestPathTree(CompiledGraph<V, E> graph, V source,
+                                                      Function<E, Double> edgeWeight) {
+        int s = graph.getId(source);
+        if (s < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        double[] weights = graph.weights(edgeWeight);
+        SearchSpace space = this.getSearchSpace(graph, edgeWeight);
+        this.search(graph, space, s, -1, weights, null, 0);
+        return new ShortestPathTree<>(graph, s, space, weights);
+    }
+
+    /**
+     * @return - the number of vertices settled by the last search on this thread
+     */
+    public int getLastSettledCount() {
+        SearchSpace space = this.spaces.get();
+        return space == null ? 0 : space.getSettledCount();
+    }
+
+    /**
+     * gets this thread's search space for a graph, making a new one when the
+     * graph (or the weight bound a bucket queue was sized for) has changed
+     * @param graph - the graph to be searched
+     * @param edgeWeight - the weight function of the search
+     * @return - a search space for the graph
+     */
+    protected SearchSpace getSearchSpace(CompiledGraph<V, E> graph, Function<E, Double> edgeWeight) {
+        long bound = this.strategy == QueueStrategy.DIAL ? graph.getIntegralBound(edgeWeight) : -1;
+        SearchSpace space = this.spaces.get();
+        if (space == null || !space.fits(graph, bound)) {
+            space = new SearchSpace(graph, this.strategy.create(graph.getVertexCount(), bound), bound);
+            this.spaces.set(space);
+        }
+        return space;
+    }
+
+    /**
+     * runs Dijkstra's algorithm from s until t is settled or the queue runs out
+     * @param graph - the graph to search
+     * @param space - the search space, which is reset first
+     * @param s - the id of the source vertex
+     * @param t - the id of the destination vertex, or -1 to reach every vertex
+     * @param weights - the weight of each edge
+     * @param masks - the mask of each edge, or null to use every edge
+     * @param allowed - the mask of the edges the search may use
+     * @return - true if t was reached
+     */
+    private boolean search(CompiledGraph<V, E> graph, SearchSpace space, int s, int t, double[] weights,
+                           byte[] masks, int allowed) {
+        space.reset();
+        IIndexedQueue toCheck = space.getQueue();
+        space.update(s, 0.0, -1);
+        toCheck.insertOrDecrease(s, 0.0);
+        while (!toCheck.isEmpty()) {
+            int checking = toCheck.poll();
+            space.settle();
+            if (checking == t) {
+                return true;
+            }
+            double base = space.getDist(checking);
+            for (int e = graph.firstEdge(checking); e >= 0; e = graph.nextEdge(checking, e)) {
+                if (masks != null && (masks[e] & allowed) == 0) {
+                    continue;
+                }
+                int neighbor = graph.getTarget(e);
+                double temp = base + weights[e];
+                if (temp < space.getDist(neighbor)) {
+                    space.update(neighbor, temp, e);
+                    toCheck.insertOrDecrease(neighbor, temp);
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+package sol;
+
+import src.IIndexedQueue;
+
+import java.util.Arrays;
+
+/**
+ * A d-ary min-heap over the dense vertex ids of a CompiledGraph. Each id is
+ * in the heap at most once, and its key can be lowered in place, so searches
+ * never have to remove and re-add a vertex to update its priority.
+ */
+public class IndexedHeap implements IIndexedQueue {
+    private final int arity;
+    private int[] heap;
+    private double[] keys;
+    // position of each id in heap, or -1 if the id is not in the heap
+    private int[] positions;
+    private int size;
+
+    /**
+     * a constructor for a binary IndexedHeap
+     * @param capacity - the number of ids (0 to capacity - 1) the heap can hold
+     */
+    public IndexedHeap(int capacity) {
+        this(capacity, 2);
+    }
+
+    /**
+     * a constructor for the IndexedHeap class
+     * @param capacity - the number of ids (0 to capacity - 1) the heap can hold
+     * @param arity - the number of children per heap node; wider heaps are
+     *              shallower, which makes decrease-key cheaper
+     */
+    public IndexedHeap(int capacity, int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Heap arity must be at least 2");
+        }
+        this.arity = arity;
+        this.heap = new int[capacity];
+        this.keys = new double[capacity];
+        this.positions = new int[capacity];
+        Arrays.fill(this.positions, -1);
+        this.size = 0;
+    }
+
+    /**
+     * @return - true if there are no ids in the heap
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @param id - a vertex id
+     * @return - true if the id is currently in the heap
+     */
+    public boolean contains(int id) {
+        return this.positions[id] >= 0;
+    }
+
+    /**
+     * inserts an id into the heap, or lowers its key if it is already present
+     * and the new key is smaller
+     * @param id - a vertex id
+     * @param key - the priority of the id
+     */
+    @Override
+    public void insertOrDecrease(int id, double key) {
+        int pos = this.positions[id];
+        if (pos < 0) {
+            pos = this.size++;
+            this.heap[pos] = id;
+            this.positions[id] = pos;
+        } else if (key >= this.keys[id]) {
+            return;
+        }
+        this.keys[id] = key;
+        this.siftUp(pos);
+    }
+
+    /**
+     * removes and returns the id with the smallest key
+     * @return - the id with the smallest key
+     */
+    @Override
+    public int poll() {
+        int top = this.heap[0];
+        this.positions[top] = -1;
+        this.size--;
+        if (this.size > 0) {
+            int last = this.heap[this.size];
+            this.heap[0] = last;
+            this.positions[last] = 0;
+            this.siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * @return - the smallest key in the heap, or infinity if it is empty
+     */
+    @Override
+    public double peekKey() {
+        return this.size == 0 ? Double.POSITIVE_INFINITY : this.keys[this.heap[0]];
+    }
+
+    /**
+     * empties the heap, only touching the ids that are still in it
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.positions[this.heap[i]] = -1;
+        }
+        this.size = 0;
+    }
+
+    private void siftUp(int pos) {
+        int id = this.heap[pos];
+        double key = this.keys[id];
+        while (pos > 0) {
+            int parent = (pos - 1) / this.arity;
+            int parentId = this.heap[parent];
+            if (this.keys[parentId] <= key) {
+                break;
+            }
+            this.heap[pos] = parentId;
+            this.positions[parentId] = pos;
+            pos = parent;
+        }
+        this.heap[pos] = id;
+        this.positions[id] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int id = this.heap[pos];
+        double key = this.keys[id];
+        while (true) {
+            int first = this.arity * pos + 1;
+            if (first >= this.size) {
+                break;
+            }
+            // finds the child with the smallest key
+            int child = first;
+            int last = Math.min(first + this.arity, this.size);
+            for (int c = first + 1; c < last; c++) {
+                if (this.keys[this.heap[c]] < this.keys[this.heap[child]]) {
+                    child = c;
+                }
+            }
+            int childId = this.heap[child];
+            if (this.keys[childId] >= key) {
+                break;
+            }
+            this.heap[pos] = childId;
+            this.positions[childId] = pos;
+            pos = child;
+        }
+        this.heap[pos] = id;
+        this.positions[id] = pos;
+    }
+}
@@ -0,0 +1,297 @@
+package sol;
+
+import src.IGraph;
+import src.IIndexedQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Finds the k shortest loopless paths between two vertices with Yen's
+ * algorithm. The first path is given by a single reverse Dijkstra search
+ * from the destination, and every later path is the shortest of the
+ * candidates built by branching off an earlier path at one of its vertices
+ * (the spur) while blocking the edges earlier paths took there and the
+ * vertices before it. The reverse search is reused by every spur: if the
+ * reverse-tree path from the spur to the destination avoids the blocked
+ * edges and vertices, it is the spur path and no search runs at all;
+ * otherwise an A* search runs with the reverse distances as its heuristic,
+ * which stay valid lower bounds however many edges are blocked.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public class KShortestPaths<V, E> {
+    // each thread reuses its own arrays across spur searches on the same graph
+    private final ThreadLocal<SearchSpace> spaces;
+
+    /**
+     * a constructor for the KShortestPaths class
+     */
+    public KShortestPaths() {
+        this.spaces = new ThreadLocal<>();
+    }
+
+    /**
+     * returns up to k loopless paths between two vertices in increasing order
+     * of total edge weight
+     * @param graph - the graph including the vertices
+     * @param source - the source vertex
+     * @param destination - the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @param k - the largest number of paths to return
+     * @return - the shortest path first, followed by the next shortest ones;
+     * fewer than k if there are not that many, and empty if there is no path
+     * or the source is the destination
+     */
+    public List<List<E>> getShortestPaths(IGraph<V, E> graph, V source, V destination,
+                                          Function<E, Double> edgeWeight, int k) {
+        return this.getShortestPaths(CompiledGraph.of(graph), source, destination, edgeWeight, k);
+    }
+
+    /**
+     * returns up to k loopless paths between two vertices of a CompiledGraph
+     * in increasing order of total edge weight
+     * @param graph - a CompiledGraph including the vertices
+     * @param source - the source vertex
+     * @param destination - the destination vertex
+     * @param edgeWeight - A Function object that extracts the weight
+     *                   (a double) from an edge
+     * @param k - the largest number of paths to return
+     * @return - the shortest path first, followed by the next shortest ones
+     */
+    public List<List<E>> getShortestPaths(CompiledGraph<V, E> graph, V source, V destination,
+                                          Function<E, Double> edgeWeight, int k) {
+        int s = graph.getId(source);
+        int t = graph.getId(destination);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("Number of routes must be positive");
+        }
+        List<List<E>> paths = new ArrayList<>();
+        if (s == t) {
+            return paths;
+        }
+        double[] weights = graph.weights(edgeWeight);
+        int[] towards = new int[graph.getVertexCount()];
+        double[] remaining = Landmarks.distances(graph, weights, t, true, towards, null);
+        if (remaining[s] == Double.POSITIVE_INFINITY) {
+            return paths;
+        }
+        Spurs spurs = new Spurs(graph, weights, t, remaining, towards, this.getSearchSpace(graph));
+
+        List<int[]> found = new ArrayList<>();
+        found.add(spurs.treePath(s, new int[0], 0));
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        Set<List<Integer>> seen = new HashSet<>();
+        seen.add(asList(found.get(0)));
+        while (found.size() < k) {
+            int[] previous = found.get(found.size() - 1);
+            double rootCost = 0;
+            for (int i = 0; i < previous.length; i++) {
+                int spur = graph.getSource(previous[i]);
+                spurs.block(found, previous, i);
+                int[] path = spurs.spurPath(spur, previous, i);
+                if (path != null && seen.add(asList(path))) {
+                    candidates.add(new Candidate(path, rootCost + spurs.cost));
+                }
+                rootCost += weights[previous[i]];
+            }
+            Candidate next = candidates.poll();
+            if (next == null) {
+                break;
+            }
+            found.add(next.edges);
+        }
+        for (int[] path : found) {
+            LinkedList<E> edges = new LinkedList<>();
+            for (int e : path) {
+                edges.add(graph.getEdge(e));
+            }
+            paths.add(edges);
+        }
+        return paths;
+    }
+
+    private SearchSpace getSearchSpace(CompiledGraph<V, E> graph) {
+        SearchSpace space = this.spaces.get();
+        if (space == null || !space.fits(graph, -1)) {
+            space = new SearchSpace(graph, new IndexedHeap(graph.getVertexCount(), 4), -1);
+            this.spaces.set(space);
+        }
+        return space;
+    }
+
+    private static List<Integer> asList(int[] path) {
+        List<Integer> list = new ArrayList<>(path.length);
+        for (int e : path) {
+            list.add(e);
+        }
+        return list;
+    }
+
+    /**
+     * a candidate path and its total weight
+     */
+    private static class Candidate implements Comparable<Candidate> {
+        private final int[] edges;
+        private final double cost;
+
+        Candidate(int[] edges, double cost) {
+            this.edges = edges;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byCost = Double.compare(this.cost, other.cost);
+            return byCost != 0 ? byCost : Integer.compare(this.edges.length, other.edges.length);
+        }
+    }
+
+    /**
+     * finds spur paths, keeping the blocked edges and vertices of the current spur
+     */
+    private static class Spurs {
+        private final CompiledGraph<?, ?> graph;
+        private final double[] weights;
+        private final int target;
+        // the distance from each vertex to the target, and the first edge of the path there
+        private final double[] remaining;
+        private final int[] towards;
+        private final SearchSpace space;
+        // a vertex or edge is blocked when its mark equals the current stamp
+        private final int[] vertexMarks;
+        private final int[] edgeMarks;
+        private int stamp;
+        // the weight of the last path returned by spurPath
+        private double cost;
+
+        Spurs(CompiledGraph<?, ?> graph, double[] weights, int target, double[] remaining,
+              int[] towards, SearchSpace space) {
+            this.graph = graph;
+            this.weights = weights;
+            this.target = target;
+            this.remaining = remaining;
+            this.towards = towards;
+            this.space = space;
+            this.vertexMarks = new int[graph.getVertexCount()];
+            this.edgeMarks = new int[graph.getEdgeIdLimit()];
+            // nothing is blocked until the first spur
+            this.stamp = 1;
+        }
+
+        /**
+         * blocks the vertices of a path before position i, and the edge at
+         * position i of every found path that starts with the same i edges
+         */
+        void block(List<int[]> found, int[] path, int i) {
+            this.stamp++;
+            for (int j = 0; j < i; j++) {
+                this.vertexMarks[this.graph.getSource(path[j])] = this.stamp;
+            }
+            for (int[] other : found) {
+                if (other.length > i && Arrays.equals(other, 0, i, path, 0, i)) {
+                    this.edgeMarks[other[i]] = this.stamp;
+                }
+            }
+        }
+
+        /**
+         * finds the shortest path from a spur vertex to the target avoiding
+         * the blocked vertices and edges, and joins it to the root path
+         * @param spur - the spur vertex
+         * @param path - the path the spur vertex is on
+         * @param i - the position of the spur vertex on the path
+         * @return - the root path followed by the spur path, or null if there
+         * is no spur path; its spur weight is left in cost
+         */
+        int[] spurPath(int spur, int[] path, int i) {
+            int[] tree = this.treePath(spur, path, i);
+            if (tree != null) {
+                return tree;
+            }
+            return this.search(spur, path, i);
+        }
+
+        /**
+         * @return - the root path followed by the reverse-tree path from the
+         * spur to the target, or null if that path is blocked
+         */
+        int[] treePath(int spur, int[] path, int i) {
+            int length = 0;
+            for (int v = spur; v != this.target; v = this.graph.getTarget(this.towards[v])) {
+                if ((v != spur && this.vertexMarks[v] == this.stamp) || this.towards[v] < 0) {
+                    return null;
+                }
+                length++;
+            }
+            if (this.edgeMarks[this.towards[spur]] == this.stamp) {
+                return null;
+            }
+            int[] result = Arrays.copyOf(path, i + length);
+            int at = i;
+            for (int v = spur; v != this.target; v = this.graph.getTarget(this.towards[v])) {
+                result[at++] = this.towards[v];
+            }
+            this.cost = this.remaining[spur];
+            return result;
+        }
+
+        /**
+         * runs A* from the spur to the target over the unblocked part of the
+         * graph, using the distances to the target as the heuristic
+         */
+        private int[] search(int spur, int[] path, int i) {
+            SearchSpace space = this.space;
+            space.reset();
+            IIndexedQueue toCheck = space.getQueue();
+            space.update(spur, 0.0, -1);
+            toCheck.insertOrDecrease(spur, this.remaining[spur]);
+            while (!toCheck.isEmpty()) {
+                int checking = toCheck.poll();
+                space.settle();
+                if (checking == this.target) {
+                    break;
+                }
+                double base = space.getDist(checking);
+                for (int e = this.graph.firstEdge(checking); e >= 0; e = this.graph.nextEdge(checking, e)) {
+                    int neighbor = this.graph.getTarget(e);
+                    if (this.edgeMarks[e] == this.stamp || this.vertexMarks[neighbor] == this.stamp
+                            || neighbor == spur || this.remaining[neighbor] == Double.POSITIVE_INFINITY) {
+                        continue;
+                    }
+                    double temp = base + this.weights[e];
+                    if (temp < space.getDist(neighbor)) {
+                        space.update(neighbor, temp, e);
+                        toCheck.insertOrDecrease(neighbor, temp + this.remaining[neighbor]);
+                    }
+                }
+            }
+            if (!space.isReached(this.target)) {
+                return null;
+            }
+            int[] parents = space.getParentEdges();
+            int length = 0;
+            for (int v = this.target; v != spur; v = this.graph.getSource(parents[v])) {
+                length++;
+            }
+            int[] result = Arrays.copyOf(path, i + length);
+            int at = i + length;
+            for (int v = this.target; v != spur; v = this.graph.getSource(parents[v])) {
+                result[--at] = parents[v];
+            }
+            this.cost = space.getDist(this.target);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package sol;
+
+/**
+ * An enum representing the ways Landmarks can be chosen
+ */
+public enum LandmarkSelection {
+    // each new landmark is the vertex farthest from the landmarks chosen so far
+    FARTHEST("farthest"),
+    /* each new landmark is a leaf of the shortest-path tree of a random vertex,
+    reached by following the subtree whose distances are worst covered by the
+    landmarks chosen so far */
+    AVOID("avoid");
+
+    private final String label;
+
+    LandmarkSelection(String label) {
+        this.label = label;
+    }
+
+    /**
+     * accessor to get the LandmarkSelection's label, for instance "avoid" if enum is AVOID
+     */
+    public String getLabel() {
+        return this.label;
+    }
+}
@@ -0,0 +1,285 @@
+package sol;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Distance tables for a handful of landmark vertices of a CompiledGraph under
+ * one weight array. For every vertex v and landmark L the tables hold d(L, v)
+ * and d(v, L), and by the triangle inequality
+ * d(v, t) >= max(d(L, t) - d(L, v), d(v, L) - d(t, L)),
+ * which gives A* searches a lower bound on the remaining distance that never
+ * overestimates.
+ */
+public class Landmarks {
+    private final int count;
+    private final int[] landmarks;
+    // d(L_i, v) is stored at fromLandmark[v * count + i], so a vertex's bounds share a cache line
+    private final double[] fromLandmark;
+    // d(v, L_i) is stored at toLandmark[v * count + i]
+    private final double[] toLandmark;
+
+    private Landmarks(int count, int[] landmarks, double[] fromLandmark, double[] toLandmark) {
+        this.count = count;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * chooses landmarks and computes their distance tables
+     * @param graph - the graph to build the tables for
+     * @param weights - the weight of each edge
+     * @param count - the number of landmarks to choose
+     * @param selection - how landmarks are chosen
+     * @param seed - seed for the random choices made during selection
+     * @return - the landmark tables
+     */
+    public static Landmarks build(CompiledGraph<?, ?> graph, double[] weights, int count,
+                                  LandmarkSelection selection, long seed) {
+        int n = graph.getVertexCount();
+        count = Math.min(count, n);
+        int[] landmarks = new int[count];
+        double[] fromLandmark = new double[n * count];
+        double[] toLandmark = new double[n * count];
+        Landmarks result = new Landmarks(count, landmarks, fromLandmark, toLandmark);
+        if (count == 0) {
+            return result;
+        }
+
+        Random random = new Random(seed);
+        boolean[] isLandmark = new boolean[n];
+        // smallest distance from any chosen landmark, used by farthest selection
+        double[] coverage = new double[n];
+        Arrays.fill(coverage, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < count; i++) {
+            int landmark;
+            if (selection == LandmarkSelection.AVOID) {
+                landmark = result.avoid(graph, weights, i, isLandmark, random.nextInt(n));
+            } else {
+                landmark = -1;
+            }
+            if (landmark < 0) {
+                landmark = Landmarks.farthest(graph, weights, i, isLandmark, coverage, random.nextInt(n));
+            }
+            landmarks[i] = landmark;
+            isLandmark[landmark] = true;
+
+            double[] from = Landmarks.distances(graph, weights, landmark, false, null, null);
+            double[] to = Landmarks.distances(graph, weights, landmark, true, null, null);
+            for (int v = 0; v < n; v++) {
+                fromLandmark[v * count + i] = from[v];
+                toLandmark[v * count + i] = to[v];
+                coverage[v] = Math.min(coverage[v], from[v]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return - the ids of the landmark vertices
+     */
+    public int[] getLandmarks() {
+        return this.landmarks.clone();
+    }
+
+    /**
+     * picks the landmarks that give the tightest bound between two vertices
+     * @param s - the id of the source vertex
+     * @param t - the id of the destination vertex
+     * @param active - filled with the indices of the chosen landmarks
+     * @return - the number of landmarks written to active
+     */
+    public int selectActive(int s, int t, int[] active) {
+        int chosen = Math.min(active.length, this.count);
+        double[] bounds = new double[this.count];
+        Integer[] order = new Integer[this.count];
+        for (int i = 0; i < this.count; i++) {
+            bounds[i] = this.bound(i, s, t);
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(bounds[j], bounds[i]));
+        for (int i = 0; i < chosen; i++) {
+            active[i] = order[i];
+        }
+        return chosen;
+    }
+
+    /**
+     * computes a lower bound on the distance between two vertices using the
+     * given landmarks
+     * @param v - the id of the vertex the distance starts at
+     * @param t - the id of the vertex the distance ends at
+     * @param active - indices of the landmarks to use
+     * @param activeCount - the number of entries of active to use
+     * @return - a lower bound on d(v, t), or infinity if t cannot be reached from v
+     */
+    public double lowerBound(int v, int t, int[] active, int activeCount) {
+        double best = 0.0;
+        for (int j = 0; j < activeCount; j++) {
+            double bound = this.bound(active[j], v, t);
+            if (bound > best) {
+                best = bound;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * computes a lower bound on the distance between two vertices using every landmark
+     * @param v - the id of the vertex the distance starts at
+     * @param t - the id of the vertex the distance ends at
+     * @return - a lower bound on d(v, t), or infinity if t cannot be reached from v
+     */
+    public double lowerBound(int v, int t) {
+        double best = 0.0;
+        for (int i = 0; i < this.count; i++) {
+            double bound = this.bound(i, v, t);
+            if (bound > best) {
+                best = bound;
+            }
+        }
+        return best;
+    }
+
+    private double bound(int i, int v, int t) {
+        // NaN comparisons are false, so infinity minus infinity never counts as a bound
+        double best = 0.0;
+        double fromL = this.fromLandmark[t * this.count + i] - this.fromLandmark[v * this.count + i];
+        if (fromL > best) {
+            best = fromL;
+        }
+        double toL = this.toLandmark[v * this.count + i] - this.toLandmark[t * this.count + i];
+        if (toL > best) {
+            best = toL;
+        }
+        return best;
+    }
+
+    /**
+     * picks the vertex worst covered by the landmarks chosen so far; vertices
+     * no landmark reaches come first so every component gets a landmark
+     */
+    private static int farthest(CompiledGraph<?, ?> graph, double[] weights, int chosen,
+                                boolean[] isLandmark, double[] coverage, int start) {
+        if (chosen == 0) {
+            coverage = Landmarks.distances(graph, weights, start, false, null, null);
+        }
+        int best = -1;
+        for (int v = 0; v < coverage.length; v++) {
+            if (!isLandmark[v] && (best < 0 || coverage[v] > coverage[best])) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * the avoid heuristic: grows a shortest-path tree from a root, weighs each
+     * vertex by how much the current bounds underestimate its distance, and
+     * descends into the heaviest subtree that holds no landmark yet
+     * @return - the new landmark, or -1 if every subtree already has one
+     */
+    private int avoid(CompiledGraph<?, ?> graph, double[] weights, int chosen,
+                      boolean[] isLandmark, int root) {
+        int n = graph.getVertexCount();
+        int[] parentEdges = new int[n];
+        int[] settleOrder = new int[n + 1];
+        double[] dist = Landmarks.distances(graph, weights, root, false, parentEdges, settleOrder);
+        int reached = settleOrder[n];
+
+        int[] active = new int[chosen];
+        for (int i = 0; i < chosen; i++) {
+            active[i] = i;
+        }
+        double[] size = new double[n];
+        boolean[] holdsLandmark = new boolean[n];
+        // children are settled after their parents, so walking backwards sums subtrees bottom-up
+        for (int k = reached - 1; k >= 0; k--) {
+            int v = settleOrder[k];
+            if (isLandmark[v]) {
+                holdsLandmark[v] = true;
+            }
+            if (holdsLandmark[v]) {
+                size[v] = 0;
+            } else {
+                size[v] += dist[v] - this.lowerBound(root, v, active, chosen);
+            }
+            if (parentEdges[v] >= 0) {
+                int parent = graph.getSource(parentEdges[v]);
+                size[parent] += size[v];
+                holdsLandmark[parent] |= holdsLandmark[v];
+            }
+        }
+        if (holdsLandmark[root] && size[root] <= 0) {
+            return -1;
+        }
+
+        // follows the heaviest child until reaching a leaf
+        int v = root;
+        while (true) {
+            int next = -1;
+            for (int e = graph.firstEdge(v); e >= 0; e = graph.nextEdge(v, e)) {
+                int child = graph.getTarget(e);
+                if (parentEdges[child] == e && !holdsLandmark[child] && size[child] > 0
+                        && (next < 0 || size[child] > size[next])) {
+                    next = child;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            v = next;
+        }
+        return isLandmark[v] ? -1 : v;
+    }
+
+    /**
+     * runs a full Dijkstra search from a vertex
+     * @param graph - the graph to search
+     * @param weights - the weight of each edge
+     * @param root - the id of the vertex to search from
+     * @param backward - true to follow edges from target to source
+     * @param parentEdges - if not null, filled with the edge used to reach each vertex
+     * @param settleOrder - if not null, filled with the vertices in the order
+     *                    they were settled, with the count stored in the last slot
+     * @return - the distance of every vertex from (or, backward, to) the root
+     */
+    static double[] distances(CompiledGraph<?, ?> graph, double[] weights, int root,
+                              boolean backward, int[] parentEdges, int[] settleOrder) {
+        int n = graph.getVertexCount();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        if (parentEdges != null) {
+            Arrays.fill(parentEdges, -1);
+        }
+        IndexedHeap toCheck = new IndexedHeap(n, 4);
+        dist[root] = 0.0;
+        toCheck.insertOrDecrease(root, 0.0);
+        int settled = 0;
+        while (!toCheck.isEmpty()) {
+            int checking = toCheck.poll();
+            if (settleOrder != null) {
+                settleOrder[settled] = checking;
+            }
+            settled++;
+            int first = backward ? graph.firstInEdge(checking) : graph.firstEdge(checking);
+            for (int i = first; i >= 0; i = backward ? graph.nextInEdge(checking, i) : graph.nextEdge(checking, i)) {
+                int e = backward ? graph.getInEdge(i) : i;
+                int neighbor = backward ? graph.getSource(e) : graph.getTarget(e);
+                double temp = dist[checking] + weights[e];
+                if (temp < dist[neighbor]) {
+                    dist[neighbor] = temp;
+                    if (parentEdges != null) {
+                        parentEdges[neighbor] = e;
+                    }
+                    toCheck.insertOrDecrease(neighbor, temp);
+                }
+            }
+        }
+        if (settleOrder != null) {
+            settleOrder[n] = settled;
+        }
+        return dist;
+    }
+}
@@ -0,0 +1,492 @@
+package sol;
+
+import src.City;
+import src.IGraph;
+import src.IIndexedQueue;
+import src.RouteMetric;
+import src.Transport;
+import src.TransportType;
+import src.TravelCSVParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only graph of cities and transports whose transports live outside
+ * the Java heap. Adjacency is kept in compressed-sparse-row form: an int
+ * offset per city in a direct buffer, and an int target, a byte type and
+ * float price and duration per transport, 13 bytes per transport in all, in
+ * direct buffers of SEGMENT transports each. No Transport object exists until
+ * one is asked for. getShortestPath searches the buffers directly, reusing
+ * one search space per thread, and only creates Transports for the route it
+ * returns, so the heap (and with it garbage collection) only grows with the
+ * number of cities, however many transports there are. Prices and durations
+ * are stored as floats, so they are rounded to about seven significant
+ * digits. A graph is made with a Builder, or loaded straight from csv files.
+ * As an IGraph it works with every engine: the offsets and targets are then
+ * copied into a CompiledGraph, whose weight and mask arrays are only filled
+ * from the buffers when an engine asks for them, and whose transports are
+ * created as they are reached.
+ */
+public class OffHeapGraph implements IGraph<City, Transport> {
+    private static final TransportType[] TYPES = TransportType.values();
+    // transports are stored in segments of 2^SEGMENT_BITS, so no buffer is ever copied to grow it
+    private static final int SEGMENT_BITS = 16;
+    private static final int SEGMENT = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT - 1;
+    // the most transports a graph can hold, as transports are numbered with ints
+    private static final int MAX_EDGES = Integer.MAX_VALUE;
+
+    private final City[] cities;
+    private final HashMap<String, Integer> ids;
+    // outgoing transports of city v are offsets[v] to offsets[v + 1] - 1
+    private final IntBuffer offsets;
+    // transport e is at index e & SEGMENT_MASK of segment e >>> SEGMENT_BITS
+    private final IntBuffer[] targets;
+    private final ByteBuffer[] types;
+    private final FloatBuffer[] prices;
+    private final FloatBuffer[] minutes;
+    private final int edgeCount;
+    // each thread reuses its own arrays across queries
+    private final ThreadLocal<SearchSpace> spaces;
+    private CompiledGraph<City, Transport> compiled;
+
+    private OffHeapGraph(City[] cities, HashMap<String, Integer> ids, IntBuffer offsets, IntBuffer[] targets,
+                         ByteBuffer[] types, FloatBuffer[] prices, FloatBuffer[] minutes, int edgeCount) {
+        this.cities = cities;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.types = types;
+        this.prices = prices;
+        this.minutes = minutes;
+        this.edgeCount = edgeCount;
+        this.spaces = new ThreadLocal<>();
+    }
+
+    /**
+     * loads a graph from a csv of cities and any number of transport csvs,
+     * streaming the transports into off-heap buffers
+     * @param citiesFile - the filename of the cities csv
+     * @param transportFiles - the filenames of the transport csvs
+     * @return - the loaded graph
+     * @throws IOException if a file could not be read or parsed
+     */
+    public static OffHeapGraph load(String citiesFile, List<String> transportFiles) throws IOException {
+        Builder builder = new Builder();
+        TravelCSVParser parser = new TravelCSVParser();
+        parser.parseLocations(citiesFile, map -> {
+            builder.addCity(map.get("name"));
+            return null;
+        });
+        for (String file : transportFiles) {
+            parser.streamTransportation(file, builder::addTransport);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return - the number of cities in this graph
+     */
+    public int getVertexCount() {
+        return this.cities.length;
+    }
+
+    /**
+     * @return - the number of transports in this graph
+     */
+    public int getEdgeCount() {
+        return this.edgeCount;
+    }
+
+    /**
+     * @return - the number of bytes of off-heap memory holding the
+     * transports, including the unused end of the last segment
+     */
+    public long getOffHeapBytes() {
+        return 4L * (this.cities.length + 1) + 13L * SEGMENT * this.targets.length;
+    }
+
+    /**
+     * returns the City whose name corresponds to the given string
+     * @param name - A string representing the name of the city
+     * @return - the City whose name is the input string, or null if there is none
+     */
+    public City getCityFromName(String name) {
+        Integer id = this.ids.get(name);
+        return id == null ? null : this.cities[id];
+    }
+
+    /**
+     * cities can only be added with a Builder
+     */
+    @Override
+    public void addVertex(City vertex) {
+        throw new IllegalArgumentException("Cannot add a city to an off-heap graph");
+    }
+
+    /**
+     * transports can only be added with a Builder
+     */
+    @Override
+    public void addEdge(City origin, Transport edge) {
+        throw new IllegalArgumentException("Cannot add edge to an off-heap graph");
+    }
+
+    /**
+     * @return - A set of cities representing all of the vertices in this graph
+     */
+    @Override
+    public Set<City> getVertices() {
+        return new HashSet<>(Arrays.asList(this.cities));
+    }
+
+    /**
+     * @param edge A transport
+     * @return - the source City of the input Transport
+     */
+    @Override
+    public City getEdgeSource(Transport edge) {
+        return edge.getSource();
+    }
+
+    /**
+     * @param edge the transport
+     * @return - the target city of the input Transport
+     */
+    @Override
+    public City getEdgeTarget(Transport edge) {
+        return edge.getTarget();
+    }
+
+    /**
+     * gets all of the Transports stemming from a city. They are created by
+     * this call, so two calls return different Transport objects.
+     * @param fromVertex a City
+     * @return - a Set of all Transports with the input city as the source
+     */
+    @Override
+    public Set<Transport> getOutgoingEdges(City fromVertex) {
+        int v = this.idOf(fromVertex);
+        Set<Transport> edges = new HashSet<>();
+        for (int e = this.offsets.get(v); e < this.offsets.get(v + 1); e++) {
+            edges.add(this.transport(v, e));
+        }
+        return edges;
+    }
+
+    /**
+     * returns the best route between two cities, searching the off-heap buffers
+     * @param source - the source city
+     * @param destination - the destination city
+     * @param metric - the kind of route
+     * @return - a list of transports corresponding to the route, or empty if
+     * there is none or the source is the destination
+     */
+    public List<Transport> getShortestPath(City source, City destination, RouteMetric metric) {
+        return this.getShortestPath(source, destination, metric, EnumSet.allOf(TransportType.class));
+    }
+
+    /**
+     * returns the best route between two cities that only uses some kinds of
+     * transport, searching the off-heap buffers
+     * @param source - the source city
+     * @param destination - the destination city
+     * @param metric - the kind of route
+     * @param modes - the transport types the route may use
+     * @return - a list of transports corresponding to the route, or empty if
+     * there is none or the source is the destination
+     */
+    public List<Transport> getShortestPath(City source, City destination, RouteMetric metric,
+                                           Set<TransportType> modes) {
+        int s = this.idOf(source);
+        int t = this.idOf(destination);
+        int allowed = TransportType.maskOf(modes);
+        // most direct routes count every transport as one
+        FloatBuffer[] weights = metric == RouteMetric.FASTEST ? this.minutes
+                : metric == RouteMetric.CHEAPEST ? this.prices : null;
+        SearchSpace space = this.spaces.get();
+        if (space == null) {
+            space = new SearchSpace(this.cities.length, new IndexedHeap(this.cities.length, 4));
+            this.spaces.set(space);
+        }
+        space.reset();
+        IIndexedQueue toCheck = space.getQueue();
+        space.update(s, 0.0, -1);
+        toCheck.insertOrDecrease(s, 0.0);
+        while (!toCheck.isEmpty()) {
+            int checking = toCheck.poll();
+            if (checking == t) {
+                break;
+            }
+            double base = space.getDist(checking);
+            int end = this.offsets.get(checking + 1);
+            for (int e = this.offsets.get(checking); e < end; e++) {
+                int segment = e >>> SEGMENT_BITS;
+                int at = e & SEGMENT_MASK;
+                if (((1 << this.types[segment].get(at)) & allowed) == 0) {
+                    continue;
+                }
+                int neighbor = this.targets[segment].get(at);
+                double temp = base + (weights == null ? 1.0 : weights[segment].get(at));
+                if (temp < space.getDist(neighbor)) {
+                    space.update(neighbor, temp, e);
+                    toCheck.insertOrDecrease(neighbor, temp);
+                }
+            }
+        }
+        LinkedList<Transport> path = new LinkedList<>();
+        if (s == t || !space.isReached(t)) {
+            return path;
+        }
+        int[] parentEdges = space.getParentEdges();
+        for (int v = t; v != s; ) {
+            int from = this.sourceOf(parentEdges[v]);
+            path.addFirst(this.transport(from, parentEdges[v]));
+            v = from;
+        }
+        return path;
+    }
+
+    /**
+     * returns a CompiledGraph of this graph for the engines, built on the
+     * first call. Its offsets and targets are copied to the heap as int
+     * arrays; a weight or mask array is only filled from the buffers when an
+     * engine first asks for it, and Transports are created when they are
+     * first asked for.
+     * @return - a CompiledGraph with the same cities and transports as this graph
+     */
+    public synchronized CompiledGraph<City, Transport> compile() {
+        if (this.compiled == null) {
+            int[] offsetArray = new int[this.cities.length + 1];
+            this.offsets.get(0, offsetArray);
+            int[] targetArray = new int[this.edgeCount];
+            for (int segment = 0; segment < this.targets.length; segment++) {
+                int from = segment << SEGMENT_BITS;
+                this.targets[segment].get(0, targetArray, from, Math.min(SEGMENT, this.edgeCount - from));
+            }
+            CompiledGraph<City, Transport> graph = CompiledGraph.fromArrays(this.cities, offsetArray,
+                    targetArray, e -> this.transport(this.sourceOf(e), e));
+            graph.putWeightSource(RouteMetric.CHEAPEST.getWeight(),
+                    e -> this.prices[e >>> SEGMENT_BITS].get(e & SEGMENT_MASK));
+            graph.putWeightSource(RouteMetric.FASTEST.getWeight(),
+                    e -> this.minutes[e >>> SEGMENT_BITS].get(e & SEGMENT_MASK));
+            graph.putWeightSource(RouteMetric.MOST_DIRECT.getWeight(), e -> 1.0);
+            graph.putMaskSource(Transport.TYPE_MASK,
+                    e -> 1 << this.types[e >>> SEGMENT_BITS].get(e & SEGMENT_MASK));
+            this.compiled = graph;
+        }
+        return this.compiled;
+    }
+
+    /**
+     * @return - the city a transport leaves from, found by binary search of the offsets
+     */
+    private int sourceOf(int edge) {
+        int low = 0;
+        int high = this.cities.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (this.offsets.get(mid) <= edge) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private Transport transport(int source, int edge) {
+        int segment = edge >>> SEGMENT_BITS;
+        int at = edge & SEGMENT_MASK;
+        return new Transport(this.cities[source], this.cities[this.targets[segment].get(at)],
+                TYPES[this.types[segment].get(at)], this.prices[segment].get(at), this.minutes[segment].get(at));
+    }
+
+    private int idOf(City city) {
+        Integer id = city == null ? null : this.ids.get(city.toString());
+        if (id == null || this.cities[id] != city) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        return id;
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * collects cities and transports for an OffHeapGraph. Transports are
+     * staged off the heap in the order they are added, in segments that are
+     * allocated as they fill up, so no buffer is copied or left behind to
+     * grow. build sorts them by origin in place and hands the segments to the
+     * graph, so the transports are only ever held once; the origins (4 bytes a
+     * transport) are all that is dropped.
+     */
+    public static class Builder {
+        private final List<City> cities;
+        private final HashMap<String, Integer> ids;
+        private IntBuffer[] origins;
+        private IntBuffer[] targets;
+        private ByteBuffer[] types;
+        private FloatBuffer[] prices;
+        private FloatBuffer[] minutes;
+        private int size;
+
+        /**
+         * a constructor for the Builder class
+         */
+        public Builder() {
+            this.cities = new ArrayList<>();
+            this.ids = new HashMap<>();
+            this.origins = new IntBuffer[0];
+            this.targets = new IntBuffer[0];
+            this.types = new ByteBuffer[0];
+            this.prices = new FloatBuffer[0];
+            this.minutes = new FloatBuffer[0];
+        }
+
+        /**
+         * adds a city
+         * @param name - the name of the city
+         */
+        public void addCity(String name) {
+            if (this.ids.containsKey(name)) {
+                throw new IllegalArgumentException("City already in graph");
+            }
+            this.ids.put(name, this.cities.size());
+            this.cities.add(new City(name));
+        }
+
+        /**
+         * adds a transport between two cities that were already added
+         * @param origin - the name of the origin city
+         * @param destination - the name of the destination city
+         * @param type - the type of the transport
+         * @param price - the price of the transport
+         * @param duration - the duration of the transport, in minutes
+         */
+        public void addTransport(String origin, String destination, TransportType type, double price,
+                                 double duration) {
+            Integer from = this.ids.get(origin);
+            Integer to = this.ids.get(destination);
+            if (from == null || to == null) {
+                throw new IllegalArgumentException("Cannot add edge with a city that is not in the graph");
+            }
+            if (from.equals(to)) {
+                throw new IllegalArgumentException("Transport origin and destination cannot be the same.");
+            }
+            if (this.size == MAX_EDGES) {
+                throw new IllegalArgumentException("Too many transports for one graph");
+            }
+            int segment = this.size >>> SEGMENT_BITS;
+            int at = this.size & SEGMENT_MASK;
+            if (at == 0) {
+                this.addSegment(segment);
+            }
+            this.origins[segment].put(at, from);
+            this.targets[segment].put(at, to);
+            this.types[segment].put(at, (byte) type.ordinal());
+            this.prices[segment].put(at, (float) price);
+            this.minutes[segment].put(at, (float) duration);
+            this.size++;
+        }
+
+        private void addSegment(int segment) {
+            if (segment == this.origins.length) {
+                // only the small arrays of segments are copied to grow
+                int capacity = Math.max(4, 2 * segment);
+                this.origins = Arrays.copyOf(this.origins, capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+                this.types = Arrays.copyOf(this.types, capacity);
+                this.prices = Arrays.copyOf(this.prices, capacity);
+                this.minutes = Arrays.copyOf(this.minutes, capacity);
+            }
+            this.origins[segment] = allocate(4L * SEGMENT).asIntBuffer();
+            this.targets[segment] = allocate(4L * SEGMENT).asIntBuffer();
+            this.types[segment] = allocate(SEGMENT);
+            this.prices[segment] = allocate(4L * SEGMENT).asFloatBuffer();
+            this.minutes[segment] = allocate(4L * SEGMENT).asFloatBuffer();
+        }
+
+        /**
+         * sorts the transports by origin, in place, into the buffers of a new
+         * graph. The builder should not be used afterwards.
+         * @return - a graph with the added cities and transports
+         */
+        public OffHeapGraph build() {
+            int n = this.cities.size();
+            int[] fill = new int[n + 1];
+            for (int e = 0; e < this.size; e++) {
+                fill[this.origin(e) + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                fill[v + 1] += fill[v];
+            }
+            IntBuffer offsets = allocate(4L * (n + 1)).asIntBuffer();
+            offsets.put(0, fill);
+            /* an in-place counting sort: each swap moves a transport to the
+            next free slot of its origin's range, until every range is full */
+            for (int v = 0; v < n; v++) {
+                int end = offsets.get(v + 1);
+                while (fill[v] < end) {
+                    int e = fill[v];
+                    int origin = this.origin(e);
+                    if (origin == v) {
+                        fill[v]++;
+                    } else {
+                        this.swap(e, fill[origin]++);
+                    }
+                }
+            }
+            int segments = (int) ((this.size + (long) SEGMENT_MASK) >>> SEGMENT_BITS);
+            OffHeapGraph graph = new OffHeapGraph(this.cities.toArray(new City[0]), new HashMap<>(this.ids),
+                    offsets, Arrays.copyOf(this.targets, segments), Arrays.copyOf(this.types, segments),
+                    Arrays.copyOf(this.prices, segments), Arrays.copyOf(this.minutes, segments), this.size);
+            this.origins = null;
+            this.targets = null;
+            this.types = null;
+            this.prices = null;
+            this.minutes = null;
+            return graph;
+        }
+
+        private int origin(int e) {
+            return this.origins[e >>> SEGMENT_BITS].get(e & SEGMENT_MASK);
+        }
+
+        private void swap(int a, int b) {
+            int segmentA = a >>> SEGMENT_BITS;
+            int atA = a & SEGMENT_MASK;
+            int segmentB = b >>> SEGMENT_BITS;
+            int atB = b & SEGMENT_MASK;
+            int origin = this.origins[segmentA].get(atA);
+            this.origins[segmentA].put(atA, this.origins[segmentB].get(atB));
+            this.origins[segmentB].put(atB, origin);
+            int target = this.targets[segmentA].get(atA);
+            this.targets[segmentA].put(atA, this.targets[segmentB].get(atB));
+            this.targets[segmentB].put(atB, target);
+            byte type = this.types[segmentA].get(atA);
+            this.types[segmentA].put(atA, this.types[segmentB].get(atB));
+            this.types[segmentB].put(atB, type);
+            float price = this.prices[segmentA].get(atA);
+            this.prices[segmentA].put(atA, this.prices[segmentB].get(atB));
+            this.prices[segmentB].put(atB, price);
+            float duration = this.minutes[segmentA].get(atA);
+            this.minutes[segmentA].put(atA, this.minutes[segmentB].get(atB));
+            this.minutes[segmentB].put(atB, duration);
+        }
+    }
+}
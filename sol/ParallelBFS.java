@@ -0,0 +1,273 @@
+package sol;
+
+import src.IBFS;
+import src.IGraph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * A level-synchronous, direction-optimizing breadth first search for very
+ * large graphs. Each level is split into chunks that run on a ForkJoinPool,
+ * and visited vertices are claimed with an atomic update of a shared bitset so
+ * every vertex gets exactly one parent edge. While the frontier is small the
+ * search expands top-down over the outgoing edges of the frontier; once the
+ * frontier's edges outnumber a fraction of the edges still unexplored, it
+ * switches to bottom-up, where every unvisited vertex scans its incoming
+ * edges for a parent in the frontier and stops at the first one found. It
+ * switches back when the frontier shrinks again. Searches can be restricted
+ * to the edges allowed by a mask.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public class ParallelBFS<V, E> implements IBFS<V, E> {
+    // switch to bottom-up once the frontier's edges exceed 1/ALPHA of the unexplored edges
+    private static final int ALPHA = 14;
+    // switch back to top-down once the frontier holds fewer than 1/BETA of the vertices
+    private static final int BETA = 24;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * a constructor for a ParallelBFS that runs on the common ForkJoinPool
+     */
+    public ParallelBFS() {
+        this(ForkJoinPool.commonPool(), 4096);
+    }
+
+    /**
+     * a constructor for the ParallelBFS class
+     * @param pool - the pool the chunks of each level run on
+     * @param chunkSize - the number of vertices handled by one task
+     */
+    public ParallelBFS(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * returns the path with the fewest number of connecting edges
+     * between two vertices
+     * @param graph the IGraph including the vertices
+     * @param start the start vertex
+     * @param end   the end vertex
+     * @return - A list of edges corresponding to the path with the
+     * fewest number of connecting edges between the two input
+     * vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getPath(IGraph<V, E> graph, V start, V end) {
+        return this.path(CompiledGraph.of(graph), start, end, null, 0);
+    }
+
+    /**
+     * returns the path with the fewest number of connecting edges between two
+     * vertices that only uses the edges allowed by a mask
+     * @param graph the IGraph including the vertices
+     * @param start the start vertex
+     * @param end   the end vertex
+     * @param edgeMask - a function that gives the mask bits of an edge
+     * @param allowed - the mask of the edges the path may use
+     * @return - A list of edges corresponding to the path with the
+     * fewest number of connecting edges between the two input
+     * vertices, or empty if there is none
+     */
+    @Override
+    public List<E> getPath(IGraph<V, E> graph, V start, V end, ToIntFunction<E> edgeMask, int allowed) {
+        CompiledGraph<V, E> compiled = CompiledGraph.of(graph);
+        return this.path(compiled, start, end, compiled.masks(edgeMask), allowed);
+    }
+
+    private List<E> path(CompiledGraph<V, E> compiled, V start, V end, byte[] masks, int allowed) {
+        int s = compiled.getId(start);
+        int t = compiled.getId(end);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        int[] parentEdges = new int[compiled.getVertexCount()];
+        if (!this.search(compiled, s, t, parentEdges, masks, allowed)) {
+            return new LinkedList<>();
+        }
+        return compiled.buildPath(parentEdges, t);
+    }
+
+    /**
+     * runs the search level by level until t is visited or the frontier is empty
+     * @param parentEdges - filled with the edge used to reach each visited vertex
+     * @param masks - the mask of each edge, or null to use every edge
+     * @param allowed - the mask of the edges the search may use
+     * @return - true if t was reached
+     */
+    private boolean search(CompiledGraph<V, E> graph, int s, int t, int[] parentEdges,
+                           byte[] masks, int allowed) {
+        int n = graph.getVertexCount();
+        AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+        long[] frontierBits = new long[(n + 63) >>> 6];
+        int[] frontier = new int[n];
+        int[] next = new int[n];
+        AtomicInteger nextSize = new AtomicInteger();
+
+        parentEdges[s] = -1;
+        visit(visited, s);
+        frontier[0] = s;
+        int frontierSize = 1;
+        long frontierEdges = graph.getOutDegree(s);
+        long unexploredEdges = graph.getEdgeCount() - frontierEdges;
+        boolean bottomUp = false;
+
+        while (frontierSize > 0 && !isVisited(visited, t)) {
+            if (!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < n / BETA) {
+                bottomUp = false;
+            }
+            nextSize.set(0);
+            int[] current = frontier;
+            int currentSize = frontierSize;
+            int[] output = next;
+            if (bottomUp) {
+                Arrays.fill(frontierBits, 0L);
+                for (int i = 0; i < currentSize; i++) {
+                    frontierBits[current[i] >>> 6] |= 1L << current[i];
+                }
+                this.forEachChunk(n, chunk -> {
+                    int[] found = new int[this.chunkSize];
+                    int count = 0;
+                    int end = Math.min(n, (chunk + 1) * this.chunkSize);
+                    for (int v = chunk * this.chunkSize; v < end; v++) {
+                        if (isVisited(visited, v)) {
+                            continue;
+                        }
+                        for (int i = graph.firstInEdge(v); i >= 0; i = graph.nextInEdge(v, i)) {
+                            int e = graph.getInEdge(i);
+                            if (masks != null && (masks[e] & allowed) == 0) {
+                                continue;
+                            }
+                            int u = graph.getSource(e);
+                            if ((frontierBits[u >>> 6] & (1L << u)) != 0) {
+                                // only this task looks at v, so claiming it cannot fail
+                                visit(visited, v);
+                                parentEdges[v] = e;
+                                found[count++] = v;
+                                break;
+                            }
+                        }
+                    }
+                    int at = nextSize.getAndAdd(count);
+                    System.arraycopy(found, 0, output, at, count);
+                });
+            } else {
+                this.forEachChunk(currentSize, chunk -> {
+                    int[] found = new int[64];
+                    int count = 0;
+                    int end = Math.min(currentSize, (chunk + 1) * this.chunkSize);
+                    for (int i = chunk * this.chunkSize; i < end; i++) {
+                        int u = current[i];
+                        for (int e = graph.firstEdge(u); e >= 0; e = graph.nextEdge(u, e)) {
+                            if (masks != null && (masks[e] & allowed) == 0) {
+                                continue;
+                            }
+                            int v = graph.getTarget(e);
+                            if (!isVisited(visited, v) && visit(visited, v)) {
+                                parentEdges[v] = e;
+                                if (count == found.length) {
+                                    found = Arrays.copyOf(found, 2 * count);
+                                }
+                                found[count++] = v;
+                            }
+                        }
+                    }
+                    int at = nextSize.getAndAdd(count);
+                    System.arraycopy(found, 0, output, at, count);
+                });
+            }
+
+            frontierSize = nextSize.get();
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            frontierEdges = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                frontierEdges += graph.getOutDegree(frontier[i]);
+            }
+            unexploredEdges -= frontierEdges;
+        }
+        return isVisited(visited, t);
+    }
+
+    /**
+     * runs a task for every chunk of a range on the pool and waits for all of them
+     * @param items - the number of items to split into chunks of chunkSize
+     * @param chunkBody - called with the index of each chunk
+     */
+    private void forEachChunk(int items, IntConsumer chunkBody) {
+        int chunks = (items + this.chunkSize - 1) / this.chunkSize;
+        if (chunks == 1) {
+            chunkBody.accept(0);
+        } else if (chunks > 1) {
+            this.pool.invoke(new ChunkAction(0, chunks, chunkBody));
+        }
+    }
+
+    private static boolean isVisited(AtomicLongArray visited, int v) {
+        return (visited.get(v >>> 6) & (1L << v)) != 0;
+    }
+
+    /**
+     * atomically sets the visited bit of a vertex
+     * @return - true if this call set the bit, false if it was already set
+     */
+    private static boolean visit(AtomicLongArray visited, int v) {
+        int word = v >>> 6;
+        long bit = 1L << v;
+        while (true) {
+            long old = visited.get(word);
+            if ((old & bit) != 0) {
+                return false;
+            }
+            if (visited.compareAndSet(word, old, old | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * splits a range of chunk indices in half until a single chunk is left
+     */
+    private static class ChunkAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer chunkBody;
+
+        ChunkAction(int from, int to, IntConsumer chunkBody) {
+            this.from = from;
+            this.to = to;
+            this.chunkBody = chunkBody;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from == 1) {
+                this.chunkBody.accept(this.from);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new ChunkAction(this.from, middle, this.chunkBody),
+                    new ChunkAction(middle, this.to, this.chunkBody));
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package sol;
+
+import src.IGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A multi-criteria search that finds every Pareto-optimal route between two
+ * vertices under two edge weights at once, such as price and duration: no
+ * route it returns is beaten by another route on both weights. It is a
+ * label-setting search. Each label is a partial route ending at a vertex,
+ * and labels are taken from a queue in lexicographic order, so a label is
+ * final once it is taken. Every vertex keeps a bag of its non-dominated
+ * labels sorted by the first weight, which makes the second weight strictly
+ * decreasing. Whether a new label is dominated is therefore one binary search.
+ * Two reverse Dijkstra searches from the destination give a lower bound on
+ * each weight for the rest of the route. A label is dropped as soon as
+ * those bounds show that a route already found at the destination beats
+ * every route the label could still lead to.
+ * The same labels answer resource-constrained queries, such as the fastest
+ * route under a price limit. A label is dropped when its limited total plus
+ * the lower bound exceeds the limit. The queue is ordered by the optimized
+ * total plus its lower bound, as in A*, so the first label taken at the
+ * destination is the best route within the limit.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public class ParetoSearch<V, E> {
+
+    /**
+     * returns every Pareto-optimal route between two vertices
+     * @param graph - the graph including the vertices
+     * @param source - the source vertex
+     * @param destination - the destination vertex
+     * @param first - the first weight of each edge, which the routes are sorted by
+     * @param second - the second weight of each edge
+     * @return - the routes in increasing order of total first weight (and so
+     * decreasing order of total second weight), or empty if there is no route
+     * or the source is the destination
+     */
+    public List<List<E>> getParetoRoutes(IGraph<V, E> graph, V source, V destination,
+                                         Function<E, Double> first, Function<E, Double> second) {
+        return this.getParetoRoutes(CompiledGraph.of(graph), source, destination, first, second);
+    }
+
+    /**
+     * returns every Pareto-optimal route between two vertices of a CompiledGraph
+     * @param graph - a CompiledGraph including the vertices
+     * @param source - the source vertex
+     * @param destination - the destination vertex
+     * @param first - the first weight of each edge, which the routes are sorted by
+     * @param second - the second weight of each edge
+     * @return - the routes in increasing order of total first weight, or empty
+     * if there is no route or the source is the destination
+     */
+    public List<List<E>> getParetoRoutes(CompiledGraph<V, E> graph, V source, V destination,
+                                         Function<E, Double> first, Function<E, Double> second) {
+        int s = graph.getId(source);
+        int t = graph.getId(destination);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        List<List<E>> routes = new ArrayList<>();
+        if (s == t) {
+            return routes;
+        }
+        Labels labels = new Labels(graph, graph.weights(first), graph.weights(second), t,
+                Double.POSITIVE_INFINITY, false);
+        if (labels.bound1[s] == Double.POSITIVE_INFINITY) {
+            return routes;
+        }
+        labels.run(s);
+        for (int i = 0; i < labels.bagSizes[t]; i++) {
+            routes.add(labels.buildRoute(graph, labels.bags[t][i]));
+        }
+        return routes;
+    }
+
+    /**
+     * returns the route between two vertices with the lowest total of one
+     * weight among those whose total of another weight stays within a limit
+     * @param graph - the graph including the vertices
+     * @param source - the source vertex
+     * @param destination - the destination vertex
+     * @param objective - the weight of each edge whose total is minimized
+     * @param resource - the weight of each edge whose total is limited
+     * @param limit - the largest total resource a route may use
+     * @return - a list of edges corresponding to the best route within the
+     * limit, or empty if there is none or the source is the destination
+     */
+    public List<E> getConstrainedRoute(IGraph<V, E> graph, V source, V destination,
+                                       Function<E, Double> objective, Function<E, Double> resource, double limit) {
+        return this.getConstrainedRoute(CompiledGraph.of(graph), source, destination, objective, resource, limit);
+    }
+
+    /**
+     * returns the best route between two vertices of a CompiledGraph within a resource limit
+     * @param graph - a CompiledGraph including the vertices
+     * @param source - the source vertex
+     * @param destination - the destination vertex
+     * @param objective - the weight of each edge whose total is minimized
+     * @param resource - the weight of each edge whose total is limited
+     * @param limit - the largest total resource a route may use
+     * @return - a list of edges corresponding to the best route within the
+     * limit, or empty if there is none or the source is the destination
+     */
+    public List<E> getConstrainedRoute(CompiledGraph<V, E> graph, V source, V destination,
+                                       Function<E, Double> objective, Function<E, Double> resource, double limit) {
+        int s = graph.getId(source);
+        int t = graph.getId(destination);
+        if (s < 0 || t < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        if (s == t) {
+            return new LinkedList<>();
+        }
+        Labels labels = new Labels(graph, graph.weights(objective), graph.weights(resource), t, limit, true);
+        if (labels.bound2[s] > limit) {
+            return new LinkedList<>();
+        }
+        int found = labels.run(s);
+        return found < 0 ? new LinkedList<>() : labels.buildRoute(graph, found);
+    }
+
+    /**
+     * the labels, bags and queue of one search
+     */
+    private static class Labels {
+        private final CompiledGraph<?, ?> graph;
+        private final double[] weights1;
+        private final double[] weights2;
+        private final int target;
+        // the least total of each weight from a vertex to the target
+        private final double[] bound1;
+        private final double[] bound2;
+        // the largest total of the second weight a route may use
+        private final double limit;
+        // true to order the queue by first total plus bound and stop at the first label of the target
+        private final boolean guided;
+
+        // label arrays, indexed by label id
+        private double[] totals1 = new double[256];
+        private double[] totals2 = new double[256];
+        private int[] vertices = new int[256];
+        private int[] parents = new int[256];
+        private int[] edges = new int[256];
+        private boolean[] dominated = new boolean[256];
+        private int count;
+
+        // the non-dominated labels of each vertex, by increasing first total
+        private final int[][] bags;
+        private final int[] bagSizes;
+
+        // a binary heap of label ids in lexicographic order of their totals
+        private int[] heap = new int[256];
+        private int heapSize;
+
+        Labels(CompiledGraph<?, ?> graph, double[] weights1, double[] weights2, int target,
+               double limit, boolean guided) {
+            int n = graph.getVertexCount();
+            this.graph = graph;
+            this.weights1 = weights1;
+            this.weights2 = weights2;
+            this.target = target;
+            this.limit = limit;
+            this.guided = guided;
+            this.bound1 = Landmarks.distances(graph, weights1, target, true, null, null);
+            this.bound2 = Landmarks.distances(graph, weights2, target, true, null, null);
+            this.bags = new int[n][];
+            this.bagSizes = new int[n];
+        }
+
+        /**
+         * runs the search from a source
+         * @return - for a guided search, the first label of the target taken
+         * from the queue, or -1 if there is none; otherwise -1, with the
+         * Pareto-optimal labels of the target left in its bag
+         */
+        int run(int source) {
+            this.add(source, 0.0, 0.0, -1, -1);
+            while (this.heapSize > 0) {
+                int label = this.poll();
+                int v = this.vertices[label];
+                if (this.dominated[label]) {
+                    continue;
+                }
+                if (v == this.target) {
+                    if (this.guided) {
+                        return label;
+                    }
+                    // routes that pass through the target and come back are never better
+                    continue;
+                }
+                double base1 = this.totals1[label];
+                double base2 = this.totals2[label];
+                for (int e = this.graph.firstEdge(v); e >= 0; e = this.graph.nextEdge(v, e)) {
+                    int w = this.graph.getTarget(e);
+                    double total1 = base1 + this.weights1[e];
+                    double total2 = base2 + this.weights2[e];
+                    // also skips vertices the target cannot be reached from
+                    if (this.bound1[w] == Double.POSITIVE_INFINITY || total2 + this.bound2[w] > this.limit) {
+                        continue;
+                    }
+                    if (this.isDominated(w, total1, total2)
+                            || this.isDominated(this.target, total1 + this.bound1[w], total2 + this.bound2[w])) {
+                        continue;
+                    }
+                    this.add(w, total1, total2, label, e);
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return - the edges of the route a label stands for
+         */
+        <V, E> List<E> buildRoute(CompiledGraph<V, E> graph, int label) {
+            LinkedList<E> route = new LinkedList<>();
+            for (int l = label; this.edges[l] >= 0; l = this.parents[l]) {
+                route.addFirst(graph.getEdge(this.edges[l]));
+            }
+            return route;
+        }
+
+        /**
+         * @return - true if a label in the bag of v is at least as good as
+         * the given totals on both weights
+         */
+        private boolean isDominated(int v, double total1, double total2) {
+            int at = this.upperBound(v, total1) - 1;
+            return at >= 0 && this.totals2[this.bags[v][at]] <= total2;
+        }
+
+        /**
+         * @return - the number of labels in the bag of v whose first total is
+         * at most total1
+         */
+        private int upperBound(int v, double total1) {
+            int[] bag = this.bags[v];
+            int low = 0;
+            int high = this.bagSizes[v];
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.totals1[bag[mid]] <= total1) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * creates a label that no label in its vertex's bag dominates, removes
+         * the labels it dominates from the bag, and queues it
+         */
+        private void add(int v, double total1, double total2, int parent, int edge) {
+            if (this.count == this.totals1.length) {
+                int capacity = 2 * this.count;
+                this.totals1 = Arrays.copyOf(this.totals1, capacity);
+                this.totals2 = Arrays.copyOf(this.totals2, capacity);
+                this.vertices = Arrays.copyOf(this.vertices, capacity);
+                this.parents = Arrays.copyOf(this.parents, capacity);
+                this.edges = Arrays.copyOf(this.edges, capacity);
+                this.dominated = Arrays.copyOf(this.dominated, capacity);
+            }
+            int label = this.count++;
+            this.totals1[label] = total1;
+            this.totals2[label] = total2;
+            this.vertices[label] = v;
+            this.parents[label] = parent;
+            this.edges[label] = edge;
+
+            if (this.bags[v] == null) {
+                this.bags[v] = new int[4];
+            }
+            int[] bag = this.bags[v];
+            int size = this.bagSizes[v];
+            // labels from here on have a first total of at least total1, and
+            // those with a second total of at least total2 form a prefix of them
+            int from = this.upperBound(v, total1);
+            while (from > 0 && this.totals1[bag[from - 1]] == total1) {
+                from--;
+            }
+            int to = from;
+            while (to < size && this.totals2[bag[to]] >= total2) {
+                this.dominated[bag[to]] = true;
+                to++;
+            }
+            int newSize = size - (to - from) + 1;
+            if (newSize > bag.length) {
+                bag = Arrays.copyOf(bag, 2 * bag.length);
+                this.bags[v] = bag;
+            }
+            System.arraycopy(bag, to, bag, from + 1, size - to);
+            bag[from] = label;
+            this.bagSizes[v] = newSize;
+            this.push(label);
+        }
+
+        private boolean less(int a, int b) {
+            double key1 = this.totals1[a];
+            double key2 = this.totals1[b];
+            if (this.guided) {
+                key1 += this.bound1[this.vertices[a]];
+                key2 += this.bound1[this.vertices[b]];
+            }
+            return key1 < key2 || (key1 == key2 && this.totals2[a] < this.totals2[b]);
+        }
+
+        private void push(int label) {
+            if (this.heapSize == this.heap.length) {
+                this.heap = Arrays.copyOf(this.heap, 2 * this.heapSize);
+            }
+            int i = this.heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!this.less(label, this.heap[parent])) {
+                    break;
+                }
+                this.heap[i] = this.heap[parent];
+                i = parent;
+            }
+            this.heap[i] = label;
+        }
+
+        private int poll() {
+            int top = this.heap[0];
+            int last = this.heap[--this.heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= this.heapSize) {
+                    break;
+                }
+                if (child + 1 < this.heapSize && this.less(this.heap[child + 1], this.heap[child])) {
+                    child++;
+                }
+                if (!this.less(this.heap[child], last)) {
+                    break;
+                }
+                this.heap[i] = this.heap[child];
+                i = child;
+            }
+            this.heap[i] = last;
+            return top;
+        }
+    }
+}
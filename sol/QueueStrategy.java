@@ -0,0 +1,68 @@
+package sol;
+
+import src.IIndexedQueue;
+
+/**
+ * An enum representing the priority queues an IndexedDijkstra search can use
+ */
+public enum QueueStrategy {
+    BINARY_HEAP("binary"),
+    QUATERNARY_HEAP("4-ary"),
+    DIAL("dial"),
+    RADIX_HEAP("radix");
+
+    // the most buckets a Dial queue may have, however many vertices the graph has
+    private static final int MAX_BUCKETS = 1 << 20;
+
+    private final String label;
+
+    QueueStrategy(String label) {
+        this.label = label;
+    }
+
+    /**
+     * returns the enum corresponding to the inputted string
+     *
+     * @param strategyString string to be converted to enum
+     * @return QueueStrategy enum
+     */
+    public static QueueStrategy fromString(String strategyString) {
+        for (QueueStrategy strategy : values()) {
+            if (strategy.label.equalsIgnoreCase(strategyString)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("String: '" + strategyString
+            + "' not a valid QueueStrategy");
+    }
+
+    /**
+     * creates a queue for searching a graph. Dial's buckets only work when every
+     * edge weight is a whole number, so a 4-ary heap is used when they are not.
+     * A 4-ary heap is also used when the largest weight would need more than
+     * min(MAX_BUCKETS, 4 * capacity) buckets, so that one large weight
+     * cannot make every search space allocate a huge bucket array.
+     *
+     * @param capacity      the number of vertices in the graph
+     * @param integralBound the largest edge weight if all weights are whole
+     *                      numbers, or -1 if they are not
+     * @return an empty queue
+     */
+    public IIndexedQueue create(int capacity, long integralBound) {
+        return switch (this) {
+            case BINARY_HEAP -> new IndexedHeap(capacity, 2);
+            case QUATERNARY_HEAP -> new IndexedHeap(capacity, 4);
+            case DIAL -> integralBound >= 0 && integralBound < Math.min(MAX_BUCKETS, 4L * capacity)
+                ? new BucketQueue(capacity, integralBound)
+                : new IndexedHeap(capacity, 4);
+            case RADIX_HEAP -> new RadixHeap(capacity);
+        };
+    }
+
+    /**
+     * accessor to get the QueueStrategy's label, for instance "dial" if enum is DIAL
+     */
+    public String getLabel() {
+        return this.label;
+    }
+}
@@ -0,0 +1,157 @@
+package sol;
+
+import src.IIndexedQueue;
+
+import java.util.Arrays;
+
+/**
+ * A radix heap for monotone searches with non-negative keys. Keys are
+ * compared through their IEEE-754 bit patterns, which order non-negative
+ * doubles the same way as their values, and each id sits in the bucket named
+ * by the highest bit in which its key differs from the last polled key. An
+ * id only ever moves to lower buckets, so the total work per id is bounded by
+ * the 64 bits of its key rather than by the number of queued ids.
+ */
+public class RadixHeap implements IIndexedQueue {
+    private static final int BUCKETS = 65;
+
+    private final int[] heads;
+    private final int[] next;
+    private final int[] prev;
+    private final long[] keys;
+    // bucket holding each id, or -1 if the id is not queued
+    private final int[] bucketOf;
+    private int size;
+    // bit pattern of the last polled key; no queued key is smaller
+    private long last;
+
+    /**
+     * a constructor for the RadixHeap class
+     * @param capacity - the number of ids (0 to capacity - 1) the heap can hold
+     */
+    public RadixHeap(int capacity) {
+        this.heads = new int[BUCKETS];
+        Arrays.fill(this.heads, -1);
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.keys = new long[capacity];
+        this.bucketOf = new int[capacity];
+        Arrays.fill(this.bucketOf, -1);
+        this.size = 0;
+        this.last = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * inserts an id, or lowers its key if the new key is smaller
+     * @param id - a vertex id
+     * @param key - the priority of the id, which must not be negative or
+     *            smaller than the last polled key
+     */
+    @Override
+    public void insertOrDecrease(int id, double key) {
+        if (!(key >= 0)) {
+            throw new IllegalArgumentException("Radix heap keys must not be negative");
+        }
+        long bits = key == 0 ? 0L : Double.doubleToRawLongBits(key);
+        if (this.bucketOf[id] >= 0) {
+            if (bits >= this.keys[id]) {
+                return;
+            }
+            this.unlink(id);
+        }
+        if (bits < this.last) {
+            throw new IllegalArgumentException(
+                    "Radix heap keys must not be smaller than the last removed key");
+        }
+        this.keys[id] = bits;
+        this.link(id, this.bucketFor(bits));
+    }
+
+    @Override
+    public int poll() {
+        this.refill();
+        int id = this.heads[0];
+        this.unlink(id);
+        return id;
+    }
+
+    @Override
+    public double peekKey() {
+        if (this.size == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        this.refill();
+        return Double.longBitsToDouble(this.last);
+    }
+
+    @Override
+    public void clear() {
+        for (int b = 0; b < BUCKETS; b++) {
+            while (this.heads[b] >= 0) {
+                this.unlink(this.heads[b]);
+            }
+        }
+        this.last = 0;
+    }
+
+    private int bucketFor(long bits) {
+        return bits == this.last ? 0 : 64 - Long.numberOfLeadingZeros(bits ^ this.last);
+    }
+
+    /**
+     * makes sure bucket 0 holds the smallest key by emptying the first
+     * non-empty bucket into lower buckets around its minimum
+     */
+    private void refill() {
+        if (this.heads[0] >= 0) {
+            return;
+        }
+        int b = 1;
+        while (this.heads[b] < 0) {
+            b++;
+        }
+        long min = Long.MAX_VALUE;
+        for (int id = this.heads[b]; id >= 0; id = this.next[id]) {
+            min = Math.min(min, this.keys[id]);
+        }
+        this.last = min;
+        int id = this.heads[b];
+        while (id >= 0) {
+            int following = this.next[id];
+            this.unlink(id);
+            this.link(id, this.bucketFor(this.keys[id]));
+            id = following;
+        }
+    }
+
+    private void link(int id, int bucket) {
+        int head = this.heads[bucket];
+        this.next[id] = head;
+        this.prev[id] = -1;
+        if (head >= 0) {
+            this.prev[head] = id;
+        }
+        this.heads[bucket] = id;
+        this.bucketOf[id] = bucket;
+        this.size++;
+    }
+
+    private void unlink(int id) {
+        int bucket = this.bucketOf[id];
+        if (this.prev[id] >= 0) {
+            this.next[this.prev[id]] = this.next[id];
+        } else {
+            this.heads[bucket] = this.next[id];
+        }
+        if (this.next[id] >= 0) {
+            this.prev[this.next[id]] = this.prev[id];
+        }
+        this.bucketOf[id] = -1;
+        this.size--;
+    }
+}
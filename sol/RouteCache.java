@@ -0,0 +1,335 @@
+package sol;
+
+import src.RouteMetric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent cache of route results keyed by (source, destination, metric).
+ * The cache is split into independently locked segments, each a
+ * least-recently-used map bounded both by entry count and by an estimate of
+ * the memory its paths use. A route only displaces the least recently used
+ * entry of its segment if a frequency sketch says it has been asked for more
+ * often than that entry (TinyLFU admission), so a burst of one-off queries
+ * cannot flush the popular routes. Each segment keeps its own sketch under
+ * its own lock, as admission only ever compares keys of the same segment,
+ * so lookups of different segments never contend.
+ *
+ * @param <E> the type of the edges in a route
+ */
+public class RouteCache<E> {
+    private static final int SEGMENTS = 16;
+    // rough heap cost of an entry besides its edges: key, map entry and list headers
+    private static final long ENTRY_BYTES = 160;
+    // one reference per edge in the cached list
+    private static final long EDGE_BYTES = 8;
+
+    private final Segment<E>[] segments;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder rejections;
+
+    /**
+     * a constructor for the RouteCache class
+     * @param maxEntries - the most routes the cache holds
+     * @param maxBytes - the most memory, estimated in bytes, the cached routes may use
+     */
+    @SuppressWarnings("unchecked")
+    public RouteCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.segments = (Segment<E>[]) new Segment<?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment<>(Math.max(1, maxEntries / SEGMENTS),
+                    Math.max(1, maxBytes / SEGMENTS));
+        }
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.rejections = new LongAdder();
+    }
+
+    /**
+     * looks up a cached route
+     * @param source - the name of the source city
+     * @param destination - the name of the destination city
+     * @param metric - the kind of route
+     * @return - a copy of the cached route, or null if it is not cached
+     */
+    public List<E> get(String source, String destination, RouteMetric metric) {
+        Key key = new Key(source, destination, metric);
+        List<E> path = this.segmentFor(key).get(key);
+        if (path == null) {
+            this.misses.increment();
+            return null;
+        }
+        this.hits.increment();
+        return new ArrayList<>(path);
+    }
+
+    /**
+     * offers a route to the cache, which may turn it down if it is less
+     * popular than the entry it would displace
+     * @param source - the name of the source city
+     * @param destination - the name of the destination city
+     * @param metric - the kind of route
+     * @param path - the route
+     */
+    public void put(String source, String destination, RouteMetric metric, List<E> path) {
+        Key key = new Key(source, destination, metric);
+        List<E> copy = Collections.unmodifiableList(new ArrayList<>(path));
+        long bytes = ENTRY_BYTES + EDGE_BYTES * copy.size();
+        this.segmentFor(key).put(key, copy, bytes, this);
+    }
+
+    /**
+     * removes every route, for instance because the graph they were found in was replaced
+     */
+    public void invalidate() {
+        for (Segment<E> segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return - the number of routes in the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<E> segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return - the estimated memory, in bytes, used by the cached routes
+     */
+    public long getWeightedSize() {
+        long bytes = 0;
+        for (Segment<E> segment : this.segments) {
+            bytes += segment.bytes();
+        }
+        return bytes;
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return - the number of routes the admission policy turned down
+     */
+    public long getRejectionCount() {
+        return this.rejections.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RouteCache{" +
+            "size=" + this.size() +
+            ", hits=" + this.getHitCount() +
+            ", misses=" + this.getMissCount() +
+            ", evictions=" + this.getEvictionCount() +
+            ", rejections=" + this.getRejectionCount() +
+            '}';
+    }
+
+    private Segment<E> segmentFor(Key key) {
+        return this.segments[(key.hash >>> 16 ^ key.hash) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * the cache key of a route
+     */
+    private static final class Key {
+        private final String source;
+        private final String destination;
+        private final RouteMetric metric;
+        private final int hash;
+
+        Key(String source, String destination, RouteMetric metric) {
+            this.source = source;
+            this.destination = destination;
+            this.metric = metric;
+            this.hash = (31 * source.hashCode() + destination.hashCode()) * 31 + metric.ordinal();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.hash == other.hash && this.metric == other.metric
+                && this.source.equals(other.source) && this.destination.equals(other.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * a cached route and its estimated size
+     */
+    private static final class Entry<E> {
+        private final List<E> path;
+        private final long bytes;
+
+        Entry(List<E> path, long bytes) {
+            this.path = path;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * one independently locked part of the cache, kept in access order so the
+     * first entry is always the least recently used, with the frequency
+     * sketch of the keys that map to it
+     */
+    private static final class Segment<E> {
+        private final LinkedHashMap<Key, Entry<E>> entries;
+        private final FrequencySketch sketch;
+        private final int maxEntries;
+        private final long maxBytes;
+        private long bytes;
+
+        Segment(int maxEntries, long maxBytes) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true);
+            this.sketch = new FrequencySketch(maxEntries);
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            this.bytes = 0;
+        }
+
+        synchronized List<E> get(Key key) {
+            this.sketch.increment(key.hash);
+            Entry<E> entry = this.entries.get(key);
+            return entry == null ? null : entry.path;
+        }
+
+        synchronized void put(Key key, List<E> path, long size, RouteCache<E> cache) {
+            if (size > this.maxBytes) {
+                cache.rejections.increment();
+                return;
+            }
+            Entry<E> old = this.entries.remove(key);
+            if (old != null) {
+                this.bytes -= old.bytes;
+            } else if (this.isFull(size)) {
+                Key victim = this.entries.keySet().iterator().next();
+                if (this.sketch.frequency(key.hash) <= this.sketch.frequency(victim.hash)) {
+                    cache.rejections.increment();
+                    return;
+                }
+            }
+            Iterator<Map.Entry<Key, Entry<E>>> eldest = this.entries.entrySet().iterator();
+            while (this.isFull(size) && eldest.hasNext()) {
+                this.bytes -= eldest.next().getValue().bytes;
+                eldest.remove();
+                cache.evictions.increment();
+            }
+            this.entries.put(key, new Entry<>(path, size));
+            this.bytes += size;
+        }
+
+        private boolean isFull(long incoming) {
+            return !this.entries.isEmpty()
+                && (this.entries.size() >= this.maxEntries || this.bytes + incoming > this.maxBytes);
+        }
+
+        synchronized void clear() {
+            this.entries.clear();
+            this.sketch.clear();
+            this.bytes = 0;
+        }
+
+        synchronized int size() {
+            return this.entries.size();
+        }
+
+        synchronized long bytes() {
+            return this.bytes;
+        }
+    }
+
+    /**
+     * a count-min sketch of how often each key was requested, with four
+     * hashed counters per key capped at 15. All counters are halved after a
+     * sample of requests so old popularity fades. It is guarded by the lock
+     * of the segment it belongs to.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final int[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxEntries) {
+            int width = Integer.highestOneBit(Math.max(16, Math.min(maxEntries, 1 << 24)) * 2 - 1);
+            this.counters = new int[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * Math.max(16, maxEntries);
+        }
+
+        void increment(int hash) {
+            for (int row = 0; row < DEPTH; row++) {
+                int index = this.index(hash, row);
+                if (this.counters[row][index] < MAX_COUNT) {
+                    this.counters[row][index]++;
+                }
+            }
+            if (++this.additions >= this.sampleSize) {
+                for (int[] row : this.counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>>= 1;
+                    }
+                }
+                this.additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, this.counters[row][this.index(hash, row)]);
+            }
+            return min;
+        }
+
+        void clear() {
+            for (int[] row : this.counters) {
+                Arrays.fill(row, 0);
+            }
+            this.additions = 0;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            return (h ^ (h >>> 15)) & this.mask;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package sol;
+
+import src.IIndexedQueue;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread working memory for searches over graphs with a given number of
+ * vertices. Distances and parent edges are only reset for the vertices a
+ * search actually touches: a vertex's entries are valid only while its stamp
+ * matches the current search, so starting a new search is O(1) instead of
+ * O(number of vertices). A space keeps no reference to the graphs it
+ * searched, so a thread holding one does not keep a replaced graph alive,
+ * and it is reused for any graph of the same size, such as the next
+ * version of a graph after a transport was added or removed.
+ */
+public class SearchSpace {
+    private final double[] dist;
+    private final int[] parentEdges;
+    private final int[] stamps;
+    private final IIndexedQueue queue;
+    private final long integralBound;
+    private int stamp;
+    private int settled;
+
+    /**
+     * a constructor for the SearchSpace class
+     * @param graph - the graph that will be searched
+     * @param queue - an empty queue with room for every vertex of the graph
+     * @param integralBound - the weight bound the queue was created for
+     */
+    public SearchSpace(CompiledGraph<?, ?> graph, IIndexedQueue queue, long integralBound) {
+        this(graph.getVertexCount(), queue, integralBound);
+    }
+
+    /**
+     * a constructor for a SearchSpace over a graph that is not compiled, such
+     * as an OffHeapGraph, which keeps one space per thread for itself
+     * @param vertexCount - the number of vertices of the graph
+     * @param queue - an empty queue with room for every vertex of the graph
+     */
+    SearchSpace(int vertexCount, IIndexedQueue queue) {
+        this(vertexCount, queue, -1);
+    }
+
+    private SearchSpace(int vertexCount, IIndexedQueue queue, long integralBound) {
+        this.dist = new double[vertexCount];
+        this.parentEdges = new int[vertexCount];
+        this.stamps = new int[vertexCount];
+        this.queue = queue;
+        this.integralBound = integralBound;
+        this.stamp = 0;
+    }
+
+    /**
+     * checks whether this space can be reused for a search
+     * @param graph - the graph to be searched
+     * @param integralBound - the weight bound the search needs its queue to handle
+     * @return - true if this space was made for as many vertices and the same bound
+     */
+    public boolean fits(CompiledGraph<?, ?> graph, long integralBound) {
+        return this.dist.length == graph.getVertexCount() && this.integralBound == integralBound;
+    }
+
+    /**
+     * forgets the previous search so a new one can start
+     */
+    public void reset() {
+        this.stamp++;
+        if (this.stamp == Integer.MAX_VALUE) {
+            Arrays.fill(this.stamps, 0);
+            this.stamp = 1;
+        }
+        this.queue.clear();
+        this.settled = 0;
+    }
+
+    /**
+     * @param v - a vertex id
+     * @return - true if the current search has reached v
+     */
+    public boolean isReached(int v) {
+        return this.stamps[v] == this.stamp;
+    }
+
+    /**
+     * @param v - a vertex id
+     * @return - the best known distance to v, or infinity if it was not reached
+     */
+    public double getDist(int v) {
+        return this.stamps[v] == this.stamp ? this.dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * records a better distance to a vertex
+     * @param v - a vertex id
+     * @param dist - the new distance
+     * @param parentEdge - the edge used to reach v, or -1 for the search start
+     */
+    public void update(int v, double dist, int parentEdge) {
+        this.stamps[v] = this.stamp;
+        this.dist[v] = dist;
+        this.parentEdges[v] = parentEdge;
+    }
+
+    /**
+     * @return - the parent edge of every vertex; only entries of reached
+     * vertices are meaningful
+     */
+    public int[] getParentEdges() {
+        return this.parentEdges;
+    }
+
+    /**
+     * @return - the queue of this space
+     */
+    public IIndexedQueue getQueue() {
+        return this.queue;
+    }
+
+    /**
+     * counts a vertex as settled by the current search
+     */
+    public void settle() {
+        this.settled++;
+    }
+
+    /**
+     * @return - the number of vertices settled by the current search
+     */
+    public int getSettledCount() {
+        return this.settled;
+    }
+}
@@ -0,0 +1,314 @@
+package sol;
+
+import src.IIndexedQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The result of a single-source search: for every vertex reached from the
+ * source, its distance and the edge it was reached by. The path to any
+ * reached vertex is read off the tree by walking parent edges back to the
+ * source, so one search answers queries to every destination. A tree
+ * belongs to the CompiledGraph snapshot it was built on. Adding, removing or
+ * replacing a single edge moves the tree onto the graph made by the change
+ * and brings it up to date by recomputing only the vertices whose distance
+ * can change: for a new edge, the vertices it now improves; for a removed
+ * tree edge, the subtree hanging below it. An edge whose weights changed is
+ * replaced by a new one, which is handled as both. Reading and repairing are
+ * synchronized on the tree.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public class ShortestPathTree<V, E> {
+    // parent edge of a vertex the search did not reach
+    private static final int UNREACHED = -2;
+
+    // volatile so callers can check which snapshot the tree belongs to without locking it
+    private volatile CompiledGraph<V, E> graph;
+    private final int source;
+    // -1 at the source, UNREACHED for vertices the search did not reach
+    private final int[] parentEdges;
+    private final double[] dist;
+    // the weight array of the graph, replaced when the tree moves to another graph
+    private double[] weights;
+    private int reachedCount;
+    // created on the first repair
+    private IIndexedQueue queue;
+    private int[] marks;
+    private int[] affected;
+    private int mark;
+
+    /**
+     * copies a finished search out of a search space
+     * @param graph - the graph that was searched
+     * @param source - the id of the source vertex
+     * @param space - the search space holding the finished search
+     * @param weights - the weight of each edge used by the search
+     */
+    ShortestPathTree(CompiledGraph<V, E> graph, int source, SearchSpace space, double[] weights) {
+        int n = graph.getVertexCount();
+        int[] spaceParents = space.getParentEdges();
+        this.graph = graph;
+        this.source = source;
+        this.parentEdges = new int[n];
+        this.dist = new double[n];
+        this.weights = weights;
+        int reached = 0;
+        for (int v = 0; v < n; v++) {
+            if (space.isReached(v)) {
+                this.parentEdges[v] = spaceParents[v];
+                this.dist[v] = space.getDist(v);
+                reached++;
+            } else {
+                this.parentEdges[v] = UNREACHED;
+                this.dist[v] = Double.POSITIVE_INFINITY;
+            }
+        }
+        this.reachedCount = reached;
+    }
+
+    /**
+     * @return - the graph snapshot this tree belongs to
+     */
+    public CompiledGraph<V, E> getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * @return - the root of this tree
+     */
+    public V getSource() {
+        return this.graph.getVertex(this.source);
+    }
+
+    /**
+     * @return - the number of vertices reachable from the source, including itself
+     */
+    public synchronized int getReachedCount() {
+        return this.reachedCount;
+    }
+
+    /**
+     * @param destination - a vertex of the graph
+     * @return - true if there is a path from the source to the destination
+     */
+    public synchronized boolean isReachable(V destination) {
+        return this.parentEdges[this.idOf(destination)] != UNREACHED;
+    }
+
+    /**
+     * @param destination - a vertex of the graph
+     * @return - the total weight of the shortest path to the destination, or
+     * infinity if it cannot be reached
+     */
+    public synchronized double getDistance(V destination) {
+        return this.dist[this.idOf(destination)];
+    }
+
+    /**
+     * @param v - a vertex id
+     * @return - the distance to the vertex with that id, or infinity if it cannot be reached
+     */
+    synchronized double distanceTo(int v) {
+        return this.dist[v];
+    }
+
+    /**
+     * returns the shortest path from the source to a vertex
+     * @param destination - a vertex of the graph
+     * @return - a list of edges corresponding to the shortest path, or empty if
+     * the destination cannot be reached or is the source
+     */
+    public synchronized List<E> getPath(V destination) {
+        int t = this.idOf(destination);
+        if (this.parentEdges[t] == UNREACHED) {
+            return new LinkedList<>();
+        }
+        return this.graph.buildPath(this.parentEdges, t);
+    }
+
+    /**
+     * @return - every vertex reachable from the source, other than the source
+     */
+    public synchronized List<V> getReachedVertices() {
+        List<V> reached = new ArrayList<>(this.reachedCount);
+        for (int v = 0; v < this.parentEdges.length; v++) {
+            if (this.parentEdges[v] >= 0) {
+                reached.add(this.graph.getVertex(v));
+            }
+        }
+        return reached;
+    }
+
+    private int idOf(V vertex) {
+        int id = this.graph.getId(vertex);
+        if (id < 0) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        return id;
+    }
+
+    /**
+     * brings the tree up to date for an edge that was added to its graph
+     * @param edgeId - the id of the new edge
+     */
+    private void repair(int edgeId) {
+        int u = this.graph.getSource(edgeId);
+        int v = this.graph.getTarget(edgeId);
+        if (this.parentEdges[u] == UNREACHED) {
+            return;
+        }
+        double through = this.dist[u] + this.weights[edgeId];
+        if (through < this.dist[v]) {
+            this.prepareRepair();
+            this.reach(v, through, edgeId);
+            this.queue.insertOrDecrease(v, through);
+            this.propagate();
+        } else if (through > this.dist[v] && this.parentEdges[v] == edgeId) {
+            this.prepareRepair();
+            this.repairSubtree(v);
+        }
+    }
+
+    /**
+     * moves the tree onto the graph CompiledGraph.withEdge made from its
+     * graph, and brings it up to date for the new edge. Every other edge
+     * keeps its id in the new graph, so the tree's parent edges stay as they are
+     * @param next - the graph with the edge added
+     * @param nextWeights - the weights of next under the weight this tree minimizes
+     * @param edgeId - the id of the new edge in next
+     */
+    synchronized void edgeAdded(CompiledGraph<V, E> next, double[] nextWeights, int edgeId) {
+        this.graph = next;
+        this.weights = nextWeights;
+        this.repair(edgeId);
+    }
+
+    /**
+     * moves the tree onto the graph CompiledGraph.withoutEdge made from its
+     * graph, and recomputes the subtree below the removed edge if it was
+     * part of the tree
+     * @param next - the graph with the edge removed
+     * @param nextWeights - the weights of next under the weight this tree minimizes
+     * @param edgeId - the id the removed edge had in this tree's graph
+     */
+    synchronized void edgeRemoved(CompiledGraph<V, E> next, double[] nextWeights, int edgeId) {
+        int root = this.graph.getTarget(edgeId);
+        this.graph = next;
+        this.weights = nextWeights;
+        if (this.parentEdges[root] == edgeId) {
+            // the root is detached by repairSubtree, so its old parent edge only has to differ from UNREACHED
+            this.parentEdges[root] = -1;
+            this.prepareRepair();
+            this.repairSubtree(root);
+        }
+    }
+
+    /**
+     * moves the tree onto the graph CompiledGraph.withReplacedEdge made from
+     * its graph, handling the replacement as the old edge being removed and
+     * the new one added
+     * @param next - the graph with the edge replaced
+     * @param nextWeights - the weights of next under the weight this tree minimizes
+     * @param removedId - the id the replaced edge had in this tree's graph
+     * @param addedId - the id of the replacement in next
+     */
+    synchronized void edgeReplaced(CompiledGraph<V, E> next, double[] nextWeights, int removedId, int addedId) {
+        this.edgeRemoved(next, nextWeights, removedId);
+        this.repair(addedId);
+    }
+
+    private void prepareRepair() {
+        if (this.queue == null) {
+            int n = this.graph.getVertexCount();
+            this.queue = new IndexedHeap(n, 4);
+            this.marks = new int[n];
+            this.affected = new int[n];
+        }
+        this.mark++;
+        if (this.mark == Integer.MAX_VALUE) {
+            Arrays.fill(this.marks, 0);
+            this.mark = 1;
+        }
+    }
+
+    /**
+     * records a shorter distance to a vertex
+     */
+    private void reach(int v, double distance, int parentEdge) {
+        if (this.parentEdges[v] == UNREACHED) {
+            this.reachedCount++;
+        }
+        this.dist[v] = distance;
+        this.parentEdges[v] = parentEdge;
+    }
+
+    /**
+     * runs Dijkstra from the queued vertices, improving any vertex whose
+     * distance got shorter until the queue runs out
+     */
+    private void propagate() {
+        while (!this.queue.isEmpty()) {
+            int checking = this.queue.poll();
+            double base = this.dist[checking];
+            for (int e = this.graph.firstEdge(checking); e >= 0; e = this.graph.nextEdge(checking, e)) {
+                int neighbor = this.graph.getTarget(e);
+                double temp = base + this.weights[e];
+                if (temp < this.dist[neighbor]) {
+                    this.reach(neighbor, temp, e);
+                    this.queue.insertOrDecrease(neighbor, temp);
+                }
+            }
+        }
+    }
+
+    /**
+     * recomputes the subtree below a vertex whose tree edge got more
+     * expensive. Every vertex in the subtree is detached, seeded with its
+     * best edge from a vertex outside the subtree, and the subtree is then
+     * settled again by Dijkstra; no vertex outside it can change.
+     * @param root - the vertex the more expensive tree edge leads to
+     */
+    private void repairSubtree(int root) {
+        int count = 0;
+        this.affected[count++] = root;
+        this.marks[root] = this.mark;
+        for (int i = 0; i < count; i++) {
+            int x = this.affected[i];
+            for (int e = this.graph.firstEdge(x); e >= 0; e = this.graph.nextEdge(x, e)) {
+                int child = this.graph.getTarget(e);
+                if (this.parentEdges[child] == e && this.marks[child] != this.mark) {
+                    this.marks[child] = this.mark;
+                    this.affected[count++] = child;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int x = this.affected[i];
+            this.parentEdges[x] = UNREACHED;
+            this.dist[x] = Double.POSITIVE_INFINITY;
+        }
+        this.reachedCount -= count;
+        for (int i = 0; i < count; i++) {
+            int x = this.affected[i];
+            for (int j = this.graph.firstInEdge(x); j >= 0; j = this.graph.nextInEdge(x, j)) {
+                int e = this.graph.getInEdge(j);
+                int from = this.graph.getSource(e);
+                if (this.marks[from] != this.mark && this.parentEdges[from] != UNREACHED) {
+                    double temp = this.dist[from] + this.weights[e];
+                    if (temp < this.dist[x]) {
+                        this.reach(x, temp, e);
+                    }
+                }
+            }
+            if (this.parentEdges[x] != UNREACHED) {
+                this.queue.insertOrDecrease(x, this.dist[x]);
+            }
+        }
+        this.propagate();
+    }
+}
@@ -0,0 +1,243 @@
+package sol;
+
+import src.Connection;
+import src.IngestStats;
+import src.TransportType;
+import src.TravelCSVParser;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The scheduled departures of a timetable, answering earliest-arrival
+ * queries with the Connection Scan Algorithm. Connections are kept in one
+ * int array sorted by departure time, four ints each (origin, destination,
+ * departure, arrival), so a query is a single forward scan over contiguous
+ * memory: starting from the first connection leaving at or after the
+ * requested time, a connection improves the arrival time at its destination
+ * if its origin has been reached by the time it departs. The scan stops at
+ * the first connection departing after the destination was reached.
+ * Transfers are assumed to take no time. Prices and types are kept in
+ * parallel arrays, and Connection objects are only created for the legs of
+ * a journey.
+ */
+public class Timetable {
+    private static final TransportType[] TYPES = TransportType.values();
+
+    private final String[] names;
+    private final HashMap<String, Integer> ids;
+    // origin, destination, departure and arrival of each connection, by departure time
+    private final int[] connections;
+    private final double[] prices;
+    private final byte[] types;
+    private final int count;
+    private final IngestStats stats;
+
+    private Timetable(String[] names, HashMap<String, Integer> ids, int[] connections, double[] prices,
+                      byte[] types, int count, IngestStats stats) {
+        this.names = names;
+        this.ids = ids;
+        this.connections = connections;
+        this.prices = prices;
+        this.types = types;
+        this.count = count;
+        this.stats = stats;
+    }
+
+    /**
+     * reads a timetable file
+     * @param file - the filename of the timetable csv
+     * @return - the timetable, with its connections sorted by departure time
+     * @throws IOException if the file could not be read or a row is malformed
+     */
+    public static Timetable read(String file) throws IOException {
+        Rows rows = new Rows();
+        IngestStats stats = new TravelCSVParser().parseTimetable(file, rows::add);
+        return rows.build(stats);
+    }
+
+    /**
+     * @return - the number of connections in the timetable
+     */
+    public int getConnectionCount() {
+        return this.count;
+    }
+
+    /**
+     * @return - the number of cities connections leave from or arrive at
+     */
+    public int getCityCount() {
+        return this.names.length;
+    }
+
+    /**
+     * @return - the row count and parsing speed of the timetable file
+     */
+    public IngestStats getIngestStats() {
+        return this.stats;
+    }
+
+    /**
+     * finds the journey that arrives at a destination as early as possible
+     * @param source - the name of the city the journey starts from
+     * @param destination - the name of the destination city
+     * @param departure - the earliest time the journey may leave, in minutes after midnight
+     * @return - the connections of the journey in order, or empty if no
+     * connection reaches the destination or the source is the destination
+     */
+    public List<Connection> earliestArrival(String source, String destination, int departure) {
+        Integer s = this.ids.get(source);
+        Integer t = this.ids.get(destination);
+        if (s == null || t == null) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        LinkedList<Connection> journey = new LinkedList<>();
+        if (s.equals(t)) {
+            return journey;
+        }
+        int[] arrival = new int[this.names.length];
+        int[] via = new int[this.names.length];
+        Arrays.fill(arrival, Integer.MAX_VALUE);
+        arrival[s] = departure;
+        int[] c = this.connections;
+        for (int i = this.firstDeparting(departure); i < this.count; i++) {
+            int at = 4 * i;
+            int leaves = c[at + 2];
+            if (leaves >= arrival[t]) {
+                break;
+            }
+            if (arrival[c[at]] <= leaves && c[at + 3] < arrival[c[at + 1]]) {
+                arrival[c[at + 1]] = c[at + 3];
+                via[c[at + 1]] = i;
+            }
+        }
+        if (arrival[t] == Integer.MAX_VALUE) {
+            return journey;
+        }
+        for (int v = t; v != s; v = c[4 * via[v]]) {
+            journey.addFirst(this.getConnection(via[v]));
+        }
+        return journey;
+    }
+
+    /**
+     * @return - the index of the first connection departing at or after a time
+     */
+    private int firstDeparting(int time) {
+        int low = 0;
+        int high = this.count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.connections[4 * mid + 2] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Connection getConnection(int i) {
+        int at = 4 * i;
+        return new Connection(this.names[this.connections[at]], this.names[this.connections[at + 1]],
+                TYPES[this.types[i]], this.prices[i], this.connections[at + 2], this.connections[at + 3]);
+    }
+
+    /**
+     * the rows of a timetable file in the order they were read
+     */
+    private static class Rows {
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private int[] connections = new int[4 * 1024];
+        private double[] prices = new double[1024];
+        private byte[] types = new byte[1024];
+        private int size;
+
+        void add(String origin, String destination, TransportType type, double price,
+                 int departure, int arrival) {
+            if (this.size == this.prices.length) {
+                int capacity = 2 * this.size;
+                this.connections = Arrays.copyOf(this.connections, 4 * capacity);
+                this.prices = Arrays.copyOf(this.prices, capacity);
+                this.types = Arrays.copyOf(this.types, capacity);
+            }
+            int at = 4 * this.size;
+            this.connections[at] = this.ids.computeIfAbsent(origin, name -> this.ids.size());
+            this.connections[at + 1] = this.ids.computeIfAbsent(destination, name -> this.ids.size());
+            this.connections[at + 2] = departure;
+            this.connections[at + 3] = arrival;
+            this.prices[this.size] = price;
+            this.types[this.size] = (byte) type.ordinal();
+            this.size++;
+        }
+
+        /**
+         * sorts the rows by departure time, and connections leaving at the
+         * same time by arrival time, so instant connections come first
+         */
+        Timetable build(IngestStats stats) {
+            int[] c = this.connections;
+            int[] order = new int[this.size];
+            for (int i = 0; i < this.size; i++) {
+                order[i] = i;
+            }
+            // one stable sort on (departure, arrival), so rows that tie on both keep their file order
+            order = this.sort(order);
+            int[] sorted = new int[4 * this.size];
+            double[] sortedPrices = new double[this.size];
+            byte[] sortedTypes = new byte[this.size];
+            for (int i = 0; i < this.size; i++) {
+                int from = order[i];
+                System.arraycopy(c, 4 * from, sorted, 4 * i, 4);
+                sortedPrices[i] = this.prices[from];
+                sortedTypes[i] = this.types[from];
+            }
+            String[] names = new String[this.ids.size()];
+            for (Map.Entry<String, Integer> entry : this.ids.entrySet()) {
+                names[entry.getValue()] = entry.getKey();
+            }
+            return new Timetable(names, this.ids, sorted, sortedPrices, sortedTypes, this.size, stats);
+        }
+
+        /**
+         * a bottom-up merge sort of row indices on (departure, arrival),
+         * which is stable and never boxes a row
+         * @param order - the row indices to sort
+         * @return - the sorted indices, in order or in a second array of the same length
+         */
+        private int[] sort(int[] order) {
+            int[] from = order;
+            int[] to = new int[order.length];
+            for (int width = 1; width < from.length; width *= 2) {
+                for (int low = 0; low < from.length; low += 2 * width) {
+                    int mid = Math.min(low + width, from.length);
+                    int high = Math.min(low + 2 * width, from.length);
+                    int i = low;
+                    int j = mid;
+                    for (int k = low; k < high; k++) {
+                        // the left run wins ties, which keeps the sort stable
+                        if (i < mid && (j == high || this.compare(from[i], from[j]) <= 0)) {
+                            to[k] = from[i++];
+                        } else {
+                            to[k] = from[j++];
+                        }
+                    }
+                }
+                int[] swap = from;
+                from = to;
+                to = swap;
+            }
+            return from;
+        }
+
+        private int compare(int a, int b) {
+            int byDeparture = Integer.compare(this.connections[4 * a + 2], this.connections[4 * b + 2]);
+            return byDeparture != 0 ? byDeparture
+                    : Integer.compare(this.connections[4 * a + 3], this.connections[4 * b + 3]);
+        }
+    }
+}
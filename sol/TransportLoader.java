@@ -0,0 +1,316 @@
+package sol;
+
+import src.City;
+import src.IngestStats;
+import src.Transport;
+import src.TransportType;
+import src.TravelCSVParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads transportation files into a TravelGraph in parallel. Each plain file
+ * is split into chunks of about chunkBytes that start and end at line
+ * boundaries, and every chunk, along with every gzip-compressed file (which
+ * cannot be split), is parsed as its own task on an executor. Tasks only fill
+ * private buffers of parsed rows; the buffers are then added to the graph one
+ * at a time in file and chunk order, so the graph is only ever touched by the
+ * calling thread and the edges end up in the same order as a sequential load.
+ * Each buffer is added as soon as it and the chunks before it are parsed and
+ * dropped right after, and only a few chunks are parsed ahead of the one
+ * being added, so memory holds a bounded number of buffers however large
+ * the files are.
+ * Chunks are split at newline bytes, so plain files must not have line
+ * breaks inside quoted fields.
+ */
+public class TransportLoader {
+    // how many chunks are parsed ahead of the one being added to the graph
+    private static final int AHEAD = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+
+    private final Executor executor;
+    private final long chunkBytes;
+
+    /**
+     * a constructor for the TransportLoader class
+     * @param executor - the executor chunks are parsed on
+     * @param chunkBytes - the approximate number of bytes parsed by one task
+     */
+    public TransportLoader(Executor executor, long chunkBytes) {
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.executor = executor;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * parses transportation files and adds their transports to a graph
+     * @param graph - a graph that already holds the cities the transports connect
+     * @param paths - transportation files, which may be gzip-compressed (.gz),
+     *              and directories whose .csv and .csv.gz files are all loaded
+     * @return - the number of rows loaded and how long it took
+     * @throws IOException if a file could not be read or parsed
+     */
+    public IngestStats load(TravelGraph graph, List<Path> paths) throws IOException {
+        long start = System.nanoTime();
+        List<Chunk> chunks = new ArrayList<>();
+        for (Path file : expand(paths)) {
+            if (file.getFileName().toString().endsWith(".gz")) {
+                chunks.add(new Chunk(() -> new InputStreamReader(
+                        new GZIPInputStream(Files.newInputStream(file), 1 << 16), StandardCharsets.UTF_8), null));
+            } else {
+                this.split(file, chunks);
+            }
+        }
+
+        long rows = 0;
+        ArrayDeque<CompletableFuture<RowBuffer>> parsing = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < chunks.size() && parsing.size() < AHEAD) {
+                parsing.add(this.parseAsync(chunks.get(next++)));
+            }
+            while (!parsing.isEmpty()) {
+                RowBuffer buffer = parsing.poll().join();
+                if (next < chunks.size()) {
+                    parsing.add(this.parseAsync(chunks.get(next++)));
+                }
+                buffer.addTo(graph);
+                rows += buffer.size;
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return new IngestStats(rows, System.nanoTime() - start);
+    }
+
+    /**
+     * replaces each directory by the transportation files in it, sorted by name
+     */
+    private static List<Path> expand(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> listing = Files.list(path)) {
+                    files.addAll(listing.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return Files.isRegularFile(file) && (name.endsWith(".csv") || name.endsWith(".csv.gz"));
+                    }).sorted().collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * reads the header of a plain file and splits the rest into chunks
+     */
+    private void split(Path file, List<Chunk> chunks) throws IOException {
+        int[] columns;
+        long size;
+        List<Long> bounds = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            long bodyStart = nextLine(channel, 0);
+            try (Reader header = new InputStreamReader(new RangeInputStream(file, 0, bodyStart),
+                    StandardCharsets.UTF_8)) {
+                columns = TravelCSVParser.transportColumns(header);
+            }
+            bounds.add(bodyStart);
+            for (long at = bodyStart + this.chunkBytes; at < size; at = bounds.get(bounds.size() - 1) + this.chunkBytes) {
+                long boundary = nextLine(channel, at);
+                if (boundary >= size) {
+                    break;
+                }
+                bounds.add(boundary);
+            }
+            bounds.add(size);
+        }
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            long from = bounds.get(i);
+            long to = bounds.get(i + 1);
+            chunks.add(new Chunk(() -> new InputStreamReader(
+                    new RangeInputStream(file, from, to), StandardCharsets.UTF_8), columns));
+        }
+    }
+
+    /**
+     * @return - the offset just past the first newline at or after position,
+     * or the size of the file if there is none
+     */
+    private static long nextLine(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * opens a reader lazily, so it happens on the task's thread
+     */
+    private interface ReaderSource {
+        Reader open() throws IOException;
+    }
+
+    /**
+     * a piece of a transportation file to parse as one task
+     */
+    private static class Chunk {
+        private final ReaderSource source;
+        // the columns found in the file's header, or null if the chunk starts with the header
+        private final int[] columns;
+
+        Chunk(ReaderSource source, int[] columns) {
+            this.source = source;
+            this.columns = columns;
+        }
+    }
+
+    private CompletableFuture<RowBuffer> parseAsync(Chunk chunk) {
+        return CompletableFuture.supplyAsync(() -> {
+            RowBuffer buffer = new RowBuffer();
+            try (Reader reader = chunk.source.open()) {
+                new TravelCSVParser().streamTransportation(reader, chunk.columns, buffer::add);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            return buffer;
+        }, this.executor);
+    }
+
+    /**
+     * the parsed rows of one chunk, in column arrays
+     */
+    private static class RowBuffer {
+        private static final TransportType[] TYPES = TransportType.values();
+
+        private String[] origins = new String[1024];
+        private String[] destinations = new String[1024];
+        private byte[] types = new byte[1024];
+        private double[] prices = new double[1024];
+        private double[] durations = new double[1024];
+        private int size;
+
+        void add(String origin, String destination, TransportType type, double price, double duration) {
+            if (this.size == this.origins.length) {
+                int capacity = 2 * this.size;
+                this.origins = Arrays.copyOf(this.origins, capacity);
+                this.destinations = Arrays.copyOf(this.destinations, capacity);
+                this.types = Arrays.copyOf(this.types, capacity);
+                this.prices = Arrays.copyOf(this.prices, capacity);
+                this.durations = Arrays.copyOf(this.durations, capacity);
+            }
+            this.origins[this.size] = origin;
+            this.destinations[this.size] = destination;
+            this.types[this.size] = (byte) type.ordinal();
+            this.prices[this.size] = price;
+            this.durations[this.size] = duration;
+            this.size++;
+        }
+
+        void addTo(TravelGraph graph) {
+            // held once for the whole chunk, so each addEdge only re-enters the graph's lock
+            synchronized (graph) {
+                for (int i = 0; i < this.size; i++) {
+                    City origin = graph.getCities().get(this.origins[i]);
+                    City dest = graph.getCities().get(this.destinations[i]);
+                    graph.addEdge(origin, new Transport(origin, dest, TYPES[this.types[i]],
+                            this.prices[i], this.durations[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * reads the bytes of a file from one offset up to another with positional reads
+     */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long position;
+        private final long end;
+
+        RangeInputStream(Path file, long start, long end) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.buffer = ByteBuffer.allocate(1 << 16);
+            this.buffer.limit(0);
+            this.position = start;
+            this.end = end;
+        }
+
+        private boolean fill() throws IOException {
+            if (this.position >= this.end) {
+                return false;
+            }
+            this.buffer.clear();
+            this.buffer.limit((int) Math.min(this.buffer.capacity(), this.end - this.position));
+            int read = this.channel.read(this.buffer, this.position);
+            this.buffer.flip();
+            if (read <= 0) {
+                return false;
+            }
+            this.position += read;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!this.buffer.hasRemaining() && !this.fill()) {
+                return -1;
+            }
+            return this.buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining() && !this.fill()) {
+                return -1;
+            }
+            int count = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+}
@@ -3,17 +3,222 @@ package sol;
 import src.*;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 
 public class TravelController implements ITravelController<City, Transport> {
 
-    private TravelGraph graph;
+    /*
+    weight functions are kept as constants so the compiled graph can reuse the
+    primitive weight arrays it builds for them across queries
+     */
+    private static final Function<Transport, Double> DURATION = RouteMetric.FASTEST.getWeight();
+    private static final Function<Transport, Double> PRICE = RouteMetric.CHEAPEST.getWeight();
+    // the mask of every transport type; routes allowed to use all of them are not restricted at all
+    private static final int ALL_MODES = TransportType.maskOf(EnumSet.allOf(TransportType.class));
+    // batch groups with at least this many queries share one shortest-path tree
+    private static final int TREE_BATCH_SIZE = 4;
+    // the approximate size of the pieces transport files are split into for parallel parsing
+    private static final long LOAD_CHUNK_BYTES = 32L << 20;
+
+    /*
+    the published graph. Loads build a new graph privately and swap it in
+    here; every query reads this field once and answers from that graph, so
+    a reload never shows a query a half-built graph
+     */
+    private volatile TravelGraph graph;
+    /*
+    the graph fastest, cheapest and most direct routes are searched in when
+    one was loaded off the heap, or null. graph is then null until another
+    query needs it, and is built over this graph's compiled form
+     */
+    private volatile OffHeapGraph offHeap;
+    private IDijkstra<City, Transport> dijkstra;
+    private IBFS<City, Transport> bfs;
+    private volatile RouteCache<Transport> routeCache;
+    /*
+    the snapshot the cached routes were found in; a different one means the
+    graph changed. It is null while the route cache is being cleared, so no
+    query uses or keeps a route then
+     */
+    private volatile CompiledGraph<City, Transport> cachedSnapshot;
+    // builds the full trees of one-to-many queries, whichever engine answers single routes
+    private final IndexedDijkstra<City, Transport> treeEngine;
+    private final ParetoSearch<City, Transport> paretoSearch;
+    private final KShortestPaths<City, Transport> alternatives;
+    // recently built trees keyed by (source, metric), read without locking and changed under this controller's lock
+    private final ConcurrentHashMap<List<Object>, CachedTree> trees;
+    private volatile int treeCacheSize;
+    private Executor batchExecutor;
+    // parses the chunks of transport files, apart from batch queries; null for a pool of each load's own
+    private Executor loadExecutor;
+    private IngestStats lastIngest;
+    // all-pairs distances of the loaded graph, or null if none was saved or opened
+    private volatile DistanceMatrix distances;
+    // held while a new graph is built, so reloads are published in the order they started
+    private final Object loadLock;
+    // the scheduled departures earliestArrival searches, loaded separately from the graph
+    private volatile Timetable timetable;
 
     public TravelController() {
+        this.dijkstra = new IndexedDijkstra<>();
+        this.bfs = new BFS<>();
+        this.routeCache = new RouteCache<>(10000, 64L << 20);
+        this.treeEngine = new IndexedDijkstra<>();
+        this.paretoSearch = new ParetoSearch<>();
+        this.alternatives = new KShortestPaths<>();
+        this.trees = new ConcurrentHashMap<>();
+        this.treeCacheSize = 16;
+        this.batchExecutor = ForkJoinPool.commonPool();
+        this.loadLock = new Object();
+    }
+
+    /**
+     * sets the executor batchRoutes runs its searches on
+     * @param batchExecutor - an Executor, for instance a ForkJoinPool sized for
+     *                      the machine or a thread-per-task executor
+     */
+    public void setBatchExecutor(Executor batchExecutor) {
+        this.batchExecutor = batchExecutor;
+    }
+
+    /**
+     * sets the executor load and reload parse the chunks of transport files
+     * on. Loads run on the thread that calls load (or on the reload thread),
+     * and only wait on this executor, so it may be bounded.
+     * @param loadExecutor - an Executor, or null to give every load a
+     *                     ForkJoinPool of its own that is shut down after it
+     */
+    public void setLoadExecutor(Executor loadExecutor) {
+        this.loadExecutor = loadExecutor;
+    }
+
+    /**
+     * @return - the row count and parsing speed of the last transportation
+     * file loaded, or null if none was
+     */
+    public IngestStats getLastIngestStats() {
+        return this.lastIngest;
+    }
+
+    /**
+     * sets the cache route queries are answered from
+     * @param routeCache - a RouteCache, or null to always search
+     */
+    public void setRouteCache(RouteCache<Transport> routeCache) {
+        this.routeCache = routeCache;
+    }
+
+    /**
+     * @return - the cache route queries are answered from, or null if there is none
+     */
+    public RouteCache<Transport> getRouteCache() {
+        return this.routeCache;
+    }
+
+    /**
+     * sets how many shortest-path trees are kept for reuse. Each tree takes
+     * memory proportional to the number of cities.
+     * @param size - the number of trees to keep, or 0 to keep none
+     */
+    public synchronized void setTreeCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Tree cache size must not be negative");
+        }
+        this.treeCacheSize = size;
+        this.trimTrees();
+    }
+
+    /**
+     * sets the breadth first search used by mostDirectRoute
+     * @param bfs - an IBFS implementation, for instance a bidirectional BFS
+     */
+    public void setBFS(IBFS<City, Transport> bfs) {
+        this.bfs = bfs;
+        this.invalidateRoutes();
+    }
+
+    /**
+     * sets the shortest-path engine used by fastestRoute and cheapestRoute
+     * @param dijkstra - an IDijkstra implementation, for instance an
+     *                 IndexedDijkstra with a particular QueueStrategy
+     */
+    public void setDijkstra(IDijkstra<City, Transport> dijkstra) {
+        this.dijkstra = dijkstra;
+        this.invalidateRoutes();
+        TravelGraph graph = this.graph;
+        if (graph != null) {
+            this.preprocess(graph);
+        }
+    }
+
+    /**
+     * chooses the shortest-path engine used by fastestRoute and cheapestRoute.
+     * Engines that need preprocessing (alt, ch) are prepared for the loaded
+     * graph right away.
+     * @param engine - "dijkstra", "indexed", "bidirectional", "alt", "ch", or
+     *               the label of a QueueStrategy for an indexed engine using it
+     * @return - a message naming the engine now in use
+     */
+    @Override
+    public String useEngine(String engine) {
+        IDijkstra<City, Transport> chosen = switch (engine.toLowerCase()) {
+            case "dijkstra" -> new Dijkstra<>();
+            case "indexed" -> new IndexedDijkstra<>();
+            case "bidirectional" -> new BidirectionalDijkstra<>();
+            case "alt" -> new ALTDijkstra<>();
+            case "ch" -> new CHDijkstra<>();
+            default -> new IndexedDijkstra<>(QueueStrategy.fromString(engine));
+        };
+        this.setDijkstra(chosen);
+        return "Using " + engine.toLowerCase() + " engine for fastest and cheapest routes.";
+    }
+
+    /**
+     * rebuilds the auxiliary data of a preprocessing engine (such as the
+     * landmark tables of an ALTDijkstra) for both the duration and price of
+     * a graph
+     * @param graph - the graph queries will be answered from
+     */
+    private void preprocess(TravelGraph graph) {
+        if (this.dijkstra instanceof IPreprocessedDijkstra) {
+            IPreprocessedDijkstra<City, Transport> engine =
+                    (IPreprocessedDijkstra<City, Transport>) this.dijkstra;
+            engine.preprocess(graph, DURATION);
+            engine.preprocess(graph, PRICE);
+        }
+    }
+
+    /**
+     * makes a fully built graph the one queries are answered from, and drops
+     * everything derived from the graph it replaces. Queries that already
+     * started keep using the old graph until they finish.
+     * @param next - the new graph
+     * @param offHeap - the off-heap graph next was built over, or null
+     * @param stats - the ingest statistics of the new graph, or null
+     */
+    private void publish(TravelGraph next, OffHeapGraph offHeap, IngestStats stats) {
+        next.addListener(new GraphUpdates(next));
+        synchronized (this) {
+            this.graph = next;
+            this.offHeap = offHeap;
+            this.lastIngest = stats;
+            this.distances = null;
+            this.invalidateRoutes();
+        }
     }
 
     /**
@@ -26,40 +231,178 @@ public class TravelController implements ITravelController<City, Transport> {
      */
     @Override
     public String load(String citiesFile, String transportFile) {
+        return this.load(citiesFile, List.of(transportFile));
+    }
 
-        this.graph = new TravelGraph();
-        TravelCSVParser parser = new TravelCSVParser();
+    /**
+     * A method for creating a TravelGraph object from a csv of cities and
+     * any number of transport csvs. Transport files are split into chunks
+     * that are parsed in parallel on the load executor.
+     * @param citiesFile     the filename of the cities csv
+     * @param transportFiles the filenames of the transport csvs, which may be
+     *                       gzip-compressed, or of directories holding them
+     * @return - A string indicating whether the input files were
+     * successfully parsed or there was an error
+     */
+    @Override
+    public String load(String citiesFile, List<String> transportFiles) {
+        synchronized (this.loadLock) {
+            TravelGraph next = new TravelGraph();
+            TravelCSVParser parser = new TravelCSVParser();
 
-        // a function to serve as the input to parseLocations
-        Function<Map<String, String>, Void> addVertex = map -> {
-            this.graph.addVertex(new City(map.get("name")));
-            return null; // need explicit return null to account for Void type
-        };
+            // a function to serve as the input to parseLocations
+            Function<Map<String, String>, Void> addVertex = map -> {
+                next.addVertex(new City(map.get("name")));
+                return null; // need explicit return null to account for Void type
+            };
 
-        // a function to serve as the input to parseTransportation
-        Function<Map<String, String>, Void> addEdge = map -> {
-            City origin = this.graph.getCities().get(map.get("origin"));
-            City dest = this.graph.getCities().get(map.get("destination"));
-            TransportType transport =
-                    TransportType.fromString(map.get("type"));
-            // can I use parseDouble ???????????????????
-            double price = Double.parseDouble(map.get("price"));
-            double duration = Double.parseDouble(map.get("duration"));
-            this.graph.addEdge(origin,
-                    new Transport(origin, dest, transport, price, duration));
-            return null;
-        };
+            try {
+                /* pass in string for CSV and function to
+                create City (vertex) using city name */
+                parser.parseLocations(citiesFile, addVertex);
+            } catch (IOException e) {
+                return "Error parsing file: " + citiesFile;
+            }
+            List<Path> paths = new ArrayList<>();
+            for (String file : transportFiles) {
+                paths.add(Path.of(file));
+            }
+            IngestStats stats;
+            Executor executor = this.loadExecutor;
+            ForkJoinPool ownPool = executor == null ? new ForkJoinPool() : null;
+            try {
+                stats = new TransportLoader(ownPool != null ? ownPool : executor, LOAD_CHUNK_BYTES).load(next, paths);
+            } catch (IOException e) {
+                return "Error parsing file: " + String.join(", ", transportFiles);
+            } finally {
+                if (ownPool != null) {
+                    ownPool.shutdown();
+                }
+            }
+            // parallel transports that are never worse on both price and time are all searches need
+            int pruned = next.pruneDominatedEdges();
+
+            /* freezes the loaded graph into its compressed-sparse-row form and
+            precomputes the weight arrays used by the route queries, all before
+            the graph is published */
+            CompiledGraph<City, Transport> compiled = next.compile();
+            compiled.weights(DURATION);
+            compiled.weights(PRICE);
+            this.preprocess(next);
+            this.publish(next, null, stats);
+
+            return "Successfully loaded cities and transportation files. Parsed " + stats
+                    + (pruned > 0 ? ", dropped " + pruned + " dominated transports." : ".");
+        }
+    }
+
+    /**
+     * loads a new graph on a thread of its own while queries keep being
+     * answered from the current one, which is replaced once the new graph is
+     * completely built. The reload thread only waits on the load executor,
+     * and neither runs on the batch executor, so a reload cannot deadlock a
+     * bounded executor or hold up batch queries.
+     * @param citiesFile     the filename of the cities csv
+     * @param transportFiles the filenames of the transport csvs, which may be
+     *                       gzip-compressed, or of directories holding them
+     * @return - a future completed with the message load would return
+     */
+    @Override
+    public CompletableFuture<String> reload(String citiesFile, List<String> transportFiles) {
+        return CompletableFuture.supplyAsync(() -> this.load(citiesFile, transportFiles),
+                task -> new Thread(task, "travel-reload").start());
+    }
 
+    /**
+     * replaces the graph with one whose transports are kept outside the Java
+     * heap. Fastest, cheapest and most direct routes are searched in the
+     * off-heap buffers and are not cached; the first other query builds a
+     * TravelGraph over the off-heap graph, which creates its transports on
+     * the heap. Once that graph is changed, routes are searched in it instead.
+     * @param citiesFile     the filename of the cities csv
+     * @param transportFiles the filenames of the transport csvs
+     * @return - A string indicating whether the input files were
+     * successfully parsed or there was an error
+     */
+    @Override
+    public String loadOffHeap(String citiesFile, List<String> transportFiles) {
+        synchronized (this.loadLock) {
+            OffHeapGraph next;
+            try {
+                next = OffHeapGraph.load(citiesFile, transportFiles);
+            } catch (IOException | IllegalArgumentException e) {
+                return "Error parsing file: " + citiesFile + ", " + String.join(", ", transportFiles);
+            }
+            synchronized (this) {
+                this.graph = null;
+                this.offHeap = next;
+                this.lastIngest = null;
+                this.distances = null;
+                this.invalidateRoutes();
+            }
+            return "Loaded " + next.getVertexCount() + " cities and " + next.getEdgeCount()
+                    + " transports off the heap.";
+        }
+    }
+
+    /**
+     * @return - the graph queries are answered from, first built over the
+     * off-heap graph if one was loaded and no query has needed it yet
+     */
+    private TravelGraph graph() {
+        TravelGraph graph = this.graph;
+        OffHeapGraph offHeap = this.offHeap;
+        if (graph != null || offHeap == null) {
+            return graph;
+        }
+        synchronized (this.loadLock) {
+            if (this.graph == null && this.offHeap == offHeap) {
+                TravelGraph next = TravelGraph.fromCompiled(offHeap.compile());
+                this.preprocess(next);
+                this.publish(next, offHeap, null);
+            }
+            return this.graph;
+        }
+    }
+
+    /**
+     * saves the loaded graph to a binary snapshot file
+     * @param file - the filename of the snapshot file to write
+     * @return - A string indicating whether the file was written
+     */
+    @Override
+    public String saveSnapshot(String file) {
+        TravelGraph graph = this.graph();
         try {
-            /* pass in string for CSV and function to
-            create City (vertex) using city name */
-            parser.parseLocations(citiesFile, addVertex);
-            parser.parseTransportation(transportFile, addEdge);
+            GraphSnapshot.save(graph.compile(), Path.of(file));
         } catch (IOException e) {
-            return "Error parsing file: " + citiesFile;
+            return "Error writing file: " + file;
         }
+        return "Saved snapshot of " + graph.getCities().size() + " cities to " + file + ".";
+    }
 
-        return "Successfully loaded cities and transportation files.";
+    /**
+     * replaces the graph with one opened from a snapshot file. The cities and
+     * weights are read straight from the file, and transports are only
+     * created when a route needs them.
+     * @param file - the filename of the snapshot file
+     * @return - A string indicating whether the file was opened
+     */
+    @Override
+    public String openSnapshot(String file) {
+        synchronized (this.loadLock) {
+            CompiledGraph<City, Transport> compiled;
+            try {
+                compiled = GraphSnapshot.open(Path.of(file));
+            } catch (IOException e) {
+                return "Error opening file: " + file;
+            }
+            TravelGraph next = TravelGraph.fromCompiled(compiled);
+            this.preprocess(next);
+            this.publish(next, null, null);
+            return "Opened snapshot of " + compiled.getVertexCount() + " cities and "
+                    + compiled.getEdgeCount() + " transports.";
+        }
     }
 
     /**
@@ -71,12 +414,7 @@ public class TravelController implements ITravelController<City, Transport> {
      */
     @Override
     public List<Transport> fastestRoute(String source, String destination) {
-        Function<Transport, Double> getDuration = transport -> {
-            return transport.getMinutes();
-        };
-        Dijkstra<City, Transport> dijkstra = new Dijkstra<>();
-        return dijkstra.getShortestPath(graph, graph.getCityFromName(source),
-                graph.getCityFromName(destination), getDuration);
+        return this.route(source, destination, RouteMetric.FASTEST, null);
     }
 
     /**
@@ -88,12 +426,7 @@ public class TravelController implements ITravelController<City, Transport> {
      */
     @Override
     public List<Transport> cheapestRoute(String source, String destination) {
-        Function<Transport, Double> getCost = transport -> {
-            return transport.getPrice();
-        };
-        Dijkstra<City, Transport> dijkstra = new Dijkstra<>();
-        return dijkstra.getShortestPath(graph, graph.getCityFromName(
-                source), graph.getCityFromName(destination), getCost);
+        return this.route(source, destination, RouteMetric.CHEAPEST, null);
     }
 
     /**
@@ -105,9 +438,521 @@ public class TravelController implements ITravelController<City, Transport> {
      */
     @Override
     public List<Transport> mostDirectRoute(String source, String destination) {
-        BFS<City, Transport> bfs = new BFS<>();
-        return bfs.getPath(graph, graph.getCityFromName(source),
-                graph.getCityFromName(destination));
+        return this.route(source, destination, RouteMetric.MOST_DIRECT, null);
+    }
+
+    /**
+     * returns the fastest route between two cities that only uses some kinds of transport
+     * @param source      the string representation of the source city
+     * @param destination the string representation of the destination city
+     * @param modes       the transport types the route may use
+     * @return - A list of transports corresponding to the path with the
+     * lowest total travel time among those using only the given types
+     */
+    @Override
+    public List<Transport> fastestRoute(String source, String destination, Set<TransportType> modes) {
+        return this.route(source, destination, RouteMetric.FASTEST, modes);
+    }
+
+    /**
+     * returns the cheapest route between two cities that only uses some kinds of transport
+     * @param source      the string representation of the source city
+     * @param destination the string representation of the destination city
+     * @param modes       the transport types the route may use
+     * @return - A list of transports corresponding to the path with the
+     * lowest total price among those using only the given types
+     */
+    @Override
+    public List<Transport> cheapestRoute(String source, String destination, Set<TransportType> modes) {
+        return this.route(source, destination, RouteMetric.CHEAPEST, modes);
+    }
+
+    /**
+     * returns the most direct route between two cities that only uses some kinds of transport
+     * @param source      the string representation of the source city
+     * @param destination the string representation of the destination city
+     * @param modes       the transport types the route may use
+     * @return - A list of transports corresponding to the path with the
+     * fewest number of connections among those using only the given types
+     */
+    @Override
+    public List<Transport> mostDirectRoute(String source, String destination, Set<TransportType> modes) {
+        return this.route(source, destination, RouteMetric.MOST_DIRECT, modes);
+    }
+
+    /**
+     * returns every route between two cities that no other route beats on
+     * both price and travel time
+     * @param source      the string representation of the source city
+     * @param destination the string representation of the destination city
+     * @return - the routes from cheapest (and slowest) to fastest (and most
+     * expensive), or empty if there is none
+     */
+    @Override
+    public List<List<Transport>> paretoRoutes(String source, String destination) {
+        TravelGraph graph = this.graph();
+        return this.paretoSearch.getParetoRoutes(graph, graph.getCityFromName(source),
+                graph.getCityFromName(destination), PRICE, DURATION);
+    }
+
+    /**
+     * returns the fastest route whose total price stays within a budget, or
+     * the cheapest route whose total travel time stays within a limit
+     * @param source      the string representation of the source city
+     * @param destination the string representation of the destination city
+     * @param metric      FASTEST to limit the price, or CHEAPEST to limit the travel time
+     * @param limit       the largest total price or travel time the route may have
+     * @return - the best route within the limit, or empty if there is none
+     */
+    @Override
+    public List<Transport> constrainedRoute(String source, String destination, RouteMetric metric,
+                                            double limit) {
+        if (metric == RouteMetric.MOST_DIRECT) {
+            throw new IllegalArgumentException("Constrained routes must be fast or cheap");
+        }
+        TravelGraph graph = this.graph();
+        boolean fastest = metric == RouteMetric.FASTEST;
+        return this.paretoSearch.getConstrainedRoute(graph, graph.getCityFromName(source),
+                graph.getCityFromName(destination), fastest ? DURATION : PRICE, fastest ? PRICE : DURATION, limit);
+    }
+
+    /**
+     * returns the best route between two cities followed by the next best
+     * alternatives, none of which visits a city twice
+     * @param source      the string representation of the source city
+     * @param destination the string representation of the destination city
+     * @param metric      the kind of routes
+     * @param k           the largest number of routes to return
+     * @return - up to k routes from best to worst, or empty if there is none
+     */
+    @Override
+    public List<List<Transport>> alternativeRoutes(String source, String destination, RouteMetric metric,
+                                                   int k) {
+        TravelGraph graph = this.graph();
+        return this.alternatives.getShortestPaths(graph, graph.getCityFromName(source),
+                graph.getCityFromName(destination), metric.getWeight(), k);
+    }
+
+    /**
+     * loads a timetable of scheduled departures, replacing any loaded before.
+     * The timetable is kept apart from the graph, so loading or reloading
+     * either one leaves the other in place.
+     * @param file - the filename of the timetable csv
+     * @return - A string indicating whether the file was successfully parsed
+     * or there was an error
+     */
+    @Override
+    public String loadTimetable(String file) {
+        Timetable next;
+        try {
+            next = Timetable.read(file);
+        } catch (IOException | IllegalArgumentException e) {
+            return "Error parsing file: " + file;
+        }
+        this.timetable = next;
+        return "Loaded " + next.getConnectionCount() + " connections between "
+                + next.getCityCount() + " cities. Parsed " + next.getIngestStats() + ".";
+    }
+
+    /**
+     * returns the journey that arrives at a destination as early as possible
+     * when leaving a city no earlier than a given time
+     * @param source      the string representation of the source city
+     * @param destination the string representation of the destination city
+     * @param departure   the earliest departure time, in minutes after midnight
+     * @return - the connections of the journey in order, or empty if there is none
+     */
+    @Override
+    public List<Connection> earliestArrival(String source, String destination, int departure) {
+        Timetable timetable = this.timetable;
+        if (timetable == null) {
+            throw new IllegalArgumentException("No timetable loaded");
+        }
+        return timetable.earliestArrival(source, destination, departure);
+    }
+
+    /**
+     * returns the routes from one city to many others, all read from a single
+     * shortest-path tree
+     * @param source - the name of the source city
+     * @param destinations - the names of the destination cities, or null for
+     *                     every city reachable from the source
+     * @param metric - the kind of routes
+     * @return - a map from each destination name to its route, or to an empty
+     * list if there is none, in the order of the destinations
+     */
+    @Override
+    public Map<String, List<Transport>> routesFrom(String source, List<String> destinations,
+                                                   RouteMetric metric) {
+        TravelGraph graph = this.graph();
+        ShortestPathTree<City, Transport> tree = this.shortestPathTree(graph, source, metric);
+        Map<String, List<Transport>> routes = new LinkedHashMap<>();
+        if (destinations == null) {
+            for (City city : tree.getReachedVertices()) {
+                routes.put(city.toString(), tree.getPath(city));
+            }
+            return routes;
+        }
+        for (String destination : destinations) {
+            routes.put(destination, tree.getPath(graph.getCityFromName(destination)));
+        }
+        return routes;
+    }
+
+    /**
+     * answers many route queries in parallel. Queries are grouped by source
+     * and metric, and each group runs as one task on the batch executor: a
+     * group of at least TREE_BATCH_SIZE queries is answered from one
+     * shortest-path tree, smaller groups query one route at a time. Results
+     * are written to the slots of their queries, so they come back in input
+     * order no matter which task finishes first.
+     * @param queries - the route queries
+     * @return - the route of each query in input order, or empty if there is none
+     * @throws IllegalArgumentException if any query names a city that does
+     * not exist, before any query is answered
+     */
+    @Override
+    public List<List<Transport>> batchRoutes(List<RouteQuery> queries) {
+        // the whole batch is answered from one graph, even if it is replaced meanwhile
+        TravelGraph graph = this.graph();
+        for (RouteQuery query : queries) {
+            if (graph.getCityFromName(query.getSource()) == null
+                    || graph.getCityFromName(query.getDestination()) == null) {
+                throw new IllegalArgumentException("Entered city does not exist");
+            }
+        }
+        Map<List<Object>, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            RouteQuery query = queries.get(i);
+            groups.computeIfAbsent(List.of(query.getSource(), query.getMetric()),
+                    key -> new ArrayList<>()).add(i);
+        }
+        List<List<Transport>> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(null);
+        }
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups.values()) {
+            // each task only sets its own slots, and join() publishes them
+            tasks.add(CompletableFuture.runAsync(() -> this.answerGroup(graph, queries, group, results),
+                    this.batchExecutor));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        return results;
+    }
+
+    /**
+     * answers a group of queries sharing a source and metric
+     * @param graph - the graph the batch is answered from
+     * @param queries - all queries of the batch
+     * @param group - the indices of the queries in this group
+     * @param results - the results of the batch, filled in at the indices of the group
+     */
+    private void answerGroup(TravelGraph graph, List<RouteQuery> queries, List<Integer> group,
+                             List<List<Transport>> results) {
+        RouteQuery first = queries.get(group.get(0));
+        City source = graph.getCityFromName(first.getSource());
+        if (group.size() < TREE_BATCH_SIZE) {
+            for (int i : group) {
+                RouteQuery query = queries.get(i);
+                results.set(i, this.route(graph, query.getSource(), query.getDestination(), query.getMetric()));
+            }
+            return;
+        }
+        // a one-off tree, kept out of the tree cache so a batch does not flush it
+        ShortestPathTree<City, Transport> tree = this.getCachedTree(
+                first.getSource(), first.getMetric(), graph.compile());
+        if (tree == null) {
+            tree = this.treeEngine.getShortestPathTree(graph, source, first.getMetric().getWeight());
+        }
+        for (int i : group) {
+            results.set(i, tree.getPath(graph.getCityFromName(queries.get(i).getDestination())));
+        }
+    }
+
+    /**
+     * computes the fastest time and cheapest price between every pair of
+     * cities, with one search per source and metric run on the batch
+     * executor, and writes them to a distance matrix file that distance then
+     * reads from
+     * @param file - the filename of the matrix file to write
+     * @return - A string indicating whether the file was written
+     */
+    @Override
+    public String saveDistanceMatrix(String file) {
+        TravelGraph graph = this.graph();
+        DistanceMatrix matrix;
+        try {
+            DistanceMatrix.write(graph.compile(), List.of(DURATION, PRICE), Path.of(file),
+                    this.batchExecutor);
+            matrix = DistanceMatrix.open(Path.of(file));
+        } catch (IOException e) {
+            return "Error writing file: " + file;
+        }
+        synchronized (this) {
+            // a matrix of a graph replaced while it was being written is not used
+            if (graph == this.graph) {
+                this.distances = matrix;
+            }
+        }
+        return "Saved distances between " + matrix.getVertexCount() + " cities to " + file + ".";
+    }
+
+    /**
+     * opens a distance matrix file. The file must have been saved for the
+     * currently loaded cities, and is not opened otherwise.
+     * @param file - the filename of the matrix file
+     * @return - A string indicating whether the file was opened
+     */
+    @Override
+    public String openDistanceMatrix(String file) {
+        TravelGraph graph = this.graph();
+        DistanceMatrix matrix;
+        try {
+            matrix = DistanceMatrix.open(Path.of(file));
+        } catch (IOException e) {
+            return "Error opening file: " + file;
+        }
+        if (matrix.getMatrixCount() != 2) {
+            return "Error opening file: " + file;
+        }
+        if (graph == null || !matrix.hasVertices(graph.getCities().keySet())) {
+            return "Distance matrix does not match the loaded cities: " + file;
+        }
+        synchronized (this) {
+            // the graph may have been replaced while the file was checked
+            if (graph != this.graph) {
+                return "Distance matrix does not match the loaded cities: " + file;
+            }
+            this.distances = matrix;
+        }
+        return "Opened distances between " + matrix.getVertexCount() + " cities.";
+    }
+
+    /**
+     * returns the total weight of the best route between two cities. Fastest
+     * and cheapest distances come from the distance matrix in constant time
+     * when one is open; otherwise they are read from a shortest-path tree.
+     * @param source - the name of the source city
+     * @param destination - the name of the destination city
+     * @param metric - the kind of route
+     * @return - the total minutes, price or number of connections of the
+     * route, or infinity if there is none
+     */
+    @Override
+    public double distance(String source, String destination, RouteMetric metric) {
+        DistanceMatrix matrix = this.distances;
+        if (matrix != null && metric != RouteMetric.MOST_DIRECT) {
+            return matrix.getDistance(metric == RouteMetric.FASTEST ? 0 : 1, source, destination);
+        }
+        TravelGraph graph = this.graph();
+        City to = graph.getCityFromName(destination);
+        if (to == null) {
+            throw new IllegalArgumentException("Entered city does not exist");
+        }
+        return this.shortestPathTree(graph, source, metric).getDistance(to);
+    }
+
+    /**
+     * returns the shortest-path tree of a source city, reusing a recent one
+     * for the same source and metric if the graph has not changed since
+     * @param source - the name of the source city
+     * @param metric - the weight the tree minimizes
+     * @return - the shortest-path tree rooted at the source
+     */
+    public ShortestPathTree<City, Transport> shortestPathTree(String source, RouteMetric metric) {
+        return this.shortestPathTree(this.graph(), source, metric);
+    }
+
+    private ShortestPathTree<City, Transport> shortestPathTree(TravelGraph graph, String source,
+                                                              RouteMetric metric) {
+        CompiledGraph<City, Transport> snapshot = this.checkSnapshot(graph);
+        ShortestPathTree<City, Transport> tree = this.getCachedTree(source, metric, snapshot);
+        if (tree == null) {
+            tree = this.treeEngine.getShortestPathTree(graph, graph.getCityFromName(source),
+                    metric.getWeight());
+            if (this.treeCacheSize > 0) {
+                synchronized (this) {
+                    // trees of a replaced snapshot are not kept
+                    if (this.treeCacheSize > 0 && tree.getGraph() == this.cachedSnapshot) {
+                        this.trees.put(List.of(source, metric), new CachedTree(tree));
+                        this.trimTrees();
+                    }
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * @return - the cached tree for a source and metric built on the given
+     * snapshot, or null if there is none
+     */
+    private ShortestPathTree<City, Transport> getCachedTree(
+            String source, RouteMetric metric, CompiledGraph<City, Transport> snapshot) {
+        if (this.trees.isEmpty()) {
+            return null;
+        }
+        CachedTree cached = this.trees.get(List.of(source, metric));
+        if (cached == null || cached.tree.getGraph() != snapshot) {
+            return null;
+        }
+        cached.used = System.nanoTime();
+        return cached.tree;
+    }
+
+    /**
+     * drops the least recently used trees until at most treeCacheSize are left
+     */
+    private synchronized void trimTrees() {
+        while (this.trees.size() > this.treeCacheSize) {
+            Map.Entry<List<Object>, CachedTree> eldest = null;
+            for (Map.Entry<List<Object>, CachedTree> entry : this.trees.entrySet()) {
+                if (eldest == null || entry.getValue().used < eldest.getValue().used) {
+                    eldest = entry;
+                }
+            }
+            this.trees.remove(eldest.getKey());
+        }
+    }
+
+    /**
+     * answers a route query from the off-heap graph if one is in use, or from
+     * the published graph otherwise
+     * @param source - the name of the source city
+     * @param destination - the name of the destination city
+     * @param metric - the kind of route
+     * @param modes - the transport types the route may use, or null for every type
+     * @return - the route, or empty if there is none
+     */
+    private List<Transport> route(String source, String destination, RouteMetric metric,
+                                  Set<TransportType> modes) {
+        OffHeapGraph offHeap = this.offHeap;
+        if (offHeap != null) {
+            City from = offHeap.getCityFromName(source);
+            City to = offHeap.getCityFromName(destination);
+            return modes == null ? offHeap.getShortestPath(from, to, metric)
+                    : offHeap.getShortestPath(from, to, metric, modes);
+        }
+        TravelGraph graph = this.graph;
+        return modes == null ? this.route(graph, source, destination, metric)
+                : this.route(graph, source, destination, metric, modes);
+    }
+
+    /**
+     * answers a route query from the route cache if possible, and searches
+     * and offers the result to the cache otherwise
+     * @param graph - the graph the query is answered from
+     * @param source - the name of the source city
+     * @param destination - the name of the destination city
+     * @param metric - the kind of route
+     * @return - the route, or empty if there is none
+     */
+    private List<Transport> route(TravelGraph graph, String source, String destination, RouteMetric metric) {
+        RouteCache<Transport> cache = this.routeCache;
+        if (cache == null || graph == null) {
+            return this.search(graph, source, destination, metric);
+        }
+        CompiledGraph<City, Transport> snapshot = this.checkSnapshot(graph);
+        List<Transport> cached = cache.get(source, destination, metric);
+        // the cache only holds routes of cachedSnapshot, and a snapshot never becomes current again
+        if (cached != null && snapshot == this.cachedSnapshot) {
+            return cached;
+        }
+        // unknown cities throw here, so failed queries are never cached
+        List<Transport> path = this.search(graph, source, destination, metric);
+        if (snapshot == this.cachedSnapshot) {
+            cache.put(source, destination, metric, path);
+            /* a route found on a replaced snapshot may be out of date. Changes
+            clear cachedSnapshot before they clear the cache, so either this
+            check sees the change or the change clears the cache after the put */
+            if (snapshot != this.cachedSnapshot) {
+                cache.invalidate();
+            }
+        }
+        return path;
+    }
+
+    /**
+     * answers a route query restricted to some transport types. The engines
+     * skip the edges of other types as they search, so the graph is never
+     * copied. Restricted routes are neither cached nor read from the cached
+     * trees, which hold routes over every type.
+     */
+    private List<Transport> route(TravelGraph graph, String source, String destination, RouteMetric metric,
+                                  Set<TransportType> modes) {
+        int allowed = TransportType.maskOf(modes);
+        if (allowed == ALL_MODES) {
+            return this.route(graph, source, destination, metric);
+        }
+        City from = graph.getCityFromName(source);
+        City to = graph.getCityFromName(destination);
+        if (metric == RouteMetric.MOST_DIRECT) {
+            return this.bfs.getPath(graph, from, to, Transport.TYPE_MASK, allowed);
+        }
+        return this.dijkstra.getShortestPath(graph, from, to, metric.getWeight(), Transport.TYPE_MASK, allowed);
+    }
+
+    /**
+     * answers a route query by walking a cached shortest-path tree of the
+     * source, or by running a search if there is none
+     */
+    private List<Transport> search(TravelGraph graph, String source, String destination, RouteMetric metric) {
+        City from = graph.getCityFromName(source);
+        City to = graph.getCityFromName(destination);
+        ShortestPathTree<City, Transport> tree = this.getCachedTree(source, metric, graph.compile());
+        if (tree != null && to != null) {
+            return tree.getPath(to);
+        }
+        if (metric == RouteMetric.MOST_DIRECT) {
+            return this.bfs.getPath(graph, from, to);
+        }
+        return this.dijkstra.getShortestPath(graph, from, to, metric.getWeight());
+    }
+
+    /**
+     * drops the cached routes if the graph was recompiled since they were
+     * found. Cached trees are left alone: each is only used on the snapshot
+     * it belongs to, and transport changes move them onto the next one. Only
+     * takes this controller's lock when the snapshot changed.
+     * @param graph - the graph a query is answered from; a graph that has
+     *              been replaced leaves the caches alone
+     * @return - the compiled snapshot of the graph the query runs on
+     */
+    private CompiledGraph<City, Transport> checkSnapshot(TravelGraph graph) {
+        // compiled outside the lock: graph updates lock the graph first and then this controller
+        CompiledGraph<City, Transport> snapshot = graph.compile();
+        if (snapshot != this.cachedSnapshot) {
+            synchronized (this) {
+                // a snapshot a later change already replaced is never made current
+                if (graph == this.graph && snapshot != this.cachedSnapshot && snapshot == graph.peekCompiled()) {
+                    this.resetRoutes(snapshot);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * clears the route cache for the routes of a new snapshot
+     * @param next - the snapshot routes are cached for from now on, or null
+     *             if it is not known yet
+     */
+    private synchronized void resetRoutes(CompiledGraph<City, Transport> next) {
+        this.cachedSnapshot = null;
+        RouteCache<Transport> cache = this.routeCache;
+        if (cache != null) {
+            cache.invalidate();
+        }
+        this.cachedSnapshot = next;
+    }
+
+    /**
+     * drops every cached route and tree, for instance because the graph was replaced
+     */
+    private synchronized void invalidateRoutes() {
+        this.resetRoutes(null);
+        this.trees.clear();
     }
 
     /**
@@ -145,7 +990,115 @@ public class TravelController implements ITravelController<City, Transport> {
      * @return - the graph field of this TravelController
      */
     public TravelGraph getGraph() {
-        return this.graph;
+        return this.graph();
     }
-}
 
+    /**
+     * keeps the controller's derived data in step with live changes to its
+     * graph. Adding, removing or replacing a single transport, which is how
+     * its price or duration is changed, patches the compiled graph, and the
+     * cached shortest-path trees are moved onto the patched graph and
+     * repaired, so the hot sources they belong to keep being answered from a
+     * tree; cached routes and the distance matrix are dropped. Other changes
+     * to the transports drop everything derived from the graph. ALT and CH
+     * engines fall back to an indexed search after any change until
+     * useEngine or setDijkstra prepares them again. Changes to
+     * a graph that has since been replaced by a reload are ignored, and a
+     * change to a graph built over an off-heap graph stops routes being
+     * searched in the off-heap graph, which no longer matches it. The graph
+     * tells its listeners about one change at a time, under its lock.
+     */
+    private class GraphUpdates implements IGraphListener<Transport> {
+        private final TravelGraph graph;
+        // the snapshot the last change was made to, or null if it is not known
+        private CompiledGraph<City, Transport> last;
+
+        GraphUpdates(TravelGraph graph) {
+            this.graph = graph;
+            this.last = graph.compile();
+        }
+
+        @Override
+        public void edgeAdded(Transport edge) {
+            CompiledGraph<City, Transport> previous = this.last;
+            CompiledGraph<City, Transport> next = this.graph.compile();
+            this.last = next;
+            int id = next.getEdgeId(edge.getSource(), edge);
+            this.moveTrees(previous, next, (tree, weights) -> tree.edgeAdded(next, weights, id));
+        }
+
+        @Override
+        public void edgeRemoved(Transport edge) {
+            CompiledGraph<City, Transport> previous = this.last;
+            CompiledGraph<City, Transport> next = this.graph.compile();
+            this.last = next;
+            int id = previous == null ? -1 : previous.getEdgeId(edge.getSource(), edge);
+            this.moveTrees(previous, next, (tree, weights) -> tree.edgeRemoved(next, weights, id));
+        }
+
+        @Override
+        public void edgeReplaced(Transport edge, Transport replacement) {
+            CompiledGraph<City, Transport> previous = this.last;
+            CompiledGraph<City, Transport> next = this.graph.compile();
+            this.last = next;
+            int removed = previous == null ? -1 : previous.getEdgeId(edge.getSource(), edge);
+            int added = next.getEdgeId(replacement.getSource(), replacement);
+            this.moveTrees(previous, next, (tree, weights) -> tree.edgeReplaced(next, weights, removed, added));
+        }
+
+        /**
+         * moves the cached trees of the previous snapshot onto the next one,
+         * drops any other trees, and drops the cached routes, which may now
+         * have a better or no longer existing transport
+         */
+        private void moveTrees(CompiledGraph<City, Transport> previous, CompiledGraph<City, Transport> next,
+                               BiConsumer<ShortestPathTree<City, Transport>, double[]> move) {
+            synchronized (TravelController.this) {
+                if (this.graph != TravelController.this.graph) {
+                    return;
+                }
+                TravelController.this.offHeap = null;
+                TravelController.this.resetRoutes(next);
+                TravelController.this.distances = null;
+                Iterator<Map.Entry<List<Object>, CachedTree>> entries =
+                        TravelController.this.trees.entrySet().iterator();
+                while (entries.hasNext()) {
+                    Map.Entry<List<Object>, CachedTree> entry = entries.next();
+                    ShortestPathTree<City, Transport> tree = entry.getValue().tree;
+                    if (previous != null && tree.getGraph() == previous) {
+                        RouteMetric metric = (RouteMetric) entry.getKey().get(1);
+                        move.accept(tree, next.weights(metric.getWeight()));
+                    } else if (tree.getGraph() != next) {
+                        entries.remove();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void edgesChanged() {
+            this.last = null;
+            synchronized (TravelController.this) {
+                if (this.graph == TravelController.this.graph) {
+                    TravelController.this.offHeap = null;
+                    TravelController.this.invalidateRoutes();
+                    TravelController.this.distances = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * a cached shortest-path tree and when it was last used, so the cache can
+     * drop the least recently used tree without locking on every lookup
+     */
+    private static class CachedTree {
+        private final ShortestPathTree<City, Transport> tree;
+        private volatile long used;
+
+        CachedTree(ShortestPathTree<City, Transport> tree) {
+            this.tree = tree;
+            this.used = System.nanoTime();
+        }
+    }
+}
@@ -1,50 +1,132 @@
 package sol;
 
 import src.City;
-import src.IGraph;
+import src.IBidirectionalGraph;
+import src.IGraphListener;
 import src.Transport;
 
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
-public class TravelGraph implements IGraph<City, Transport> {
-    private HashMap<String, City> cities;
+/**
+ * A graph of cities and the transports between them. Cities and transports
+ * are added, removed and changed under this graph's lock, and every change
+ * publishes a new compiled snapshot (or drops it, to be rebuilt on the next
+ * query), so queries running on a snapshot never see a change half made.
+ */
+public class TravelGraph implements IBidirectionalGraph<City, Transport> {
+    private final Map<String, City> cities;
+    /*
+    the compiled snapshot of the current contents, or null if it is out of
+    date and has to be rebuilt. Only changed while holding this graph's lock
+     */
+    private volatile CompiledGraph<City, Transport> compiled;
+    /*
+    the snapshot this graph was opened from while its transports have not been
+    added to the cities yet, or null once they have (or if it was not opened from one)
+     */
+    private volatile CompiledGraph<City, Transport> unmaterialized;
+    private final List<IGraphListener<Transport>> listeners;
 
     /**
      * a constructor for the TravelGraph class
      */
     public TravelGraph(){
-        this.cities = new HashMap<String, City>();
+        this.cities = new ConcurrentHashMap<String, City>();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * registers a listener to be told about transports added, removed or changed
+     * after it was registered
+     * @param listener - the listener
+     */
+    public void addListener(IGraphListener<Transport> listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @param listener - a listener registered with addListener, which will no longer be told of changes
+     */
+    public void removeListener(IGraphListener<Transport> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * makes a TravelGraph whose route queries run on an existing compiled
+     * graph, such as one opened from a GraphSnapshot. The cities are created
+     * right away, but the transports are only added to them when something
+     * asks a city for its transports or changes the graph.
+     * @param compiled - the compiled graph
+     * @return - a TravelGraph with the cities and transports of the compiled graph
+     */
+    public static TravelGraph fromCompiled(CompiledGraph<City, Transport> compiled) {
+        TravelGraph graph = new TravelGraph();
+        for (int v = 0; v < compiled.getVertexCount(); v++) {
+            City city = compiled.getVertex(v);
+            graph.cities.put(city.toString(), city);
+        }
+        graph.compiled = compiled;
+        graph.unmaterialized = compiled;
+        return graph;
+    }
+
+    /**
+     * adds the transports of the snapshot this graph was opened from to their cities
+     */
+    private void materialize() {
+        if (this.unmaterialized != null) {
+            this.materializeNow();
+        }
+    }
+
+    private synchronized void materializeNow() {
+        if (this.unmaterialized != null) {
+            CompiledGraph<City, Transport> snapshot = this.unmaterialized;
+            for (int e = 0; e < snapshot.getEdgeCount(); e++) {
+                Transport edge = snapshot.getEdge(e);
+                edge.getSource().addOut(edge);
+                edge.getTarget().addIn(edge);
+            }
+            this.unmaterialized = null;
+        }
     }
 
     /**
-     * a method to return the cities hashMap
-     * @return - the HashMap in the cities field of this TravelGraph
+     * a method to return the cities map
+     * @return - the map in the cities field of this TravelGraph, which is safe
+     * to read while cities are being added
      */
-    public HashMap<String, City> getCities() {
+    public Map<String, City> getCities() {
         return this.cities;
     }
 
     /**
-     * adds a new City to the cities HashMap
+     * adds a new City to the cities map
      * @param vertex the vertex
      */
     @Override
-    public void addVertex(City vertex) {
+    public synchronized void addVertex(City vertex) {
         if (this.cities.containsKey(vertex.toString())) {
             throw new IllegalArgumentException("City already in graph");
         }
         this.cities.put(vertex.toString(), vertex);
+        this.compiled = null;
     }
 
     /**
      * adds a new Transport to the list of outgoing Transports
-     * of a city
+     * of a city, and to the incoming Transports of its target if
+     * the target is in this graph. If the graph was compiled, the compiled
+     * snapshot is patched with the one edge rather than rebuilt.
      * @param origin the origin of the edge.
      * @param edge - the Transport to be added
      */
     @Override
-    public void addEdge(City origin, Transport edge) {
+    public synchronized void addEdge(City origin, Transport edge) {
+        this.materialize();
         if (!origin.equals(this.getEdgeSource(edge))) {
             throw new IllegalArgumentException(
                     "Transport origin and edge source must be the same");
@@ -53,12 +135,196 @@ public class TravelGraph implements IGraph<City, Transport> {
             throw new IllegalArgumentException(
                     "Transport origin and destination cannot be the same.");
         }
+        City city;
         try {
-            this.cities.get(origin.toString()).getOutgoing().add(edge);
+            city = this.cities.get(origin.toString());
+            if (!city.getOutgoing().add(edge)) {
+                return;
+            }
         } catch(NullPointerException e) {
             throw new IllegalArgumentException(
                     "Cannot add edge with a city that is not in the graph");
         }
+        City target = this.getEdgeTarget(edge);
+        if (target != null && this.cities.get(target.toString()) == target) {
+            target.addIn(edge);
+        }
+        CompiledGraph<City, Transport> snapshot = this.compiled;
+        if (snapshot == null) {
+            for (IGraphListener<Transport> listener : this.listeners) {
+                listener.edgesChanged();
+            }
+            return;
+        }
+        int source = snapshot.getId(city);
+        int targetId = snapshot.getId(target);
+        // an edge to a city outside the graph is left out of the compiled graph
+        if (source >= 0 && targetId >= 0) {
+            this.publish(snapshot.withEdge(source, targetId, edge), listener -> listener.edgeAdded(edge));
+        }
+    }
+
+    /**
+     * removes a Transport from the graph. If the graph was compiled, the
+     * compiled snapshot is patched rather than rebuilt.
+     * @param edge - the Transport to be removed
+     */
+    public synchronized void removeEdge(Transport edge) {
+        this.materialize();
+        City origin = this.getEdgeSource(edge);
+        if (origin == null || !origin.getOutgoing().remove(edge)) {
+            throw new IllegalArgumentException("Transport is not in the graph");
+        }
+        City target = this.getEdgeTarget(edge);
+        if (target != null) {
+            target.getIncoming().remove(edge);
+        }
+        CompiledGraph<City, Transport> snapshot = this.compiled;
+        if (snapshot == null) {
+            for (IGraphListener<Transport> listener : this.listeners) {
+                listener.edgesChanged();
+            }
+            return;
+        }
+        int id = snapshot.getEdgeId(origin, edge);
+        if (id >= 0) {
+            this.publish(snapshot.withoutEdge(id), listener -> listener.edgeRemoved(edge));
+        }
+    }
+
+    /**
+     * publishes the snapshot a change to a single transport made, and tells
+     * the listeners about the change. Once the overlay of changes the
+     * snapshot carries is full, it is compacted instead, which numbers the
+     * transports again, so the listeners are told everything changed.
+     * @param next - the snapshot with the change made
+     * @param change - tells a listener about the change
+     */
+    private void publish(CompiledGraph<City, Transport> next, Consumer<IGraphListener<Transport>> change) {
+        if (next.isOverlayFull()) {
+            this.compiled = next.compact();
+            for (IGraphListener<Transport> listener : this.listeners) {
+                listener.edgesChanged();
+            }
+        } else {
+            this.compiled = next;
+            for (IGraphListener<Transport> listener : this.listeners) {
+                change.accept(listener);
+            }
+        }
+    }
+
+    /**
+     * removes every Transport that another Transport of the same type between
+     * the same two cities beats, or ties, on both price and duration. Such a
+     * Transport is never part of a route another one cannot match, so
+     * dropping it after a load only shrinks the graph searches run over. Of
+     * Transports with equal prices and durations, only one is kept.
+     * @return - the number of Transports removed
+     */
+    public synchronized int pruneDominatedEdges() {
+        this.materialize();
+        // parallel transports of one kind are next to each other, cheapest first
+        Comparator<Transport> order = Comparator
+                .comparing((Transport t) -> t.getTarget().toString())
+                .thenComparing(Transport::getType)
+                .thenComparingDouble(Transport::getPrice)
+                .thenComparingDouble(Transport::getMinutes);
+        int removed = 0;
+        for (City city : this.cities.values()) {
+            Set<Transport> outgoing = city.getOutgoing();
+            if (outgoing.size() < 2) {
+                continue;
+            }
+            Transport[] sorted = outgoing.toArray(new Transport[0]);
+            Arrays.sort(sorted, order);
+            Transport kept = null;
+            for (Transport edge : sorted) {
+                // a later transport of the same kind costs at least as much, so it is
+                // dominated unless it is strictly faster than every cheaper one
+                if (kept != null && kept.getTarget() == edge.getTarget() && kept.getType() == edge.getType()
+                        && edge.getMinutes() >= kept.getMinutes()) {
+                    outgoing.remove(edge);
+                    edge.getTarget().getIncoming().remove(edge);
+                    removed++;
+                } else {
+                    kept = edge;
+                }
+            }
+        }
+        if (removed > 0) {
+            this.compiled = null;
+            for (IGraphListener<Transport> listener : this.listeners) {
+                listener.edgesChanged();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * changes the price of a Transport. Transports never change, so the
+     * Transport is replaced by a new one between the same cities with the
+     * new price. The compiled snapshot gets the replacement in one new
+     * version rather than being rebuilt, and the weights of the old version
+     * are never written to, so a query already searching it keeps seeing the
+     * old price from start to end. Queries that start after this method
+     * returns see the new price.
+     * @param edge - a Transport in this graph
+     * @param price - its new price
+     * @return - the Transport that replaced it
+     */
+    public Transport setPrice(Transport edge, double price) {
+        this.checkWeight(price);
+        return this.replace(edge, new Transport(edge.getSource(), edge.getTarget(), edge.getType(),
+                price, edge.getMinutes()));
+    }
+
+    /**
+     * changes the duration of a Transport by replacing it, like setPrice
+     * @param edge - a Transport in this graph
+     * @param minutes - its new duration
+     * @return - the Transport that replaced it
+     */
+    public Transport setMinutes(Transport edge, double minutes) {
+        this.checkWeight(minutes);
+        return this.replace(edge, new Transport(edge.getSource(), edge.getTarget(), edge.getType(),
+                edge.getPrice(), minutes));
+    }
+
+    private void checkWeight(double weight) {
+        if (!(weight >= 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weight must be a non-negative number");
+        }
+    }
+
+    /**
+     * puts a Transport in the place of another between the same cities,
+     * and patches the compiled snapshot with both changes at once
+     */
+    private synchronized Transport replace(Transport edge, Transport replacement) {
+        this.materialize();
+        City origin = this.getEdgeSource(edge);
+        if (origin == null || !origin.getOutgoing().remove(edge)) {
+            throw new IllegalArgumentException("Transport is not in the graph");
+        }
+        origin.addOut(replacement);
+        City target = this.getEdgeTarget(edge);
+        if (target != null && target.getIncoming().remove(edge)) {
+            target.addIn(replacement);
+        }
+        CompiledGraph<City, Transport> snapshot = this.compiled;
+        if (snapshot == null) {
+            for (IGraphListener<Transport> listener : this.listeners) {
+                listener.edgesChanged();
+            }
+            return replacement;
+        }
+        int id = snapshot.getEdgeId(origin, edge);
+        if (id >= 0) {
+            this.publish(snapshot.withReplacedEdge(id, replacement),
+                    listener -> listener.edgeReplaced(edge, replacement));
+        }
+        return replacement;
     }
 
     /**
@@ -68,7 +334,7 @@ public class TravelGraph implements IGraph<City, Transport> {
      */
     @Override
     public Set<City> getVertices() {
-        return new HashSet(this.cities.values());
+        return new HashSet<>(this.cities.values());
     }
 
     /**
@@ -92,21 +358,52 @@ public class TravelGraph implements IGraph<City, Transport> {
     }
 
     /**
-     * gets all of the Transports stemming from a city
+     * gets all of the Transports stemming from a city. Callers holding this
+     * graph's lock, such as compile, get the city's own set; everyone else
+     * gets a copy, so it can be iterated while transports are added or removed.
      * @param fromVertex a City
      * @return - a Set of all Transports with the input city
      * as the source
      */
     @Override
     public Set<Transport> getOutgoingEdges(City fromVertex) {
+        this.materialize();
         try {
-            return fromVertex.getOutgoing();
+            if (Thread.holdsLock(this)) {
+                return fromVertex.getOutgoing();
+            }
+            synchronized (this) {
+                return new HashSet<>(fromVertex.getOutgoing());
+            }
         } catch(Exception e){
             throw new IllegalArgumentException("No routes extend from " +
                     fromVertex.toString());
         }
     }
 
+    /**
+     * gets all of the Transports arriving at a city, copied like the ones
+     * getOutgoingEdges returns
+     * @param toVertex a City
+     * @return - a Set of all Transports with the input city
+     * as the target
+     */
+    @Override
+    public Set<Transport> getIncomingEdges(City toVertex) {
+        this.materialize();
+        try {
+            if (Thread.holdsLock(this)) {
+                return toVertex.getIncoming();
+            }
+            synchronized (this) {
+                return new HashSet<>(toVertex.getIncoming());
+            }
+        } catch(Exception e){
+            throw new IllegalArgumentException("No routes arrive at " +
+                    toVertex);
+        }
+    }
+
     /**
      * returns the City whose name corresponds to the given string
      * @param name - A string representing the name of the city
@@ -114,10 +411,39 @@ public class TravelGraph implements IGraph<City, Transport> {
      */
     public City getCityFromName(String name) {
         try {
-            return cities.get(name);
+            return name == null ? null : this.cities.get(name);
         } catch(Exception e) {
             throw new IllegalArgumentException(name +
                     " is not available");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * returns a compressed-sparse-row snapshot of this graph. The snapshot is
+     * built on the first call and reused until the graph changes; adding or
+     * removing a single transport replaces it with a new version that shares
+     * its arrays, while
+     * adding a city or pruning rebuilds it on the next call. A current
+     * snapshot is returned without taking the graph's lock.
+     * @return - a CompiledGraph with the same cities and transports as this graph
+     */
+    public CompiledGraph<City, Transport> compile() {
+        CompiledGraph<City, Transport> snapshot = this.compiled;
+        return snapshot != null ? snapshot : this.compileNow();
+    }
+
+    /**
+     * @return - the current compiled snapshot without building one, or null
+     * if it has to be rebuilt
+     */
+    CompiledGraph<City, Transport> peekCompiled() {
+        return this.compiled;
+    }
+
+    private synchronized CompiledGraph<City, Transport> compileNow() {
+        if (this.compiled == null) {
+            this.compiled = CompiledGraph.compile(this);
+        }
+        return this.compiled;
+    }
+}
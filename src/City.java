@@ -8,17 +8,23 @@ import java.util.Set;
  */
 public class City {
     private Set<Transport> outgoing;
+    private Set<Transport> incoming;
     private String name;
 
     public City(String name) {
         this.name = name;
         this.outgoing = new HashSet<>(); //stores all outgoing Transports (edges) for given City (vertex)
+        this.incoming = new HashSet<>(); //stores all incoming Transports (edges) for given City (vertex)
     }
 
     public Set<Transport> getOutgoing() {
         return this.outgoing;
     }
 
+    public Set<Transport> getIncoming() {
+        return this.incoming;
+    }
+
     /**
      * Adds outgoing edge (Transport) to vertex (City)
      *
@@ -28,6 +34,15 @@ public class City {
         this.outgoing.add(transport);
     }
 
+    /**
+     * Adds incoming edge (Transport) to vertex (City)
+     *
+     * @param transport
+     */
+    public void addIn(Transport transport) {
+        this.incoming.add(transport);
+    }
+
     @Override
     public String toString() {
         return this.name;
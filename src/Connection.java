@@ -0,0 +1,92 @@
+package src;
+
+/**
+ * A scheduled departure from a timetable: a transport between two cities
+ * that leaves and arrives at fixed times. Times are minutes after midnight
+ * of the first day of the timetable.
+ */
+public class Connection {
+    private final String origin;
+    private final String destination;
+    private final TransportType type;
+    private final double price;
+    private final int departure;
+    private final int arrival;
+
+    public Connection(String origin, String destination, TransportType type, double price,
+                      int departure, int arrival) {
+        this.origin = origin;
+        this.destination = destination;
+        this.type = type;
+        this.price = price;
+        this.departure = departure;
+        this.arrival = arrival;
+    }
+
+    public String getOrigin() {
+        return this.origin;
+    }
+
+    public String getDestination() {
+        return this.destination;
+    }
+
+    public TransportType getType() {
+        return this.type;
+    }
+
+    public double getPrice() {
+        return this.price;
+    }
+
+    public int getDeparture() {
+        return this.departure;
+    }
+
+    public int getArrival() {
+        return this.arrival;
+    }
+
+    /**
+     * parses a time of day
+     *
+     * @param time a time written as hours and minutes (08:15, or 25:30 for
+     *             1:30 the next day) or as a number of minutes after midnight
+     * @return the number of minutes after midnight
+     */
+    public static int parseTime(String time) {
+        try {
+            int colon = time.indexOf(':');
+            int minutes = colon < 0 ? Integer.parseInt(time.trim())
+                : 60 * Integer.parseInt(time.substring(0, colon).trim())
+                    + Integer.parseInt(time.substring(colon + 1).trim());
+            if (minutes < 0 || (colon >= 0 && Integer.parseInt(time.substring(colon + 1).trim()) >= 60)) {
+                throw new IllegalArgumentException("Invalid time: " + time);
+            }
+            return minutes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time: " + time);
+        }
+    }
+
+    /**
+     * formats a number of minutes after midnight as hours and minutes, with
+     * the number of days later appended for times past the first day
+     *
+     * @param minutes the number of minutes after midnight
+     * @return the time, for instance 08:15 or 01:30+1
+     */
+    public static String formatTime(int minutes) {
+        String time = String.format("%02d:%02d", (minutes / 60) % 24, minutes % 60);
+        return minutes < 24 * 60 ? time : time + "+" + minutes / (24 * 60);
+    }
+
+    @Override
+    public String toString() {
+        return this.origin + " -> " + this.destination +
+            ", Type: " + this.type.getLabel() +
+            ", Cost: $" + this.price +
+            ", Departs: " + formatTime(this.departure) +
+            ", Arrives: " + formatTime(this.arrival);
+    }
+}
@@ -1,6 +1,7 @@
 package src;
 
 import java.util.List;
+import java.util.function.ToIntFunction;
 
 /**
  * Interface that implements breadth first search.
@@ -19,4 +20,17 @@ public interface IBFS<V, E> {
      * @return a list of edges starting from the start to the end
      */
     public List<E> getPath(IGraph<V, E> graph, V start, V end);
+
+    /**
+     * Returns the path from start to end that only uses edges whose mask has
+     * a bit in common with the allowed mask.
+     *
+     * @param graph    the graph including the vertices
+     * @param start    the start vertex
+     * @param end      the end vertex
+     * @param edgeMask the mask bits of each edge, for instance Transport.TYPE_MASK
+     * @param allowed  the mask of the edges the path may use
+     * @return a list of edges starting from the start to the end
+     */
+    public List<E> getPath(IGraph<V, E> graph, V start, V end, ToIntFunction<E> edgeMask, int allowed);
 }
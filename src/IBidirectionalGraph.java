@@ -0,0 +1,21 @@
+package src;
+
+import java.util.Set;
+
+/**
+ * An interface for a graph that can also be walked backwards, from the target
+ * of an edge to its source.
+ *
+ * @param <V> the type of the vertex
+ * @param <E> the type of the edge
+ */
+public interface IBidirectionalGraph<V, E> extends IGraph<V, E> {
+
+    /**
+     * Gets the incoming edges of a vertex.
+     *
+     * @param toVertex the vertex
+     * @return the edges whose target is that vertex
+     */
+    public Set<E> getIncomingEdges(V toVertex);
+}
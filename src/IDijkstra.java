@@ -2,6 +2,7 @@ package src;
 
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 /**
  * A class the implements Dijkstra's algorithm.
@@ -22,4 +23,19 @@ public interface IDijkstra<V, E> {
     public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
                                    Function<E, Double> edgeWeight);
 
+    /**
+     * Finds the lowest cost path from source to destination that only uses
+     * edges whose mask has a bit in common with the allowed mask.
+     *
+     * @param graph       the graph including the vertices
+     * @param source      the source vertex
+     * @param destination the destination vertex
+     * @param edgeWeight  the weight of each edge
+     * @param edgeMask    the mask bits of each edge, for instance Transport.TYPE_MASK
+     * @param allowed     the mask of the edges the path may use
+     * @return a list of edges from source to destination
+     */
+    public List<E> getShortestPath(IGraph<V, E> graph, V source, V destination,
+                                   Function<E, Double> edgeWeight, ToIntFunction<E> edgeMask, int allowed);
+
 }
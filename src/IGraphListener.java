@@ -0,0 +1,47 @@
+package src;
+
+/**
+ * Interface for being told about changes made to a graph after it was built.
+ *
+ * @param <E> the type of the edges
+ */
+public interface IGraphListener<E> {
+
+    /**
+     * Called after a single edge was added to the graph. By default this is
+     * treated like any other change to the edges.
+     *
+     * @param edge the added edge
+     */
+    public default void edgeAdded(E edge) {
+        this.edgesChanged();
+    }
+
+    /**
+     * Called after a single edge was removed from the graph. By default this
+     * is treated like any other change to the edges.
+     *
+     * @param edge the removed edge
+     */
+    public default void edgeRemoved(E edge) {
+        this.edgesChanged();
+    }
+
+    /**
+     * Called after an edge was replaced by another between the same two
+     * vertices, such as one with different weights. By default this is
+     * treated like any other change to the edges.
+     *
+     * @param previous the edge that was replaced
+     * @param next the edge that replaced it
+     */
+    public default void edgeReplaced(E previous, E next) {
+        this.edgesChanged();
+    }
+
+    /**
+     * Called after edges were added to or removed from the graph in a way
+     * edgeAdded and edgeRemoved do not describe, such as many at once.
+     */
+    public void edgesChanged();
+}
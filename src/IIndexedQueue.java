@@ -0,0 +1,42 @@
+package src;
+
+/**
+ * An interface for a min-priority queue over int ids (0 to capacity - 1) that
+ * holds each id at most once and supports lowering the key of a queued id.
+ */
+public interface IIndexedQueue {
+
+    /**
+     * Checks whether the queue is empty.
+     *
+     * @return true if there are no ids in the queue
+     */
+    public boolean isEmpty();
+
+    /**
+     * Inserts an id, or lowers its key if it is already queued with a larger key.
+     *
+     * @param id  the id
+     * @param key the priority of the id
+     */
+    public void insertOrDecrease(int id, double key);
+
+    /**
+     * Removes the id with the smallest key.
+     *
+     * @return the id with the smallest key
+     */
+    public int poll();
+
+    /**
+     * Gets the smallest key in the queue without removing it.
+     *
+     * @return the smallest key, or positive infinity if the queue is empty
+     */
+    public double peekKey();
+
+    /**
+     * Removes every id from the queue.
+     */
+    public void clear();
+}
@@ -0,0 +1,23 @@
+package src;
+
+import java.util.function.Function;
+
+/**
+ * An interface for shortest-path engines that answer queries faster after
+ * building auxiliary data for a graph and a weight function.
+ *
+ * @param <V> the type of the vertices
+ * @param <E> the type of the edges
+ */
+public interface IPreprocessedDijkstra<V, E> extends IDijkstra<V, E> {
+
+    /**
+     * Builds (or rebuilds) the auxiliary data for the current contents of a
+     * graph under one weight function. Queries with a graph or weight function
+     * that has not been preprocessed must still return correct paths.
+     *
+     * @param graph      the graph including the vertices
+     * @param edgeWeight the weight function later queries will use
+     */
+    public void preprocess(IGraph<V, E> graph, Function<E, Double> edgeWeight);
+}
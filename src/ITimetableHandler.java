@@ -0,0 +1,22 @@
+package src;
+
+/**
+ * Interface for receiving the rows of a timetable file one at a time,
+ * already split into typed fields.
+ */
+public interface ITimetableHandler {
+
+    /**
+     * Handles one row of a timetable file.
+     *
+     * @param origin      the name of the origin city
+     * @param destination the name of the destination city
+     * @param type        the type of the transport
+     * @param price       the price of the transport
+     * @param departure   the departure time, in minutes after midnight
+     * @param arrival     the arrival time, in minutes after midnight, never
+     *                    before the departure
+     */
+    public void accept(String origin, String destination, TransportType type, double price,
+                       int departure, int arrival);
+}
@@ -0,0 +1,19 @@
+package src;
+
+/**
+ * Interface for receiving the rows of a transportation file one at a time,
+ * already split into typed fields.
+ */
+public interface ITransportHandler {
+
+    /**
+     * Handles one row of a transportation file.
+     *
+     * @param origin      the name of the origin city
+     * @param destination the name of the destination city
+     * @param type        the type of the transport
+     * @param price       the price of the transport
+     * @param duration    the duration of the transport, in minutes
+     */
+    public void accept(String origin, String destination, TransportType type, double price, double duration);
+}
@@ -1,6 +1,9 @@
 package src;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * An interface that describes the commands given to the app.
@@ -19,6 +22,37 @@ public interface ITravelController<V, E> {
      */
     public String load(String citiesFile, String transportFile);
 
+    /**
+     * Loads a cities CSV and any number of transportation CSVs into the app.
+     *
+     * @param citiesFile     the filename of the cities csv
+     * @param transportFiles the filenames of the transportation csvs, which may
+     *                       be gzip-compressed, or of directories holding them
+     * @return an informative message to be printed in the REPL
+     */
+    public String load(String citiesFile, List<String> transportFiles);
+
+    /**
+     * Loads CSVs into the app in the background. Queries keep being answered
+     * from the current graph until the new one is completely built.
+     *
+     * @param citiesFile     the filename of the cities csv
+     * @param transportFiles the filenames of the transportation csvs, which may
+     *                       be gzip-compressed, or of directories holding them
+     * @return a future completed with an informative message to be printed in the REPL
+     */
+    public CompletableFuture<String> reload(String citiesFile, List<String> transportFiles);
+
+    /**
+     * Loads CSVs into the app, keeping the transports outside the Java heap
+     * for graphs too large for it. Routes are searched in the off-heap graph.
+     *
+     * @param citiesFile     the filename of the cities csv
+     * @param transportFiles the filenames of the transportation csvs
+     * @return an informative message to be printed in the REPL
+     */
+    public String loadOffHeap(String citiesFile, List<String> transportFiles);
+
     /**
      * Finds the fastest route in between two cities
      *
@@ -48,4 +82,165 @@ public interface ITravelController<V, E> {
      * or empty if there is none
      */
     public List<E> mostDirectRoute(String source, String destination);
+
+    /**
+     * Finds the fastest route in between two cities that only uses some kinds of transport
+     *
+     * @param source      the name of the source city
+     * @param destination the name of the destination city
+     * @param modes       the transport types the route may use
+     * @return the path starting from the source to the destination,
+     * or empty if there is none
+     */
+    public List<E> fastestRoute(String source, String destination, Set<TransportType> modes);
+
+    /**
+     * Finds the cheapest route in between two cities that only uses some kinds of transport
+     *
+     * @param source      the name of the source city
+     * @param destination the name of the destination city
+     * @param modes       the transport types the route may use
+     * @return the path starting from the source to the destination,
+     * or empty if there is none
+     */
+    public List<E> cheapestRoute(String source, String destination, Set<TransportType> modes);
+
+    /**
+     * Finds the most direct route in between two cities that only uses some kinds of transport
+     *
+     * @param source      the name of the source city
+     * @param destination the name of the destination city
+     * @param modes       the transport types the route may use
+     * @return the path starting from the source to the destination,
+     * or empty if there is none
+     */
+    public List<E> mostDirectRoute(String source, String destination, Set<TransportType> modes);
+
+    /**
+     * Finds every route in between two cities that no other route beats on
+     * both price and travel time
+     *
+     * @param source      the name of the source city
+     * @param destination the name of the destination city
+     * @return the routes, from the cheapest to the fastest, or empty if there is none
+     */
+    public List<List<E>> paretoRoutes(String source, String destination);
+
+    /**
+     * Finds the fastest route within a price budget, or the cheapest route
+     * within a travel time limit
+     *
+     * @param source      the name of the source city
+     * @param destination the name of the destination city
+     * @param metric      FASTEST to limit the price, or CHEAPEST to limit the travel time
+     * @param limit       the largest total price or travel time the route may have
+     * @return the path starting from the source to the destination, or empty if there is none
+     */
+    public List<E> constrainedRoute(String source, String destination, RouteMetric metric, double limit);
+
+    /**
+     * Finds the best route in between two cities and the next best alternatives
+     *
+     * @param source      the name of the source city
+     * @param destination the name of the destination city
+     * @param metric      the kind of routes to find
+     * @param k           the largest number of routes to find
+     * @return up to k paths that never visit a city twice, from the best to
+     * the worst, or empty if there is none
+     */
+    public List<List<E>> alternativeRoutes(String source, String destination, RouteMetric metric, int k);
+
+    /**
+     * Loads a timetable of scheduled departures, separate from the graph
+     *
+     * @param file the filename of the timetable csv
+     * @return an informative message about whether the timetable was loaded
+     */
+    public String loadTimetable(String file);
+
+    /**
+     * Finds the journey through the loaded timetable that arrives at the
+     * destination as early as possible
+     *
+     * @param source      the name of the source city
+     * @param destination the name of the destination city
+     * @param departure   the earliest departure time, in minutes after midnight
+     * @return the connections of the journey in order, or empty if there is none
+     */
+    public List<Connection> earliestArrival(String source, String destination, int departure);
+
+    /**
+     * Chooses the shortest-path engine used by fastestRoute and cheapestRoute.
+     *
+     * @param engine the name of the engine, for instance "dijkstra", "indexed",
+     *               "bidirectional", "alt" or "ch"
+     * @return an informative message to be printed in the REPL
+     */
+    public String useEngine(String engine);
+
+    /**
+     * Finds the routes from one city to many others with a single search
+     *
+     * @param source       the name of the source city
+     * @param destinations the names of the destination cities, or null for
+     *                     every city reachable from the source
+     * @param metric       the kind of routes to find
+     * @return a map from each destination name to the path starting from the
+     * source to it, or empty if there is none
+     */
+    public Map<String, List<E>> routesFrom(String source, List<String> destinations, RouteMetric metric);
+
+    /**
+     * Answers many independent route queries at once
+     *
+     * @param queries the route queries
+     * @return the path of each query, in the order of the queries; the path is
+     * empty if there is none
+     * @throws IllegalArgumentException if any query names a city that does not exist
+     */
+    public List<List<E>> batchRoutes(List<RouteQuery> queries);
+
+    /**
+     * Computes the fastest time and cheapest price between every pair of
+     * cities and saves them to a distance matrix file, which is then used by distance
+     *
+     * @param file the filename of the matrix file to write
+     * @return an informative message to be printed in the REPL
+     */
+    public String saveDistanceMatrix(String file);
+
+    /**
+     * Opens a distance matrix file written by saveDistanceMatrix for use by distance
+     *
+     * @param file the filename of the matrix file
+     * @return an informative message to be printed in the REPL
+     */
+    public String openDistanceMatrix(String file);
+
+    /**
+     * Finds the total weight of the best route in between two cities, without the route itself
+     *
+     * @param source      the name of the source city
+     * @param destination the name of the destination city
+     * @param metric      the kind of route
+     * @return the total minutes, price or number of connections of the route,
+     * or infinity if there is none
+     */
+    public double distance(String source, String destination, RouteMetric metric);
+
+    /**
+     * Saves the loaded graph to a binary snapshot file that openSnapshot can load quickly
+     *
+     * @param file the filename of the snapshot file to write
+     * @return an informative message to be printed in the REPL
+     */
+    public String saveSnapshot(String file);
+
+    /**
+     * Loads a graph from a snapshot file written by saveSnapshot, in place of load
+     *
+     * @param file the filename of the snapshot file
+     * @return an informative message to be printed in the REPL
+     */
+    public String openSnapshot(String file);
 }
@@ -0,0 +1,35 @@
+package src;
+
+/**
+ * The number of rows a parse handled and how long it took
+ */
+public class IngestStats {
+    private final long rows;
+    private final long nanos;
+
+    public IngestStats(long rows, long nanos) {
+        this.rows = rows;
+        this.nanos = nanos;
+    }
+
+    public long getRows() {
+        return this.rows;
+    }
+
+    public double getSeconds() {
+        return this.nanos / 1e9;
+    }
+
+    /**
+     * accessor to get the parsing throughput, or 0 if no time was measured
+     */
+    public double getRowsPerSecond() {
+        return this.nanos == 0 ? 0 : this.rows / this.getSeconds();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows in %.3fs (%.0f rows/s)", this.rows, this.getSeconds(),
+            this.getRowsPerSecond());
+    }
+}
@@ -4,7 +4,10 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * A class that provides the interactable interface used when running the program
@@ -63,60 +66,232 @@ public class REPL<V, E> {
                 // Based on the user-inputted commands, calls the corresponding ITravelController method
                 switch (command) {
                     case "load":
-                        if (args.length == 3) {
+                        if (args.length >= 3) {
+                            try {
+                                response = this.controller.load(args[1],
+                                    Arrays.asList(args).subList(2, args.length));
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: load [cities_file] [transport_file ...]";
+                        }
+                        break;
+                    case "reload":
+                        if (args.length >= 3) {
+                            // queries keep using the current graph until the new one is ready
+                            this.controller.reload(args[1], Arrays.asList(args).subList(2, args.length))
+                                .whenComplete((message, error) ->
+                                    System.out.println(error == null ? message : error.getMessage()));
+                            response = "Reloading in the background.";
+                        } else {
+                            response = "Usage: reload [cities_file] [transport_file ...]";
+                        }
+                        break;
+                    case "offheap":
+                        if (args.length >= 3) {
                             try {
-                                response = this.controller.load(args[1], args[2]);
+                                response = this.controller.loadOffHeap(args[1],
+                                    Arrays.asList(args).subList(2, args.length));
                             } catch (Exception e) {
                                 response = e.getMessage();
                             }
                         } else {
-                            response = "Usage: load [cities_file] [transport_file]";
+                            response = "Usage: offheap [cities_file] [transport_file ...]";
                         }
                         break;
                     case "fast":
-                        if (args.length == 3) {
+                        if (args.length == 3 || args.length == 4) {
                             String origin = args[1];
                             String destination = args[2];
                             try {
-                                List<E> path = this.controller.fastestRoute(origin, destination);
+                                List<E> path = args.length == 3 ? this.controller.fastestRoute(origin, destination)
+                                    : this.controller.fastestRoute(origin, destination, this.parseModes(args[3]));
                                 response = this.getPathString(origin, destination, path);
                             } catch (Exception e) {
                                 response = e.getMessage();
                             }
                         } else {
-                            response = "Usage: fast [origin] [destination]";
+                            response = "Usage: fast [origin] [destination] [bus,train,plane]";
                         }
                         break;
                     case "cheap":
-                        if (args.length == 3) {
+                        if (args.length == 3 || args.length == 4) {
                             String origin = args[1];
                             String destination = args[2];
                             try {
-                                List<E> path = this.controller.cheapestRoute(origin, destination);
+                                List<E> path = args.length == 3 ? this.controller.cheapestRoute(origin, destination)
+                                    : this.controller.cheapestRoute(origin, destination, this.parseModes(args[3]));
                                 response = this.getPathString(origin, destination, path);
                             } catch (Exception e) {
                                 response = e.getMessage();
                             }
                         } else {
-                            response = "Usage: cheap [origin] [destination]";
+                            response = "Usage: cheap [origin] [destination] [bus,train,plane]";
                         }
                         break;
                     case "direct":
+                        if (args.length == 3 || args.length == 4) {
+                            String origin = args[1];
+                            String destination = args[2];
+                            try {
+                                List<E> path = args.length == 3 ? this.controller.mostDirectRoute(origin, destination)
+                                    : this.controller.mostDirectRoute(origin, destination, this.parseModes(args[3]));
+                                response = this.getPathString(origin, destination, path);
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: direct [origin] [destination] [bus,train,plane]";
+                        }
+                        break;
+                    case "pareto":
                         if (args.length == 3) {
                             String origin = args[1];
                             String destination = args[2];
                             try {
-                                List<E> path = this.controller.mostDirectRoute(origin, destination);
+                                StringBuilder sb = new StringBuilder();
+                                for (List<E> path : this.controller.paretoRoutes(origin, destination)) {
+                                    sb.append(this.getPathString(origin, destination, path)).append("\n");
+                                }
+                                response = sb.length() == 0 ? "No route found" : sb.toString().trim();
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: pareto [origin] [destination]";
+                        }
+                        break;
+                    case "within":
+                        if (args.length == 5) {
+                            String origin = args[1];
+                            String destination = args[2];
+                            try {
+                                List<E> path = this.controller.constrainedRoute(origin, destination,
+                                    RouteMetric.fromString(args[3]), Double.parseDouble(args[4]));
                                 response = this.getPathString(origin, destination, path);
                             } catch (Exception e) {
                                 response = e.getMessage();
                             }
                         } else {
-                            response = "Usage: direct [origin] [destination]";
+                            response = "Usage: within [origin] [destination] [fast|cheap] [max_price|max_minutes]";
+                        }
+                        break;
+                    case "alts":
+                        if (args.length == 5) {
+                            String origin = args[1];
+                            String destination = args[2];
+                            try {
+                                StringBuilder sb = new StringBuilder();
+                                for (List<E> path : this.controller.alternativeRoutes(origin, destination,
+                                    RouteMetric.fromString(args[3]), Integer.parseInt(args[4]))) {
+                                    sb.append(this.getPathString(origin, destination, path)).append("\n");
+                                }
+                                response = sb.length() == 0 ? "No route found" : sb.toString().trim();
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: alts [origin] [destination] [fast|cheap|direct] [count]";
+                        }
+                        break;
+                    case "timetable":
+                        if (args.length == 2) {
+                            response = this.controller.loadTimetable(args[1]);
+                        } else {
+                            response = "Usage: timetable [timetable_file]";
+                        }
+                        break;
+                    case "arrive":
+                        if (args.length == 4) {
+                            try {
+                                StringBuilder sb = new StringBuilder();
+                                for (Connection leg : this.controller.earliestArrival(args[1], args[2],
+                                    Connection.parseTime(args[3]))) {
+                                    sb.append(leg).append("\n");
+                                }
+                                response = sb.length() == 0 ? "No route found" : sb.toString().trim();
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: arrive [origin] [destination] [HH:MM]";
+                        }
+                        break;
+                    case "engine":
+                        if (args.length == 2) {
+                            try {
+                                response = this.controller.useEngine(args[1]);
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: engine [dijkstra|indexed|bidirectional|alt|ch]";
+                        }
+                        break;
+                    case "from":
+                        if (args.length >= 3) {
+                            String origin = args[1];
+                            List<String> destinations = args.length == 3 ? null
+                                : Arrays.asList(args).subList(3, args.length);
+                            try {
+                                Map<String, List<E>> routes = this.controller.routesFrom(origin,
+                                    destinations, RouteMetric.fromString(args[2]));
+                                StringBuilder sb = new StringBuilder();
+                                for (Map.Entry<String, List<E>> route : routes.entrySet()) {
+                                    sb.append(this.getPathString(origin, route.getKey(), route.getValue()));
+                                    sb.append("\n");
+                                }
+                                response = sb.length() == 0 ? "No route found" : sb.toString().trim();
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: from [origin] [fast|cheap|direct] [destination ...]";
+                        }
+                        break;
+                    case "matrix":
+                        if (args.length == 3 && (args[1].equals("save") || args[1].equals("open"))) {
+                            try {
+                                response = args[1].equals("save")
+                                    ? this.controller.saveDistanceMatrix(args[2])
+                                    : this.controller.openDistanceMatrix(args[2]);
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: matrix [save|open] [matrix_file]";
+                        }
+                        break;
+                    case "snapshot":
+                        if (args.length == 3 && (args[1].equals("save") || args[1].equals("open"))) {
+                            try {
+                                response = args[1].equals("save")
+                                    ? this.controller.saveSnapshot(args[2])
+                                    : this.controller.openSnapshot(args[2]);
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: snapshot [save|open] [snapshot_file]";
+                        }
+                        break;
+                    case "distance":
+                        if (args.length == 4) {
+                            try {
+                                double distance = this.controller.distance(args[1], args[2],
+                                    RouteMetric.fromString(args[3]));
+                                response = Double.isInfinite(distance) ? "No route found" : String.valueOf(distance);
+                            } catch (Exception e) {
+                                response = e.getMessage();
+                            }
+                        } else {
+                            response = "Usage: distance [origin] [destination] [fast|cheap|direct]";
                         }
                         break;
                     default:
-                        response = "Invalid command. Available commands: load, cheap, fast, direct";
+                        response = "Invalid command. Available commands: load, reload, offheap, cheap, fast, direct, "
+                            + "pareto, within, alts, timetable, arrive, from, distance, matrix, snapshot, engine";
                 }
                 System.out.println(response);
                 System.out.print(">>> ");
@@ -141,6 +316,20 @@ public class REPL<V, E> {
         return s.toString();
     }
 
+    /**
+     * Parses a comma-separated list of transport types, such as train,bus
+     *
+     * @param modes the list of types
+     * @return the set of types in the list
+     */
+    private Set<TransportType> parseModes(String modes) {
+        Set<TransportType> types = EnumSet.noneOf(TransportType.class);
+        for (String mode : modes.split(",")) {
+            types.add(TransportType.fromString(mode.trim()));
+        }
+        return types;
+    }
+
     /**
      * Formats the path returned by the ITravelController methods to be printed in the REPL
      *
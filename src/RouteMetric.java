@@ -0,0 +1,52 @@
+package src;
+
+import java.util.function.Function;
+
+/**
+ * An enum representing the different kinds of routes (fastest, cheapest, most direct)
+ */
+public enum RouteMetric {
+    FASTEST("fast", Transport::getMinutes),
+    CHEAPEST("cheap", Transport::getPrice),
+    MOST_DIRECT("direct", transport -> 1.0);
+
+    private final String label;
+    private final Function<Transport, Double> weight;
+
+    RouteMetric(String label, Function<Transport, Double> weight) {
+        this.label = label;
+        this.weight = weight;
+    }
+
+    /**
+     * returns the enum corresponding to the inputted string
+     *
+     * @param metricString string to be converted to enum
+     * @return RouteMetric enum
+     */
+    public static RouteMetric fromString(String metricString) {
+        return switch (metricString.toLowerCase()) {
+            case "fast", "fastest" -> FASTEST;
+            case "cheap", "cheapest" -> CHEAPEST;
+            case "direct", "most direct" -> MOST_DIRECT;
+            default -> throw new IllegalArgumentException("String: '" + metricString
+                + "' not a valid RouteMetric");
+        };
+    }
+
+    /**
+     * accessor to get the weight a route of this kind minimizes. The same
+     * Function object is returned every time, so compiled graphs can cache the
+     * weights it produces.
+     */
+    public Function<Transport, Double> getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * accessor to get the RouteMetric's label, for instance "fast" if enum is FASTEST
+     */
+    public String getLabel() {
+        return this.label;
+    }
+}
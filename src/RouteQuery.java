@@ -0,0 +1,33 @@
+package src;
+
+/**
+ * A single route query (source, destination and kind of route) for batch requests
+ */
+public class RouteQuery {
+    private final String source;
+    private final String destination;
+    private final RouteMetric metric;
+
+    public RouteQuery(String source, String destination, RouteMetric metric) {
+        this.source = source;
+        this.destination = destination;
+        this.metric = metric;
+    }
+
+    public String getSource() {
+        return this.source;
+    }
+
+    public String getDestination() {
+        return this.destination;
+    }
+
+    public RouteMetric getMetric() {
+        return this.metric;
+    }
+
+    @Override
+    public String toString() {
+        return this.metric.getLabel() + " " + this.source + " -> " + this.destination;
+    }
+}
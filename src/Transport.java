@@ -1,14 +1,22 @@
 package src;
 
+import java.util.function.ToIntFunction;
+
 /**
  * Edge class (edges are called Transports)
  */
 public class Transport {
-    private City source;
-    private City target;
-    private TransportType type;
-    private double minutes;
-    private double price;
+    /**
+     * the mask bit of a transport's type. The same object is used everywhere,
+     * so compiled graphs can cache the masks it produces.
+     */
+    public static final ToIntFunction<Transport> TYPE_MASK = transport -> transport.type.getMask();
+
+    private final City source;
+    private final City target;
+    private final TransportType type;
+    private final double minutes;
+    private final double price;
 
     public Transport(City source, City destination, TransportType type, double price,
                      double minutes) {
@@ -27,6 +35,10 @@ public class Transport {
         return this.target;
     }
 
+    public TransportType getType() {
+        return this.type;
+    }
+
     public double getPrice() {
         return this.price;
     }
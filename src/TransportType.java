@@ -1,5 +1,7 @@
 package src;
 
+import java.util.Collection;
+
 /**
  * An enum representing the different TransportTypes (Bus, Train, Plane)
  */
@@ -30,6 +32,30 @@ public enum TransportType {
         };
     }
 
+    /**
+     * returns the bit standing for this type in a mask of transport types
+     *
+     * @return a mask with only this type's bit set
+     */
+    public int getMask() {
+        return 1 << this.ordinal();
+    }
+
+    /**
+     * returns the mask of a set of transport types, as used to restrict
+     * searches to some kinds of transport
+     *
+     * @param types the types to include
+     * @return a mask with the bit of each type set
+     */
+    public static int maskOf(Collection<TransportType> types) {
+        int mask = 0;
+        for (TransportType type : types) {
+            mask |= type.getMask();
+        }
+        return mask;
+    }
+
     /**
      * accessor to get the TransportType's label, for instance "bus" if enum is BUS
      */
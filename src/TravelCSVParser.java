@@ -6,6 +6,9 @@ import org.apache.commons.csv.CSVRecord;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -18,6 +21,11 @@ import java.util.function.Function;
 public class TravelCSVParser {
 
     private static final CSVFormat FORMAT = CSVFormat.RFC4180.withDelimiter(',').withHeader();
+    // the columns a transportation file must have, in the order streamTransportation reads them
+    private static final String[] TRANSPORT_COLUMNS = {"origin", "destination", "type", "price", "duration"};
+    // the columns a timetable file must have, in the order parseTimetable reads them
+    private static final String[] TIMETABLE_COLUMNS = {"origin", "destination", "type", "price", "departure",
+        "arrival"};
 
     public TravelCSVParser() {
     }
@@ -61,4 +69,402 @@ public class TravelCSVParser {
             handleTransport.apply(record.toMap());
         }
     }
+
+    /**
+     * parses a transportation file without building a Map per row: the header
+     * is resolved to column indices once, each row is split in a reused
+     * buffer, city names are deduplicated so repeated names share one String,
+     * and prices and durations are parsed straight from the row's characters
+     *
+     * @param transportationFile path to csv file containing transportation information (ex: data/transport1.csv)
+     * @param handler            receives the typed fields of each row
+     * @return the number of rows parsed and how long it took
+     */
+    public IngestStats streamTransportation(String transportationFile, ITransportHandler handler)
+        throws IOException {
+        try (Reader reader = new FileReader(transportationFile)) {
+            return this.streamTransportation(reader, null, handler);
+        }
+    }
+
+    /**
+     * parses transportation rows from a reader the same way as
+     * streamTransportation(String, ITransportHandler)
+     *
+     * @param reader  the source of the rows; it is not closed
+     * @param columns the indices of the origin, destination, type, price and
+     *                duration columns, as returned by transportColumns, or null
+     *                if the first row of the reader is the header
+     * @param handler receives the typed fields of each row
+     * @return the number of rows parsed and how long it took
+     */
+    public IngestStats streamTransportation(Reader reader, int[] columns, ITransportHandler handler)
+        throws IOException {
+        long start = System.nanoTime();
+        RowScanner scanner = new RowScanner(reader);
+        if (columns == null) {
+            if (!scanner.next()) {
+                throw new IOException("Missing header row");
+            }
+            columns = transportColumns(scanner.headerNames());
+        }
+        int width = 0;
+        for (int column : columns) {
+            width = Math.max(width, column + 1);
+        }
+        long rows = 0;
+        while (scanner.next()) {
+            if (scanner.fieldCount < width) {
+                throw new IOException("Row " + (rows + 1) + " has " + scanner.fieldCount + " fields");
+            }
+            handler.accept(scanner.string(columns[0]), scanner.string(columns[1]),
+                scanner.type(columns[2]), scanner.number(columns[3]), scanner.number(columns[4]));
+            rows++;
+        }
+        return new IngestStats(rows, System.nanoTime() - start);
+    }
+
+    /**
+     * finds the transportation columns in a header row
+     *
+     * @param header the names of the header's columns
+     * @return the indices of the origin, destination, type, price and duration columns
+     * @throws IOException if one of them is missing
+     */
+    public static int[] transportColumns(String[] header) throws IOException {
+        return findColumns(header, TRANSPORT_COLUMNS);
+    }
+
+    /**
+     * reads a header row, split the same way as the rows streamTransportation
+     * parses, and finds the transportation columns in it
+     *
+     * @param reader the source of the header row; it is not closed
+     * @return the indices of the origin, destination, type, price and duration columns
+     * @throws IOException if there is no header row or one of the columns is missing
+     */
+    public static int[] transportColumns(Reader reader) throws IOException {
+        RowScanner scanner = new RowScanner(reader);
+        if (!scanner.next()) {
+            throw new IOException("Missing header row");
+        }
+        return transportColumns(scanner.headerNames());
+    }
+
+    private static int[] findColumns(String[] header, String[] names) throws IOException {
+        int[] columns = new int[names.length];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = Arrays.asList(header).indexOf(names[c]);
+            if (columns[c] < 0) {
+                throw new IOException("Missing column: " + names[c]);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * parses a timetable file, which has one row per scheduled departure with
+     * the columns origin, destination, type, price, departure and arrival.
+     * Times are written as hours and minutes (08:15) or as minutes after
+     * midnight; an arrival earlier than its departure is taken to be on the
+     * following day. Rows are split the same way as by streamTransportation.
+     *
+     * @param timetableFile path to csv file containing the timetable
+     * @param handler       receives the typed fields of each row
+     * @return the number of rows parsed and how long it took
+     * @throws IOException if the file could not be read or a row is malformed
+     */
+    public IngestStats parseTimetable(String timetableFile, ITimetableHandler handler) throws IOException {
+        long start = System.nanoTime();
+        try (Reader reader = new FileReader(timetableFile)) {
+            RowScanner scanner = new RowScanner(reader);
+            if (!scanner.next()) {
+                throw new IOException("Missing header row");
+            }
+            int[] columns = findColumns(scanner.headerNames(), TIMETABLE_COLUMNS);
+            int width = 0;
+            for (int column : columns) {
+                width = Math.max(width, column + 1);
+            }
+            long rows = 0;
+            while (scanner.next()) {
+                if (scanner.fieldCount < width) {
+                    throw new IOException("Row " + (rows + 1) + " has " + scanner.fieldCount + " fields");
+                }
+                int departure = scanner.time(columns[4]);
+                int arrival = scanner.time(columns[5]);
+                while (arrival < departure) {
+                    arrival += 24 * 60;
+                }
+                handler.accept(scanner.string(columns[0]), scanner.string(columns[1]),
+                    scanner.type(columns[2]), scanner.number(columns[3]), departure, arrival);
+                rows++;
+            }
+            return new IngestStats(rows, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Splits RFC 4180 rows (quoted fields, doubled quotes, CRLF or LF line
+     * endings) into one reused character buffer, recording where each field
+     * starts and ends, so reading a row allocates nothing.
+     */
+    private static final class RowScanner {
+        // powers of ten that are exact doubles
+        private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+        private final Reader reader;
+        private final char[] input;
+        private int position;
+        private int limit;
+        private char[] row;
+        private int[] starts;
+        private int[] ends;
+        private int fieldCount;
+        // open-addressing table of every distinct name seen so far
+        private String[] names;
+        private int nameCount;
+        private final Map<String, TransportType> types;
+
+        RowScanner(Reader reader) {
+            this.reader = reader;
+            this.input = new char[1 << 16];
+            this.row = new char[256];
+            this.starts = new int[8];
+            this.ends = new int[8];
+            this.names = new String[1024];
+            this.types = new HashMap<>();
+        }
+
+        private int read() throws IOException {
+            if (this.position == this.limit) {
+                this.limit = this.reader.read(this.input, 0, this.input.length);
+                this.position = 0;
+                if (this.limit <= 0) {
+                    this.limit = 0;
+                    return -1;
+                }
+            }
+            return this.input[this.position++];
+        }
+
+        private void append(int length, char c) {
+            if (length == this.row.length) {
+                this.row = Arrays.copyOf(this.row, 2 * length);
+            }
+            this.row[length] = c;
+        }
+
+        private void endField(int start, int end) {
+            if (this.fieldCount == this.starts.length) {
+                this.starts = Arrays.copyOf(this.starts, 2 * this.fieldCount);
+                this.ends = Arrays.copyOf(this.ends, 2 * this.fieldCount);
+            }
+            this.starts[this.fieldCount] = start;
+            this.ends[this.fieldCount] = end;
+            this.fieldCount++;
+        }
+
+        /**
+         * reads the next non-empty row
+         * @return false at the end of the input
+         */
+        boolean next() throws IOException {
+            while (true) {
+                this.fieldCount = 0;
+                int length = 0;
+                int fieldStart = 0;
+                int c = this.read();
+                if (c == -1) {
+                    return false;
+                }
+                while (true) {
+                    if (c == '"' && length == fieldStart) {
+                        // a quoted field runs to the next quote that is not doubled
+                        while (true) {
+                            c = this.read();
+                            if (c == -1) {
+                                throw new IOException("Unterminated quoted field");
+                            }
+                            if (c == '"') {
+                                c = this.read();
+                                if (c != '"') {
+                                    break;
+                                }
+                            }
+                            this.append(length++, (char) c);
+                        }
+                        continue;
+                    }
+                    if (c == ',') {
+                        this.endField(fieldStart, length);
+                        fieldStart = length;
+                    } else if (c == '\n' || c == -1) {
+                        break;
+                    } else if (c != '\r') {
+                        this.append(length++, (char) c);
+                    }
+                    c = this.read();
+                }
+                this.endField(fieldStart, length);
+                if (this.fieldCount > 1 || length > 0) {
+                    return true;
+                }
+                if (c == -1) {
+                    return false;
+                }
+            }
+        }
+
+        String[] headerNames() {
+            String[] header = new String[this.fieldCount];
+            for (int f = 0; f < this.fieldCount; f++) {
+                header[f] = new String(this.row, this.starts[f], this.ends[f] - this.starts[f]).trim();
+            }
+            return header;
+        }
+
+        /**
+         * @return - the field as a String, shared with every earlier field with the same characters
+         */
+        String string(int field) {
+            int start = this.starts[field];
+            int length = this.ends[field] - start;
+            int hash = 0;
+            for (int i = start; i < start + length; i++) {
+                hash = 31 * hash + this.row[i];
+            }
+            int mask = this.names.length - 1;
+            for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+                String name = this.names[slot];
+                if (name == null) {
+                    name = new String(this.row, start, length);
+                    this.names[slot] = name;
+                    if (++this.nameCount > this.names.length / 2) {
+                        this.rehash();
+                    }
+                    return name;
+                }
+                if (name.hashCode() == hash && this.matches(name, start, length)) {
+                    return name;
+                }
+            }
+        }
+
+        private boolean matches(String name, int start, int length) {
+            if (name.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (name.charAt(i) != this.row[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            String[] old = this.names;
+            this.names = new String[2 * old.length];
+            int mask = this.names.length - 1;
+            for (String name : old) {
+                if (name != null) {
+                    int hash = name.hashCode();
+                    int slot = (hash ^ (hash >>> 16)) & mask;
+                    while (this.names[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    this.names[slot] = name;
+                }
+            }
+        }
+
+        TransportType type(int field) {
+            String label = this.string(field);
+            TransportType type = this.types.get(label);
+            if (type == null) {
+                type = TransportType.fromString(label.trim());
+                this.types.put(label, type);
+            }
+            return type;
+        }
+
+        /**
+         * parses a time written as hours and minutes directly from the row;
+         * anything else, such as a plain number of minutes, is handed to
+         * Connection.parseTime
+         */
+        int time(int field) throws IOException {
+            int start = this.starts[field];
+            int end = this.ends[field];
+            int hours = 0;
+            int minutes = 0;
+            int colon = -1;
+            int i = start;
+            for (; i < end; i++) {
+                char c = this.row[i];
+                if (c >= '0' && c <= '9') {
+                    if (colon < 0) {
+                        hours = 10 * hours + (c - '0');
+                    } else {
+                        minutes = 10 * minutes + (c - '0');
+                    }
+                } else if (c == ':' && colon < 0 && i > start) {
+                    colon = i;
+                } else {
+                    break;
+                }
+            }
+            if (i == end && colon >= 0 && end - colon == 3 && colon - start <= 4 && minutes < 60) {
+                return 60 * hours + minutes;
+            }
+            try {
+                return Connection.parseTime(new String(this.row, start, end - start));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+
+        /**
+         * parses a plain decimal number (optional sign, digits, optional
+         * fraction) directly from the row. Dividing an exact integer
+         * mantissa by an exact power of ten gives the same correctly rounded
+         * result as Double.parseDouble; anything else, such as exponents or
+         * very long numbers, is handed to Double.parseDouble.
+         */
+        double number(int field) {
+            int start = this.starts[field];
+            int end = this.ends[field];
+            int i = start;
+            boolean negative = false;
+            if (i < end && (this.row[i] == '-' || this.row[i] == '+')) {
+                negative = this.row[i] == '-';
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            for (; i < end; i++) {
+                char c = this.row[i];
+                if (c >= '0' && c <= '9') {
+                    mantissa = 10 * mantissa + (c - '0');
+                    digits++;
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                } else if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else {
+                    break;
+                }
+            }
+            if (i < end || digits == 0 || digits > 15) {
+                return Double.parseDouble(new String(this.row, start, end - start));
+            }
+            double value = fractionDigits > 0 ? mantissa / POW10[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+    }
 }
@@ -3,8 +3,12 @@ package test;
 import org.junit.Assert;
 import org.junit.Test;
 import sol.BFS;
+import sol.CompiledGraph;
+import sol.ParallelBFS;
 import sol.TravelController;
 import sol.TravelGraph;
+import src.City;
+import src.IBFS;
 import src.Transport;
 import test.simple.SimpleEdge;
 import test.simple.SimpleGraph;
@@ -12,8 +16,12 @@ import test.simple.SimpleVertex;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntFunction;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class BFSTest {
 
@@ -85,9 +93,148 @@ public class BFSTest {
         System.out.println(bfs.getPath(this.graph, this.a, this.f));
     }
 
+    @Test
+    public void testCompiledBFS() {
+        this.makeSimpleGraph();
+        BFS<SimpleVertex, SimpleEdge> bfs = new BFS<>();
+        CompiledGraph<SimpleVertex, SimpleEdge> compiled = CompiledGraph.compile(this.graph);
+        List<SimpleEdge> path = bfs.getPath(compiled, this.a, this.e);
+        assertEquals(200.0, SimpleGraph.getTotalEdgeWeight(path), DELTA);
+        assertEquals(2, path.size());
+        assertEquals(3, bfs.getPath(compiled, this.a, this.d).size() + 1);
+        assertTrue(bfs.getPath(compiled, this.e, this.a).isEmpty());
+    }
+
+    @Test
+    public void testBidirectionalBFS() {
+        this.makeSimpleGraph();
+        BFS<SimpleVertex, SimpleEdge> bfs = new BFS<>(true);
+        List<SimpleEdge> path = bfs.getPath(this.graph, this.a, this.e);
+        assertEquals(200.0, SimpleGraph.getTotalEdgeWeight(path), DELTA);
+        assertEquals(2, path.size());
+        assertEquals(this.a, path.get(0).source);
+        assertEquals(this.e, path.get(1).target);
+        assertTrue(bfs.getPath(this.graph, this.e, this.a).isEmpty());
+        assertTrue(bfs.getPath(this.graph, this.a, this.a).isEmpty());
+
+        // random graphs: both modes agree on the number of edges
+        Random random = new Random(3);
+        SimpleGraph big = new SimpleGraph();
+        SimpleVertex[] vs = new SimpleVertex[400];
+        for (int i = 0; i < vs.length; i++) {
+            vs[i] = new SimpleVertex("v" + i);
+            big.addVertex(vs[i]);
+        }
+        for (int i = 0; i < 900; i++) {
+            SimpleVertex from = vs[random.nextInt(vs.length)];
+            SimpleVertex to = vs[random.nextInt(vs.length)];
+            big.addEdge(from, new SimpleEdge(1, from, to));
+        }
+        BFS<SimpleVertex, SimpleEdge> oneWay = new BFS<>();
+        for (int i = 0; i < 100; i++) {
+            SimpleVertex from = vs[random.nextInt(vs.length)];
+            SimpleVertex to = vs[random.nextInt(vs.length)];
+            List<SimpleEdge> expected = oneWay.getPath(big, from, to);
+            List<SimpleEdge> found = bfs.getPath(big, from, to);
+            assertEquals(expected.size(), found.size());
+            SimpleVertex at = from;
+            for (SimpleEdge edge : found) {
+                assertEquals(at, edge.source);
+                at = edge.target;
+            }
+            assertEquals(found.isEmpty() ? from : to, at);
+        }
+    }
+
+    @Test
+    public void testParallelBFS() {
+        Random random = new Random(9);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        // a sparse graph stays top-down, a dense one switches to bottom-up
+        for (int edges : new int[] {1500, 20000}) {
+            SimpleGraph big = new SimpleGraph();
+            SimpleVertex[] vs = new SimpleVertex[1000];
+            for (int i = 0; i < vs.length; i++) {
+                vs[i] = new SimpleVertex("v" + i);
+                big.addVertex(vs[i]);
+            }
+            for (int i = 0; i < edges; i++) {
+                SimpleVertex from = vs[random.nextInt(vs.length)];
+                SimpleVertex to = vs[random.nextInt(vs.length)];
+                big.addEdge(from, new SimpleEdge(1, from, to));
+            }
+            BFS<SimpleVertex, SimpleEdge> reference = new BFS<>();
+            ParallelBFS<SimpleVertex, SimpleEdge> parallel = new ParallelBFS<>(pool, 16);
+            for (int i = 0; i < 50; i++) {
+                SimpleVertex from = vs[random.nextInt(vs.length)];
+                SimpleVertex to = vs[random.nextInt(vs.length)];
+                List<SimpleEdge> expected = reference.getPath(big, from, to);
+                List<SimpleEdge> found = parallel.getPath(big, from, to);
+                assertEquals(expected.size(), found.size());
+                SimpleVertex at = from;
+                for (SimpleEdge edge : found) {
+                    assertEquals(at, edge.source);
+                    at = edge.target;
+                }
+                assertEquals(found.isEmpty() ? from : to, at);
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testMaskedBFS() {
+        Random random = new Random(17);
+        SimpleGraph big = new SimpleGraph();
+        SimpleGraph filtered = new SimpleGraph();
+        SimpleVertex[] vs = new SimpleVertex[1000];
+        SimpleVertex[] copies = new SimpleVertex[vs.length];
+        for (int i = 0; i < vs.length; i++) {
+            vs[i] = new SimpleVertex("v" + i);
+            copies[i] = new SimpleVertex("v" + i);
+            big.addVertex(vs[i]);
+            filtered.addVertex(copies[i]);
+        }
+        // odd weights mark the allowed edges, and only those are copied
+        ToIntFunction<SimpleEdge> edgeMask = e -> (int) e.weight % 2 == 1 ? 1 : 2;
+        for (int i = 0; i < 12000; i++) {
+            int from = random.nextInt(vs.length);
+            int to = random.nextInt(vs.length);
+            int weight = 1 + random.nextInt(2);
+            big.addEdge(vs[from], new SimpleEdge(weight, vs[from], vs[to]));
+            if (weight == 1) {
+                filtered.addEdge(copies[from], new SimpleEdge(weight, copies[from], copies[to]));
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<IBFS<SimpleVertex, SimpleEdge>> searches = List.of(new BFS<>(), new BFS<>(true),
+                new ParallelBFS<>(pool, 16));
+        BFS<SimpleVertex, SimpleEdge> reference = new BFS<>();
+        for (IBFS<SimpleVertex, SimpleEdge> bfs : searches) {
+            for (int i = 0; i < 50; i++) {
+                int from = random.nextInt(vs.length);
+                int to = random.nextInt(vs.length);
+                List<SimpleEdge> expected = reference.getPath(filtered, copies[from], copies[to]);
+                List<SimpleEdge> found = bfs.getPath(big, vs[from], vs[to], edgeMask, 1);
+                assertEquals(expected.size(), found.size());
+                for (SimpleEdge edge : found) {
+                    assertEquals(1.0, edge.weight, DELTA);
+                }
+            }
+        }
+        pool.shutdown();
+    }
+
     @Test
     public void testBFS() {
+        this.checkController(new BFS<>());
+        this.checkController(new BFS<>(true));
+        this.checkController(new ParallelBFS<>());
+    }
+
+    private void checkController(IBFS<City, Transport> bfs) {
         TravelController controller1 = new TravelController();
+        controller1.setBFS(bfs);
         controller1.load("data/cities3.csv", "data/transport3.csv");
         List<Transport> path1 = controller1.mostDirectRoute("Chicago",
                 "New York");
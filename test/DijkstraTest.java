@@ -1,17 +1,54 @@
 package test;
 
+import bench.DatasetGenerator;
 import org.junit.Assert;
 import org.junit.Test;
+import sol.ALTDijkstra;
+import sol.BidirectionalDijkstra;
+import sol.CHDijkstra;
+import sol.CompiledGraph;
+import sol.ContractionHierarchy;
 import sol.Dijkstra;
+import sol.IndexedDijkstra;
+import sol.KShortestPaths;
+import sol.LandmarkSelection;
+import sol.ParetoSearch;
+import sol.QueueStrategy;
+import sol.RouteCache;
+import sol.ShortestPathTree;
 import sol.TravelController;
+import sol.TravelGraph;
+import src.City;
+import src.Connection;
 import src.IDijkstra;
+import src.RouteMetric;
+import src.RouteQuery;
 import src.Transport;
+import src.TransportType;
 import test.simple.SimpleEdge;
 import test.simple.SimpleGraph;
 import test.simple.SimpleVertex;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -77,6 +114,8 @@ public class DijkstraTest {
                         this.graph, this.a, this.b, edgeWeightCalculation);
         assertEquals(6, SimpleGraph.getTotalEdgeWeight(path), DELTA);
         assertEquals(3, path.size());
+        assertEquals(this.a, path.get(0).source);
+        assertEquals(this.b, path.get(2).target);
 
         // c -> d -> b
         path = dijkstra.getShortestPath(
@@ -85,6 +124,804 @@ public class DijkstraTest {
         assertEquals(2, path.size());
     }
 
+    @Test
+    public void testCompiled() {
+        this.createSimpleGraph();
+
+        Dijkstra<SimpleVertex, SimpleEdge> dijkstra = new Dijkstra<>();
+        Function<SimpleEdge, Double> edgeWeightCalculation = e -> e.weight;
+        CompiledGraph<SimpleVertex, SimpleEdge> compiled = CompiledGraph.compile(this.graph);
+        // a -> c -> d -> b
+        List<SimpleEdge> path = dijkstra.getShortestPath(
+                compiled, this.a, this.b, edgeWeightCalculation);
+        assertEquals(6, SimpleGraph.getTotalEdgeWeight(path), DELTA);
+        assertEquals(3, path.size());
+        assertEquals(this.a, path.get(0).source);
+        assertEquals(this.b, path.get(2).target);
+
+        // nothing leaves b, so there is no route back to a
+        assertTrue(dijkstra.getShortestPath(
+                compiled, this.b, this.a, edgeWeightCalculation).isEmpty());
+        assertTrue(dijkstra.getShortestPath(
+                compiled, this.a, this.a, edgeWeightCalculation).isEmpty());
+    }
+
+    /**
+     * Creates a random graph with the given number of vertices and edges.
+     * Weights are whole numbers so every queue strategy can be exercised.
+     */
+    private void createRandomGraph(int vertices, int edges, long seed) {
+        this.graph = new SimpleGraph();
+        Random random = new Random(seed);
+        SimpleVertex[] vs = new SimpleVertex[vertices];
+        for (int i = 0; i < vertices; i++) {
+            vs[i] = new SimpleVertex("v" + i);
+            this.graph.addVertex(vs[i]);
+        }
+        for (int i = 0; i < edges; i++) {
+            SimpleVertex from = vs[random.nextInt(vertices)];
+            SimpleVertex to = vs[random.nextInt(vertices)];
+            this.graph.addEdge(from, new SimpleEdge(random.nextInt(50), from, to));
+        }
+    }
+
+    @Test
+    public void testIndexedStrategiesMatchDijkstra() {
+        this.createRandomGraph(200, 1000, 42);
+        Function<SimpleEdge, Double> edgeWeightCalculation = e -> e.weight;
+        Dijkstra<SimpleVertex, SimpleEdge> reference = new Dijkstra<>();
+        List<SimpleVertex> vertices = new ArrayList<>(this.graph.getVertices());
+        for (QueueStrategy strategy : QueueStrategy.values()) {
+            IndexedDijkstra<SimpleVertex, SimpleEdge> engine = new IndexedDijkstra<>(strategy);
+            for (int i = 0; i < 40; i++) {
+                SimpleVertex from = vertices.get(i);
+                SimpleVertex to = vertices.get(vertices.size() - 1 - i);
+                List<SimpleEdge> expected = reference.getShortestPath(
+                        this.graph, from, to, edgeWeightCalculation);
+                List<SimpleEdge> path = engine.getShortestPath(
+                        this.graph, from, to, edgeWeightCalculation);
+                assertEquals(strategy.getLabel(), SimpleGraph.getTotalEdgeWeight(expected),
+                        SimpleGraph.getTotalEdgeWeight(path), DELTA);
+                assertEquals(expected.isEmpty(), path.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testBidirectionalMatchesDijkstra() {
+        this.createRandomGraph(300, 900, 7);
+        Function<SimpleEdge, Double> edgeWeightCalculation = e -> e.weight;
+        Dijkstra<SimpleVertex, SimpleEdge> reference = new Dijkstra<>();
+        List<SimpleVertex> vertices = new ArrayList<>(this.graph.getVertices());
+        for (QueueStrategy strategy : QueueStrategy.values()) {
+            BidirectionalDijkstra<SimpleVertex, SimpleEdge> engine = new BidirectionalDijkstra<>(strategy);
+            for (int i = 0; i < 40; i++) {
+                SimpleVertex from = vertices.get(i);
+                SimpleVertex to = vertices.get(vertices.size() - 1 - i);
+                List<SimpleEdge> expected = reference.getShortestPath(
+                        this.graph, from, to, edgeWeightCalculation);
+                List<SimpleEdge> path = engine.getShortestPath(
+                        this.graph, from, to, edgeWeightCalculation);
+                assertEquals(strategy.getLabel(), SimpleGraph.getTotalEdgeWeight(expected),
+                        SimpleGraph.getTotalEdgeWeight(path), DELTA);
+                assertEquals(expected.size() == 0, path.isEmpty());
+                // the path must be connected from source to destination
+                SimpleVertex at = from;
+                for (SimpleEdge edge : path) {
+                    assertEquals(at, edge.source);
+                    at = edge.target;
+                }
+                assertEquals(path.isEmpty() ? from : to, at);
+            }
+        }
+    }
+
+    @Test
+    public void testALTMatchesDijkstra() {
+        this.createRandomGraph(300, 700, 11);
+        Function<SimpleEdge, Double> edgeWeightCalculation = e -> e.weight;
+        Dijkstra<SimpleVertex, SimpleEdge> reference = new Dijkstra<>();
+        List<SimpleVertex> vertices = new ArrayList<>(this.graph.getVertices());
+        for (LandmarkSelection selection : LandmarkSelection.values()) {
+            ALTDijkstra<SimpleVertex, SimpleEdge> engine = new ALTDijkstra<>(6, selection);
+            engine.preprocess(this.graph, edgeWeightCalculation);
+            for (int i = 0; i < 60; i++) {
+                SimpleVertex from = vertices.get(i);
+                SimpleVertex to = vertices.get(vertices.size() - 1 - i);
+                List<SimpleEdge> expected = reference.getShortestPath(
+                        this.graph, from, to, edgeWeightCalculation);
+                List<SimpleEdge> path = engine.getShortestPath(
+                        this.graph, from, to, edgeWeightCalculation);
+                assertEquals(selection.getLabel(), SimpleGraph.getTotalEdgeWeight(expected),
+                        SimpleGraph.getTotalEdgeWeight(path), DELTA);
+                assertEquals(expected.isEmpty(), path.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testMaskedSearchMatchesFilteredGraph() {
+        this.createRandomGraph(300, 1200, 23);
+        Function<SimpleEdge, Double> edgeWeightCalculation = e -> e.weight;
+        ToIntFunction<SimpleEdge> edgeMask = e -> 1 << ((int) e.weight % 3);
+        int allowed = 0b101;
+        // a copy of the graph holding only the allowed edges; edges are kept on the vertices, so both are copied
+        SimpleGraph filtered = new SimpleGraph();
+        Map<SimpleVertex, SimpleVertex> copies = new HashMap<>();
+        for (SimpleVertex v : this.graph.getVertices()) {
+            copies.put(v, new SimpleVertex(v.toString()));
+            filtered.addVertex(copies.get(v));
+        }
+        for (SimpleVertex v : this.graph.getVertices()) {
+            for (SimpleEdge edge : this.graph.getOutgoingEdges(v)) {
+                if ((edgeMask.applyAsInt(edge) & allowed) != 0) {
+                    filtered.addEdge(copies.get(v), new SimpleEdge(edge.weight, copies.get(v),
+                            copies.get(edge.target)));
+                }
+            }
+        }
+        Dijkstra<SimpleVertex, SimpleEdge> reference = new Dijkstra<>();
+        List<IDijkstra<SimpleVertex, SimpleEdge>> engines = List.of(new Dijkstra<>(), new IndexedDijkstra<>(),
+                new BidirectionalDijkstra<>(), new ALTDijkstra<>(6, LandmarkSelection.AVOID), new CHDijkstra<>());
+        List<SimpleVertex> vertices = new ArrayList<>(this.graph.getVertices());
+        for (IDijkstra<SimpleVertex, SimpleEdge> engine : engines) {
+            for (int i = 0; i < 40; i++) {
+                SimpleVertex from = vertices.get(i);
+                SimpleVertex to = vertices.get(vertices.size() - 1 - i);
+                List<SimpleEdge> expected = reference.getShortestPath(filtered, copies.get(from), copies.get(to),
+                        edgeWeightCalculation);
+                List<SimpleEdge> path = engine.getShortestPath(this.graph, from, to, edgeWeightCalculation,
+                        edgeMask, allowed);
+                assertEquals(SimpleGraph.getTotalEdgeWeight(expected), SimpleGraph.getTotalEdgeWeight(path), DELTA);
+                assertEquals(expected.isEmpty(), path.isEmpty());
+                for (SimpleEdge edge : path) {
+                    assertTrue((edgeMask.applyAsInt(edge) & allowed) != 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransportModes() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        Set<TransportType> land = EnumSet.of(TransportType.BUS, TransportType.TRAIN);
+        assertEquals(210, tc.getTotalEdgeWeightPrice(tc.cheapestRoute("Chicago", "New York", land)), DELTA);
+        assertEquals(1000, tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "New York", land)), DELTA);
+        assertEquals(2, tc.mostDirectRoute("Chicago", "New York", land).size());
+        assertEquals(4, tc.mostDirectRoute("Chicago", "New York", EnumSet.of(TransportType.BUS)).size());
+        assertTrue(tc.fastestRoute("Chicago", "New York", EnumSet.of(TransportType.TRAIN)).isEmpty());
+        assertTrue(tc.cheapestRoute("Chicago", "New York", EnumSet.noneOf(TransportType.class)).isEmpty());
+        assertEquals(tc.fastestRoute("Chicago", "New York"),
+                tc.fastestRoute("Chicago", "New York", EnumSet.allOf(TransportType.class)));
+        tc.useEngine("ch");
+        assertEquals(210, tc.getTotalEdgeWeightPrice(tc.cheapestRoute("Chicago", "New York", land)), DELTA);
+        Assert.assertThrows(IllegalArgumentException.class,
+            () -> tc.fastestRoute("Chicago", "Boston", land));
+    }
+
+    @Test
+    public void testALTController() {
+        TravelController tc = new TravelController();
+        tc.setDijkstra(new ALTDijkstra<>());
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        assertEquals(200, tc.getTotalEdgeWeightPrice(tc.cheapestRoute("Chicago", "Scottsdale")), DELTA);
+        assertEquals(1000, tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "Scottsdale")), DELTA);
+        assertTrue(tc.cheapestRoute("New York", "Chicago").isEmpty());
+
+        // reloading a different graph rebuilds the tables
+        tc.load("data/cities5.csv", "data/transport5.csv");
+        assertEquals(2, tc.fastestRoute("Miami", "Detroit").size());
+        assertTrue(tc.fastestRoute("LA", "LA").isEmpty());
+    }
+
+    @Test
+    public void testCHMatchesDijkstra() {
+        this.createRandomGraph(250, 900, 5);
+        Function<SimpleEdge, Double> edgeWeightCalculation = e -> e.weight;
+        Dijkstra<SimpleVertex, SimpleEdge> reference = new Dijkstra<>();
+        List<SimpleVertex> vertices = new ArrayList<>(this.graph.getVertices());
+        CompiledGraph<SimpleVertex, SimpleEdge> compiled = CompiledGraph.compile(this.graph);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(
+                compiled, compiled.weights(edgeWeightCalculation));
+        assertTrue(hierarchy.getShortcutCount() > 0);
+
+        CHDijkstra<SimpleVertex, SimpleEdge> engine = new CHDijkstra<>();
+        for (int i = 0; i < 60; i++) {
+            SimpleVertex from = vertices.get(i);
+            SimpleVertex to = vertices.get(vertices.size() - 1 - i);
+            List<SimpleEdge> expected = reference.getShortestPath(
+                    this.graph, from, to, edgeWeightCalculation);
+            List<SimpleEdge> path = engine.getShortestPath(
+                    this.graph, from, to, edgeWeightCalculation);
+            assertEquals(SimpleGraph.getTotalEdgeWeight(expected),
+                    SimpleGraph.getTotalEdgeWeight(path), DELTA);
+            // shortcuts are unpacked into a connected path of original edges
+            SimpleVertex at = from;
+            for (SimpleEdge edge : path) {
+                assertEquals(at, edge.source);
+                at = edge.target;
+            }
+            assertEquals(expected.isEmpty() ? from : to, at);
+        }
+    }
+
+    @Test
+    public void testUseEngine() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        for (String engine : new String[] {"dijkstra", "indexed", "bidirectional", "alt", "ch", "dial", "radix"}) {
+            tc.useEngine(engine);
+            assertEquals(engine, 200, tc.getTotalEdgeWeightPrice(
+                    tc.cheapestRoute("Chicago", "Scottsdale")), DELTA);
+            assertEquals(engine, 1000, tc.getTotalEdgeWeightTime(
+                    tc.fastestRoute("Chicago", "New York")), DELTA);
+            assertTrue(engine, tc.fastestRoute("New York", "Chicago").isEmpty());
+        }
+        Assert.assertThrows(IllegalArgumentException.class, () -> tc.useEngine("teleport"));
+    }
+
+    @Test
+    public void testRouteCache() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        RouteCache<Transport> cache = tc.getRouteCache();
+        List<Transport> first = tc.fastestRoute("Chicago", "New York");
+        List<Transport> second = tc.fastestRoute("Chicago", "New York");
+        assertEquals(first, second);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        // callers get their own copy of a cached route
+        second.clear();
+        assertEquals(1000, tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "New York")), DELTA);
+        tc.cheapestRoute("Chicago", "New York");
+        assertEquals(2, cache.size());
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> tc.fastestRoute("Chicago", "Atlantis"));
+        assertEquals(2, cache.size());
+
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        assertEquals(0, cache.size());
+        assertEquals(1000, tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "New York")), DELTA);
+    }
+
+    @Test
+    public void testShortestPathTreeMatchesDijkstra() {
+        this.createRandomGraph(200, 800, 11);
+        Function<SimpleEdge, Double> edgeWeightCalculation = e -> e.weight;
+        Dijkstra<SimpleVertex, SimpleEdge> reference = new Dijkstra<>();
+        IndexedDijkstra<SimpleVertex, SimpleEdge> engine = new IndexedDijkstra<>();
+        List<SimpleVertex> vertices = new ArrayList<>(this.graph.getVertices());
+        ShortestPathTree<SimpleVertex, SimpleEdge> tree = engine.getShortestPathTree(
+                this.graph, vertices.get(0), edgeWeightCalculation);
+        assertEquals(vertices.get(0), tree.getSource());
+        for (SimpleVertex to : vertices) {
+            List<SimpleEdge> expected = reference.getShortestPath(
+                    this.graph, vertices.get(0), to, edgeWeightCalculation);
+            List<SimpleEdge> path = tree.getPath(to);
+            assertEquals(SimpleGraph.getTotalEdgeWeight(expected), SimpleGraph.getTotalEdgeWeight(path), DELTA);
+            assertEquals(expected.isEmpty(), path.isEmpty());
+            if (!path.isEmpty()) {
+                assertEquals(SimpleGraph.getTotalEdgeWeight(path), tree.getDistance(to), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testShortestPathTreeRepair() throws IOException {
+        Path dir = Files.createTempDirectory("repair");
+        Path citiesFile = dir.resolve("cities.csv");
+        Path transportFile = dir.resolve("transport.csv");
+        new DatasetGenerator("random", 150, 4).write(citiesFile, transportFile);
+        TravelController tc = new TravelController();
+        tc.load(citiesFile.toString(), transportFile.toString());
+        TravelGraph graph = tc.getGraph();
+        ShortestPathTree<City, Transport> tree = tc.shortestPathTree("c0", RouteMetric.CHEAPEST);
+        List<Transport> transports = new ArrayList<>();
+        for (City city : graph.getVertices()) {
+            transports.addAll(city.getOutgoing());
+        }
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            int i = random.nextInt(transports.size());
+            // mostly small changes, with the odd very expensive transport
+            double price = random.nextInt(10) == 0 ? 1000 : random.nextInt(50);
+            transports.set(i, graph.setPrice(transports.get(i), price));
+        }
+        // every change replaced a transport in the patched graph, so the tree was repaired rather than rebuilt
+        assertTrue(tree == tc.shortestPathTree("c0", RouteMetric.CHEAPEST));
+        assertTrue(tree.getGraph() == graph.compile());
+        ShortestPathTree<City, Transport> fresh = new IndexedDijkstra<City, Transport>().getShortestPathTree(
+                graph.compile(), graph.getCityFromName("c0"), Transport::getPrice);
+        assertEquals(fresh.getReachedCount(), tree.getReachedCount());
+        for (City to : graph.getVertices()) {
+            assertEquals(fresh.getDistance(to), tree.getDistance(to), DELTA);
+            if (tree.isReachable(to)) {
+                double total = 0;
+                for (Transport transport : tree.getPath(to)) {
+                    total += transport.getPrice();
+                }
+                assertEquals(tree.getDistance(to), total, DELTA);
+            }
+        }
+        Files.delete(citiesFile);
+        Files.delete(transportFile);
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testReloadWhileQuerying() throws Exception {
+        Path transport = Files.createTempFile("transport", ".csv");
+        Files.writeString(transport, "origin,destination,type,price,duration\n"
+                + "Chicago,New York,Plane,500,100\n"
+                + "New York,Chicago,Plane,500,100\n");
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        tc.useEngine("alt");
+        TravelGraph before = tc.getGraph();
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger queries = new AtomicInteger();
+        List<Double> unexpected = new CopyOnWriteArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread reader = new Thread(() -> {
+                while (!done.get() || queries.get() == 0) {
+                    // every answer comes from either the old or the new graph, never a mix
+                    double minutes = tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "New York"));
+                    if (minutes != 1000 && minutes != 100) {
+                        unexpected.add(minutes);
+                    }
+                    queries.incrementAndGet();
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        String message = tc.reload("data/cities3.csv", List.of(transport.toString())).get();
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertTrue(message.startsWith("Successfully"));
+        assertTrue(unexpected.isEmpty());
+        assertTrue(before != tc.getGraph());
+        assertEquals(100, tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "New York")), DELTA);
+        assertEquals(1, tc.fastestRoute("New York", "Chicago").size());
+        assertTrue(tc.fastestRoute("Chicago", "LA").isEmpty());
+
+        // a failed reload keeps the current graph
+        assertTrue(tc.reload("data/cities3.csv", List.of("data/missing.csv")).get().startsWith("Error"));
+        assertEquals(100, tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "New York")), DELTA);
+        Files.delete(transport);
+    }
+
+    @Test
+    public void testReloadWithSingleThreadExecutors() throws Exception {
+        TravelController tc = new TravelController();
+        ExecutorService batch = Executors.newFixedThreadPool(1);
+        ExecutorService parse = Executors.newFixedThreadPool(1);
+        tc.setBatchExecutor(batch);
+        tc.setLoadExecutor(parse);
+        // the reload runs on its own thread, so waiting on the one parse thread cannot deadlock
+        String message = tc.reload("data/cities3.csv", List.of("data/transport3.csv", "data/transport3.csv"))
+                .get(30, TimeUnit.SECONDS);
+        assertTrue(message.startsWith("Successfully"));
+        assertEquals(16, tc.getLastIngestStats().getRows());
+        assertEquals(1, tc.fastestRoute("Chicago", "Buffalo").size());
+        assertEquals(1, tc.batchRoutes(List.of(new RouteQuery("Chicago", "Buffalo", RouteMetric.FASTEST)))
+                .get(0).size());
+        batch.shutdown();
+        parse.shutdown();
+    }
+
+    @Test
+    public void testParetoRoutesMatchEnumeration() {
+        this.createRandomGraph(12, 40, 3);
+        Function<SimpleEdge, Double> first = e -> e.weight;
+        Function<SimpleEdge, Double> second = e -> (double) ((int) e.weight * 7 % 13);
+        ParetoSearch<SimpleVertex, SimpleEdge> search = new ParetoSearch<>();
+        List<SimpleVertex> vertices = new ArrayList<>(this.graph.getVertices());
+        for (SimpleVertex from : vertices) {
+            for (SimpleVertex to : vertices) {
+                if (from == to) {
+                    continue;
+                }
+                // every simple path, reduced to its non-dominated totals
+                List<double[]> totals = new ArrayList<>();
+                this.enumeratePaths(from, to, new ArrayList<>(), 0, 0, first, second, totals);
+                List<double[]> front = new ArrayList<>();
+                for (double[] candidate : totals) {
+                    boolean beaten = false;
+                    for (double[] other : totals) {
+                        if (other[0] <= candidate[0] && other[1] <= candidate[1]
+                                && (other[0] < candidate[0] || other[1] < candidate[1])) {
+                            beaten = true;
+                        }
+                    }
+                    if (!beaten && front.stream().noneMatch(f -> f[0] == candidate[0] && f[1] == candidate[1])) {
+                        front.add(candidate);
+                    }
+                }
+                front.sort((a, b) -> Double.compare(a[0], b[0]));
+
+                List<List<SimpleEdge>> routes = search.getParetoRoutes(this.graph, from, to, first, second);
+                assertEquals(front.size(), routes.size());
+                for (int i = 0; i < routes.size(); i++) {
+                    double total1 = 0;
+                    double total2 = 0;
+                    SimpleVertex at = from;
+                    for (SimpleEdge edge : routes.get(i)) {
+                        assertEquals(at, edge.source);
+                        at = edge.target;
+                        total1 += first.apply(edge);
+                        total2 += second.apply(edge);
+                    }
+                    assertEquals(to, at);
+                    assertEquals(front.get(i)[0], total1, DELTA);
+                    assertEquals(front.get(i)[1], total2, DELTA);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConstrainedRouteMatchesEnumeration() {
+        this.createRandomGraph(12, 40, 8);
+        Function<SimpleEdge, Double> objective = e -> e.weight;
+        Function<SimpleEdge, Double> resource = e -> (double) ((int) e.weight * 7 % 13);
+        ParetoSearch<SimpleVertex, SimpleEdge> search = new ParetoSearch<>();
+        List<SimpleVertex> vertices = new ArrayList<>(this.graph.getVertices());
+        for (double limit : new double[] {0, 5, 12, 30}) {
+            for (SimpleVertex from : vertices) {
+                for (SimpleVertex to : vertices) {
+                    if (from == to) {
+                        continue;
+                    }
+                    List<double[]> totals = new ArrayList<>();
+                    this.enumeratePaths(from, to, new ArrayList<>(), 0, 0, objective, resource, totals);
+                    double best = Double.POSITIVE_INFINITY;
+                    for (double[] total : totals) {
+                        if (total[1] <= limit) {
+                            best = Math.min(best, total[0]);
+                        }
+                    }
+                    List<SimpleEdge> route = search.getConstrainedRoute(this.graph, from, to,
+                            objective, resource, limit);
+                    assertEquals(best == Double.POSITIVE_INFINITY, route.isEmpty());
+                    if (!route.isEmpty()) {
+                        double used = 0;
+                        for (SimpleEdge edge : route) {
+                            used += resource.apply(edge);
+                        }
+                        assertTrue(used <= limit);
+                        assertEquals(best, SimpleGraph.getTotalEdgeWeight(route), DELTA);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKShortestPathsMatchEnumeration() {
+        this.createRandomGraph(10, 35, 19);
+        Function<SimpleEdge, Double> edgeWeightCalculation = e -> e.weight;
+        KShortestPaths<SimpleVertex, SimpleEdge> search = new KShortestPaths<>();
+        List<SimpleVertex> vertices = new ArrayList<>(this.graph.getVertices());
+        for (SimpleVertex from : vertices) {
+            for (SimpleVertex to : vertices) {
+                if (from == to) {
+                    continue;
+                }
+                List<double[]> totals = new ArrayList<>();
+                this.enumeratePaths(from, to, new ArrayList<>(), 0, 0, edgeWeightCalculation,
+                        edgeWeightCalculation, totals);
+                totals.sort((a, b) -> Double.compare(a[0], b[0]));
+                List<List<SimpleEdge>> paths = search.getShortestPaths(this.graph, from, to,
+                        edgeWeightCalculation, 8);
+                assertEquals(Math.min(8, totals.size()), paths.size());
+                for (int i = 0; i < paths.size(); i++) {
+                    List<SimpleEdge> path = paths.get(i);
+                    assertEquals(totals.get(i)[0], SimpleGraph.getTotalEdgeWeight(path), DELTA);
+                    // loopless and connected
+                    List<SimpleVertex> visited = new ArrayList<>(List.of(from));
+                    for (SimpleEdge edge : path) {
+                        assertEquals(visited.get(visited.size() - 1), edge.source);
+                        assertTrue(!visited.contains(edge.target));
+                        visited.add(edge.target);
+                    }
+                    assertEquals(to, visited.get(visited.size() - 1));
+                    for (int j = 0; j < i; j++) {
+                        assertTrue(!path.equals(paths.get(j)));
+                    }
+                }
+            }
+        }
+    }
+
+    private void enumeratePaths(SimpleVertex at, SimpleVertex to, List<SimpleVertex> visited,
+                                double total1, double total2, Function<SimpleEdge, Double> first,
+                                Function<SimpleEdge, Double> second, List<double[]> totals) {
+        if (at == to) {
+            totals.add(new double[] {total1, total2});
+            return;
+        }
+        visited.add(at);
+        for (SimpleEdge edge : this.graph.getOutgoingEdges(at)) {
+            if (!visited.contains(edge.target)) {
+                this.enumeratePaths(edge.target, to, visited, total1 + first.apply(edge),
+                        total2 + second.apply(edge), first, second, totals);
+            }
+        }
+        visited.remove(visited.size() - 1);
+    }
+
+    @Test
+    public void testParetoRoutesController() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        List<List<Transport>> routes = tc.paretoRoutes("Chicago", "New York");
+        assertEquals(3, routes.size());
+        double[][] expected = {{210, 15600}, {260, 13000}, {300, 1000}};
+        for (int i = 0; i < routes.size(); i++) {
+            assertEquals(expected[i][0], tc.getTotalEdgeWeightPrice(routes.get(i)), DELTA);
+            assertEquals(expected[i][1], tc.getTotalEdgeWeightTime(routes.get(i)), DELTA);
+        }
+        // a single route is both the cheapest and the fastest
+        assertEquals(1, tc.paretoRoutes("Chicago", "LA").size());
+        assertTrue(tc.paretoRoutes("LA", "Chicago").isEmpty());
+        assertTrue(tc.paretoRoutes("Chicago", "Chicago").isEmpty());
+        Assert.assertThrows(IllegalArgumentException.class, () -> tc.paretoRoutes("Chicago", "Atlantis"));
+    }
+
+    @Test
+    public void testConstrainedRouteController() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        assertEquals(15600, tc.getTotalEdgeWeightTime(
+                tc.constrainedRoute("Chicago", "New York", RouteMetric.FASTEST, 250)), DELTA);
+        assertEquals(1000, tc.getTotalEdgeWeightTime(
+                tc.constrainedRoute("Chicago", "New York", RouteMetric.FASTEST, 300)), DELTA);
+        assertTrue(tc.constrainedRoute("Chicago", "New York", RouteMetric.FASTEST, 200).isEmpty());
+        assertEquals(260, tc.getTotalEdgeWeightPrice(
+                tc.constrainedRoute("Chicago", "New York", RouteMetric.CHEAPEST, 14000)), DELTA);
+        assertEquals(300, tc.getTotalEdgeWeightPrice(
+                tc.constrainedRoute("Chicago", "New York", RouteMetric.CHEAPEST, 1000)), DELTA);
+        assertTrue(tc.constrainedRoute("Chicago", "New York", RouteMetric.CHEAPEST, 500).isEmpty());
+        Assert.assertThrows(IllegalArgumentException.class,
+            () -> tc.constrainedRoute("Chicago", "New York", RouteMetric.MOST_DIRECT, 3));
+    }
+
+    @Test
+    public void testAlternativeRoutesController() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        List<List<Transport>> routes = tc.alternativeRoutes("Chicago", "New York", RouteMetric.CHEAPEST, 5);
+        // only three routes never visit a city twice
+        assertEquals(3, routes.size());
+        assertEquals(210, tc.getTotalEdgeWeightPrice(routes.get(0)), DELTA);
+        assertEquals(260, tc.getTotalEdgeWeightPrice(routes.get(1)), DELTA);
+        assertEquals(300, tc.getTotalEdgeWeightPrice(routes.get(2)), DELTA);
+        assertEquals(tc.cheapestRoute("Chicago", "New York"), routes.get(0));
+        assertEquals(1, tc.alternativeRoutes("Chicago", "New York", RouteMetric.FASTEST, 1).size());
+        assertTrue(tc.alternativeRoutes("LA", "Chicago", RouteMetric.FASTEST, 3).isEmpty());
+        Assert.assertThrows(IllegalArgumentException.class,
+            () -> tc.alternativeRoutes("Chicago", "New York", RouteMetric.FASTEST, 0));
+    }
+
+    @Test
+    public void testEarliestArrival() {
+        TravelController tc = new TravelController();
+        Assert.assertThrows(IllegalArgumentException.class, () -> tc.earliestArrival("Chicago", "New York", 0));
+        assertTrue(tc.loadTimetable("data/timetable3.csv").startsWith("Loaded 8 connections between 6 cities"));
+
+        // the bus to Buffalo connects to the 14:00 train, which beats the flight through LA
+        List<Connection> journey = tc.earliestArrival("Chicago", "New York", Connection.parseTime("06:00"));
+        assertEquals(2, journey.size());
+        assertEquals("Buffalo", journey.get(0).getDestination());
+        assertEquals(Connection.parseTime("14:00"), journey.get(1).getDeparture());
+        assertEquals(Connection.parseTime("16:30"), journey.get(1).getArrival());
+
+        // leaving after the bus, only the overnight train is left
+        journey = tc.earliestArrival("Chicago", "New York", Connection.parseTime("08:30"));
+        assertEquals(3, journey.size());
+        assertEquals(30 * 60, journey.get(0).getArrival());
+        assertEquals("12:30+1", Connection.formatTime(journey.get(2).getArrival()));
+
+        assertTrue(tc.earliestArrival("Chicago", "New York", Connection.parseTime("20:30")).isEmpty());
+        assertTrue(tc.earliestArrival("New York", "Chicago", 0).isEmpty());
+        assertTrue(tc.earliestArrival("Chicago", "Chicago", 0).isEmpty());
+        Assert.assertThrows(IllegalArgumentException.class, () -> tc.earliestArrival("Chicago", "Boston", 0));
+        assertTrue(tc.loadTimetable("data/missing.csv").startsWith("Error parsing file"));
+    }
+
+    @Test
+    public void testParseTime() {
+        assertEquals(8 * 60 + 15, Connection.parseTime("08:15"));
+        assertEquals(25 * 60 + 30, Connection.parseTime("25:30"));
+        assertEquals(95, Connection.parseTime("95"));
+        assertEquals("01:30+1", Connection.formatTime(25 * 60 + 30));
+        Assert.assertThrows(IllegalArgumentException.class, () -> Connection.parseTime("08:75"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> Connection.parseTime("noon"));
+    }
+
+    @Test
+    public void testRoutesFrom() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        Map<String, List<Transport>> routes = tc.routesFrom("Chicago", null, RouteMetric.FASTEST);
+        assertEquals(5, routes.size());
+        for (Map.Entry<String, List<Transport>> route : routes.entrySet()) {
+            assertEquals(tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", route.getKey())),
+                    tc.getTotalEdgeWeightTime(route.getValue()), DELTA);
+        }
+
+        routes = tc.routesFrom("New York", List.of("Chicago", "New York"), RouteMetric.CHEAPEST);
+        assertEquals(List.of("Chicago", "New York"), new ArrayList<>(routes.keySet()));
+        assertTrue(routes.get("Chicago").isEmpty());
+        assertEquals(1, tc.routesFrom("Buffalo", List.of("Chicago"), RouteMetric.MOST_DIRECT)
+                .get("Chicago").size());
+        Assert.assertThrows(IllegalArgumentException.class,
+            () -> tc.routesFrom("Chicago", List.of("Atlantis"), RouteMetric.FASTEST));
+
+        // trees are reused until the graph is replaced
+        ShortestPathTree<City, Transport> tree = tc.shortestPathTree("Chicago", RouteMetric.CHEAPEST);
+        assertTrue(tree == tc.shortestPathTree("Chicago", RouteMetric.CHEAPEST));
+        assertEquals(200, tc.getTotalEdgeWeightPrice(tc.cheapestRoute("Chicago", "Scottsdale")), DELTA);
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        assertTrue(tree != tc.shortestPathTree("Chicago", RouteMetric.CHEAPEST));
+    }
+
+    @Test
+    public void testBatchRoutes() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        String[] cities = {"Chicago", "LA", "Buffalo", "Scottsdale", "New Orleans", "New York"};
+        List<RouteQuery> queries = new ArrayList<>();
+        for (RouteMetric metric : RouteMetric.values()) {
+            for (String from : cities) {
+                for (String to : cities) {
+                    queries.add(new RouteQuery(from, to, metric));
+                }
+            }
+        }
+        // a group too small to share a tree
+        queries.add(new RouteQuery("Buffalo", "New York", RouteMetric.CHEAPEST));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        tc.setBatchExecutor(pool);
+        List<List<Transport>> results = tc.batchRoutes(queries);
+        pool.shutdown();
+        assertEquals(queries.size(), results.size());
+        for (int i = 0; i < queries.size(); i++) {
+            RouteQuery query = queries.get(i);
+            List<Transport> expected = switch (query.getMetric()) {
+                case FASTEST -> tc.fastestRoute(query.getSource(), query.getDestination());
+                case CHEAPEST -> tc.cheapestRoute(query.getSource(), query.getDestination());
+                case MOST_DIRECT -> tc.mostDirectRoute(query.getSource(), query.getDestination());
+            };
+            assertEquals(query.toString(), tc.getTotalEdgeWeightTime(expected),
+                    tc.getTotalEdgeWeightTime(results.get(i)), DELTA);
+            assertEquals(query.toString(), tc.getTotalEdgeWeightPrice(expected),
+                    tc.getTotalEdgeWeightPrice(results.get(i)), DELTA);
+            assertEquals(query.toString(), expected.size(), results.get(i).size());
+        }
+
+        // a query naming an unknown city fails the whole batch, like a single route would
+        for (RouteQuery unknown : List.of(new RouteQuery("Atlantis", "Chicago", RouteMetric.FASTEST),
+                new RouteQuery("LA", "Atlantis", RouteMetric.FASTEST))) {
+            List<RouteQuery> withUnknown = new ArrayList<>(queries);
+            withUnknown.add(unknown);
+            Exception e = Assert.assertThrows(IllegalArgumentException.class, () -> tc.batchRoutes(withUnknown));
+            assertEquals("Entered city does not exist", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDistanceMatrix() throws IOException {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        String[] cities = {"Chicago", "LA", "Buffalo", "Scottsdale", "New Orleans", "New York"};
+        // without a matrix, distances come from shortest-path trees
+        assertEquals(1000, tc.distance("Chicago", "New York", RouteMetric.FASTEST), DELTA);
+
+        File file = File.createTempFile("distances", ".bin");
+        file.deleteOnExit();
+        tc.saveDistanceMatrix(file.getPath());
+        for (String from : cities) {
+            for (String to : cities) {
+                List<Transport> fastest = tc.fastestRoute(from, to);
+                List<Transport> cheapest = tc.cheapestRoute(from, to);
+                double expectedTime = fastest.isEmpty() && !from.equals(to)
+                        ? Double.POSITIVE_INFINITY : tc.getTotalEdgeWeightTime(fastest);
+                double expectedPrice = cheapest.isEmpty() && !from.equals(to)
+                        ? Double.POSITIVE_INFINITY : tc.getTotalEdgeWeightPrice(cheapest);
+                assertEquals(from + " " + to, expectedTime, tc.distance(from, to, RouteMetric.FASTEST), DELTA);
+                assertEquals(from + " " + to, expectedPrice, tc.distance(from, to, RouteMetric.CHEAPEST), DELTA);
+            }
+        }
+        assertEquals(2, tc.distance("Chicago", "New York", RouteMetric.MOST_DIRECT), DELTA);
+
+        TravelController reopened = new TravelController();
+        reopened.load("data/cities3.csv", "data/transport3.csv");
+        assertTrue(reopened.openDistanceMatrix(file.getPath()).startsWith("Opened"));
+        assertEquals(200, reopened.distance("Chicago", "Scottsdale", RouteMetric.CHEAPEST), DELTA);
+        Assert.assertThrows(IllegalArgumentException.class,
+            () -> reopened.distance("Chicago", "Atlantis", RouteMetric.CHEAPEST));
+        assertTrue(reopened.openDistanceMatrix("data/cities3.csv").startsWith("Error"));
+
+        // a matrix of other cities is refused, and the open one stays in use
+        TravelController other = new TravelController();
+        other.load("data/cities1.csv", "data/transport1.csv");
+        assertTrue(other.openDistanceMatrix(file.getPath()).startsWith("Distance matrix does not match"));
+        assertTrue(reopened.openDistanceMatrix(file.getPath()).startsWith("Opened"));
+    }
+
+    @Test
+    public void testRouteCacheBounds() {
+        List<String> path = List.of("x", "y", "z");
+        RouteCache<String> cache = new RouteCache<>(64, Long.MAX_VALUE);
+        for (int i = 0; i < 1000; i++) {
+            cache.get("a" + i, "b", RouteMetric.FASTEST);
+            cache.put("a" + i, "b", RouteMetric.FASTEST, path);
+        }
+        assertTrue(cache.size() <= 64);
+        assertEquals(1000, cache.getMissCount());
+
+        // a popular route is not pushed out by a stream of one-off routes
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot", "b", RouteMetric.CHEAPEST);
+        }
+        cache.put("hot", "b", RouteMetric.CHEAPEST, path);
+        for (int i = 0; i < 200; i++) {
+            cache.get("cold" + i, "b", RouteMetric.CHEAPEST);
+            cache.put("cold" + i, "b", RouteMetric.CHEAPEST, path);
+        }
+        assertEquals(path, cache.get("hot", "b", RouteMetric.CHEAPEST));
+        assertTrue(cache.getRejectionCount() > 0);
+
+        RouteCache<String> small = new RouteCache<>(1000, 16 * 1024);
+        for (int i = 0; i < 1000; i++) {
+            small.get("a" + i, "b", RouteMetric.FASTEST);
+            small.put("a" + i, "b", RouteMetric.FASTEST, path);
+        }
+        assertTrue(small.getWeightedSize() <= 16 * 1024);
+        small.invalidate();
+        assertEquals(0, small.size());
+    }
+
+    @Test
+    public void testBidirectionalController() {
+        TravelController tc = new TravelController();
+        tc.setDijkstra(new BidirectionalDijkstra<>());
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        assertEquals(200, tc.getTotalEdgeWeightPrice(tc.cheapestRoute("Chicago", "Scottsdale")), DELTA);
+        assertEquals(1000, tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "Scottsdale")), DELTA);
+        assertTrue(tc.fastestRoute("New York", "Chicago").isEmpty());
+        assertTrue(tc.cheapestRoute("Chicago", "Chicago").isEmpty());
+    }
+
+    @Test
+    public void testIndexedStopsAtDestination() {
+        this.createSimpleGraph();
+        Function<SimpleEdge, Double> edgeWeightCalculation = e -> e.weight;
+        IndexedDijkstra<SimpleVertex, SimpleEdge> engine = new IndexedDijkstra<>(QueueStrategy.BINARY_HEAP);
+        // a -> e costs 1, so e is settled right after a
+        List<SimpleEdge> path = engine.getShortestPath(this.graph, this.a, this.e, edgeWeightCalculation);
+        assertEquals(1, path.size());
+        assertEquals(2, engine.getLastSettledCount());
+
+        // the dial queue falls back to a heap when weights are not whole numbers
+        IndexedDijkstra<SimpleVertex, SimpleEdge> dial = new IndexedDijkstra<>(QueueStrategy.DIAL);
+        Function<SimpleEdge, Double> halved = e -> e.weight / 2;
+        assertEquals(6, SimpleGraph.getTotalEdgeWeight(
+                dial.getShortestPath(this.graph, this.a, this.b, halved)), DELTA);
+        // and when a weight would need too many buckets
+        Function<SimpleEdge, Double> huge = e -> e.weight * 1e9;
+        assertEquals(6, SimpleGraph.getTotalEdgeWeight(
+                dial.getShortestPath(this.graph, this.a, this.b, huge)), DELTA);
+    }
+
     @Test
     public void testComplex() {
         TravelController tc = new TravelController();
@@ -3,15 +3,48 @@ package test;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import bench.DatasetGenerator;
+import sol.CompiledGraph;
+import sol.Dijkstra;
+import sol.IndexedDijkstra;
+import sol.OffHeapGraph;
+import sol.ShortestPathTree;
+import sol.TransportLoader;
 import sol.TravelController;
+import sol.TravelGraph;
 import src.City;
+import src.IngestStats;
+import src.RouteMetric;
 import src.Transport;
 import src.TransportType;
+import src.TravelCSVParser;
 import test.simple.SimpleEdge;
 import test.simple.SimpleGraph;
 import test.simple.SimpleVertex;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -128,6 +161,36 @@ public class GraphTest {
 
     }
 
+    @Test
+    public void testPruneDominatedEdges() {
+        TravelGraph graph = new TravelGraph();
+        City boston = new City("Boston");
+        City denver = new City("Denver");
+        graph.addVertex(boston);
+        graph.addVertex(denver);
+        Transport cheap = new Transport(boston, denver, TransportType.BUS, 100, 60);
+        Transport fast = new Transport(boston, denver, TransportType.BUS, 120, 50);
+        Transport train = new Transport(boston, denver, TransportType.TRAIN, 500, 500);
+        Transport back = new Transport(denver, boston, TransportType.PLANE, 300, 90);
+        for (Transport edge : List.of(cheap, fast, train, back,
+                new Transport(boston, denver, TransportType.BUS, 120, 70),
+                new Transport(boston, denver, TransportType.BUS, 150, 60),
+                new Transport(boston, denver, TransportType.BUS, 100, 60))) {
+            graph.addEdge(edge.getSource(), edge);
+        }
+        CompiledGraph<City, Transport> before = graph.compile();
+
+        // the slower bus at 120, the dearer bus at 150 and one of the two equal buses go
+        assertEquals(3, graph.pruneDominatedEdges());
+        assertEquals(3, graph.getOutgoingEdges(boston).size());
+        assertEquals(3, graph.getIncomingEdges(denver).size());
+        assertTrue(graph.getOutgoingEdges(boston).containsAll(List.of(fast, train)));
+        assertTrue(graph.getOutgoingEdges(denver).contains(back));
+        assertEquals(4, graph.compile().getEdgeCount());
+        assertTrue(before != graph.compile());
+        assertEquals(0, graph.pruneDominatedEdges());
+    }
+
     @Test
     public void testAddVertex() {
         TravelController controller1 = new TravelController();
@@ -161,5 +224,625 @@ public class GraphTest {
         assertTrue(this.graph.getOutgoingEdges(this.a).contains(this.edgeAC));
     }
 
+    @Test
+    public void testGetIncomingEdges() {
+        TravelController controller1 = new TravelController();
+        controller1.load("data/cities3.csv", "data/transport3.csv");
+        TravelGraph graph = controller1.getGraph();
+        City scottsdale = graph.getCityFromName("Scottsdale");
+        // Chicago and Buffalo both have transports to Scottsdale
+        assertEquals(2, graph.getIncomingEdges(scottsdale).size());
+        for (Transport transport : graph.getIncomingEdges(scottsdale)) {
+            assertEquals(scottsdale, transport.getTarget());
+        }
+        assertTrue(graph.getIncomingEdges(graph.getCityFromName("Chicago")).size() == 1);
+
+        // the compiled reverse index agrees with the incoming sets
+        CompiledGraph<City, Transport> compiled = graph.compile();
+        int id = compiled.getId(scottsdale);
+        int incoming = 0;
+        for (int i = compiled.firstInEdge(id); i >= 0; i = compiled.nextInEdge(id, i)) {
+            assertEquals(id, compiled.getTarget(compiled.getInEdge(i)));
+            incoming++;
+        }
+        assertEquals(2, incoming);
+    }
+
+    @Test
+    public void testCompile() {
+        this.createSimpleGraph();
+        CompiledGraph<SimpleVertex, SimpleEdge> compiled = CompiledGraph.compile(this.graph);
+        assertEquals(3, compiled.getVertexCount());
+        assertEquals(4, compiled.getEdgeCount());
+
+        // the outgoing edges of A in the compiled graph are exactly A's outgoing edges
+        int a = compiled.getId(this.a);
+        assertEquals(2, compiled.getOutDegree(a));
+        for (int e = compiled.firstEdge(a); e >= 0; e = compiled.nextEdge(a, e)) {
+            assertTrue(this.graph.getOutgoingEdges(this.a).contains(compiled.getEdge(e)));
+            assertEquals(a, compiled.getSource(e));
+            assertEquals(compiled.getEdge(e).target, compiled.getVertex(compiled.getTarget(e)));
+        }
+        assertEquals(-1, compiled.getId(new SimpleVertex("D")));
+    }
+
+    @Test
+    public void testCompiledVersions() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        TravelGraph graph = tc.getGraph();
+        City chicago = graph.getCityFromName("Chicago");
+        City newYork = graph.getCityFromName("New York");
+        CompiledGraph<City, Transport> before = graph.compile();
+        Transport direct = new Transport(chicago, newYork, TransportType.PLANE, 1, 1);
+        graph.addEdge(chicago, direct);
+        CompiledGraph<City, Transport> added = graph.compile();
+
+        // an older version does not see a later edge, and the new edge takes the next id
+        assertEquals(-1, before.getEdgeId(chicago, direct));
+        assertEquals(8, added.getEdgeId(chicago, direct));
+        int incoming = 0;
+        int ny = added.getId(newYork);
+        for (int i = added.firstInEdge(ny); i >= 0; i = added.nextInEdge(ny, i)) {
+            incoming += added.getInEdge(i) == 8 ? 1 : 0;
+        }
+        assertEquals(1, incoming);
+        Transport first = before.getEdge(0);
+        graph.removeEdge(first);
+        assertEquals(0, before.getEdgeId(first.getSource(), first));
+        assertEquals(0, added.getEdgeId(first.getSource(), first));
+        assertEquals(-1, graph.compile().getEdgeId(first.getSource(), first));
+        assertEquals(8, graph.compile().getEdgeId(chicago, direct));
+
+        // once the overlay is full the graph is compacted, which numbers the edges again
+        for (int i = 0; i < 600; i++) {
+            Transport bus = new Transport(chicago, newYork, TransportType.BUS, 5, 5);
+            graph.addEdge(chicago, bus);
+            graph.removeEdge(bus);
+        }
+        CompiledGraph<City, Transport> compacted = graph.compile();
+        assertEquals(8, compacted.getEdgeCount());
+        assertTrue(compacted.getEdgeIdLimit() < 1000);
+        assertEquals(List.of(direct), tc.fastestRoute("Chicago", "New York"));
+        assertEquals(8, added.getEdgeId(chicago, direct));
+    }
+
+    @Test
+    public void testWeightCacheIsBounded() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        CompiledGraph<City, Transport> compiled = tc.getGraph().compile();
+        double[] prices = compiled.weights(RouteMetric.CHEAPEST.getWeight());
+        Function<Transport, Double> first = Transport::getMinutes;
+        double[] minutes = compiled.weights(first);
+        assertSame(minutes, compiled.weights(first));
+
+        // a new lambda with every query only keeps the last few arrays
+        for (int i = 0; i < 10; i++) {
+            double scale = i;
+            compiled.weights(t -> t.getPrice() * scale);
+        }
+        assertNotSame(minutes, compiled.weights(first));
+        assertSame(prices, compiled.weights(RouteMetric.CHEAPEST.getWeight()));
+    }
+
+    @Test
+    public void testCompileIsReusedUntilModified() {
+        TravelController controller1 = new TravelController();
+        controller1.load("data/cities3.csv", "data/transport3.csv");
+        TravelGraph graph = controller1.getGraph();
+        CompiledGraph<City, Transport> compiled = graph.compile();
+        assertSame(compiled, graph.compile());
+        assertEquals(6, compiled.getVertexCount());
+        assertEquals(8, compiled.getEdgeCount());
+
+        // adding an edge makes the next compile produce a fresh snapshot
+        City la = graph.getCityFromName("LA");
+        graph.addEdge(la, new Transport(la, graph.getCityFromName("Chicago"),
+                TransportType.BUS, 20, 300));
+        assertNotSame(compiled, graph.compile());
+        assertEquals(9, graph.compile().getEdgeCount());
+    }
+
     // TODO: write more tests + make sure you test all the cases in your testing plan!
+
+    @Test
+    public void testStreamTransportationMatchesParser() throws IOException {
+        TravelCSVParser parser = new TravelCSVParser();
+        for (String file : new String[] {"data/transport1.csv", "data/transport2.csv",
+            "data/transport3.csv", "data/transport5.csv"}) {
+            List<String> expected = new ArrayList<>();
+            parser.parseTransportation(file, map -> {
+                expected.add(map.get("origin") + "|" + map.get("destination") + "|"
+                    + TransportType.fromString(map.get("type")) + "|"
+                    + Double.parseDouble(map.get("price")) + "|" + Double.parseDouble(map.get("duration")));
+                return null;
+            });
+            List<String> streamed = new ArrayList<>();
+            IngestStats stats = parser.streamTransportation(file, (origin, destination, type, price, duration) ->
+                streamed.add(origin + "|" + destination + "|" + type + "|" + price + "|" + duration));
+            assertEquals(file, expected, streamed);
+            assertEquals(expected.size(), stats.getRows());
+        }
+    }
+
+    @Test
+    public void testStreamTransportationFormats() throws IOException {
+        String csv = "price,type,origin,destination,duration\r\n"
+            + "0.1,Bus,\"Washington, D.C.\",Boston,1e2\r\n"
+            + "\r\n"
+            + "-2.50,train,\"The \"\"Big\"\" Apple\",Boston,123456789012345678\n"
+            + "7,plane,Boston,\"Washington, D.C.\",0.30000000000000004";
+        List<Object[]> rows = new ArrayList<>();
+        IngestStats stats = new TravelCSVParser().streamTransportation(new StringReader(csv), null,
+            (origin, destination, type, price, duration) ->
+                rows.add(new Object[] {origin, destination, type, price, duration}));
+        assertEquals(3, stats.getRows());
+        Assert.assertArrayEquals(new Object[] {"Washington, D.C.", "Boston", TransportType.BUS, 0.1, 100.0},
+            rows.get(0));
+        Assert.assertArrayEquals(new Object[] {"The \"Big\" Apple", "Boston", TransportType.TRAIN, -2.5,
+            123456789012345678.0}, rows.get(1));
+        Assert.assertArrayEquals(new Object[] {"Boston", "Washington, D.C.", TransportType.PLANE, 7.0,
+            0.30000000000000004}, rows.get(2));
+        // repeated names share one String
+        assertSame(rows.get(0)[0], rows.get(2)[1]);
+
+        Assert.assertThrows(IOException.class, () -> new TravelCSVParser().streamTransportation(
+            new StringReader("origin,destination,price,duration\n"), null, (o, d, t, p, m) -> { }));
+    }
+
+    /**
+     * lists every transport of a graph as a string, in the order of the cities' outgoing sets
+     */
+    private static List<String> describeEdges(TravelGraph graph) {
+        List<String> edges = new ArrayList<>();
+        for (City city : graph.getVertices()) {
+            for (Transport transport : graph.getOutgoingEdges(city)) {
+                edges.add(transport.toString());
+            }
+        }
+        edges.sort(null);
+        return edges;
+    }
+
+    @Test
+    public void testChunkedLoadMatchesSequential() throws IOException {
+        TravelController sequential = new TravelController();
+        sequential.load("data/cities5.csv", "data/transport5.csv");
+        List<String> expected = describeEdges(sequential.getGraph());
+
+        for (long chunkBytes : new long[] {1, 50, 1 << 20}) {
+            TravelController chunked = new TravelController();
+            chunked.load("data/cities5.csv", List.of());
+            IngestStats stats = new TransportLoader(new ForkJoinPool(3), chunkBytes)
+                .load(chunked.getGraph(), List.of(Path.of("data/transport5.csv")));
+            assertEquals(sequential.getLastIngestStats().getRows(), stats.getRows());
+            assertEquals(expected, describeEdges(chunked.getGraph()));
+        }
+
+        // the header is split like the rows, so a quoted comma in it does not shift the columns
+        Path quoted = Files.createTempFile("transport", ".csv");
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(Path.of("data/transport5.csv"))) {
+            lines.add((lines.isEmpty() ? "\"notes, if any\"," : "\"a, b\",") + line);
+        }
+        Files.write(quoted, lines);
+        TravelController chunked = new TravelController();
+        chunked.load("data/cities5.csv", List.of());
+        new TransportLoader(new ForkJoinPool(3), 50).load(chunked.getGraph(), List.of(quoted));
+        assertEquals(expected, describeEdges(chunked.getGraph()));
+        Files.delete(quoted);
+    }
+
+    @Test
+    public void testLoadDirectoryWithGzip() throws IOException {
+        Path dir = Files.createTempDirectory("transports");
+        List<String> lines = Files.readAllLines(Path.of("data/transport5.csv"));
+        int half = lines.size() / 2;
+        Files.write(dir.resolve("a.csv"), lines.subList(0, half));
+        List<String> rest = new ArrayList<>(lines.subList(half, lines.size()));
+        rest.add(0, lines.get(0));
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dir.resolve("b.csv.gz")))) {
+            out.write(String.join("\n", rest).getBytes());
+        }
+        Files.write(dir.resolve("notes.txt"), List.of("not a transport file"));
+
+        TravelController sequential = new TravelController();
+        sequential.load("data/cities5.csv", "data/transport5.csv");
+        TravelController fromDir = new TravelController();
+        assertTrue(fromDir.load("data/cities5.csv", List.of(dir.toString())).startsWith("Successfully"));
+        assertEquals(describeEdges(sequential.getGraph()), describeEdges(fromDir.getGraph()));
+        assertTrue(fromDir.load("data/cities5.csv", List.of(dir.resolve("missing.csv").toString()))
+            .startsWith("Error"));
+
+        for (String name : new String[] {"a.csv", "b.csv.gz", "notes.txt"}) {
+            Files.delete(dir.resolve(name));
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testGeneratedDatasets() throws IOException {
+        Path dir = Files.createTempDirectory("generated");
+        Path cities = dir.resolve("cities.csv");
+        for (String topology : new String[] {"grid", "random", "hub", "scale-free"}) {
+            Path transport = dir.resolve(topology + ".csv.gz");
+            long rows = new DatasetGenerator(topology, 200, 7).write(cities, transport);
+            TravelController tc = new TravelController();
+            assertTrue(tc.load(cities.toString(), transport.toString()).startsWith("Successfully"));
+            assertEquals(200, tc.getGraph().getVertices().size());
+            assertEquals(rows, tc.getLastIngestStats().getRows());
+            if (!topology.equals("random")) {
+                // every other topology is connected
+                assertTrue(tc.mostDirectRoute("c0", "c199").size() > 0);
+            }
+            Files.delete(transport);
+        }
+
+        // the same seed gives the same files, and the mode mix is followed
+        DatasetGenerator trains = new DatasetGenerator("scale-free", 300, 11);
+        trains.setModeMix(Map.of(TransportType.TRAIN, 1.0));
+        Path first = dir.resolve("first.csv");
+        Path second = dir.resolve("second.csv");
+        trains.write(cities, first);
+        trains.write(cities, second);
+        assertEquals(Files.readAllLines(first), Files.readAllLines(second));
+        assertTrue(Files.readAllLines(first).stream().skip(1).allMatch(line -> line.contains(",train,")));
+        Assert.assertThrows(IllegalArgumentException.class, () -> trains.setCorrelation(2));
+        Assert.assertThrows(IllegalArgumentException.class, () -> new DatasetGenerator("ring", 10, 1));
+
+        for (Path file : new Path[] {cities, first, second}) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        TravelController loaded = new TravelController();
+        loaded.load("data/cities3.csv", "data/transport3.csv");
+        Path file = Files.createTempFile("graph", ".snapshot");
+        assertTrue(loaded.saveSnapshot(file.toString()).startsWith("Saved"));
+
+        TravelController opened = new TravelController();
+        assertTrue(opened.openSnapshot(file.toString()).startsWith("Opened"));
+        String[] cities = {"Chicago", "LA", "Buffalo", "Scottsdale", "New Orleans", "New York"};
+        for (String from : cities) {
+            for (String to : cities) {
+                assertEquals(loaded.getTotalEdgeWeightTime(loaded.fastestRoute(from, to)),
+                    opened.getTotalEdgeWeightTime(opened.fastestRoute(from, to)), 0.001);
+                assertEquals(loaded.getTotalEdgeWeightPrice(loaded.cheapestRoute(from, to)),
+                    opened.getTotalEdgeWeightPrice(opened.cheapestRoute(from, to)), 0.001);
+                assertEquals(loaded.mostDirectRoute(from, to).size(), opened.mostDirectRoute(from, to).size());
+            }
+        }
+        // transports are only created when asked for, and each one only once
+        List<Transport> route = opened.fastestRoute("Chicago", "New York");
+        assertSame(route.get(0), opened.fastestRoute("Chicago", "Buffalo").get(0));
+        assertEquals(TransportType.BUS, route.get(0).getType());
+        assertEquals(describeEdges(loaded.getGraph()), describeEdges(opened.getGraph()));
+
+        // the opened graph can still be changed
+        TravelGraph graph = opened.getGraph();
+        City la = graph.getCityFromName("LA");
+        graph.addEdge(la, new Transport(la, graph.getCityFromName("New York"), TransportType.PLANE, 1, 1));
+        assertEquals(9, graph.compile().getEdgeCount());
+        assertEquals(1, opened.fastestRoute("LA", "New York").size());
+
+        assertTrue(opened.openSnapshot("data/cities3.csv").startsWith("Error"));
+
+        // a city name longer than the file is reported as an error, not thrown
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(16, Integer.MAX_VALUE);
+        Files.write(file, bytes);
+        assertTrue(opened.openSnapshot(file.toString()).startsWith("Error"));
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(16, -5);
+        Files.write(file, bytes);
+        assertTrue(opened.openSnapshot(file.toString()).startsWith("Error"));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testLiveWeightUpdates() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        TravelGraph graph = tc.getGraph();
+        CompiledGraph<City, Transport> compiled = graph.compile();
+        ShortestPathTree<City, Transport> tree = tc.shortestPathTree("Chicago", RouteMetric.CHEAPEST);
+        City chicago = graph.getCityFromName("Chicago");
+        City newYork = graph.getCityFromName("New York");
+        // Chicago -> Buffalo -> Scottsdale -> New Orleans -> New York
+        assertEquals(210, tc.getTotalEdgeWeightPrice(tc.cheapestRoute("Chicago", "New York")), 0.001);
+
+        Transport freeBus = tc.cheapestRoute("Buffalo", "Scottsdale").get(0);
+        Transport dearBus = graph.setPrice(freeBus, 200);
+        assertEquals(200, dearBus.getPrice(), 0.001);
+        assertEquals(0, freeBus.getPrice(), 0.001);
+        // the transport is replaced in a new version of the compiled graph, which keeps its weights unchanged
+        CompiledGraph<City, Transport> changed = graph.compile();
+        assertNotSame(compiled, changed);
+        assertEquals(compiled.getEdgeCount(), changed.getEdgeCount());
+        int freeBusId = compiled.getEdgeId(freeBus.getSource(), freeBus);
+        assertTrue(freeBusId >= 0);
+        assertEquals(-1, changed.getEdgeId(freeBus.getSource(), freeBus));
+        assertEquals(0, compiled.weights(RouteMetric.CHEAPEST.getWeight())[freeBusId], 0.001);
+        // the cached tree is moved onto the new version and repaired rather than rebuilt
+        assertSame(tree, tc.shortestPathTree("Chicago", RouteMetric.CHEAPEST));
+        assertEquals(260, tree.getDistance(newYork), 0.001);
+        List<Transport> route = tc.cheapestRoute("Chicago", "New York");
+        assertEquals(260, tc.getTotalEdgeWeightPrice(route), 0.001);
+        assertEquals("Scottsdale", route.get(0).getTarget().toString());
+
+        Transport cheapBus = graph.setPrice(dearBus, 0);
+        assertEquals(210, tc.getTotalEdgeWeightPrice(tc.cheapestRoute("Chicago", "New York")), 0.001);
+        assertEquals(210, tree.getDistance(newYork), 0.001);
+
+        Transport buffaloToNewYork = tc.fastestRoute("Buffalo", "New York").get(0);
+        Transport slowTrain = graph.setMinutes(buffaloToNewYork, 10000);
+        assertEquals(10600, tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "New York")), 0.001);
+        Assert.assertThrows(IllegalArgumentException.class, () -> graph.setPrice(cheapBus, -1));
+        Assert.assertThrows(IllegalArgumentException.class, () -> graph.setPrice(freeBus, 5));
+        Assert.assertThrows(IllegalArgumentException.class,
+            () -> graph.setMinutes(new Transport(chicago, newYork, TransportType.PLANE, 1, 1), 5));
+
+        // removing a transport patches the graph again
+        graph.removeEdge(slowTrain);
+        assertTrue(compiled != graph.compile());
+        assertEquals(7, graph.compile().getEdgeCount());
+        assertEquals(13000, tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "New York")), 0.001);
+        Assert.assertThrows(IllegalArgumentException.class, () -> graph.removeEdge(slowTrain));
+    }
+
+    @Test
+    public void testLiveTransportUpdates() {
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        TravelGraph graph = tc.getGraph();
+        ShortestPathTree<City, Transport> cheapest = tc.shortestPathTree("Chicago", RouteMetric.CHEAPEST);
+        ShortestPathTree<City, Transport> fastest = tc.shortestPathTree("Chicago", RouteMetric.FASTEST);
+        City chicago = graph.getCityFromName("Chicago");
+        City newYork = graph.getCityFromName("New York");
+        List<Transport> route = tc.fastestRoute("Chicago", "New York");
+
+        Transport direct = new Transport(chicago, newYork, TransportType.PLANE, 1, 1);
+        graph.addEdge(chicago, direct);
+        // the compiled graph is patched, and the trees are moved onto it rather than rebuilt
+        assertEquals(9, graph.compile().getEdgeCount());
+        assertSame(cheapest, tc.shortestPathTree("Chicago", RouteMetric.CHEAPEST));
+        assertSame(graph.compile(), cheapest.getGraph());
+        assertEquals(1, cheapest.getDistance(newYork), 0.001);
+        assertEquals(List.of(direct), tc.fastestRoute("Chicago", "New York"));
+        assertEquals(List.of(direct), tc.cheapestRoute("Chicago", "New York"));
+
+        graph.removeEdge(direct);
+        assertEquals(8, graph.compile().getEdgeCount());
+        assertSame(fastest, tc.shortestPathTree("Chicago", RouteMetric.FASTEST));
+        assertEquals(210, cheapest.getDistance(newYork), 0.001);
+        assertEquals(route, tc.fastestRoute("Chicago", "New York"));
+
+        // removing a tree edge repairs the subtree below it
+        Transport toBuffalo = fastest.getPath(graph.getCityFromName("Buffalo")).get(0);
+        graph.removeEdge(toBuffalo);
+        assertSame(fastest, tc.shortestPathTree("Chicago", RouteMetric.FASTEST));
+        TravelController fresh = new TravelController();
+        fresh.load("data/cities3.csv", "data/transport3.csv");
+        fresh.getGraph().removeEdge(fresh.fastestRoute("Chicago", "Buffalo").get(0));
+        for (City city : graph.getVertices()) {
+            String name = city.toString();
+            assertEquals(fresh.distance("Chicago", name, RouteMetric.FASTEST), fastest.getDistance(city), 0.001);
+            assertEquals(fresh.distance("Chicago", name, RouteMetric.CHEAPEST), cheapest.getDistance(city), 0.001);
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdatesAndQueries() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("concurrent");
+        Path citiesFile = dir.resolve("cities.csv");
+        Path transportFile = dir.resolve("transport.csv");
+        new DatasetGenerator("random", 1000, 5).write(citiesFile, transportFile);
+        TravelController tc = new TravelController();
+        tc.load(citiesFile.toString(), transportFile.toString());
+        TravelGraph graph = tc.getGraph();
+        tc.shortestPathTree("c0", RouteMetric.FASTEST);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean done = new AtomicBoolean();
+
+        Thread writer = new Thread(() -> {
+            Random random = new Random(1);
+            try {
+                for (int i = 0; i < 2000; i++) {
+                    City from = graph.getCityFromName("c" + random.nextInt(1000));
+                    City to = graph.getCityFromName("c" + random.nextInt(1000));
+                    if (from == to) {
+                        continue;
+                    }
+                    Transport added = new Transport(from, to, TransportType.PLANE, 1, 1);
+                    graph.addEdge(from, added);
+                    graph.removeEdge(graph.setPrice(added, 2));
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            } finally {
+                done.set(true);
+            }
+        });
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            int seed = r;
+            readers.add(new Thread(() -> {
+                Random random = new Random(seed);
+                Dijkstra<City, Transport> legacy = new Dijkstra<>();
+                try {
+                    while (!done.get()) {
+                        String from = "c" + random.nextInt(1000);
+                        String to = "c" + random.nextInt(1000);
+                        tc.fastestRoute(from, to);
+                        tc.cheapestRoute(from, to);
+                        tc.mostDirectRoute(from, to);
+                        tc.distance("c0", to, RouteMetric.FASTEST);
+                        legacy.getShortestPath(graph, graph.getCityFromName(from),
+                                graph.getCityFromName(to), RouteMetric.FASTEST.getWeight());
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        // every added transport was removed again, so the routes are those of the file
+        TravelController fresh = new TravelController();
+        fresh.load(citiesFile.toString(), transportFile.toString());
+        assertEquals(fresh.getGraph().compile().getEdgeCount(), graph.compile().getEdgeCount());
+        Random random = new Random(2);
+        for (int i = 0; i < 200; i++) {
+            String from = "c" + random.nextInt(1000);
+            String to = "c" + random.nextInt(1000);
+            assertEquals(fresh.getTotalEdgeWeightTime(fresh.fastestRoute(from, to)),
+                    tc.getTotalEdgeWeightTime(tc.fastestRoute(from, to)), 0.001);
+            assertEquals(fresh.getTotalEdgeWeightPrice(fresh.cheapestRoute(from, to)),
+                    tc.getTotalEdgeWeightPrice(tc.cheapestRoute(from, to)), 0.001);
+            assertEquals(fresh.distance("c0", to, RouteMetric.FASTEST),
+                    tc.distance("c0", to, RouteMetric.FASTEST), 0.001);
+        }
+        Files.delete(citiesFile);
+        Files.delete(transportFile);
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testOffHeapGraph() throws IOException {
+        OffHeapGraph offHeap = OffHeapGraph.load("data/cities3.csv", List.of("data/transport3.csv"));
+        TravelController tc = new TravelController();
+        tc.load("data/cities3.csv", "data/transport3.csv");
+        assertEquals(tc.getGraph().getVertices().size(), offHeap.getVertexCount());
+        assertEquals(offHeap.getVertexCount(), offHeap.getVertices().size());
+
+        // every route costs the same as on the heap, from the buffers and through the engines
+        IndexedDijkstra<City, Transport> dijkstra = new IndexedDijkstra<>();
+        for (City source : offHeap.getVertices()) {
+            for (City destination : offHeap.getVertices()) {
+                String from = source.toString();
+                String to = destination.toString();
+                List<Transport> route = offHeap.getShortestPath(source, destination, RouteMetric.FASTEST);
+                assertEquals(tc.getTotalEdgeWeightTime(tc.fastestRoute(from, to)),
+                        tc.getTotalEdgeWeightTime(route), 0.001);
+                assertEquals(tc.getTotalEdgeWeightPrice(tc.cheapestRoute(from, to)), tc.getTotalEdgeWeightPrice(
+                        offHeap.getShortestPath(source, destination, RouteMetric.CHEAPEST)), 0.001);
+                assertEquals(tc.mostDirectRoute(from, to).size(),
+                        offHeap.getShortestPath(source, destination, RouteMetric.MOST_DIRECT).size());
+                assertEquals(tc.getTotalEdgeWeightTime(route), tc.getTotalEdgeWeightTime(
+                        dijkstra.getShortestPath(offHeap, source, destination, RouteMetric.FASTEST.getWeight())),
+                        0.001);
+                if (!route.isEmpty()) {
+                    assertSame(source, route.get(0).getSource());
+                    assertSame(destination, route.get(route.size() - 1).getTarget());
+                }
+            }
+        }
+        City chicago = offHeap.getCityFromName("Chicago");
+        City newYork = offHeap.getCityFromName("New York");
+        assertEquals(tc.getTotalEdgeWeightTime(tc.fastestRoute("Chicago", "New York", EnumSet.of(TransportType.BUS))),
+                tc.getTotalEdgeWeightTime(offHeap.getShortestPath(chicago, newYork, RouteMetric.FASTEST,
+                        EnumSet.of(TransportType.BUS))), 0.001);
+
+        // transports are created on demand, and the graph cannot be changed
+        int outgoing = offHeap.getOutgoingEdges(chicago).size();
+        assertEquals(offHeap.compile().getOutDegree(offHeap.compile().getId(chicago)), outgoing);
+        assertSame(offHeap.compile(), CompiledGraph.of(offHeap));
+        assertTrue(offHeap.getOffHeapBytes() >= 4L * (offHeap.getVertexCount() + 1) + 13L * offHeap.getEdgeCount());
+        Assert.assertThrows(IllegalArgumentException.class, () -> offHeap.addVertex(new City("Atlantis")));
+        Exception e = Assert.assertThrows(IllegalArgumentException.class,
+                () -> offHeap.getShortestPath(new City("Chicago"), newYork, RouteMetric.FASTEST));
+        assertEquals("Entered city does not exist", e.getMessage());
+
+        OffHeapGraph.Builder builder = new OffHeapGraph.Builder();
+        builder.addCity("Boston");
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> builder.addTransport("Boston", "Denver", TransportType.BUS, 1, 1));
+
+        // the controller searches the off-heap graph, and builds a heap graph over it for other queries
+        TravelController offHeapController = new TravelController();
+        assertTrue(offHeapController.loadOffHeap("data/cities3.csv", List.of("data/transport3.csv"))
+                .startsWith("Loaded"));
+        for (City source : offHeap.getVertices()) {
+            for (City destination : offHeap.getVertices()) {
+                String from = source.toString();
+                String to = destination.toString();
+                assertEquals(tc.getTotalEdgeWeightTime(tc.fastestRoute(from, to)),
+                        tc.getTotalEdgeWeightTime(offHeapController.fastestRoute(from, to)), 0.001);
+                assertEquals(tc.getTotalEdgeWeightPrice(tc.cheapestRoute(from, to, EnumSet.of(TransportType.BUS))),
+                        tc.getTotalEdgeWeightPrice(offHeapController.cheapestRoute(from, to,
+                                EnumSet.of(TransportType.BUS))), 0.001);
+            }
+        }
+        assertEquals(tc.paretoRoutes("Chicago", "New York").size(),
+                offHeapController.paretoRoutes("Chicago", "New York").size());
+        // once the heap graph changes, routes come from it
+        TravelGraph heap = offHeapController.getGraph();
+        City buffalo = heap.getCityFromName("Buffalo");
+        City newOrleans = heap.getCityFromName("New Orleans");
+        heap.addEdge(buffalo, new Transport(buffalo, newOrleans, TransportType.BUS, 1, 1));
+        assertEquals(1, offHeapController.fastestRoute("Buffalo", "New Orleans").size());
+        assertEquals(1.0, offHeapController.fastestRoute("Buffalo", "New Orleans").get(0).getMinutes(), 0.001);
+    }
+
+    @Test
+    public void testOffHeapGraphAcrossSegments() {
+        // more transports than one buffer segment holds, added in random order
+        OffHeapGraph.Builder builder = new OffHeapGraph.Builder();
+        int cities = 100;
+        for (int i = 0; i < cities; i++) {
+            builder.addCity("c" + i);
+        }
+        Random random = new Random(7);
+        int[] outgoing = new int[cities];
+        double[] cheapest = new double[cities];
+        Arrays.fill(cheapest, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < 150000; i++) {
+            int origin = random.nextInt(cities);
+            int destination = (origin + 1 + random.nextInt(cities - 1)) % cities;
+            int price = 1 + random.nextInt(1000);
+            builder.addTransport("c" + origin, "c" + destination, TransportType.BUS, price, 10);
+            outgoing[origin]++;
+            if (destination == 0) {
+                cheapest[origin] = Math.min(cheapest[origin], price);
+            }
+        }
+        OffHeapGraph graph = builder.build();
+        assertEquals(150000, graph.getEdgeCount());
+        for (int i = 0; i < cities; i++) {
+            City city = graph.getCityFromName("c" + i);
+            Set<Transport> edges = graph.getOutgoingEdges(city);
+            assertEquals(outgoing[i], edges.size());
+            for (Transport edge : edges) {
+                assertSame(city, edge.getSource());
+            }
+        }
+        // the direct transports bound every cheapest route, and the engines agree with the buffers
+        IndexedDijkstra<City, Transport> dijkstra = new IndexedDijkstra<>();
+        City target = graph.getCityFromName("c0");
+        for (int i = 1; i < cities; i++) {
+            City source = graph.getCityFromName("c" + i);
+            List<Transport> route = graph.getShortestPath(source, target, RouteMetric.CHEAPEST);
+            double price = 0;
+            for (Transport edge : route) {
+                price += edge.getPrice();
+            }
+            assertTrue(price <= cheapest[i]);
+            double enginePrice = 0;
+            for (Transport edge : dijkstra.getShortestPath(graph, source, target, RouteMetric.CHEAPEST.getWeight())) {
+                enginePrice += edge.getPrice();
+            }
+            assertEquals(price, enginePrice, 0.001);
+        }
+    }
 }